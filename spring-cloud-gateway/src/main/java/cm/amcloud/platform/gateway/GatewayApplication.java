@@ -1,5 +1,8 @@
 package cm.amcloud.platform.gateway;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.security.oauth2.client.servlet.OAuth2ClientAutoConfiguration;
@@ -8,6 +11,7 @@ import org.springframework.boot.autoconfigure.security.reactive.ReactiveSecurity
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
 
 import io.github.cdimascio.dotenv.Dotenv;
+import io.github.cdimascio.dotenv.DotenvEntry;
 
 @SpringBootApplication(exclude = {
     SecurityAutoConfiguration.class,
@@ -18,14 +22,26 @@ import io.github.cdimascio.dotenv.Dotenv;
 public class GatewayApplication {
 
     public static void main(String[] args) {
+        SpringApplication application = new SpringApplication(GatewayApplication.class);
+        application.setDefaultProperties(dotenvProperties());
+        application.run(args);
+    }
 
-        // Load .env file
+    /**
+     * Reads the optional `.env` file of the working directory (local development). Its entries
+     * are used as default properties, so real environment variables and system properties, as set
+     * in containers, take precedence, and a missing file is not an error.
+     *
+     * @return The `.env` entries, empty if there is no file.
+     */
+    static Map<String, Object> dotenvProperties() {
         Dotenv dotenv = Dotenv.configure()
-                 .load();
-
-        // Set environment variables
-        dotenv.entries().forEach(entry -> System.setProperty(entry.getKey(), entry.getValue()));
-
-        SpringApplication.run(GatewayApplication.class, args);
+                .ignoreIfMissing()
+                .load();
+        Map<String, Object> properties = new HashMap<>();
+        for (DotenvEntry entry : dotenv.entries(Dotenv.Filter.DECLARED_IN_ENV_FILE)) {
+            properties.put(entry.getKey(), entry.getValue());
+        }
+        return properties;
     }
 }
@@ -0,0 +1,112 @@
+package cm.amcloud.platform.gateway.cache;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+
+/**
+ * CachedResponse: An immutable upstream response held by the {@link ResponseCache}.
+ * The body is kept in a direct (off-heap) buffer, so cached payloads add little to the heap
+ * and can be written to the client without copying.
+ */
+public final class CachedResponse {
+
+    /**
+     * Rough heap cost of an entry besides its body, used to weigh entries.
+     */
+    private static final int ENTRY_OVERHEAD = 512;
+
+    private final HttpStatusCode status;
+    private final HttpHeaders headers;
+    private final ByteBuffer body;
+    private final Map<String, List<String>> varyValues;
+    private final long storedAt;
+    private final long ttlNanos;
+
+    /**
+     * @param status     The response status.
+     * @param headers    The response headers to replay; copied.
+     * @param body       The response body, positioned at 0 and limited to its length.
+     * @param varyValues The values of the request headers named by the response's `Vary` header.
+     * @param storedAt   The ticker time, in nanoseconds, at which the response was stored.
+     * @param ttlNanos   How long the response may be served from the cache.
+     */
+    public CachedResponse(HttpStatusCode status, HttpHeaders headers, ByteBuffer body,
+            Map<String, List<String>> varyValues, long storedAt, long ttlNanos) {
+        HttpHeaders copy = new HttpHeaders();
+        copy.addAll(headers);
+        this.status = status;
+        this.headers = HttpHeaders.readOnlyHttpHeaders(copy);
+        this.body = body.asReadOnlyBuffer();
+        this.varyValues = Map.copyOf(varyValues);
+        this.storedAt = storedAt;
+        this.ttlNanos = ttlNanos;
+    }
+
+    /**
+     * Checks the request headers named by the cached response's `Vary` header against the
+     * ones of the request that populated the entry.
+     *
+     * @param requestHeaders The headers of the request to serve.
+     * @return Whether the cached response may be served to this request.
+     */
+    public boolean matches(HttpHeaders requestHeaders) {
+        return matches(varyValues, requestHeaders);
+    }
+
+    /**
+     * @param varyValues     The values of the request headers named by a response's `Vary` header.
+     * @param requestHeaders The headers of the request to serve.
+     * @return Whether a response stored with these values may be served to this request.
+     */
+    public static boolean matches(Map<String, List<String>> varyValues, HttpHeaders requestHeaders) {
+        for (Map.Entry<String, List<String>> vary : varyValues.entrySet()) {
+            List<String> values = requestHeaders.getOrEmpty(vary.getKey());
+            if (!Objects.equals(values, vary.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public HttpStatusCode getStatus() {
+        return status;
+    }
+
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return A new read-only view of the body, for a single write.
+     */
+    public ByteBuffer getBody() {
+        return body.duplicate();
+    }
+
+    /**
+     * @return The body length, in bytes.
+     */
+    public int getBodySize() {
+        return body.remaining();
+    }
+
+    public long getStoredAt() {
+        return storedAt;
+    }
+
+    public long getTtlNanos() {
+        return ttlNanos;
+    }
+
+    /**
+     * @return The weight of the entry in the cache, in bytes.
+     */
+    int weight() {
+        return body.remaining() + ENTRY_OVERHEAD;
+    }
+}
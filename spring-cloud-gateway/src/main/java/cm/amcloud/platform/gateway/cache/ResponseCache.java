@@ -0,0 +1,229 @@
+package cm.amcloud.platform.gateway.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.http.HttpHeaders;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * ResponseCache: The store behind the `ResponseCache` route filter. Entries are weighed by their
+ * body size and the cache is bounded in bytes; each entry expires after its own TTL, and the least
+ * recently (and least frequently) used entries are evicted first when the cache is full.
+ * <p>
+ * It also tracks the upstream requests in flight per key, so that concurrent misses for the same
+ * key wait for a single upstream response instead of each going upstream. Keys whose last response
+ * was not stored are remembered for a short while, and their misses are not made to wait.
+ */
+public class ResponseCache implements MeterBinder {
+
+    /**
+     * Bound of the uncacheable keys remembered, which hold no body.
+     */
+    private static final long MAXIMUM_UNCACHEABLE_KEYS = 10_000;
+
+    private final Cache<Key, CachedResponse> entries;
+    private final Cache<Key, Boolean> uncacheable;
+    private final ConcurrentMap<Key, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final Ticker ticker;
+    private final long maximumEntrySize;
+
+    /**
+     * @param maximumSize      The maximum total size of the cached responses, in bytes.
+     * @param maximumEntrySize The maximum body size of a single cached response, in bytes.
+     * @param uncacheableTtl   How long a key whose response was not stored is fetched without
+     *                         coalescing concurrent misses.
+     */
+    public ResponseCache(long maximumSize, long maximumEntrySize, Duration uncacheableTtl) {
+        this(maximumSize, maximumEntrySize, uncacheableTtl, Ticker.systemTicker());
+    }
+
+    ResponseCache(long maximumSize, long maximumEntrySize, Duration uncacheableTtl, Ticker ticker) {
+        this.ticker = ticker;
+        this.maximumEntrySize = maximumEntrySize;
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maximumSize)
+                .weigher((Key key, CachedResponse response) -> response.weight())
+                .expireAfter(new TtlExpiry())
+                .ticker(ticker)
+                .build();
+        this.uncacheable = Caffeine.newBuilder()
+                .maximumSize(MAXIMUM_UNCACHEABLE_KEYS)
+                .expireAfterWrite(uncacheableTtl)
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Returns the cached response for a key, if present and matching the request's `Vary` headers.
+     *
+     * @param key            The cache key.
+     * @param requestHeaders The headers of the request to serve.
+     * @return The cached response, or null.
+     */
+    public CachedResponse get(Key key, HttpHeaders requestHeaders) {
+        CachedResponse response = entries.getIfPresent(key);
+        return response != null && response.matches(requestHeaders) ? response : null;
+    }
+
+    public void put(Key key, CachedResponse response) {
+        entries.put(key, response);
+        uncacheable.invalidate(key);
+    }
+
+    /**
+     * Remembers that the last response for a key was not stored, so that the next misses for it
+     * go upstream without waiting for each other.
+     */
+    public void markUncacheable(Key key) {
+        uncacheable.put(key, Boolean.TRUE);
+    }
+
+    /**
+     * @return Whether the last response for the key was not stored, within the uncacheable TTL.
+     */
+    public boolean isUncacheable(Key key) {
+        return uncacheable.getIfPresent(key) != null;
+    }
+
+    /**
+     * Registers the caller as the one fetching the key from upstream, unless another request
+     * already does.
+     *
+     * @param key   The cache key.
+     * @param fetch The fetch the caller will report the response to.
+     * @return The fetch of the request already fetching the key, or null if the caller was registered.
+     */
+    public InFlight joinInFlight(Key key, InFlight fetch) {
+        return inFlight.putIfAbsent(key, fetch);
+    }
+
+    /**
+     * Ends the upstream fetch of a key, as soon as it is known whether its response is stored:
+     * waiting requests receive the stored response, if any, or go upstream themselves.
+     *
+     * @param key   The cache key.
+     * @param fetch The fetch registered with {@link #joinInFlight(Key, InFlight)}.
+     */
+    public void completeInFlight(Key key, InFlight fetch) {
+        inFlight.remove(key, fetch);
+        fetch.abandon();
+    }
+
+    /**
+     * @return The current ticker time, in nanoseconds.
+     */
+    public long now() {
+        return ticker.read();
+    }
+
+    public long getMaximumEntrySize() {
+        return maximumEntrySize;
+    }
+
+    /**
+     * @return The total weight of the cached responses, in bytes.
+     */
+    public long getWeightedSize() {
+        return entries.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    /**
+     * Publishes the number of entries and the stored bytes under `gateway.response.cache`.
+     * Request outcomes are counted per route by the filter.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("gateway.response.cache.entries", entries, Cache::estimatedSize)
+                .description("Number of cached responses")
+                .register(registry);
+        Gauge.builder("gateway.response.cache.size", this, ResponseCache::getWeightedSize)
+                .description("Bytes held by cached responses, mostly off-heap")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * The cache key: route, path with query, and the principal-derived part of the key, if the
+     * route varies on the authenticated subject or scopes. Request headers named by `Vary` are
+     * checked against the entry, see {@link CachedResponse#matches(HttpHeaders)}.
+     */
+    public record Key(String routeId, String pathAndQuery, String principal) {
+    }
+
+    /**
+     * The upstream fetch of a key, which concurrent misses for the key wait for. As soon as it has
+     * the response headers, the fetching request tells whether it stores the response and for
+     * which `Vary` values, so that a waiting request which cannot be served the response goes
+     * upstream at once rather than when the response is complete.
+     */
+    public static final class InFlight {
+
+        private final Sinks.One<Map<String, List<String>>> storing = Sinks.one();
+        private final Sinks.One<CachedResponse> stored = Sinks.one();
+
+        /**
+         * The response is being captured, to be stored for requests with these `Vary` values.
+         */
+        public void storing(Map<String, List<String>> varyValues) {
+            storing.tryEmitValue(varyValues);
+        }
+
+        /**
+         * The response was stored.
+         */
+        public void stored(CachedResponse response) {
+            stored.tryEmitValue(response);
+        }
+
+        /**
+         * The response is not stored, or the fetch ended; no effect once the response was stored.
+         */
+        void abandon() {
+            storing.tryEmitEmpty();
+            stored.tryEmitEmpty();
+        }
+
+        /**
+         * @param requestHeaders The headers of the waiting request.
+         * @return The stored response, or empty if the response is not stored or does not match
+         *         the request's `Vary` headers.
+         */
+        public Mono<CachedResponse> await(HttpHeaders requestHeaders) {
+            return storing.asMono()
+                    .filter(varyValues -> CachedResponse.matches(varyValues, requestHeaders))
+                    .flatMap(varyValues -> stored.asMono());
+        }
+    }
+
+    private static final class TtlExpiry implements Expiry<Key, CachedResponse> {
+
+        @Override
+        public long expireAfterCreate(Key key, CachedResponse response, long currentTime) {
+            return response.getTtlNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Key key, CachedResponse response, long currentTime, long currentDuration) {
+            return response.getTtlNanos();
+        }
+
+        @Override
+        public long expireAfterRead(Key key, CachedResponse response, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
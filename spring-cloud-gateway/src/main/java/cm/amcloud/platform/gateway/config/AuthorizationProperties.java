@@ -0,0 +1,114 @@
+package cm.amcloud.platform.gateway.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.http.HttpMethod;
+
+/**
+ * AuthorizationProperties: The access rules of the gateway, bound from
+ * `gateway.security.authorization.*` and compiled once into an
+ * {@link cm.amcloud.platform.gateway.security.AuthorizationTable}. Rules are evaluated in order and
+ * the first rule matching the request decides; requests matching no rule get the default access.
+ */
+@ConfigurationProperties(prefix = "gateway.security.authorization")
+public class AuthorizationProperties {
+
+    /**
+     * Access of the requests matching no rule.
+     */
+    private Access defaultAccess = Access.AUTHENTICATED;
+
+    private final List<Rule> rules = new ArrayList<>();
+
+    public Access getDefaultAccess() {
+        return defaultAccess;
+    }
+
+    public void setDefaultAccess(Access defaultAccess) {
+        this.defaultAccess = defaultAccess;
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    public enum Access {
+        /**
+         * No authentication required.
+         */
+        PERMIT_ALL,
+        /**
+         * Any authenticated token.
+         */
+        AUTHENTICATED,
+        /**
+         * Always denied.
+         */
+        DENY_ALL
+    }
+
+    /**
+     * One access rule: either an {@link Access} or the authorities of which the token needs at
+     * least one, e.g. `ROLE_ADMIN` or `SCOPE_READ`.
+     */
+    public static class Rule {
+
+        /**
+         * Path patterns of the rule, with the syntax of the `Path=` route predicate.
+         */
+        private List<String> paths = new ArrayList<>();
+
+        /**
+         * HTTP methods of the rule; all methods if empty.
+         */
+        private List<HttpMethod> methods = new ArrayList<>();
+
+        /**
+         * Access granted by the rule; AUTHENTICATED if neither access nor authorities are set.
+         */
+        private Access access;
+
+        /**
+         * Authorities of which the token needs at least one.
+         */
+        private List<String> authorities = new ArrayList<>();
+
+        public List<String> getPaths() {
+            return paths;
+        }
+
+        public Rule setPaths(List<String> paths) {
+            this.paths = paths;
+            return this;
+        }
+
+        public List<HttpMethod> getMethods() {
+            return methods;
+        }
+
+        public Rule setMethods(List<HttpMethod> methods) {
+            this.methods = methods;
+            return this;
+        }
+
+        public Access getAccess() {
+            return access;
+        }
+
+        public Rule setAccess(Access access) {
+            this.access = access;
+            return this;
+        }
+
+        public List<String> getAuthorities() {
+            return authorities;
+        }
+
+        public Rule setAuthorities(List<String> authorities) {
+            this.authorities = authorities;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package cm.amcloud.platform.gateway.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import cm.amcloud.platform.gateway.filter.BodyLimitGatewayFilterFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.netty4.NettyAllocatorMetrics;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufAllocatorMetricProvider;
+import io.netty.buffer.PooledByteBufAllocator;
+
+/**
+ * BodyLimitConfig: Provides the `BodyLimit` route filter, and the metrics of the Netty allocator
+ * holding the request and response buffers. Routes opt in by adding the filter in application.yml.
+ */
+@Configuration
+public class BodyLimitConfig {
+
+    @Bean
+    BodyLimitGatewayFilterFactory bodyLimitGatewayFilterFactory(MeterRegistry meterRegistry) {
+        return new BodyLimitGatewayFilterFactory(meterRegistry);
+    }
+
+    /**
+     * Publishes the direct and heap memory used by the default Netty allocator, which Reactor Netty
+     * allocates the buffers of both the server and the upstream connections from
+     * (`netty.allocator.memory.used`, `netty.allocator.memory.pinned`).
+     *
+     * @return The allocator metrics; bound to the meter registry by Spring Boot.
+     */
+    @Bean
+    NettyAllocatorMetrics nettyAllocatorMetrics() {
+        ByteBufAllocator allocator = ByteBufAllocator.DEFAULT;
+        return new NettyAllocatorMetrics(allocator instanceof ByteBufAllocatorMetricProvider provider
+                ? provider
+                : PooledByteBufAllocator.DEFAULT);
+    }
+}
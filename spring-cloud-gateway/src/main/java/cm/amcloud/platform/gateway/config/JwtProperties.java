@@ -0,0 +1,307 @@
+package cm.amcloud.platform.gateway.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.Resource;
+
+/**
+ * JwtProperties: Settings of the gateway's JWT decoding pipeline, bound from
+ * `gateway.security.jwt.*`. The issuer and JWK Set URI themselves keep coming from
+ * the standard `spring.security.oauth2.resourceserver.jwt.*` properties.
+ */
+@ConfigurationProperties(prefix = "gateway.security.jwt")
+public class JwtProperties {
+
+    /**
+     * How the decoder obtains the signing keys.
+     */
+    public enum Mode {
+        /**
+         * OIDC discovery against the issuer URI at startup, then remote JWKS fetches.
+         */
+        ISSUER,
+        /**
+         * In-memory JWK set, refreshed in the background from the JWK Set URI and/or pinned from a local file.
+         */
+        LOCAL_JWKS
+    }
+
+    private Mode mode = Mode.ISSUER;
+
+    private final Cache cache = new Cache();
+
+    private final Jwks jwks = new Jwks();
+
+    private final Revocation revocation = new Revocation();
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Jwks getJwks() {
+        return jwks;
+    }
+
+    public Revocation getRevocation() {
+        return revocation;
+    }
+
+    /**
+     * Cache of already-validated JWTs, see {@link cm.amcloud.platform.gateway.security.CachingReactiveJwtDecoder}.
+     */
+    public static class Cache {
+
+        private boolean enabled = true;
+
+        private long maximumSize = 10_000;
+
+        private Duration maximumTtl = Duration.ofHours(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public Duration getMaximumTtl() {
+            return maximumTtl;
+        }
+
+        public void setMaximumTtl(Duration maximumTtl) {
+            this.maximumTtl = maximumTtl;
+        }
+    }
+
+    /**
+     * In-memory JWK set used in {@link Mode#LOCAL_JWKS} mode,
+     * see {@link cm.amcloud.platform.gateway.security.RefreshingJwkSetSource}.
+     */
+    public static class Jwks {
+
+        /**
+         * Interval between two scheduled refreshes of the JWK set.
+         */
+        private Duration refreshInterval = Duration.ofMinutes(5);
+
+        /**
+         * Random deviation (plus or minus) applied to each scheduled refresh, so that gateway nodes do not refresh in lockstep.
+         */
+        private Duration refreshJitter = Duration.ofSeconds(30);
+
+        /**
+         * Minimum time between two refreshes triggered by a token with an unknown `kid`.
+         */
+        private Duration minimumRefreshInterval = Duration.ofSeconds(30);
+
+        private Duration connectTimeout = Duration.ofSeconds(2);
+
+        private Duration readTimeout = Duration.ofSeconds(2);
+
+        /**
+         * Maximum accepted size of the JWK Set document, in bytes.
+         */
+        private int sizeLimit = 50 * 1024;
+
+        /**
+         * Optional JWK Set document with keys that are always trusted, e.g. file:/etc/gateway/jwks.json.
+         */
+        private Resource pinnedKeys;
+
+        public Duration getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public void setRefreshInterval(Duration refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+
+        public Duration getRefreshJitter() {
+            return refreshJitter;
+        }
+
+        public void setRefreshJitter(Duration refreshJitter) {
+            this.refreshJitter = refreshJitter;
+        }
+
+        public Duration getMinimumRefreshInterval() {
+            return minimumRefreshInterval;
+        }
+
+        public void setMinimumRefreshInterval(Duration minimumRefreshInterval) {
+            this.minimumRefreshInterval = minimumRefreshInterval;
+        }
+
+        public Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public Duration getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(Duration readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public int getSizeLimit() {
+            return sizeLimit;
+        }
+
+        public void setSizeLimit(int sizeLimit) {
+            this.sizeLimit = sizeLimit;
+        }
+
+        public Resource getPinnedKeys() {
+            return pinnedKeys;
+        }
+
+        public void setPinnedKeys(Resource pinnedKeys) {
+            this.pinnedKeys = pinnedKeys;
+        }
+    }
+
+    /**
+     * Revoked token ids and subjects pushed by IAM,
+     * see {@link cm.amcloud.platform.gateway.revocation.RevocationList}.
+     */
+    public static class Revocation {
+
+        private boolean enabled = true;
+
+        /**
+         * Number of revocations the bloom filter is sized for; it is rebuilt larger if exceeded.
+         */
+        private long expectedEntries = 100_000;
+
+        /**
+         * Share of non-revoked tokens that need an exact lookup, at the expected number of entries.
+         */
+        private double falsePositiveProbability = 0.01;
+
+        /**
+         * Interval between two sweeps of the revocations whose tokens have all expired.
+         */
+        private Duration sweepInterval = Duration.ofMinutes(1);
+
+        /**
+         * Path IAM pushes revocation batches to.
+         */
+        private String pushPath = "/internal/revocations";
+
+        /**
+         * Authority the token of the pushing client must have.
+         */
+        private String pushAuthority = "SCOPE_REVOCATIONS";
+
+        /**
+         * IAM endpoint answering the full revocation state, pulled at startup and after missed
+         * batches. Without it, revocations pushed before a node started are unknown to it.
+         */
+        private String snapshotUri;
+
+        /**
+         * Connect and response timeout of a snapshot pull.
+         */
+        private Duration snapshotTimeout = Duration.ofSeconds(10);
+
+        /**
+         * Delay before pulling the snapshot again after a failed pull.
+         */
+        private Duration snapshotRetryInterval = Duration.ofSeconds(10);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getExpectedEntries() {
+            return expectedEntries;
+        }
+
+        public void setExpectedEntries(long expectedEntries) {
+            this.expectedEntries = expectedEntries;
+        }
+
+        public double getFalsePositiveProbability() {
+            return falsePositiveProbability;
+        }
+
+        public void setFalsePositiveProbability(double falsePositiveProbability) {
+            this.falsePositiveProbability = falsePositiveProbability;
+        }
+
+        public Duration getSweepInterval() {
+            return sweepInterval;
+        }
+
+        public void setSweepInterval(Duration sweepInterval) {
+            this.sweepInterval = sweepInterval;
+        }
+
+        public String getPushPath() {
+            return pushPath;
+        }
+
+        public void setPushPath(String pushPath) {
+            this.pushPath = pushPath;
+        }
+
+        public String getPushAuthority() {
+            return pushAuthority;
+        }
+
+        public void setPushAuthority(String pushAuthority) {
+            this.pushAuthority = pushAuthority;
+        }
+
+        public String getSnapshotUri() {
+            return snapshotUri;
+        }
+
+        public void setSnapshotUri(String snapshotUri) {
+            this.snapshotUri = snapshotUri;
+        }
+
+        public Duration getSnapshotTimeout() {
+            return snapshotTimeout;
+        }
+
+        public void setSnapshotTimeout(Duration snapshotTimeout) {
+            this.snapshotTimeout = snapshotTimeout;
+        }
+
+        public Duration getSnapshotRetryInterval() {
+            return snapshotRetryInterval;
+        }
+
+        public void setSnapshotRetryInterval(Duration snapshotRetryInterval) {
+            this.snapshotRetryInterval = snapshotRetryInterval;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package cm.amcloud.platform.gateway.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import cm.amcloud.platform.gateway.ratelimit.LocalRateLimiter;
+import cm.amcloud.platform.gateway.ratelimit.SubjectKeyResolver;
+
+/**
+ * RateLimitConfig: Provides the rate limiter and key resolver used by the `RequestRateLimiter`
+ * route filter. Their presence is what enables Spring Cloud Gateway's RequestRateLimiter filter
+ * factory; limits are then configured per route in application.yml.
+ */
+@Configuration
+public class RateLimitConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitConfig.class);
+
+    /**
+     * Configures the in-memory token bucket rate limiter.
+     *
+     * @param configurationService The service binding the per-route `local-rate-limiter.*` arguments.
+     * @param maximumKeys          The maximum number of (route, subject) buckets kept in memory.
+     * @return The rate limiter; its bucket cache metrics are bound to the meter registry by Spring Boot.
+     */
+    @Bean
+    LocalRateLimiter localRateLimiter(ConfigurationService configurationService,
+            @Value("${gateway.rate-limiter.maximum-keys:100000}") long maximumKeys) {
+        logger.info("Configuring in-memory rate limiter (maximum-keys: {})", maximumKeys);
+        return new LocalRateLimiter(configurationService, maximumKeys);
+    }
+
+    /**
+     * Keys rate limits by JWT subject, the `X-User-ID` forwarded downstream.
+     *
+     * @return The key resolver.
+     */
+    @Bean
+    SubjectKeyResolver subjectKeyResolver() {
+        return new SubjectKeyResolver();
+    }
+}
@@ -0,0 +1,34 @@
+package cm.amcloud.platform.gateway.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import cm.amcloud.platform.gateway.filter.RouteCircuitBreakerGatewayFilterFactory;
+import cm.amcloud.platform.gateway.resilience.CircuitBreakersEndpoint;
+import cm.amcloud.platform.gateway.resilience.RouteCircuitBreakers;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * ResilienceConfig: Provides the `RouteCircuitBreaker` route filter, the per-route circuit breakers
+ * and bulkheads behind it, and the `circuitbreakers` actuator endpoint. Routes opt in by adding the
+ * filter in application.yml.
+ */
+@Configuration
+public class ResilienceConfig {
+
+    @Bean
+    RouteCircuitBreakers routeCircuitBreakers(MeterRegistry meterRegistry) {
+        return new RouteCircuitBreakers(meterRegistry);
+    }
+
+    @Bean
+    RouteCircuitBreakerGatewayFilterFactory routeCircuitBreakerGatewayFilterFactory(
+            RouteCircuitBreakers routeCircuitBreakers) {
+        return new RouteCircuitBreakerGatewayFilterFactory(routeCircuitBreakers);
+    }
+
+    @Bean
+    CircuitBreakersEndpoint circuitBreakersEndpoint(RouteCircuitBreakers routeCircuitBreakers) {
+        return new CircuitBreakersEndpoint(routeCircuitBreakers);
+    }
+}
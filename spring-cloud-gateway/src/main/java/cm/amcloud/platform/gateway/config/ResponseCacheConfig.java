@@ -0,0 +1,48 @@
+package cm.amcloud.platform.gateway.config;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import cm.amcloud.platform.gateway.cache.ResponseCache;
+import cm.amcloud.platform.gateway.filter.ResponseCacheGatewayFilterFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * ResponseCacheConfig: Provides the `ResponseCache` route filter and the store shared by all
+ * routes that enable it. Routes opt in by adding the filter in application.yml.
+ */
+@Configuration
+public class ResponseCacheConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCacheConfig.class);
+
+    /**
+     * Configures the response store. Bodies are held in direct buffers, so the maximum size should
+     * fit within the JVM's direct memory limit (`-XX:MaxDirectMemorySize`).
+     *
+     * @param maximumSize      The maximum total size of the cached responses.
+     * @param maximumEntrySize The maximum size of a single cached response body.
+     * @param uncacheableTtl   How long concurrent misses are not coalesced for a key whose response was not stored.
+     * @return The response cache; its size metrics are bound to the meter registry by Spring Boot.
+     */
+    @Bean
+    ResponseCache responseCache(@Value("${gateway.response-cache.maximum-size:64MB}") DataSize maximumSize,
+            @Value("${gateway.response-cache.maximum-entry-size:1MB}") DataSize maximumEntrySize,
+            @Value("${gateway.response-cache.uncacheable-ttl:10s}") Duration uncacheableTtl) {
+        logger.info("Configuring response cache (maximum-size: {}, maximum-entry-size: {}, uncacheable-ttl: {})",
+                maximumSize, maximumEntrySize, uncacheableTtl);
+        return new ResponseCache(maximumSize.toBytes(), maximumEntrySize.toBytes(), uncacheableTtl);
+    }
+
+    @Bean
+    ResponseCacheGatewayFilterFactory responseCacheGatewayFilterFactory(ResponseCache responseCache,
+            MeterRegistry meterRegistry) {
+        return new ResponseCacheGatewayFilterFactory(responseCache, meterRegistry);
+    }
+}
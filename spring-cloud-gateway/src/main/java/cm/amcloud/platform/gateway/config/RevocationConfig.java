@@ -0,0 +1,93 @@
+package cm.amcloud.platform.gateway.config;
+
+import java.net.URI;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import cm.amcloud.platform.gateway.revocation.HttpRevocationSnapshotSource;
+import cm.amcloud.platform.gateway.revocation.LocalRevocationPublisher;
+import cm.amcloud.platform.gateway.revocation.RevocationList;
+import cm.amcloud.platform.gateway.revocation.RevocationPushHandler;
+
+/**
+ * RevocationConfig: Provides the token revocation list checked by the JWT decoder (see
+ * {@link SecurityConfig#jwtDecoder}) and the endpoint IAM pushes revocation batches to. Enabled
+ * unless `gateway.security.jwt.revocation.enabled` is false.
+ */
+@Configuration
+@ConditionalOnProperty(name = "gateway.security.jwt.revocation.enabled", havingValue = "true", matchIfMissing = true)
+public class RevocationConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(RevocationConfig.class);
+
+    @Bean
+    LocalRevocationPublisher revocationPublisher() {
+        return new LocalRevocationPublisher();
+    }
+
+    /**
+     * @param revocationPublisher The batches pushed to this node.
+     * @param jwtProperties       The filter sizing, sweep and snapshot settings (`gateway.security.jwt.revocation.*`).
+     * @param objectMapper        Reads the snapshot pulled from `snapshot-uri`, if set.
+     * @return The started revocation list; it is closed with the application context, and bound to
+     *         the meter registry by Spring Boot.
+     */
+    @Bean
+    RevocationList revocationList(LocalRevocationPublisher revocationPublisher, JwtProperties jwtProperties,
+            ObjectMapper objectMapper) {
+        JwtProperties.Revocation settings = jwtProperties.getRevocation();
+        HttpRevocationSnapshotSource snapshots = StringUtils.hasText(settings.getSnapshotUri())
+                ? new HttpRevocationSnapshotSource(URI.create(settings.getSnapshotUri()), settings.getSnapshotTimeout(),
+                        objectMapper)
+                : null;
+        RevocationList revocationList = new RevocationList(revocationPublisher, snapshots, settings);
+        revocationList.start();
+        return revocationList;
+    }
+
+    /**
+     * Reports the revocation list OUT_OF_SERVICE until its first snapshot is applied. It is part of
+     * the readiness group (`management.endpoint.health.group.readiness`), so that a new node gets
+     * no traffic while it may accept tokens revoked before it started.
+     *
+     * @param revocationList The revocation list.
+     * @return The health indicator, named `revocationList`.
+     */
+    @Bean
+    HealthIndicator revocationListHealthIndicator(RevocationList revocationList) {
+        return () -> (revocationList.isSynchronized() ? Health.up() : Health.outOfService())
+                .withDetail("lastSequence", revocationList.getLastSequence())
+                .withDetail("entries", revocationList.size())
+                .build();
+    }
+
+    /**
+     * Routes `POST gateway.security.jwt.revocation.push-path` to the {@link RevocationPushHandler}.
+     * It is matched before the gateway routes; access requires the push authority (see
+     * {@link SecurityConfig#securityWebFilterChain}).
+     *
+     * @param revocationPublisher The publisher the pushed batches are published to.
+     * @param jwtProperties       The push path.
+     * @return The router function of the push endpoint.
+     */
+    @Bean
+    RouterFunction<ServerResponse> revocationPushRoute(LocalRevocationPublisher revocationPublisher,
+            JwtProperties jwtProperties) {
+        String path = jwtProperties.getRevocation().getPushPath();
+        logger.info("Accepting revocation batches on POST {}", path);
+        return RouterFunctions.route(RequestPredicates.POST(path), new RevocationPushHandler(revocationPublisher));
+    }
+}
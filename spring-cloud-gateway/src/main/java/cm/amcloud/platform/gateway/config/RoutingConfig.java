@@ -0,0 +1,200 @@
+package cm.amcloud.platform.gateway.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.gateway.config.GatewayProperties;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.cloud.gateway.config.HttpClientFactory;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.config.HttpClientSslConfigurer;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import cm.amcloud.platform.gateway.filter.CompiledRewritePathGatewayFilterFactory;
+import cm.amcloud.platform.gateway.filter.PooledNettyRoutingFilter;
+import cm.amcloud.platform.gateway.filter.UpstreamGroupLoadBalancerFilter;
+import cm.amcloud.platform.gateway.route.IndexedRoutePredicateHandlerMapping;
+import cm.amcloud.platform.gateway.upstream.UpstreamDiscoveryFactory;
+import cm.amcloud.platform.gateway.upstream.UpstreamGroups;
+import cm.amcloud.platform.gateway.upstream.UpstreamHttpClients;
+import cm.amcloud.platform.gateway.upstream.UpstreamMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * RoutingConfig: Replaces the route lookup and path rewriting components of Spring Cloud Gateway
+ * with variants that do their parsing and indexing when the routes are loaded rather than per request,
+ * and the routing filter with one using a dedicated connection pool per upstream service. Routes
+ * with an `lb://<group>` URI are balanced over the instances of their upstream group.
+ */
+@Configuration
+@EnableConfigurationProperties(UpstreamProperties.class)
+public class RoutingConfig {
+
+    /**
+     * Replaces the default RoutePredicateHandlerMapping, which evaluates every route predicate in
+     * order, with one that first narrows the candidates through an index of the `Path=` predicates.
+     * Disable with `gateway.routing.index.enabled=false`.
+     *
+     * @param webHandler             The gateway web handler.
+     * @param routeLocator           The (caching) route locator.
+     * @param routeDefinitionLocator The route definitions, read for their Path patterns.
+     * @param globalCorsProperties   The global CORS settings.
+     * @param environment            The environment.
+     * @param meterRegistry          Registry used to publish the route match time, if available.
+     * @return The indexed handler mapping.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "gateway.routing.index.enabled", havingValue = "true", matchIfMissing = true)
+    RoutePredicateHandlerMapping routePredicateHandlerMapping(FilteringWebHandler webHandler,
+            RouteLocator routeLocator, RouteDefinitionLocator routeDefinitionLocator,
+            GlobalCorsProperties globalCorsProperties, Environment environment,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        IndexedRoutePredicateHandlerMapping mapping = new IndexedRoutePredicateHandlerMapping(webHandler,
+                routeLocator, routeDefinitionLocator, globalCorsProperties, environment);
+        meterRegistry.ifAvailable(mapping::bindTo);
+        return mapping;
+    }
+
+    /**
+     * Provides the `RewritePath` filter with a precompiled replacement template. The built-in
+     * factory of the same name is disabled in application.properties.
+     *
+     * @return The RewritePath filter factory.
+     */
+    @Bean
+    CompiledRewritePathGatewayFilterFactory rewritePathGatewayFilterFactory() {
+        return new CompiledRewritePathGatewayFilterFactory();
+    }
+
+    /**
+     * Creates the HttpClient and connection pool of each `gateway.upstream.pools` entry. Every pool
+     * client is built like the default gateway client (SSL, proxy, header limits, customizers from
+     * `spring.cloud.gateway.httpclient.*`), on its own connection provider.
+     *
+     * @param upstreamProperties   The pool settings.
+     * @param httpClientProperties The gateway HttpClient settings.
+     * @param serverProperties     The server settings, used for the client's header size limits.
+     * @param sslConfigurer        The gateway HttpClient SSL configuration.
+     * @param customizers          The gateway HttpClient customizers.
+     * @return The upstream clients; their pools are disposed with the application context.
+     */
+    @Bean
+    UpstreamHttpClients upstreamHttpClients(UpstreamProperties upstreamProperties,
+            HttpClientProperties httpClientProperties, ServerProperties serverProperties,
+            HttpClientSslConfigurer sslConfigurer, ObjectProvider<HttpClientCustomizer> customizers) {
+        // HttpClientFactory sorts the customizers in place
+        List<HttpClientCustomizer> orderedCustomizers = new ArrayList<>(customizers.orderedStream().toList());
+        return new UpstreamHttpClients(upstreamProperties, provider -> new PoolHttpClientFactory(httpClientProperties,
+                serverProperties, sslConfigurer, orderedCustomizers, provider).create());
+    }
+
+    /**
+     * Times upstream connection and first byte per route. As an HttpClientCustomizer, it is applied
+     * to the default gateway HttpClient and to every pool client.
+     *
+     * @param meterRegistry The registry of the upstream timers.
+     * @return The upstream metrics.
+     */
+    @Bean
+    UpstreamMetrics upstreamMetrics(MeterRegistry meterRegistry) {
+        return new UpstreamMetrics(meterRegistry);
+    }
+
+    /**
+     * Replaces the default NettyRoutingFilter (disabled in application.properties) with one that
+     * forwards each route through its upstream pool.
+     *
+     * @param httpClient             The default gateway HttpClient, for routes without a pool.
+     * @param headersFiltersProvider The HTTP headers filters.
+     * @param properties             The gateway HttpClient settings.
+     * @param upstreamClients        The per-pool clients.
+     * @param upstreamMetrics        The per-route upstream timers.
+     * @return The routing filter.
+     */
+    @Bean
+    NettyRoutingFilter routingFilter(HttpClient httpClient,
+            ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider, HttpClientProperties properties,
+            UpstreamHttpClients upstreamClients, UpstreamMetrics upstreamMetrics) {
+        return new PooledNettyRoutingFilter(httpClient, headersFiltersProvider, properties, upstreamClients,
+                upstreamMetrics);
+    }
+
+    /**
+     * Writes the upstream response body to the client. Spring Cloud Gateway only registers this
+     * filter while its own NettyRoutingFilter is enabled, so it is provided here alongside
+     * {@link PooledNettyRoutingFilter}.
+     *
+     * @param gatewayProperties The gateway settings, for the streaming media types flushed as they arrive.
+     * @return The response writing filter.
+     */
+    @Bean
+    NettyWriteResponseFilter nettyWriteResponseFilter(GatewayProperties gatewayProperties) {
+        return new NettyWriteResponseFilter(gatewayProperties.getStreamingMediaTypes());
+    }
+
+    /**
+     * Creates the upstream group of each `gateway.upstream.groups` entry, fed by its static
+     * instances and discovery file, or by the {@link UpstreamDiscoveryFactory} bean if there is one.
+     *
+     * @param upstreamProperties The group settings.
+     * @param discoveryFactory   The instance source of each group, if not the default one.
+     * @return The upstream groups; their discovery stops with the application context.
+     */
+    @Bean
+    UpstreamGroups upstreamGroups(UpstreamProperties upstreamProperties,
+            ObjectProvider<UpstreamDiscoveryFactory> discoveryFactory) {
+        return new UpstreamGroups(upstreamProperties, discoveryFactory.getIfAvailable(() -> UpstreamGroups::discovery));
+    }
+
+    /**
+     * Resolves the `lb://<group>` request URLs to an instance of the group. Spring Cloud
+     * LoadBalancer is not used: the gateway has no service registry to ask.
+     *
+     * @param upstreamGroups The upstream groups.
+     * @return The load balancer filter.
+     */
+    @Bean
+    UpstreamGroupLoadBalancerFilter upstreamGroupLoadBalancerFilter(UpstreamGroups upstreamGroups) {
+        return new UpstreamGroupLoadBalancerFilter(upstreamGroups);
+    }
+
+    /**
+     * The gateway's HttpClient factory, with the connection provider of one upstream pool.
+     */
+    private static final class PoolHttpClientFactory extends HttpClientFactory {
+
+        private final ConnectionProvider connectionProvider;
+
+        PoolHttpClientFactory(HttpClientProperties properties, ServerProperties serverProperties,
+                HttpClientSslConfigurer sslConfigurer, List<HttpClientCustomizer> customizers,
+                ConnectionProvider connectionProvider) {
+            super(properties, serverProperties, sslConfigurer, customizers);
+            this.connectionProvider = connectionProvider;
+        }
+
+        @Override
+        protected ConnectionProvider buildConnectionProvider(HttpClientProperties properties) {
+            return connectionProvider;
+        }
+
+        HttpClient create() {
+            return createInstance();
+        }
+    }
+}
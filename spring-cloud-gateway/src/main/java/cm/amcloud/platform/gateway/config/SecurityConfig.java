@@ -1,28 +1,48 @@
 package cm.amcloud.platform.gateway.config;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.convert.converter.Converter;
-import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
 import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.security.oauth2.jwt.ReactiveJwtDecoders;
-import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.web.access.server.BearerTokenServerAccessDeniedHandler;
+import org.springframework.security.oauth2.server.resource.web.server.BearerTokenServerAuthenticationEntryPoint;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.util.StringUtils;
 
-import reactor.core.publisher.Mono;
+import com.nimbusds.jose.jwk.JWKSet;
+
+import cm.amcloud.platform.gateway.security.AuthenticationFailureMetrics;
+import cm.amcloud.platform.gateway.security.AuthorizationTable;
+import cm.amcloud.platform.gateway.security.CachingReactiveJwtDecoder;
+import cm.amcloud.platform.gateway.security.JwtIdentityConverter;
+import cm.amcloud.platform.gateway.revocation.RevocationList;
+import cm.amcloud.platform.gateway.security.RefreshingJwkSetSource;
+import cm.amcloud.platform.gateway.security.RevocationCheckingReactiveJwtDecoder;
+import cm.amcloud.platform.gateway.security.TimedReactiveJwtDecoder;
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
  * SecurityConfig: Configures Spring Security as a Resource Server for the Gateway,
@@ -30,6 +50,7 @@ import reactor.core.publisher.Mono;
  */
 @Configuration
 @EnableWebFluxSecurity
+@EnableConfigurationProperties({ JwtProperties.class, AuthorizationProperties.class })
 public class SecurityConfig {
 
     private static final Logger logger = LoggerFactory.getLogger(SecurityConfig.class);
@@ -40,99 +61,212 @@ public class SecurityConfig {
      * authentication using the `oauth2ResourceServer`.
      *
      * @param http The ServerHttpSecurity object provided by Spring Security WebFlux.
+     * @param grantedAuthoritiesExtractor The converter turning a verified JWT into an authentication.
+     * @param authenticationFailureMetrics Counts the 401 and 403 answers by reason.
+     * @param authorizationTable The compiled access rules deciding every exchange.
      * @return The configured SecurityWebFilterChain.
      */
     @Bean
-    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+            JwtIdentityConverter grantedAuthoritiesExtractor,
+            AuthenticationFailureMetrics authenticationFailureMetrics,
+            AuthorizationTable authorizationTable) {
         logger.info("Configuring SecurityWebFilterChain...");
 
         return http
                 // Disable CSRF protection as it's typically not needed for stateless REST APIs
                 .csrf(ServerHttpSecurity.CsrfSpec::disable)
-                // Configure authorization rules for incoming requests
-                .authorizeExchange(exchange -> exchange
-                        // Allow all requests to paths starting with /auth/ and /public/ without authentication
-                        .pathMatchers("/auth/**", "/public/**").permitAll()
-                        // Require ADMIN role for requests to /api/admin/**
-                        .pathMatchers("/api/admin/**").hasRole("ADMIN")
-                        // Require 'read' scope for requests to /api/data/**
-                        .pathMatchers("/api/data/**").hasAuthority("SCOPE_read")
-                        // Permit access to Springdoc/Swagger UI endpoints
-                        .pathMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html", "/webjars/**").permitAll() 
-                         // Secure all other requests; authentication is required by default
-                        .anyExchange().authenticated()
-                )
+                // Authorization rules come from gateway.security.authorization, compiled into a decision table
+                .authorizeExchange(exchange -> exchange.anyExchange().access(authorizationTable))
                 // Configure OAuth2 Resource Server to enable JWT authentication
                 .oauth2ResourceServer(oauth2 -> oauth2
+                        // Count authentication and authorization failures by reason before answering
+                        .authenticationEntryPoint(authenticationFailureMetrics.entryPoint(
+                                new BearerTokenServerAuthenticationEntryPoint()))
+                        .accessDeniedHandler(authenticationFailureMetrics.accessDeniedHandler(
+                                new BearerTokenServerAccessDeniedHandler()))
                         // Set the JWT authentication converter to extract authorities
-                        .jwt(jwt -> jwt.jwtAuthenticationConverter(grantedAuthoritiesExtractor()))
+                        .jwt(jwt -> jwt.jwtAuthenticationConverter(grantedAuthoritiesExtractor))
                 )
                 .build(); // Build the SecurityWebFilterChain
     }
 
+    /**
+     * Compiles the access rules of `gateway.security.authorization.rules` into an
+     * {@link AuthorizationTable}, behind a first rule reserving the revocation push endpoint to IAM.
+     * The table is built once: adding rules does not add work per request.
+     *
+     * @param authorizationProperties The access rules and the default access.
+     * @param jwtProperties The path and authority of the revocation push endpoint.
+     * @return The compiled decision table.
+     */
+    @Bean
+    AuthorizationTable authorizationTable(AuthorizationProperties authorizationProperties, JwtProperties jwtProperties) {
+        JwtProperties.Revocation revocation = jwtProperties.getRevocation();
+        List<AuthorizationProperties.Rule> rules = new ArrayList<>();
+        // Only IAM may push revocation batches (RevocationConfig)
+        rules.add(new AuthorizationProperties.Rule()
+                .setPaths(List.of(revocation.getPushPath()))
+                .setMethods(List.of(HttpMethod.POST))
+                .setAuthorities(List.of(revocation.getPushAuthority())));
+        rules.addAll(authorizationProperties.getRules());
+        AuthorizationTable table = AuthorizationTable.compile(rules, authorizationProperties.getDefaultAccess());
+        logger.info("Compiled {} authorization rule(s) over {} authorities, default access: {}",
+                table.getRuleCount(), table.getAuthorityCount(), authorizationProperties.getDefaultAccess());
+        return table;
+    }
+
+    /**
+     * Counts rejected requests by reason (`gateway.security.auth.failures`).
+     *
+     * @return The failure metrics; bound to the meter registry by Spring Boot.
+     */
+    @Bean
+    AuthenticationFailureMetrics authenticationFailureMetrics() {
+        return new AuthenticationFailureMetrics();
+    }
+
     /**
      * Extracts authorities from JWT claims and wraps them in a reactive Mono.
      * This converter maps `roles` and `scopes` claims from the JWT to Spring Security's
-     * `GrantedAuthority` objects.
+     * `GrantedAuthority` objects, and pre-renders the identity headers forwarded by
+     * {@link cm.amcloud.platform.gateway.filter.AuthHeaderForwardFilter}.
+     * The result is memoized per verified Jwt, so repeat tokens served from the decoder
+     * cache are not converted again. Conversion time is published once Spring Boot binds the
+     * converter to the meter registry.
      *
+     * The memoized identity also holds the token's authorities as a bitset of the authorization table.
+     *
+     * @param jwtProperties The JWT settings; the cache size also bounds the memoized identities.
+     * @param authorizationTable The table numbering the authorities referenced by the access rules.
      * @return A Converter that extracts authorities from JWT claims, returning a Mono.
      */
-    private Converter<Jwt, Mono<AbstractAuthenticationToken>> grantedAuthoritiesExtractor() {
-        return jwt -> {
-            Collection<GrantedAuthority> authorities = new ArrayList<>();
-
-            // Extract roles from the "roles" claim (e.g., "ROLE_ADMIN", "ROLE_USER")
-            // JwtService already adds "ROLE_" prefix. Spring Security expects it as is.
-            List<String> roles = jwt.getClaimAsStringList("roles");
-            if (roles != null) {
-                authorities.addAll(roles.stream()
-                        .map(SimpleGrantedAuthority::new) // Use role string directly (e.g., "ROLE_ADMIN")
-                        .collect(Collectors.toList()));
-            }
+    @Bean
+    JwtIdentityConverter grantedAuthoritiesExtractor(JwtProperties jwtProperties, AuthorizationTable authorizationTable) {
+        return new JwtIdentityConverter(jwtProperties.getCache().getMaximumSize(), authorizationTable);
+    }
 
-            // Extract scopes from the "scope" claim (space-separated string) or "scopes" (list of strings).
-            // JwtService provides "read", "write" (no SCOPE_ prefix).
-            // Spring Security expects "SCOPE_read", "SCOPE_write".
-            List<String> scopes = new ArrayList<>();
-            String scopeString = jwt.getClaimAsString("scope"); // Try to get as single string
-            if (scopeString != null) {
-                scopes.addAll(List.of(scopeString.split(" ")));
-            } else {
-                List<String> scopesList = jwt.getClaimAsStringList("scopes"); // Try to get as list
-                if (scopesList != null) {
-                    scopes.addAll(scopesList);
-                }
-            }
+    /**
+     * Configures the ReactiveJwtDecoder.
+     * In the default `issuer` mode, this bean leverages Spring Security's built-in capabilities to
+     * fetch the public key (or JWK Set URI) from the issuer configured in your application properties
+     * (e.g., `spring.security.oauth2.resourceserver.jwt.issuer-uri`).
+     * In `local-jwks` mode, signatures are verified against the in-memory keys of the
+     * {@link RefreshingJwkSetSource}, and the issuer URI is only used to validate the `iss` claim.
+     * Unless disabled, the decoder is wrapped in a {@link CachingReactiveJwtDecoder} so that
+     * tokens which were already validated are not parsed and signature-checked again.
+     * Tokens are then checked against the {@link RevocationList}, cached ones included.
+     * With a meter registry, the signature and claim verification is timed in
+     * `gateway.security.jwt.verify` and the whole decode, cache included, in `gateway.security.jwt.decode`.
+     *
+     * @param issuerUri      The issuer URI obtained from application properties.
+     * @param jwtProperties  The decoder mode and cache settings (`gateway.security.jwt.*`).
+     * @param jwkSetSource   The in-memory JWK set, present in `local-jwks` mode only.
+     * @param revocationList The revoked token ids and subjects, unless revocation is disabled.
+     * @param meterRegistry  Registry used to publish decode timings and cache hit/miss metrics, if available.
+     * @return A ReactiveJwtDecoder configured according to the selected mode.
+     */
+    @Bean
+    ReactiveJwtDecoder jwtDecoder(@Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:}") String issuerUri,
+            JwtProperties jwtProperties,
+            ObjectProvider<RefreshingJwkSetSource> jwkSetSource,
+            ObjectProvider<RevocationList> revocationList,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        ReactiveJwtDecoder decoder;
+        if (jwtProperties.getMode() == JwtProperties.Mode.LOCAL_JWKS) {
+            logger.info("Configuring ReactiveJwtDecoder with local JWK set, issuer-uri: {}", issuerUri);
+            NimbusReactiveJwtDecoder localDecoder = NimbusReactiveJwtDecoder
+                    .withJwkSource(jwkSetSource.getObject()::select)
+                    .build();
+            localDecoder.setJwtValidator(StringUtils.hasText(issuerUri)
+                    ? JwtValidators.createDefaultWithIssuer(issuerUri)
+                    : JwtValidators.createDefault());
+            decoder = localDecoder;
+        } else {
+            logger.info("Configuring ReactiveJwtDecoder with issuer-uri: {}", issuerUri);
+            // ReactiveJwtDecoders.fromIssuerLocation automatically handles fetching JWK Set
+            // and validating JWTs based on the provided issuer URI.
+            decoder = ReactiveJwtDecoders.fromIssuerLocation(issuerUri);
+        }
 
-            if (!scopes.isEmpty()) {
-                authorities.addAll(scopes.stream()
-                        .map(scope -> new SimpleGrantedAuthority("SCOPE_" + scope.toUpperCase())) // Add "SCOPE_" prefix here
-                        .collect(Collectors.toList()));
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            decoder = new TimedReactiveJwtDecoder(decoder, registry, "gateway.security.jwt.verify",
+                    "Time to parse a JWT and verify its signature and claims");
+        }
+
+        JwtProperties.Cache cache = jwtProperties.getCache();
+        if (cache.isEnabled()) {
+            logger.info("Caching validated JWTs (maximum-size: {}, maximum-ttl: {})", cache.getMaximumSize(), cache.getMaximumTtl());
+            CachingReactiveJwtDecoder cachingDecoder = new CachingReactiveJwtDecoder(decoder, cache.getMaximumSize(),
+                    cache.getMaximumTtl());
+            if (registry != null) {
+                cachingDecoder.bindTo(registry);
             }
+            decoder = cachingDecoder;
+        }
 
-            // Log the extracted authorities for debugging purposes
-            logger.debug("Extracted authorities for JWT: {}", authorities);
+        RevocationList revocations = revocationList.getIfAvailable();
+        if (revocations != null) {
+            decoder = new RevocationCheckingReactiveJwtDecoder(decoder, revocations);
+        }
 
-            // Return a Mono containing the JwtAuthenticationToken,
-            // which represents the authenticated user with their extracted authorities.
-            return Mono.just(new JwtAuthenticationToken(jwt, authorities));
-        };
+        if (registry != null) {
+            decoder = new TimedReactiveJwtDecoder(decoder, registry, "gateway.security.jwt.decode",
+                    "Time to decode a bearer token, from the cache or by verifying it");
+        }
+        return decoder;
     }
 
     /**
-     * Configures the ReactiveJwtDecoder.
-     * This bean leverages Spring Security's built-in capabilities to fetch the public key
-     * (or JWK Set URI) from the issuer configured in your application properties
-     * (e.g., `spring.security.oauth2.resourceserver.jwt.issuer-uri`).
+     * Configures the in-memory JWK set used in `local-jwks` mode
+     * (`gateway.security.jwt.mode=local-jwks`, in any spelling {@link JwtProperties} accepts).
+     * Keys are fetched from
+     * `spring.security.oauth2.resourceserver.jwt.jwk-set-uri` in the background and/or pinned from
+     * `gateway.security.jwt.jwks.pinned-keys`, so startup does not depend on IAM availability.
      *
-     * @param issuerUri The issuer URI obtained from application properties.
-     * @return A ReactiveJwtDecoder configured with the issuer URI.
+     * @param jwkSetUri     The JWK Set URI obtained from application properties, may be empty.
+     * @param jwtProperties The refresh and pinning settings (`gateway.security.jwt.jwks.*`).
+     * @return The started JWK set source; it is closed with the application context.
+     * @throws IOException    If the JWK Set URI is malformed or the pinned keys cannot be read.
+     * @throws ParseException If the pinned keys are not a valid JWK Set document.
      */
     @Bean
-    ReactiveJwtDecoder jwtDecoder(@Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuerUri) {
-        logger.info("Configuring ReactiveJwtDecoder with issuer-uri: {}", issuerUri);
-        // ReactiveJwtDecoders.fromIssuerLocation automatically handles fetching JWK Set
-        // and validating JWTs based on the provided issuer URI.
-        return ReactiveJwtDecoders.fromIssuerLocation(issuerUri);
+    @Conditional(LocalJwksModeCondition.class)
+    RefreshingJwkSetSource jwkSetSource(
+            @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri:}") String jwkSetUri,
+            JwtProperties jwtProperties) throws IOException, ParseException {
+        JwtProperties.Jwks jwks = jwtProperties.getJwks();
+        JWKSet pinnedKeys = null;
+        if (jwks.getPinnedKeys() != null) {
+            try (InputStream input = jwks.getPinnedKeys().getInputStream()) {
+                pinnedKeys = JWKSet.load(input);
+            }
+            logger.info("Pinned {} key(s) from {}", pinnedKeys.getKeys().size(), jwks.getPinnedKeys());
+        }
+        if (!StringUtils.hasText(jwkSetUri) && pinnedKeys == null) {
+            throw new IllegalStateException("local-jwks mode requires a jwk-set-uri or pinned keys");
+        }
+
+        URL jwkSetUrl = StringUtils.hasText(jwkSetUri) ? URI.create(jwkSetUri).toURL() : null;
+        RefreshingJwkSetSource source = new RefreshingJwkSetSource(jwkSetUrl, pinnedKeys, jwks);
+        source.start();
+        return source;
+    }
+
+    /**
+     * Matches in `local-jwks` mode. The mode is bound like {@link JwtProperties#getMode()}, which
+     * {@link #jwtDecoder} reads, rather than compared as a string: `LOCAL_JWKS` or `localJwks`
+     * select the mode, and must create the JWK set source as well.
+     */
+    static class LocalJwksModeCondition implements Condition {
+
+        @Override
+        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            return Binder.get(context.getEnvironment())
+                    .bind("gateway.security.jwt.mode", JwtProperties.Mode.class)
+                    .map(JwtProperties.Mode.LOCAL_JWKS::equals)
+                    .orElse(false);
+        }
     }
 }
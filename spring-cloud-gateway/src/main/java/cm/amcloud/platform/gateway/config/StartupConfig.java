@@ -0,0 +1,37 @@
+package cm.amcloud.platform.gateway.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
+import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+import cm.amcloud.platform.gateway.security.RefreshingJwkSetSource;
+import cm.amcloud.platform.gateway.upstream.UpstreamHttpClients;
+
+/**
+ * StartupConfig: Startup settings for the `fast-start` profile, which turns on lazy initialization
+ * (see application-fast-start.yml). Only beans that the first request can do without, such as
+ * actuator endpoints, are deferred: the route table, its filters, the upstream pools and the JWT
+ * decoder are still built at startup, so that the first routed request does not pay for them.
+ */
+@Configuration
+public class StartupConfig {
+
+    /**
+     * Keeps the beans on the routing and token verification path eager when lazy initialization is
+     * enabled. Static, as it is read before the other bean definitions are processed.
+     *
+     * @return The filter excluding the request path beans from lazy initialization.
+     */
+    @Bean
+    static LazyInitializationExcludeFilter requestPathLazyInitializationExcludeFilter() {
+        return LazyInitializationExcludeFilter.forBeanTypes(RouteLocator.class, RouteDefinitionLocator.class,
+                RoutePredicateFactory.class, GatewayFilterFactory.class, GlobalFilter.class,
+                UpstreamHttpClients.class, ReactiveJwtDecoder.class, RefreshingJwkSetSource.class);
+    }
+}
@@ -0,0 +1,270 @@
+package cm.amcloud.platform.gateway.config;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import reactor.netty.http.HttpProtocol;
+
+/**
+ * UpstreamProperties: Dedicated connection pools for downstream services, bound from
+ * `gateway.upstream.*`. A route uses the pool named by its `connection-pool` metadata entry,
+ * or else the pool listing the route's URI; other routes share the default gateway HttpClient
+ * configured by `spring.cloud.gateway.httpclient.*`.
+ * <p>
+ * Routes with an `lb://<group>` URI are balanced over the instances of the upstream group of that
+ * name (see {@link cm.amcloud.platform.gateway.upstream.UpstreamGroup}).
+ */
+@ConfigurationProperties(prefix = "gateway.upstream")
+public class UpstreamProperties {
+
+    /**
+     * Route metadata key naming the pool of a route.
+     */
+    public static final String POOL_METADATA_KEY = "connection-pool";
+
+    private final Map<String, Pool> pools = new LinkedHashMap<>();
+
+    private final Map<String, Group> groups = new LinkedHashMap<>();
+
+    public Map<String, Pool> getPools() {
+        return pools;
+    }
+
+    public Map<String, Group> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Settings of one connection pool and of the HttpClient using it. Unset values fall back to
+     * the Reactor Netty and `spring.cloud.gateway.httpclient.*` defaults.
+     */
+    public static class Pool {
+
+        /**
+         * Upstream URIs (scheme, host and port) served by this pool, for routes without `connection-pool` metadata.
+         */
+        private List<URI> uris = new ArrayList<>();
+
+        private Integer maxConnections;
+
+        /**
+         * Maximum number of requests waiting for a connection; further requests fail immediately.
+         */
+        private Integer pendingAcquireMaxCount;
+
+        private Duration pendingAcquireTimeout;
+
+        private Duration maxIdleTime;
+
+        private Duration maxLifeTime;
+
+        private Duration evictionInterval;
+
+        private Duration connectTimeout;
+
+        /**
+         * Time allowed between sending the request and receiving the response; expiry answers 504.
+         */
+        private Duration responseTimeout;
+
+        /**
+         * Protocols offered upstream: HTTP11, H2C (HTTP/2 over cleartext, prior knowledge) or H2 (over TLS).
+         */
+        private List<HttpProtocol> protocols = new ArrayList<>(List.of(HttpProtocol.HTTP11));
+
+        public List<URI> getUris() {
+            return uris;
+        }
+
+        public void setUris(List<URI> uris) {
+            this.uris = uris;
+        }
+
+        public Integer getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(Integer maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public Integer getPendingAcquireMaxCount() {
+            return pendingAcquireMaxCount;
+        }
+
+        public void setPendingAcquireMaxCount(Integer pendingAcquireMaxCount) {
+            this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+        }
+
+        public Duration getPendingAcquireTimeout() {
+            return pendingAcquireTimeout;
+        }
+
+        public void setPendingAcquireTimeout(Duration pendingAcquireTimeout) {
+            this.pendingAcquireTimeout = pendingAcquireTimeout;
+        }
+
+        public Duration getMaxIdleTime() {
+            return maxIdleTime;
+        }
+
+        public void setMaxIdleTime(Duration maxIdleTime) {
+            this.maxIdleTime = maxIdleTime;
+        }
+
+        public Duration getMaxLifeTime() {
+            return maxLifeTime;
+        }
+
+        public void setMaxLifeTime(Duration maxLifeTime) {
+            this.maxLifeTime = maxLifeTime;
+        }
+
+        public Duration getEvictionInterval() {
+            return evictionInterval;
+        }
+
+        public void setEvictionInterval(Duration evictionInterval) {
+            this.evictionInterval = evictionInterval;
+        }
+
+        public Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public Duration getResponseTimeout() {
+            return responseTimeout;
+        }
+
+        public void setResponseTimeout(Duration responseTimeout) {
+            this.responseTimeout = responseTimeout;
+        }
+
+        public List<HttpProtocol> getProtocols() {
+            return protocols;
+        }
+
+        public void setProtocols(List<HttpProtocol> protocols) {
+            this.protocols = protocols;
+        }
+    }
+
+    /**
+     * The instances of one upstream group and the settings of their selection.
+     */
+    public static class Group {
+
+        /**
+         * Static instance URIs (scheme, host and port).
+         */
+        private List<URI> instances = new ArrayList<>();
+
+        /**
+         * Local discovery file with one instance URI per line (`#` starts a comment). Once read, it
+         * replaces the static instances, and it is read again whenever it changes.
+         */
+        private Path discoveryFile;
+
+        private Duration discoveryRefreshInterval = Duration.ofSeconds(5);
+
+        /**
+         * Time constant of the latency EWMA: the weight of a sample halves about every 0.7 of it.
+         */
+        private Duration latencyDecay = Duration.ofSeconds(10);
+
+        /**
+         * Time over which a new or returning instance ramps up from a tenth to its full share of requests.
+         */
+        private Duration slowStart = Duration.ofSeconds(30);
+
+        /**
+         * Consecutive failures (5xx answers, connection errors, timeouts) after which an instance is ejected.
+         */
+        private int consecutiveFailures = 5;
+
+        /**
+         * Base ejection time, multiplied by the number of consecutive ejections of the instance.
+         */
+        private Duration ejectionTime = Duration.ofSeconds(30);
+
+        /**
+         * Maximum share of the instances ejected at the same time; one instance can always be ejected.
+         */
+        private int maxEjectionPercent = 50;
+
+        public List<URI> getInstances() {
+            return instances;
+        }
+
+        public void setInstances(List<URI> instances) {
+            this.instances = instances;
+        }
+
+        public Path getDiscoveryFile() {
+            return discoveryFile;
+        }
+
+        public void setDiscoveryFile(Path discoveryFile) {
+            this.discoveryFile = discoveryFile;
+        }
+
+        public Duration getDiscoveryRefreshInterval() {
+            return discoveryRefreshInterval;
+        }
+
+        public void setDiscoveryRefreshInterval(Duration discoveryRefreshInterval) {
+            this.discoveryRefreshInterval = discoveryRefreshInterval;
+        }
+
+        public Duration getLatencyDecay() {
+            return latencyDecay;
+        }
+
+        public void setLatencyDecay(Duration latencyDecay) {
+            this.latencyDecay = latencyDecay;
+        }
+
+        public Duration getSlowStart() {
+            return slowStart;
+        }
+
+        public void setSlowStart(Duration slowStart) {
+            this.slowStart = slowStart;
+        }
+
+        public int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        public void setConsecutiveFailures(int consecutiveFailures) {
+            this.consecutiveFailures = consecutiveFailures;
+        }
+
+        public Duration getEjectionTime() {
+            return ejectionTime;
+        }
+
+        public void setEjectionTime(Duration ejectionTime) {
+            this.ejectionTime = ejectionTime;
+        }
+
+        public int getMaxEjectionPercent() {
+            return maxEjectionPercent;
+        }
+
+        public void setMaxEjectionPercent(int maxEjectionPercent) {
+            this.maxEjectionPercent = maxEjectionPercent;
+        }
+    }
+}
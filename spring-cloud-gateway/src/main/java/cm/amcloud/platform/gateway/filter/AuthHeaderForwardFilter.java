@@ -1,7 +1,6 @@
 package cm.amcloud.platform.gateway.filter;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,76 +8,110 @@ import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
 import org.springframework.core.Ordered;
 import org.springframework.http.server.reactive.ServerHttpRequest;
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.ReactiveSecurityContextHolder;
-import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 
+import cm.amcloud.platform.gateway.security.IdentityAuthenticationToken;
+import cm.amcloud.platform.gateway.security.IdentityProjection;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import reactor.core.publisher.Mono;
 
 /**
  * AuthHeaderForwardFilter: A global filter that extracts JWT claims (subject, roles, scopes)
  * after successful authentication by Spring Security and forwards them as custom HTTP headers
  * to downstream microservices. This ensures that the 'token' object is available.
+ * The time spent adding the headers is recorded in `gateway.filter.auth.header.forward`.
  */
 @Component
-public class AuthHeaderForwardFilter implements GlobalFilter, Ordered {
+public class AuthHeaderForwardFilter implements GlobalFilter, Ordered, MeterBinder {
 
     private static final Logger logger = LoggerFactory.getLogger(AuthHeaderForwardFilter.class);
 
+    private volatile Timer forwardTimer;
+
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
-        // Retrieve the security context from the ReactiveSecurityContextHolder
+        // Retrieve the security context from the ReactiveSecurityContextHolder, and resolve the
+        // exchange to forward before running the rest of the chain, exactly once
         return ReactiveSecurityContextHolder.getContext()
                 .filter(context -> context.getAuthentication() != null)
                 .map(context -> context.getAuthentication())
-                .flatMap(authentication -> {
-                    // Check if the authentication is a JwtAuthenticationToken
-                    if (authentication instanceof JwtAuthenticationToken jwtAuthenticationToken) {
-                        Jwt jwt = jwtAuthenticationToken.getToken();
-                        ServerHttpRequest.Builder requestBuilder = exchange.getRequest().mutate();
+                // Only a JwtAuthenticationToken carries the claims to forward
+                .filter(JwtAuthenticationToken.class::isInstance)
+                .map(authentication -> withIdentityHeaders(exchange, (JwtAuthenticationToken) authentication))
+                // If no authentication context, proceed without adding headers
+                .defaultIfEmpty(exchange)
+                .flatMap(chain::filter);
+    }
+
+    /**
+     * Adds the identity headers to the request. Only headers change: the request body is passed
+     * on as is, without being read or copied.
+     */
+    private ServerWebExchange withIdentityHeaders(ServerWebExchange exchange, JwtAuthenticationToken jwtAuthenticationToken) {
+        long start = System.nanoTime();
+        IdentityProjection identity = resolveIdentity(jwtAuthenticationToken);
+        ServerHttpRequest.Builder requestBuilder = exchange.getRequest().mutate();
+
+        // Add X-User-ID header with the subject of the JWT
+        String userId = identity.getUserId();
+        if (userId != null) {
+            requestBuilder.header("X-User-ID", userId);
+            logger.debug("Added X-User-ID: {}", userId);
+        }
+
+        // Add X-User-Roles header with the roles from the JWT
+        // Roles are already "ROLE_ADMIN" from JwtService and SecurityConfig.
+        // The projection keeps the "ROLE_" prefix in the header.
+        String roles = identity.getRolesHeader();
+        if (roles != null) {
+            requestBuilder.header("X-User-Roles", roles);
+            logger.debug("Added X-User-Roles: {}", roles);
+        }
 
-                        // Add X-User-ID header with the subject of the JWT
-                        String userId = jwt.getSubject();
-                        if (userId != null) {
-                            requestBuilder.header("X-User-ID", userId);
-                            logger.debug("Added X-User-ID: {}", userId);
-                        }
+        // Add X-User-Scopes header with the scopes from the JWT
+        // Scopes are "SCOPE_READ" from SecurityConfig.
+        // The projection removes the "SCOPE_" prefix for the header.
+        String scopes = identity.getScopesHeader();
+        if (scopes != null) {
+            requestBuilder.header("X-User-Scopes", scopes);
+            logger.debug("Added X-User-Scopes: {}", scopes);
+        }
 
-                        // Add X-User-Roles header with the roles from the JWT
-                        // Roles are already "ROLE_ADMIN" from JwtService and SecurityConfig.
-                        // We want to keep the "ROLE_" prefix in the header.
-                        List<String> roles = authentication.getAuthorities().stream()
-                                .map(GrantedAuthority::getAuthority)
-                                .filter(authority -> authority.startsWith("ROLE_")) // Filter for roles
-                                .collect(Collectors.toList());
-                        if (!roles.isEmpty()) {
-                            requestBuilder.header("X-User-Roles", String.join(",", roles)); // Keep "ROLE_" prefix
-                            logger.debug("Added X-User-Roles: {}", roles);
-                        }
+        // Build the new request with added headers
+        ServerWebExchange forwarded = exchange.mutate().request(requestBuilder.build()).build();
+        Timer timer = forwardTimer;
+        if (timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return forwarded;
+    }
 
-                        // Add X-User-Scopes header with the scopes from the JWT
-                        // Scopes are "SCOPE_READ" from SecurityConfig.
-                        // We want to remove the "SCOPE_" prefix for the header.
-                        List<String> scopes = authentication.getAuthorities().stream()
-                                .map(GrantedAuthority::getAuthority)
-                                .filter(authority -> authority.startsWith("SCOPE_")) // Filter for scopes
-                                .map(scope -> scope.substring(6)) // Remove "SCOPE_" prefix here
-                                .collect(Collectors.toList());
-                        if (!scopes.isEmpty()) {
-                            requestBuilder.header("X-User-Scopes", String.join(",", scopes)); // Send without "SCOPE_" prefix
-                            logger.debug("Added X-User-Scopes: {}", scopes);
-                        }
+    /**
+     * Registers the header forwarding timer; called by Spring Boot for MeterBinder beans.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        forwardTimer = Timer.builder("gateway.filter.auth.header.forward")
+                .description("Time to add the identity headers forwarded downstream")
+                .register(registry);
+    }
 
-                        // Build the new request with added headers
-                        return chain.filter(exchange.mutate().request(requestBuilder.build()).build());
-                    }
-                    // If not a JwtAuthenticationToken, or no authentication, proceed without adding headers
-                    return chain.filter(exchange);
-                })
-                .switchIfEmpty(chain.filter(exchange)); // If no authentication context, proceed
+    /**
+     * Returns the identity projection attached to the authentication by
+     * {@link cm.amcloud.platform.gateway.security.JwtIdentityConverter}, or derives it from the
+     * authorities when the token was created by another converter.
+     */
+    private static IdentityProjection resolveIdentity(JwtAuthenticationToken authentication) {
+        if (authentication instanceof IdentityAuthenticationToken identityAuthentication) {
+            return identityAuthentication.getIdentity();
+        }
+        return IdentityProjection.fromAuthorities(authentication.getToken().getSubject(),
+                authentication.getAuthorities());
     }
 
     /**
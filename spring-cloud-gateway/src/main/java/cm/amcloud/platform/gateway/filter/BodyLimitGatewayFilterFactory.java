@@ -0,0 +1,313 @@
+package cm.amcloud.platform.gateway.filter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.GatewayToStringStyler;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * BodyLimitGatewayFilterFactory: Per-route limits on the size of request and response bodies,
+ * enforced while the bodies stream, e.g. `BodyLimit=10MB` or `BodyLimit=10MB,50MB`.
+ * <ul>
+ * <li>A request whose `Content-Length` exceeds the limit is answered `413 Payload Too Large`
+ * before anything is read or sent upstream. A chunked request is counted as it streams, and
+ * stopped with a `413` as soon as it exceeds the limit, unless the upstream already answered.</li>
+ * <li>An upstream response whose `Content-Length` exceeds the limit is answered `502 Bad Gateway`
+ * without reading its body. A chunked response exceeding it mid-stream can no longer change
+ * status: the connection to the client is aborted.</li>
+ * </ul>
+ * Bodies are never aggregated: each buffer is counted and passed on as is, so routes that only
+ * change headers or the path keep forwarding the Netty buffers they received, without copying.
+ * Body sizes, rejections and the bytes of the bodies still streaming are published per route
+ * (`gateway.route.body.size`, `gateway.route.body.rejected`, `gateway.route.body.streaming`).
+ */
+public class BodyLimitGatewayFilterFactory extends AbstractGatewayFilterFactory<BodyLimitGatewayFilterFactory.Config> {
+
+    private static final String REQUEST = "request";
+    private static final String RESPONSE = "response";
+
+    private final MeterRegistry meterRegistry;
+    // Gauges keep a reference to their state, so it is shared by the filters of a route across refreshes
+    private final Map<String, RouteMetrics> metrics = new ConcurrentHashMap<>();
+
+    public BodyLimitGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("maxRequestSize", "maxResponseSize");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String route = config.getRouteId() == null ? "unknown" : config.getRouteId();
+        RouteMetrics routeMetrics = metrics.computeIfAbsent(route, id -> new RouteMetrics(meterRegistry, id));
+        long maxRequestSize = config.getMaxRequestSize() == null ? -1 : config.getMaxRequestSize().toBytes();
+        long maxResponseSize = config.getMaxResponseSize() == null ? -1 : config.getMaxResponseSize().toBytes();
+        // Runs before the route's other filters, so that oversized requests are rejected first,
+        // and before NettyWriteResponseFilter, so that it sees the response it writes
+        GatewayFilter filter = new GatewayFilter() {
+            @Override
+            public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+                return BodyLimitGatewayFilterFactory.filter(exchange, chain, maxRequestSize, maxResponseSize,
+                        routeMetrics);
+            }
+
+            @Override
+            public String toString() {
+                return GatewayToStringStyler.filterToStringCreator(BodyLimitGatewayFilterFactory.this)
+                        .append("maxRequestSize", config.getMaxRequestSize())
+                        .append("maxResponseSize", config.getMaxResponseSize())
+                        .toString();
+            }
+        };
+        return new OrderedGatewayFilter(filter, NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 2);
+    }
+
+    private static Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain, long maxRequestSize,
+            long maxResponseSize, RouteMetrics metrics) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (maxRequestSize >= 0 && request.getHeaders().getContentLength() > maxRequestSize) {
+            metrics.requests.rejected.increment();
+            return reject(exchange.getResponse(), HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+
+        BodyCounter requestBody = new BodyCounter(maxRequestSize, metrics.requests);
+        BodyCounter responseBody = new BodyCounter(maxResponseSize, metrics.responses);
+        ServerHttpRequest limitedRequest = new ServerHttpRequestDecorator(request) {
+            @Override
+            public Flux<DataBuffer> getBody() {
+                return requestBody.count(super.getBody());
+            }
+        };
+        ServerHttpResponse limitedResponse = new LimitedResponse(exchange.getResponse(), responseBody);
+        return chain.filter(exchange.mutate().request(limitedRequest).response(limitedResponse).build())
+                .onErrorResume(e -> requestBody.isExceeded() && !exchange.getResponse().isCommitted(),
+                        e -> reject(exchange.getResponse(), HttpStatus.PAYLOAD_TOO_LARGE))
+                .doFinally(signal -> {
+                    requestBody.finish();
+                    responseBody.finish();
+                });
+    }
+
+    private static Mono<Void> reject(ServerHttpResponse response, HttpStatus status) {
+        response.setStatusCode(status);
+        return response.setComplete();
+    }
+
+    /**
+     * Counts the response body as it is written to the client.
+     */
+    private static final class LimitedResponse extends ServerHttpResponseDecorator {
+
+        private final BodyCounter body;
+
+        LimitedResponse(ServerHttpResponse delegate, BodyCounter body) {
+            super(delegate);
+            this.body = body;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (exceedsContentLength()) {
+                return rejectUpstream(Flux.from(body));
+            }
+            return super.writeWith(this.body.count(Flux.from(body)));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            if (exceedsContentLength()) {
+                return rejectUpstream(Flux.from(body).concatMap(Flux::from));
+            }
+            return super.writeAndFlushWith(Flux.from(body).map(chunk -> this.body.count(Flux.from(chunk))));
+        }
+
+        private boolean exceedsContentLength() {
+            long maximumSize = body.getMaximumSize();
+            return maximumSize >= 0 && getHeaders().getContentLength() > maximumSize;
+        }
+
+        // Reads at most one buffer and cancels, which closes the upstream connection instead of
+        // reading the oversized body. The upstream headers, Content-Length included, are dropped.
+        private Mono<Void> rejectUpstream(Flux<? extends DataBuffer> upstreamBody) {
+            body.reject();
+            return upstreamBody.take(1)
+                    .doOnNext(DataBufferUtils::release)
+                    .then(Mono.defer(() -> {
+                        getHeaders().clear();
+                        return reject(getDelegate(), HttpStatus.BAD_GATEWAY);
+                    }));
+        }
+    }
+
+    /**
+     * Counts one body as it streams, and fails it once it exceeds the maximum size. Buffers are
+     * passed on unchanged; the one exceeding the limit is released.
+     */
+    private static final class BodyCounter {
+
+        private final long maximumSize;
+        private final DirectionMetrics metrics;
+        private final AtomicLong size = new AtomicLong();
+        private final AtomicLong streaming = new AtomicLong();
+        private volatile boolean subscribed;
+        private volatile boolean exceeded;
+
+        BodyCounter(long maximumSize, DirectionMetrics metrics) {
+            this.maximumSize = maximumSize;
+            this.metrics = metrics;
+        }
+
+        <T extends DataBuffer> Flux<T> count(Flux<T> body) {
+            return body
+                    .doOnSubscribe(subscription -> subscribed = true)
+                    .handle((buffer, sink) -> {
+                        int length = buffer.readableByteCount();
+                        long total = size.addAndGet(length);
+                        if (maximumSize >= 0 && total > maximumSize) {
+                            DataBufferUtils.release(buffer);
+                            reject();
+                            sink.error(new DataBufferLimitException("Body exceeds the limit of " + maximumSize + " bytes"));
+                            return;
+                        }
+                        streaming.addAndGet(length);
+                        metrics.streaming.add(length);
+                        sink.next(buffer);
+                    });
+        }
+
+        long getMaximumSize() {
+            return maximumSize;
+        }
+
+        boolean isExceeded() {
+            return exceeded;
+        }
+
+        void reject() {
+            if (!exceeded) {
+                exceeded = true;
+                metrics.rejected.increment();
+            }
+        }
+
+        void finish() {
+            metrics.streaming.add(-streaming.getAndSet(0));
+            if (subscribed && !exceeded) {
+                metrics.sizes.record(size.get());
+            }
+        }
+    }
+
+    private static final class RouteMetrics {
+
+        final DirectionMetrics requests;
+        final DirectionMetrics responses;
+
+        RouteMetrics(MeterRegistry registry, String route) {
+            requests = new DirectionMetrics(registry, route, REQUEST);
+            responses = new DirectionMetrics(registry, route, RESPONSE);
+        }
+    }
+
+    private static final class DirectionMetrics {
+
+        final DistributionSummary sizes;
+        final Counter rejected;
+        final LongAdder streaming = new LongAdder();
+
+        DirectionMetrics(MeterRegistry registry, String route, String direction) {
+            sizes = DistributionSummary.builder("gateway.route.body.size")
+                    .description("Size of the request and response bodies streamed through the route")
+                    .baseUnit("bytes")
+                    .tag("route", route)
+                    .tag("direction", direction)
+                    .register(registry);
+            rejected = Counter.builder("gateway.route.body.rejected")
+                    .description("Bodies rejected for exceeding the route's limit")
+                    .tag("route", route)
+                    .tag("direction", direction)
+                    .register(registry);
+            Gauge.builder("gateway.route.body.streaming", streaming, LongAdder::sum)
+                    .description("Bytes received so far by the bodies still streaming through the route, "
+                            + "an upper bound of the buffer memory they hold")
+                    .baseUnit("bytes")
+                    .tag("route", route)
+                    .tag("direction", direction)
+                    .register(registry);
+        }
+    }
+
+    public static class Config implements HasRouteId {
+
+        /**
+         * Maximum request body size; no limit if null.
+         */
+        private DataSize maxRequestSize;
+
+        /**
+         * Maximum response body size; no limit if null.
+         */
+        private DataSize maxResponseSize;
+
+        private String routeId;
+
+        public DataSize getMaxRequestSize() {
+            return maxRequestSize;
+        }
+
+        public Config setMaxRequestSize(DataSize maxRequestSize) {
+            this.maxRequestSize = maxRequestSize;
+            return this;
+        }
+
+        public DataSize getMaxResponseSize() {
+            return maxResponseSize;
+        }
+
+        public Config setMaxResponseSize(DataSize maxResponseSize) {
+            this.maxResponseSize = maxResponseSize;
+            return this;
+        }
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package cm.amcloud.platform.gateway.filter;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.addOriginalRequestUrl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.RewritePathGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.GatewayToStringStyler;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * CompiledRewritePathGatewayFilterFactory: A drop-in replacement of the built-in `RewritePath`
+ * filter that compiles both the regular expression and the replacement template once, when the
+ * route is built. The built-in filter already compiles the regex, but `Matcher.replaceAll(String)`
+ * re-parses the replacement (`$\{segment}` references, escapes) on every request; here the
+ * replacement is pre-split into literals and group references.
+ * <p>
+ * It registers under the name `RewritePath`, so the built-in factory is disabled with
+ * `spring.cloud.gateway.filter.rewrite-path.enabled=false` (see application.properties).
+ */
+public class CompiledRewritePathGatewayFilterFactory extends RewritePathGatewayFilterFactory {
+
+    private static final String NAME = "RewritePath";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        Pattern pattern = Pattern.compile(config.getRegexp());
+        Replacement replacement = Replacement.compile(config.getReplacement().replace("$\\", "$"), pattern);
+
+        return new GatewayFilter() {
+            @Override
+            public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+                ServerHttpRequest request = exchange.getRequest();
+                addOriginalRequestUrl(exchange, request.getURI());
+                String path = request.getURI().getRawPath();
+                String newPath = replacement.replaceAll(pattern.matcher(path), path);
+
+                ServerHttpRequest rewritten = request.mutate().path(newPath).build();
+                exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, rewritten.getURI());
+                return chain.filter(exchange.mutate().request(rewritten).build());
+            }
+
+            @Override
+            public String toString() {
+                return GatewayToStringStyler.filterToStringCreator(CompiledRewritePathGatewayFilterFactory.this)
+                        .append(config.getRegexp(), config.getReplacement())
+                        .toString();
+            }
+        };
+    }
+
+    /**
+     * A replacement template in `Matcher.replaceAll` syntax, parsed once into literal parts (String)
+     * and group references (`$n` as Integer, `${name}` as NamedGroup), with `\` escaping the next character.
+     */
+    static final class Replacement {
+
+        private final Object[] parts;
+
+        private Replacement(Object[] parts) {
+            this.parts = parts;
+        }
+
+        /**
+         * @param template The replacement template.
+         * @param pattern  The pattern the template refers to, used to resolve numbered and named groups.
+         * @return The compiled template.
+         * @throws IllegalArgumentException If the template is malformed or refers to a missing group.
+         */
+        static Replacement compile(String template, Pattern pattern) {
+            int groupCount = pattern.matcher("").groupCount();
+            Set<String> groupNames = namedGroups(pattern.pattern());
+            List<Object> parts = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            int i = 0;
+            while (i < template.length()) {
+                char c = template.charAt(i++);
+                if (c == '\\') {
+                    if (i == template.length()) {
+                        throw new IllegalArgumentException("character to be escaped is missing in: " + template);
+                    }
+                    literal.append(template.charAt(i++));
+                } else if (c == '$') {
+                    if (i == template.length()) {
+                        throw new IllegalArgumentException("Illegal group reference: group index is missing in: " + template);
+                    }
+                    Object group;
+                    if (template.charAt(i) == '{') {
+                        int end = template.indexOf('}', i);
+                        if (end < 0 || end == i + 1) {
+                            throw new IllegalArgumentException("Illegal named group reference in: " + template);
+                        }
+                        String name = template.substring(i + 1, end);
+                        if (!groupNames.contains(name)) {
+                            throw new IllegalArgumentException("No group with name {" + name + "} in: " + pattern.pattern());
+                        }
+                        group = new NamedGroup(name);
+                        i = end + 1;
+                    } else {
+                        int number = Character.digit(template.charAt(i), 10);
+                        if (number < 0 || number > groupCount) {
+                            throw new IllegalArgumentException("Illegal group reference in: " + template);
+                        }
+                        i++;
+                        // Same rule as Matcher: consume further digits while the group number stays valid
+                        while (i < template.length()) {
+                            int next = Character.digit(template.charAt(i), 10);
+                            if (next < 0 || number * 10 + next > groupCount) {
+                                break;
+                            }
+                            number = number * 10 + next;
+                            i++;
+                        }
+                        group = number;
+                    }
+                    if (!literal.isEmpty()) {
+                        parts.add(literal.toString());
+                        literal.setLength(0);
+                    }
+                    parts.add(group);
+                } else {
+                    literal.append(c);
+                }
+            }
+            if (!literal.isEmpty()) {
+                parts.add(literal.toString());
+            }
+            return new Replacement(parts.toArray());
+        }
+
+        /**
+         * The names of the capturing groups `(?<name>...)` of a regular expression that compiles.
+         * Escaped characters, `\Q...\E` quotes and character classes are skipped, since a `(`
+         * there is a literal. Pattern.namedGroups() is only public from Java 20.
+         */
+        static Set<String> namedGroups(String regex) {
+            Set<String> names = new HashSet<>();
+            int classDepth = 0;
+            int i = 0;
+            while (i < regex.length()) {
+                char c = regex.charAt(i);
+                if (c == '\\') {
+                    if (regex.startsWith("\\Q", i)) {
+                        int end = regex.indexOf("\\E", i + 2);
+                        i = end < 0 ? regex.length() : end + 2;
+                    } else {
+                        i += 2;
+                    }
+                } else if (c == '[') {
+                    i++;
+                    // A ']' opening a class, negated or not, is a literal
+                    if (classDepth++ == 0) {
+                        if (i < regex.length() && regex.charAt(i) == '^') {
+                            i++;
+                        }
+                        if (i < regex.length() && regex.charAt(i) == ']') {
+                            i++;
+                        }
+                    }
+                } else if (c == ']' && classDepth > 0) {
+                    classDepth--;
+                    i++;
+                } else if (classDepth == 0 && regex.startsWith("(?<", i) && i + 3 < regex.length()
+                        && Character.isLetter(regex.charAt(i + 3))) {
+                    int end = regex.indexOf('>', i + 3);
+                    names.add(regex.substring(i + 3, end));
+                    i = end + 1;
+                } else {
+                    i++;
+                }
+            }
+            return names;
+        }
+
+        /**
+         * Equivalent to {@code matcher.replaceAll(template)}.
+         *
+         * @param matcher A fresh matcher over the input.
+         * @param input   The input the matcher was created for.
+         * @return The input with every match replaced.
+         */
+        String replaceAll(Matcher matcher, String input) {
+            if (!matcher.find()) {
+                return input;
+            }
+            StringBuilder result = new StringBuilder(input.length() + 16);
+            int last = 0;
+            do {
+                result.append(input, last, matcher.start());
+                for (Object part : parts) {
+                    if (part instanceof String text) {
+                        result.append(text);
+                    } else {
+                        String value = part instanceof Integer number
+                                ? matcher.group(number)
+                                : matcher.group(((NamedGroup) part).name());
+                        if (value != null) {
+                            result.append(value);
+                        }
+                    }
+                }
+                last = matcher.end();
+            } while (matcher.find());
+            result.append(input, last, input.length());
+            return result.toString();
+        }
+
+        private record NamedGroup(String name) {
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package cm.amcloud.platform.gateway.filter;
+
+import static org.springframework.cloud.gateway.support.RouteMetadataUtils.CONNECT_TIMEOUT_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+
+import cm.amcloud.platform.gateway.upstream.UpstreamHttpClients;
+import cm.amcloud.platform.gateway.upstream.UpstreamMetrics;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutException;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+/**
+ * PooledNettyRoutingFilter: The gateway's NettyRoutingFilter, forwarding each route through the
+ * HttpClient of its upstream pool (see {@link UpstreamHttpClients}) instead of the single shared
+ * client. Routes without a pool keep the default client and behaviour. Upstream connect and
+ * response times are recorded per route by {@link UpstreamMetrics}.
+ * <p>
+ * Replaces the built-in routing filter, which is disabled in application.properties.
+ */
+public class PooledNettyRoutingFilter extends NettyRoutingFilter {
+
+    private final UpstreamHttpClients upstreamClients;
+    private final UpstreamMetrics upstreamMetrics;
+
+    public PooledNettyRoutingFilter(HttpClient httpClient,
+            ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider, HttpClientProperties properties,
+            UpstreamHttpClients upstreamClients, UpstreamMetrics upstreamMetrics) {
+        super(httpClient, headersFiltersProvider, properties);
+        this.upstreamClients = upstreamClients;
+        this.upstreamMetrics = upstreamMetrics;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        // A pool's response timeout surfaces as a Netty read timeout: answer it like the route response timeout
+        Mono<Void> routed = super.filter(exchange, chain)
+                .onErrorMap(ReadTimeoutException.class,
+                        e -> new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Response took longer than timeout", e));
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        return route != null ? routed.contextWrite(upstreamMetrics.start(route.getId())) : routed;
+    }
+
+    @Override
+    protected HttpClient getHttpClient(Route route, ServerWebExchange exchange) {
+        HttpClient client = upstreamClients.forRoute(route);
+        if (client == null) {
+            return super.getHttpClient(route, exchange);
+        }
+        // The route's own connect-timeout metadata still takes precedence, as with the default client
+        Object connectTimeout = route.getMetadata().get(CONNECT_TIMEOUT_ATTR);
+        if (connectTimeout != null) {
+            client = client.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Integer.parseInt(connectTimeout.toString()));
+        }
+        return client;
+    }
+}
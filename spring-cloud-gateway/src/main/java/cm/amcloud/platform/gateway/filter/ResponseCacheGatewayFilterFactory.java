@@ -0,0 +1,476 @@
+package cm.amcloud.platform.gateway.filter;
+
+import java.nio.ByteBuffer;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.GatewayToStringStyler;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.web.server.ServerWebExchange;
+
+import cm.amcloud.platform.gateway.cache.CachedResponse;
+import cm.amcloud.platform.gateway.cache.ResponseCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * ResponseCacheGatewayFilterFactory: An opt-in, per-route cache of upstream responses to `GET`
+ * requests, e.g. `ResponseCache=5m` or, for secured routes, `ResponseCache=1m,subject`.
+ * <p>
+ * Only `200 OK` responses without `Set-Cookie` are stored, and the HTTP caching headers are honoured:
+ * <ul>
+ * <li>`Cache-Control: no-store`, `no-cache` or `private` responses are not stored (`private` is
+ * allowed when the cache varies on the subject), `max-age`/`s-maxage` shorten the route's TTL,
+ * and `no-cache`/`no-store` requests bypass the cache;</li>
+ * <li>`Vary` request headers are part of the match, and `Vary: *` responses are not stored;</li>
+ * <li>`If-None-Match` requests matching the cached `ETag` get a `304 Not Modified`;</li>
+ * <li>responses to requests carrying credentials are only shared between users when marked
+ * `public` or `s-maxage`, or when the route varies on the subject or scopes.</li>
+ * </ul>
+ * Concurrent misses for the same key are coalesced: one request goes upstream and the others are
+ * served its response once stored. They go upstream themselves as soon as its headers show that it
+ * will not be stored for them, and keys whose last response was not stored are not coalesced for
+ * a while (`gateway.response-cache.uncacheable-ttl`). Request outcomes and bytes served from the
+ * cache are counted per route (`gateway.response.cache.requests`, `gateway.response.cache.served`).
+ */
+public class ResponseCacheGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+
+    private static final Mono<String> NO_PRINCIPAL = Mono.just("");
+    private static final String SCOPE_PREFIX = "SCOPE_";
+    private static final int INITIAL_CAPTURE_SIZE = 8192;
+
+    private final ResponseCache cache;
+    private final MeterRegistry meterRegistry;
+
+    public ResponseCacheGatewayFilterFactory(ResponseCache cache, MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.cache = cache;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("ttl", "varyOn");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        Counters counters = new Counters(meterRegistry, config.getRouteId());
+        // Runs just before NettyWriteResponseFilter, so that it sees the response it writes
+        GatewayFilter filter = new GatewayFilter() {
+            @Override
+            public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+                return ResponseCacheGatewayFilterFactory.this.filter(exchange, chain, config, counters);
+            }
+
+            @Override
+            public String toString() {
+                return GatewayToStringStyler.filterToStringCreator(ResponseCacheGatewayFilterFactory.this)
+                        .append("ttl", config.getTtl())
+                        .append("varyOn", config.getVaryOn())
+                        .toString();
+            }
+        };
+        return new OrderedGatewayFilter(filter, NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    private Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain, Config config, Counters counters) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.GET || bypassesCache(request.getHeaders())) {
+            counters.bypass.increment();
+            return chain.filter(exchange);
+        }
+
+        return principalKey(exchange, config.getVaryOn()).flatMap(principal -> {
+            ResponseCache.Key key = new ResponseCache.Key(config.getRouteId(), pathAndQuery(request), principal);
+            CachedResponse cached = cache.get(key, request.getHeaders());
+            if (cached != null) {
+                counters.hit.increment();
+                return writeCached(exchange, cached, counters);
+            }
+
+            ResponseCache.InFlight fetch = new ResponseCache.InFlight();
+            if (cache.isUncacheable(key)) {
+                // The last response was not stored: waiting for another request's would only delay this one
+                counters.miss.increment();
+                return chain.filter(exchange.mutate().response(new CachingResponse(exchange, key, fetch, config)).build());
+            }
+            ResponseCache.InFlight inFlight = cache.joinInFlight(key, fetch);
+            if (inFlight != null) {
+                // Another request is fetching this key: use its response, or go upstream if it is not stored
+                return inFlight.await(request.getHeaders())
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .flatMap(response -> {
+                            if (response.isPresent()) {
+                                counters.coalesced.increment();
+                                return writeCached(exchange, response.get(), counters);
+                            }
+                            counters.miss.increment();
+                            return chain.filter(exchange);
+                        });
+            }
+
+            counters.miss.increment();
+            ServerHttpResponse response = new CachingResponse(exchange, key, fetch, config);
+            return chain.filter(exchange.mutate().response(response).build())
+                    .doFinally(signal -> cache.completeInFlight(key, fetch));
+        });
+    }
+
+    private Mono<Void> writeCached(ServerWebExchange exchange, CachedResponse cached, Counters counters) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        headers.putAll(cached.getHeaders());
+        headers.set(HttpHeaders.AGE, String.valueOf(TimeUnit.NANOSECONDS.toSeconds(cache.now() - cached.getStoredAt())));
+
+        String etag = cached.getHeaders().getETag();
+        if (etag != null && etagMatches(etag, exchange.getRequest().getHeaders().getIfNoneMatch())) {
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return response.setComplete();
+        }
+
+        response.setStatusCode(cached.getStatus());
+        counters.servedBytes.increment(cached.getBodySize());
+        // Wraps the off-heap body without copying it
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.getBody())));
+    }
+
+    /**
+     * Returns the TTL of a response, in nanoseconds, or -1 if the response must not be stored.
+     */
+    private long storableTtl(ServerHttpRequest request, HttpStatusCode status, HttpHeaders headers, Config config) {
+        if (status == null || status.value() != HttpStatus.OK.value() || headers.containsKey(HttpHeaders.SET_COOKIE)) {
+            return -1;
+        }
+        List<String> vary = headers.getVary();
+        if (vary.contains("*")) {
+            return -1;
+        }
+
+        long ttl = config.getTtl().toNanos();
+        boolean shared = false;
+        for (String directive : directives(headers.getCacheControl())) {
+            if (directive.equals("no-store") || directive.equals("no-cache")) {
+                return -1;
+            }
+            if (directive.equals("private") && config.getVaryOn() != VaryOn.SUBJECT) {
+                return -1;
+            }
+            if (directive.equals("public")) {
+                shared = true;
+            } else if (directive.startsWith("max-age=") || directive.startsWith("s-maxage=")) {
+                shared |= directive.startsWith("s-maxage=");
+                long seconds = parseSeconds(directive.substring(directive.indexOf('=') + 1));
+                if (seconds <= 0) {
+                    return -1;
+                }
+                ttl = Math.min(ttl, TimeUnit.SECONDS.toNanos(seconds));
+            }
+        }
+        if (request.getHeaders().containsKey(HttpHeaders.AUTHORIZATION) && config.getVaryOn() == VaryOn.NONE && !shared) {
+            return -1;
+        }
+        return ttl;
+    }
+
+    private static boolean bypassesCache(HttpHeaders requestHeaders) {
+        for (String directive : directives(requestHeaders.getCacheControl())) {
+            if (directive.equals("no-cache") || directive.equals("no-store")) {
+                return true;
+            }
+        }
+        return "no-cache".equals(requestHeaders.getPragma());
+    }
+
+    private static Mono<String> principalKey(ServerWebExchange exchange, VaryOn varyOn) {
+        return switch (varyOn) {
+            case NONE -> NO_PRINCIPAL;
+            case SUBJECT -> exchange.getPrincipal().map(Principal::getName).defaultIfEmpty("");
+            case SCOPES -> exchange.getPrincipal()
+                    .map(principal -> principal instanceof Authentication authentication
+                            ? authentication.getAuthorities().stream()
+                                    .map(GrantedAuthority::getAuthority)
+                                    .filter(authority -> authority.startsWith(SCOPE_PREFIX))
+                                    .sorted()
+                                    .collect(Collectors.joining(","))
+                            : "")
+                    .defaultIfEmpty("");
+        };
+    }
+
+    private static String pathAndQuery(ServerHttpRequest request) {
+        String query = request.getURI().getRawQuery();
+        String path = request.getURI().getRawPath();
+        return query == null ? path : path + '?' + query;
+    }
+
+    private static List<String> directives(String cacheControl) {
+        if (cacheControl == null || cacheControl.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.stream(cacheControl.split(","))
+                .map(directive -> directive.trim().toLowerCase(Locale.ROOT))
+                .toList();
+    }
+
+    private static long parseSeconds(String value) {
+        try {
+            return Long.parseLong(value.replace("\"", "").trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean etagMatches(String etag, List<String> ifNoneMatch) {
+        String opaque = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : ifNoneMatch) {
+            if (candidate.equals("*") || (candidate.startsWith("W/") ? candidate.substring(2) : candidate).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Response decorator of the request fetching a key upstream: copies the body as it is written
+     * to the client, and stores the response once complete if it is cacheable. Requests waiting for
+     * the fetch are released as soon as the response turns out not to be stored.
+     */
+    private final class CachingResponse extends ServerHttpResponseDecorator {
+
+        private final ServerHttpRequest request;
+        private final ResponseCache.Key key;
+        private final ResponseCache.InFlight fetch;
+        private final Config config;
+
+        CachingResponse(ServerWebExchange exchange, ResponseCache.Key key, ResponseCache.InFlight fetch, Config config) {
+            super(exchange.getResponse());
+            this.request = exchange.getRequest();
+            this.key = key;
+            this.fetch = fetch;
+            this.config = config;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            HttpStatusCode status = getStatusCode();
+            HttpHeaders headers = getHeaders();
+            long ttl = storableTtl(request, status, headers, config);
+            long contentLength = headers.getContentLength();
+            if (ttl <= 0 || contentLength > cache.getMaximumEntrySize()) {
+                notStored();
+                return super.writeWith(body);
+            }
+
+            Map<String, List<String>> varyValues = new LinkedHashMap<>();
+            for (String name : headers.getVary()) {
+                varyValues.put(name, List.copyOf(request.getHeaders().getOrEmpty(name)));
+            }
+            fetch.storing(varyValues);
+            BodyCapture capture = new BodyCapture(contentLength, cache.getMaximumEntrySize());
+            Flux<? extends DataBuffer> captured = Flux.from(body)
+                    .doOnNext(data -> {
+                        if (!capture.append(data)) {
+                            notStored();
+                        }
+                    })
+                    .doOnComplete(() -> store(status, headers, varyValues, capture, ttl));
+            return super.writeWith(captured);
+        }
+
+        /**
+         * Releases the waiting requests, and keeps the next misses for the key from waiting.
+         */
+        private void notStored() {
+            cache.markUncacheable(key);
+            cache.completeInFlight(key, fetch);
+        }
+
+        private void store(HttpStatusCode status, HttpHeaders headers, Map<String, List<String>> varyValues,
+                BodyCapture capture, long ttl) {
+            // The single off-heap copy of the body, held by the cache entry
+            ByteBuffer body = capture.toDirectBuffer();
+            if (body == null) {
+                return;
+            }
+            HttpHeaders stored = new HttpHeaders();
+            stored.addAll(headers);
+            stored.remove(HttpHeaders.TRANSFER_ENCODING);
+            stored.remove(HttpHeaders.CONNECTION);
+            stored.setContentLength(body.remaining());
+
+            CachedResponse response = new CachedResponse(status, stored, body, varyValues, cache.now(), ttl);
+            cache.put(key, response);
+            fetch.stored(response);
+        }
+    }
+
+    /**
+     * Accumulates a response body on the heap, up to a maximum size; bodies exceeding it are not
+     * captured. The buffer is allocated when the body arrives, sized by its Content-Length when
+     * known, and only the final body is copied off-heap. Appends happen one at a time, as the body
+     * is a Reactive Streams publisher.
+     */
+    private static final class BodyCapture {
+
+        private final long contentLength;
+        private final long maximumSize;
+        private byte[] bytes;
+        private ByteBuffer view;
+        private int size;
+        private boolean exceeded;
+
+        BodyCapture(long contentLength, long maximumSize) {
+            this.contentLength = contentLength;
+            this.maximumSize = maximumSize;
+        }
+
+        /**
+         * @return False if the body exceeds the maximum size, in which case nothing more is captured.
+         */
+        boolean append(DataBuffer data) {
+            if (exceeded) {
+                return false;
+            }
+            int length = data.readableByteCount();
+            long required = (long) size + length;
+            if (required > maximumSize) {
+                exceeded = true;
+                bytes = null;
+                view = null;
+                return false;
+            }
+            if (bytes == null || required > bytes.length) {
+                long capacity = bytes != null ? (long) bytes.length * 2
+                        : contentLength >= 0 ? contentLength : INITIAL_CAPTURE_SIZE;
+                bytes = Arrays.copyOf(bytes != null ? bytes : new byte[0],
+                        (int) Math.min(maximumSize, Math.max(required, capacity)));
+                view = ByteBuffer.wrap(bytes);
+            }
+            data.toByteBuffer(data.readPosition(), view, size, length);
+            size += length;
+            return true;
+        }
+
+        /**
+         * @return The captured body in an exactly sized direct buffer, or null if it exceeded the
+         *         maximum size.
+         */
+        ByteBuffer toDirectBuffer() {
+            if (exceeded) {
+                return null;
+            }
+            ByteBuffer body = ByteBuffer.allocateDirect(size);
+            if (size > 0) {
+                body.put(bytes, 0, size);
+            }
+            return body.flip();
+        }
+    }
+
+    private static final class Counters {
+
+        final Counter hit;
+        final Counter miss;
+        final Counter coalesced;
+        final Counter bypass;
+        final Counter servedBytes;
+
+        Counters(MeterRegistry registry, String routeId) {
+            String route = routeId == null ? "unknown" : routeId;
+            hit = requests(registry, route, "hit");
+            miss = requests(registry, route, "miss");
+            coalesced = requests(registry, route, "coalesced");
+            bypass = requests(registry, route, "bypass");
+            servedBytes = Counter.builder("gateway.response.cache.served")
+                    .description("Response bytes served from the cache instead of upstream")
+                    .baseUnit("bytes")
+                    .tag("route", route)
+                    .register(registry);
+        }
+
+        private static Counter requests(MeterRegistry registry, String route, String result) {
+            return Counter.builder("gateway.response.cache.requests")
+                    .description("Requests through the response cache, by outcome")
+                    .tag("route", route)
+                    .tag("result", result)
+                    .register(registry);
+        }
+    }
+
+    /**
+     * What, besides the path and query, a cached response is keyed on.
+     */
+    public enum VaryOn {
+        /** Shared between all callers. */
+        NONE,
+        /** One entry per authenticated subject (`X-User-ID`). */
+        SUBJECT,
+        /** One entry per set of granted scopes. */
+        SCOPES
+    }
+
+    public static class Config implements HasRouteId {
+
+        private Duration ttl = Duration.ofMinutes(1);
+        private VaryOn varyOn = VaryOn.NONE;
+        private String routeId;
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public Config setTtl(Duration ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        public VaryOn getVaryOn() {
+            return varyOn;
+        }
+
+        public Config setVaryOn(VaryOn varyOn) {
+            this.varyOn = varyOn;
+            return this;
+        }
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package cm.amcloud.platform.gateway.filter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.GatewayToStringStyler;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.server.ServerWebExchange;
+
+import cm.amcloud.platform.gateway.resilience.RouteBulkhead;
+import cm.amcloud.platform.gateway.resilience.RouteCircuitBreaker;
+import cm.amcloud.platform.gateway.resilience.RouteCircuitBreakers;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import reactor.core.publisher.Mono;
+
+/**
+ * RouteCircuitBreakerGatewayFilterFactory: The `RouteCircuitBreaker` route filter, combining a
+ * circuit breaker (see {@link RouteCircuitBreaker}) with a concurrency bulkhead (see
+ * {@link RouteBulkhead}) for the route. Calls rejected by either one are answered at once with the
+ * configured fallback response, with a `Retry-After` header while the breaker is open, so that a
+ * degraded upstream neither queues requests in the gateway nor slows down the other routes.
+ * <p>
+ * A call fails when the upstream call errors (connection failure, response timeout) or answers
+ * with a 5xx status, and is slow when its response headers take longer than `slowCallDuration`.
+ * Place the filter after `RequestRateLimiter`, so that rate-limited requests are not counted.
+ */
+public class RouteCircuitBreakerGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<RouteCircuitBreakerGatewayFilterFactory.Config> {
+
+    private final RouteCircuitBreakers circuitBreakers;
+
+    public RouteCircuitBreakerGatewayFilterFactory(RouteCircuitBreakers circuitBreakers) {
+        super(Config.class);
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        RouteCircuitBreaker breaker = circuitBreakers.circuitBreaker(config.getRouteId(), config.toSettings());
+        RouteBulkhead bulkhead = circuitBreakers.bulkhead(config.getRouteId(), config.getMaxConcurrentCalls());
+        byte[] fallbackBody = config.getFallbackBody().getBytes(StandardCharsets.UTF_8);
+        return new GatewayFilter() {
+            @Override
+            public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+                return RouteCircuitBreakerGatewayFilterFactory.filter(exchange, chain, breaker, bulkhead, config,
+                        fallbackBody);
+            }
+
+            @Override
+            public String toString() {
+                return GatewayToStringStyler.filterToStringCreator(RouteCircuitBreakerGatewayFilterFactory.this)
+                        .append("settings", breaker.getSettings())
+                        .append("maxConcurrentCalls", bulkhead.getMaxConcurrentCalls())
+                        .toString();
+            }
+        };
+    }
+
+    private static Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain, RouteCircuitBreaker breaker,
+            RouteBulkhead bulkhead, Config config, byte[] fallbackBody) {
+        RouteCircuitBreaker.State permit = breaker.tryAcquire();
+        if (permit == null) {
+            return fallback(exchange, config, fallbackBody, breaker.getRemainingOpenDuration());
+        }
+        if (!bulkhead.tryAcquire()) {
+            breaker.release(permit);
+            return fallback(exchange, config, fallbackBody, null);
+        }
+
+        Call call = new Call(breaker, permit);
+        exchange.getResponse().beforeCommit(() -> {
+            call.complete(exchange.getResponse().getStatusCode());
+            return Mono.empty();
+        });
+        // The slot is released before the terminal signal is propagated, so that whoever sees the
+        // call complete also sees the slot free, and only once if a cancel races the completion
+        AtomicBoolean slotReleased = new AtomicBoolean();
+        return chain.filter(exchange)
+                .doOnError(e -> call.fail())
+                .doOnTerminate(() -> {
+                    call.complete(exchange.getResponse().getStatusCode());
+                    if (slotReleased.compareAndSet(false, true)) {
+                        bulkhead.release();
+                    }
+                })
+                .doOnCancel(() -> {
+                    call.cancel();
+                    if (slotReleased.compareAndSet(false, true)) {
+                        bulkhead.release();
+                    }
+                });
+    }
+
+    private static Mono<Void> fallback(ServerWebExchange exchange, Config config, byte[] body, Duration retryAfter) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(config.getFallbackStatus());
+        HttpHeaders headers = response.getHeaders();
+        headers.set(HttpHeaders.CONTENT_TYPE, config.getFallbackContentType());
+        if (retryAfter != null) {
+            long seconds = TimeUnit.NANOSECONDS.toSeconds(retryAfter.toNanos() + TimeUnit.SECONDS.toNanos(1) - 1);
+            headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, seconds)));
+        }
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+
+    /**
+     * Records the outcome of one permitted call, once: when its response is committed, or when it
+     * errors or is cancelled before that.
+     */
+    private static final class Call {
+
+        private final RouteCircuitBreaker breaker;
+        private final RouteCircuitBreaker.State permit;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        Call(RouteCircuitBreaker breaker, RouteCircuitBreaker.State permit) {
+            this.breaker = breaker;
+            this.permit = permit;
+        }
+
+        void complete(HttpStatusCode status) {
+            if (done.compareAndSet(false, true)) {
+                breaker.onResult(permit, System.nanoTime() - start, status != null && status.is5xxServerError());
+            }
+        }
+
+        void fail() {
+            if (done.compareAndSet(false, true)) {
+                breaker.onResult(permit, System.nanoTime() - start, true);
+            }
+        }
+
+        void cancel() {
+            if (done.compareAndSet(false, true)) {
+                breaker.release(permit);
+            }
+        }
+    }
+
+    @Validated
+    public static class Config implements HasRouteId {
+
+        /**
+         * Failure rate, in percent, at or above which the breaker opens.
+         */
+        @DecimalMin(value = "0", inclusive = false)
+        @DecimalMax("100")
+        private float failureRateThreshold = 50;
+
+        /**
+         * Slow call rate, in percent, at or above which the breaker opens.
+         */
+        @DecimalMin(value = "0", inclusive = false)
+        @DecimalMax("100")
+        private float slowCallRateThreshold = 100;
+
+        @NotNull
+        private Duration slowCallDuration = Duration.ofSeconds(2);
+
+        /**
+         * Period over which the failure and slow call rates are measured.
+         */
+        @NotNull
+        private Duration slidingWindow = Duration.ofSeconds(10);
+
+        /**
+         * Calls needed in the sliding window before the rates are evaluated.
+         */
+        @Min(1)
+        private int minimumCalls = 20;
+
+        @NotNull
+        private Duration waitInOpenState = Duration.ofSeconds(10);
+
+        /**
+         * Probe calls let through once the open state has elapsed.
+         */
+        @Min(1)
+        private int permittedCallsInHalfOpenState = 5;
+
+        @Min(1)
+        private int maxConcurrentCalls = 100;
+
+        @NotNull
+        private HttpStatus fallbackStatus = HttpStatus.SERVICE_UNAVAILABLE;
+
+        @NotNull
+        private String fallbackContentType = "application/json";
+
+        @NotNull
+        private String fallbackBody = "{\"error\":\"service_unavailable\",\"message\":\"The service is temporarily unavailable\"}";
+
+        private String routeId;
+
+        RouteCircuitBreaker.Settings toSettings() {
+            return new RouteCircuitBreaker.Settings(failureRateThreshold, slowCallRateThreshold, slowCallDuration,
+                    slidingWindow, minimumCalls, waitInOpenState, permittedCallsInHalfOpenState);
+        }
+
+        public float getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public Config setFailureRateThreshold(float failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        public float getSlowCallRateThreshold() {
+            return slowCallRateThreshold;
+        }
+
+        public Config setSlowCallRateThreshold(float slowCallRateThreshold) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            return this;
+        }
+
+        public Duration getSlowCallDuration() {
+            return slowCallDuration;
+        }
+
+        public Config setSlowCallDuration(Duration slowCallDuration) {
+            this.slowCallDuration = slowCallDuration;
+            return this;
+        }
+
+        public Duration getSlidingWindow() {
+            return slidingWindow;
+        }
+
+        public Config setSlidingWindow(Duration slidingWindow) {
+            this.slidingWindow = slidingWindow;
+            return this;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        public Config setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        public Duration getWaitInOpenState() {
+            return waitInOpenState;
+        }
+
+        public Config setWaitInOpenState(Duration waitInOpenState) {
+            this.waitInOpenState = waitInOpenState;
+            return this;
+        }
+
+        public int getPermittedCallsInHalfOpenState() {
+            return permittedCallsInHalfOpenState;
+        }
+
+        public Config setPermittedCallsInHalfOpenState(int permittedCallsInHalfOpenState) {
+            this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+            return this;
+        }
+
+        public int getMaxConcurrentCalls() {
+            return maxConcurrentCalls;
+        }
+
+        public Config setMaxConcurrentCalls(int maxConcurrentCalls) {
+            this.maxConcurrentCalls = maxConcurrentCalls;
+            return this;
+        }
+
+        public HttpStatus getFallbackStatus() {
+            return fallbackStatus;
+        }
+
+        public Config setFallbackStatus(HttpStatus fallbackStatus) {
+            this.fallbackStatus = fallbackStatus;
+            return this;
+        }
+
+        public String getFallbackContentType() {
+            return fallbackContentType;
+        }
+
+        public Config setFallbackContentType(String fallbackContentType) {
+            this.fallbackContentType = fallbackContentType;
+            return this;
+        }
+
+        public String getFallbackBody() {
+            return fallbackBody;
+        }
+
+        public Config setFallbackBody(String fallbackBody) {
+            this.fallbackBody = fallbackBody;
+            return this;
+        }
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package cm.amcloud.platform.gateway.filter;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.addOriginalRequestUrl;
+
+import java.net.URI;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.support.NotFoundException;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import cm.amcloud.platform.gateway.upstream.UpstreamGroup;
+import cm.amcloud.platform.gateway.upstream.UpstreamGroups;
+import reactor.core.publisher.Mono;
+
+/**
+ * UpstreamGroupLoadBalancerFilter: Sends the requests of the `lb://<group>` routes to an instance
+ * of the upstream group of that name, chosen by {@link UpstreamGroup}, keeping the path and query
+ * of the request URL. The instance is released when the upstream response is committed to the
+ * client (its time to first byte, as far as the gateway can see it) or when the call fails; 5xx
+ * answers, connection errors and timeouts count as failures of the instance, client errors and
+ * cancellations do not count at all. Without an instance to send to, the request is answered 503.
+ * <p>
+ * Runs in the slot of the Spring Cloud load balancer filter, after the request URL is resolved
+ * and before the routing filter.
+ */
+public class UpstreamGroupLoadBalancerFilter implements GlobalFilter, Ordered {
+
+    public static final String SCHEME = "lb";
+
+    private final UpstreamGroups groups;
+
+    public UpstreamGroupLoadBalancerFilter(UpstreamGroups groups) {
+        this.groups = groups;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+        if (url == null || !SCHEME.equals(url.getScheme())) {
+            return chain.filter(exchange);
+        }
+        UpstreamGroup group = url.getHost() == null ? null : groups.get(url.getHost());
+        if (group == null) {
+            return Mono.error(NotFoundException.create(false, "Unknown upstream group for " + url));
+        }
+        UpstreamGroup.Call call = group.start();
+        if (call == null) {
+            return Mono.error(NotFoundException.create(false, "No instance available in upstream group " + group.getName()));
+        }
+        addOriginalRequestUrl(exchange, url);
+        URI instance = call.getUri();
+        URI requestUrl = UriComponentsBuilder.fromUri(url)
+                .scheme(instance.getScheme())
+                .host(instance.getHost())
+                .port(instance.getPort())
+                .build(true)
+                .toUri();
+        exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, requestUrl);
+        exchange.getResponse().beforeCommit(() -> {
+            call.complete(!isServerError(exchange));
+            return Mono.empty();
+        });
+        return chain.filter(exchange)
+                .doOnSuccess(done -> call.complete(!isServerError(exchange)))
+                .doOnError(e -> {
+                    if (isClientError(e)) {
+                        call.cancel();
+                    } else {
+                        call.complete(false);
+                    }
+                })
+                .doOnCancel(call::cancel);
+    }
+
+    private static boolean isServerError(ServerWebExchange exchange) {
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        return status != null && status.is5xxServerError();
+    }
+
+    private static boolean isClientError(Throwable e) {
+        return e instanceof DataBufferLimitException
+                || e instanceof ResponseStatusException rse && rse.getStatusCode().is4xxClientError();
+    }
+
+    @Override
+    public int getOrder() {
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER;
+    }
+}
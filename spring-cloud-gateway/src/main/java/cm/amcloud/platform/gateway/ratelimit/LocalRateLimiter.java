@@ -0,0 +1,236 @@
+package cm.amcloud.platform.gateway.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.cloud.gateway.route.RouteDefinitionRouteLocator;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.validation.annotation.Validated;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.validation.constraints.Min;
+import reactor.core.publisher.Mono;
+
+/**
+ * LocalRateLimiter: An in-memory token bucket rate limiter for the `RequestRateLimiter` filter,
+ * so that rate limiting does not need Redis nor a network hop per request.
+ * <p>
+ * There is one bucket per route id and key (the authenticated subject, see {@link SubjectKeyResolver}).
+ * Buckets are implemented with the generic cell rate algorithm: a bucket is a single
+ * {@link AtomicLong} holding the time at which it will be full again, updated with compare-and-set,
+ * so concurrent requests for the same key never block. Buckets live in a size-bounded cache and
+ * are evicted once idle for long enough to have refilled completely, which loses no state.
+ * <p>
+ * Each route configures its limits through the filter arguments, e.g.
+ * `local-rate-limiter.replenish-rate: 10` and `local-rate-limiter.burst-capacity: 20`.
+ * Responses carry the `RateLimit-Limit`, `RateLimit-Remaining` and `RateLimit-Reset` headers,
+ * and `Retry-After` when the request is denied.
+ * <p>
+ * Limits are enforced per gateway instance; with N instances behind a load balancer a client
+ * may get up to N times the configured rate.
+ */
+public class LocalRateLimiter extends AbstractRateLimiter<LocalRateLimiter.Config> implements MeterBinder {
+
+    public static final String CONFIGURATION_PROPERTY_NAME = "local-rate-limiter";
+
+    public static final String LIMIT_HEADER = "RateLimit-Limit";
+    public static final String REMAINING_HEADER = "RateLimit-Remaining";
+    public static final String RESET_HEADER = "RateLimit-Reset";
+    public static final String RETRY_AFTER_HEADER = "Retry-After";
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Cache<BucketKey, Bucket> buckets;
+    private final Ticker ticker;
+
+    /**
+     * @param configurationService The service binding the per-route filter arguments.
+     * @param maximumKeys          The maximum number of buckets kept in memory.
+     */
+    public LocalRateLimiter(ConfigurationService configurationService, long maximumKeys) {
+        this(configurationService, maximumKeys, Ticker.systemTicker());
+    }
+
+    LocalRateLimiter(ConfigurationService configurationService, long maximumKeys, Ticker ticker) {
+        super(Config.class, CONFIGURATION_PROPERTY_NAME, configurationService);
+        this.ticker = ticker;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfter(new RefillExpiry())
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        Config config = loadConfiguration(routeId);
+        long interval = NANOS_PER_SECOND / config.getReplenishRate();
+        long increment = interval * config.getRequestedTokens();
+        long tolerance = interval * config.getBurstCapacity();
+
+        long now = ticker.read();
+        Bucket bucket = buckets.get(new BucketKey(routeId, id), key -> new Bucket(now, tolerance));
+        while (true) {
+            long full = bucket.get();
+            long newFull = Math.max(full, now) + increment;
+            long allowAt = newFull - tolerance;
+            if (allowAt > now) {
+                return Mono.just(new Response(false, headers(config, 0, Math.max(full, now) - now, allowAt - now)));
+            }
+            if (bucket.compareAndSet(full, newFull)) {
+                long remaining = (now + tolerance - newFull) / interval;
+                return Mono.just(new Response(true, headers(config, remaining, newFull - now, -1)));
+            }
+        }
+    }
+
+    /**
+     * Returns the configuration of the route, falling back to the one of the default filters.
+     *
+     * @throws IllegalArgumentException If neither the route nor the default filters configure the limiter.
+     */
+    Config loadConfiguration(String routeId) {
+        Config config = getConfig().get(routeId);
+        if (config == null) {
+            config = getConfig().get(RouteDefinitionRouteLocator.DEFAULT_FILTERS);
+        }
+        if (config == null) {
+            throw new IllegalArgumentException("No Configuration found for route " + routeId + " or defaultFilters");
+        }
+        return config;
+    }
+
+    private static Map<String, String> headers(Config config, long remaining, long resetNanos, long retryAfterNanos) {
+        if (retryAfterNanos < 0) {
+            return Map.of(
+                    LIMIT_HEADER, String.valueOf(config.getBurstCapacity()),
+                    REMAINING_HEADER, String.valueOf(remaining),
+                    RESET_HEADER, String.valueOf(toSeconds(resetNanos)));
+        }
+        return Map.of(
+                LIMIT_HEADER, String.valueOf(config.getBurstCapacity()),
+                REMAINING_HEADER, String.valueOf(remaining),
+                RESET_HEADER, String.valueOf(toSeconds(resetNanos)),
+                RETRY_AFTER_HEADER, String.valueOf(toSeconds(retryAfterNanos)));
+    }
+
+    private static long toSeconds(long nanos) {
+        return (nanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND;
+    }
+
+    /**
+     * Publishes the bucket cache size, hits (known keys) and evictions under `gateway.ratelimiter.buckets`.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, buckets, "gateway.ratelimiter.buckets");
+    }
+
+    /**
+     * @return The number of buckets currently held in memory.
+     */
+    long getBucketCount() {
+        buckets.cleanUp();
+        return buckets.estimatedSize();
+    }
+
+    @Validated
+    public static class Config {
+
+        /**
+         * How many tokens per second are added to a bucket.
+         */
+        @Min(1)
+        private int replenishRate;
+
+        /**
+         * How many tokens a bucket holds, i.e. the largest allowed burst.
+         */
+        @Min(1)
+        private int burstCapacity = 1;
+
+        /**
+         * How many tokens a request costs.
+         */
+        @Min(1)
+        private int requestedTokens = 1;
+
+        public int getReplenishRate() {
+            return replenishRate;
+        }
+
+        public Config setReplenishRate(int replenishRate) {
+            this.replenishRate = replenishRate;
+            return this;
+        }
+
+        public int getBurstCapacity() {
+            return burstCapacity;
+        }
+
+        public Config setBurstCapacity(int burstCapacity) {
+            this.burstCapacity = burstCapacity;
+            return this;
+        }
+
+        public int getRequestedTokens() {
+            return requestedTokens;
+        }
+
+        public Config setRequestedTokens(int requestedTokens) {
+            this.requestedTokens = requestedTokens;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "Config{replenishRate=" + replenishRate + ", burstCapacity=" + burstCapacity
+                    + ", requestedTokens=" + requestedTokens + "}";
+        }
+    }
+
+    private record BucketKey(String routeId, String id) {
+    }
+
+    /**
+     * The time, in ticker nanoseconds, at which the bucket is full again, along with the longest
+     * time it can take to refill, after which an idle bucket can be evicted.
+     */
+    private static final class Bucket extends AtomicLong {
+
+        private final long refillNanos;
+
+        Bucket(long full, long refillNanos) {
+            super(full);
+            this.refillNanos = refillNanos;
+        }
+    }
+
+    private static final class RefillExpiry implements Expiry<BucketKey, Bucket> {
+
+        @Override
+        public long expireAfterCreate(BucketKey key, Bucket bucket, long currentTime) {
+            return bucket.refillNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(BucketKey key, Bucket bucket, long currentTime, long currentDuration) {
+            return bucket.refillNanos;
+        }
+
+        @Override
+        public long expireAfterRead(BucketKey key, Bucket bucket, long currentTime, long currentDuration) {
+            return bucket.refillNanos;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package cm.amcloud.platform.gateway.ratelimit;
+
+import java.net.InetSocketAddress;
+import java.security.Principal;
+
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.web.server.ServerWebExchange;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * SubjectKeyResolver: Resolves the rate limiting key of a request to the subject of its verified
+ * JWT, i.e. the value that {@link cm.amcloud.platform.gateway.filter.AuthHeaderForwardFilter}
+ * forwards as `X-User-ID`. The key is taken from the authenticated principal rather than from the
+ * `X-User-ID` request header, which a client could set itself.
+ * <p>
+ * Anonymous requests (on permitted routes) are keyed by client address instead, with an `ip:`
+ * prefix so they never share a bucket with a subject.
+ */
+public class SubjectKeyResolver implements KeyResolver {
+
+    private static final String ADDRESS_PREFIX = "ip:";
+
+    @Override
+    public Mono<String> resolve(ServerWebExchange exchange) {
+        return exchange.getPrincipal()
+                .map(Principal::getName)
+                .switchIfEmpty(Mono.defer(() -> Mono.justOrEmpty(clientAddress(exchange))));
+    }
+
+    private static String clientAddress(ServerWebExchange exchange) {
+        InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+        if (remoteAddress == null || remoteAddress.getAddress() == null) {
+            return null;
+        }
+        return ADDRESS_PREFIX + remoteAddress.getAddress().getHostAddress();
+    }
+}
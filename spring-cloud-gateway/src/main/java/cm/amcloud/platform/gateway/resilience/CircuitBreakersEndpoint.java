@@ -0,0 +1,60 @@
+package cm.amcloud.platform.gateway.resilience;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+/**
+ * CircuitBreakersEndpoint: The `circuitbreakers` actuator endpoint, listing the state, sliding
+ * window, call counters and bulkhead usage of every route circuit breaker
+ * (`/actuator/circuitbreakers` and `/actuator/circuitbreakers/{routeId}`).
+ */
+@Endpoint(id = "circuitbreakers")
+public class CircuitBreakersEndpoint {
+
+    private final RouteCircuitBreakers circuitBreakers;
+
+    public CircuitBreakersEndpoint(RouteCircuitBreakers circuitBreakers) {
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> circuitBreakers() {
+        Map<String, Map<String, Object>> routes = new TreeMap<>();
+        circuitBreakers.getCircuitBreakers().forEach((routeId, breaker) -> routes.put(routeId, describe(breaker)));
+        return routes;
+    }
+
+    @ReadOperation
+    public Map<String, Object> circuitBreaker(@Selector String routeId) {
+        RouteCircuitBreaker breaker = circuitBreakers.getCircuitBreakers().get(routeId);
+        return breaker != null ? describe(breaker) : null;
+    }
+
+    private Map<String, Object> describe(RouteCircuitBreaker breaker) {
+        RouteCircuitBreaker.WindowMetrics window = breaker.getWindowMetrics();
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("state", breaker.getStatus());
+        description.put("remainingOpenDuration", breaker.getRemainingOpenDuration());
+        description.put("bufferedCalls", window.calls());
+        description.put("failureRate", window.failureRate());
+        description.put("slowCallRate", window.slowCallRate());
+        description.put("successfulCalls", breaker.getSuccessfulCalls());
+        description.put("failedCalls", breaker.getFailedCalls());
+        description.put("slowCalls", breaker.getSlowCalls());
+        description.put("notPermittedCalls", breaker.getNotPermittedCalls());
+        description.put("settings", breaker.getSettings());
+        RouteBulkhead bulkhead = circuitBreakers.getBulkheads().get(breaker.getRouteId());
+        if (bulkhead != null) {
+            description.put("bulkhead", Map.of(
+                    "maxConcurrentCalls", bulkhead.getMaxConcurrentCalls(),
+                    "concurrentCalls", bulkhead.getConcurrentCalls(),
+                    "rejectedCalls", bulkhead.getRejectedCalls()));
+        }
+        return description;
+    }
+}
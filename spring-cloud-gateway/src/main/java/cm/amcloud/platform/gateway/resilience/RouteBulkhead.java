@@ -0,0 +1,55 @@
+package cm.amcloud.platform.gateway.resilience;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RouteBulkhead: Caps the number of concurrent calls to one route. Calls beyond the limit are
+ * rejected immediately rather than queued, so that a slow upstream cannot hold more than its share
+ * of the gateway's connections and memory.
+ */
+public class RouteBulkhead {
+
+    private final int maxConcurrentCalls;
+    private final AtomicInteger concurrentCalls = new AtomicInteger();
+    private final LongAdder rejectedCalls = new LongAdder();
+
+    public RouteBulkhead(int maxConcurrentCalls) {
+        if (maxConcurrentCalls < 1) {
+            throw new IllegalArgumentException("maxConcurrentCalls must be at least 1");
+        }
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
+    /**
+     * @return Whether the call may proceed; if so, {@link #release()} must be called when it ends.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int calls = concurrentCalls.get();
+            if (calls >= maxConcurrentCalls) {
+                rejectedCalls.increment();
+                return false;
+            }
+            if (concurrentCalls.compareAndSet(calls, calls + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        concurrentCalls.decrementAndGet();
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public int getConcurrentCalls() {
+        return concurrentCalls.get();
+    }
+
+    public long getRejectedCalls() {
+        return rejectedCalls.sum();
+    }
+}
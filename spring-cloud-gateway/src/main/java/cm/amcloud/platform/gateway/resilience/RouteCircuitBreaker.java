@@ -0,0 +1,315 @@
+package cm.amcloud.platform.gateway.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+
+/**
+ * RouteCircuitBreaker: A lock-free circuit breaker for one route.
+ * <p>
+ * While CLOSED, call outcomes are counted in a sliding time window of {@value #WINDOW_BUCKETS}
+ * buckets; once the window holds at least `minimumCalls` calls and the failure rate or the slow
+ * call rate reaches its threshold, the breaker OPENs and rejects calls for `waitInOpenState`.
+ * It then lets `permittedCallsInHalfOpenState` probe calls through (HALF_OPEN): a failed or slow
+ * probe opens it again, and as many successful probes close it.
+ * <p>
+ * Each state is a separate object swapped in with compare-and-set, and outcomes are only counted
+ * if the breaker is still in the state that permitted the call.
+ */
+public class RouteCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(RouteCircuitBreaker.class);
+
+    private static final int WINDOW_BUCKETS = 10;
+
+    public enum Status {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String routeId;
+    private final Settings settings;
+    private final Ticker ticker;
+    private final long slowCallNanos;
+    private final long waitNanos;
+    private final long bucketNanos;
+    private final AtomicReference<State> state;
+
+    private final LongAdder successfulCalls = new LongAdder();
+    private final LongAdder failedCalls = new LongAdder();
+    private final LongAdder slowCalls = new LongAdder();
+    private final LongAdder notPermittedCalls = new LongAdder();
+
+    public RouteCircuitBreaker(String routeId, Settings settings) {
+        this(routeId, settings, Ticker.systemTicker());
+    }
+
+    RouteCircuitBreaker(String routeId, Settings settings, Ticker ticker) {
+        this.routeId = routeId;
+        this.settings = settings;
+        this.ticker = ticker;
+        this.slowCallNanos = settings.slowCallDuration().toNanos();
+        this.waitNanos = settings.waitInOpenState().toNanos();
+        this.bucketNanos = Math.max(1, settings.slidingWindow().toNanos() / WINDOW_BUCKETS);
+        this.state = new AtomicReference<>(new State(Status.CLOSED, ticker.read(), 0));
+    }
+
+    /**
+     * Asks to let a call through.
+     *
+     * @return The permit to pass to {@link #onResult(State, long, boolean)} or {@link #release(State)}
+     *         when the call ends, or null if the call is rejected.
+     */
+    public State tryAcquire() {
+        while (true) {
+            State current = state.get();
+            switch (current.status) {
+                case CLOSED:
+                    return current;
+                case OPEN:
+                    long now = ticker.read();
+                    if (now - current.since < waitNanos) {
+                        notPermittedCalls.increment();
+                        return null;
+                    }
+                    transition(current, new State(Status.HALF_OPEN, now, settings.permittedCallsInHalfOpenState()));
+                    break;
+                default:
+                    int permits = current.permits.get();
+                    if (permits <= 0) {
+                        notPermittedCalls.increment();
+                        return null;
+                    }
+                    if (current.permits.compareAndSet(permits, permits - 1)) {
+                        return current;
+                    }
+            }
+        }
+    }
+
+    /**
+     * Records the outcome of a permitted call.
+     *
+     * @param permit        The permit returned by {@link #tryAcquire()}.
+     * @param durationNanos The call duration.
+     * @param failed        Whether the call failed.
+     */
+    public void onResult(State permit, long durationNanos, boolean failed) {
+        boolean slow = durationNanos >= slowCallNanos;
+        (failed ? failedCalls : successfulCalls).increment();
+        if (slow) {
+            slowCalls.increment();
+        }
+
+        State current = state.get();
+        if (permit != current) {
+            // Outcome of a call permitted by an earlier state
+            return;
+        }
+        long now = ticker.read();
+        current.window.record(now, failed, slow);
+        if (current.status == Status.CLOSED) {
+            if (shouldOpen(current.window.metrics(now))) {
+                transition(current, new State(Status.OPEN, now, 0, current.window));
+            }
+        } else if (failed || slow) {
+            transition(current, new State(Status.OPEN, now, 0, current.window));
+        } else if (current.successes.incrementAndGet() == settings.permittedCallsInHalfOpenState()) {
+            transition(current, new State(Status.CLOSED, now, 0));
+        }
+    }
+
+    /**
+     * Ends a permitted call without recording an outcome, e.g. when the client cancelled it.
+     *
+     * @param permit The permit returned by {@link #tryAcquire()}.
+     */
+    public void release(State permit) {
+        if (permit.status == Status.HALF_OPEN && permit == state.get()) {
+            permit.permits.incrementAndGet();
+        }
+    }
+
+    public Status getStatus() {
+        return state.get().status;
+    }
+
+    /**
+     * @return How long the breaker stays open, or zero if it is not open.
+     */
+    public Duration getRemainingOpenDuration() {
+        State current = state.get();
+        if (current.status != Status.OPEN) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(Math.max(0, waitNanos - (ticker.read() - current.since)));
+    }
+
+    /**
+     * @return The calls counted in the sliding window of the current state.
+     */
+    public WindowMetrics getWindowMetrics() {
+        return state.get().window.metrics(ticker.read());
+    }
+
+    public String getRouteId() {
+        return routeId;
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    public long getSuccessfulCalls() {
+        return successfulCalls.sum();
+    }
+
+    public long getFailedCalls() {
+        return failedCalls.sum();
+    }
+
+    public long getSlowCalls() {
+        return slowCalls.sum();
+    }
+
+    public long getNotPermittedCalls() {
+        return notPermittedCalls.sum();
+    }
+
+    private boolean shouldOpen(WindowMetrics metrics) {
+        return metrics.calls() >= settings.minimumCalls()
+                && (metrics.failureRate() >= settings.failureRateThreshold()
+                        || metrics.slowCallRate() >= settings.slowCallRateThreshold());
+    }
+
+    private void transition(State from, State to) {
+        if (state.compareAndSet(from, to)) {
+            logger.info("Circuit breaker of route {} changed from {} to {}", routeId, from.status, to.status);
+        }
+    }
+
+    /**
+     * The settings of a circuit breaker; rates are percentages.
+     */
+    public record Settings(float failureRateThreshold, float slowCallRateThreshold, Duration slowCallDuration,
+            Duration slidingWindow, int minimumCalls, Duration waitInOpenState, int permittedCallsInHalfOpenState) {
+
+        public Settings {
+            if (failureRateThreshold <= 0 || failureRateThreshold > 100
+                    || slowCallRateThreshold <= 0 || slowCallRateThreshold > 100) {
+                throw new IllegalArgumentException("Rate thresholds must be in ]0, 100]");
+            }
+            if (slowCallDuration.isNegative() || slidingWindow.isNegative() || slidingWindow.isZero()
+                    || waitInOpenState.isNegative()) {
+                throw new IllegalArgumentException("Circuit breaker durations must be positive");
+            }
+            if (minimumCalls < 1 || permittedCallsInHalfOpenState < 1) {
+                throw new IllegalArgumentException("minimumCalls and permittedCallsInHalfOpenState must be at least 1");
+            }
+        }
+    }
+
+    /**
+     * The calls of a sliding window; rates are percentages.
+     */
+    public record WindowMetrics(int calls, int failedCalls, int slowCalls) {
+
+        public float failureRate() {
+            return calls == 0 ? 0 : failedCalls * 100f / calls;
+        }
+
+        public float slowCallRate() {
+            return calls == 0 ? 0 : slowCalls * 100f / calls;
+        }
+    }
+
+    /**
+     * A state of the breaker, also used as the permit of the calls it lets through.
+     */
+    public final class State {
+
+        private final Status status;
+        private final long since;
+        private final AtomicInteger permits;
+        private final AtomicInteger successes = new AtomicInteger();
+        private final Window window;
+
+        State(Status status, long since, int permits) {
+            this(status, since, permits, new Window());
+        }
+
+        State(Status status, long since, int permits, Window window) {
+            this.status = status;
+            this.since = since;
+            this.permits = new AtomicInteger(permits);
+            this.window = window;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+    }
+
+    /**
+     * Ring of time buckets; a bucket is replaced (by compare-and-set) when reused for a later period.
+     */
+    private final class Window {
+
+        private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<>(WINDOW_BUCKETS);
+
+        void record(long now, boolean failed, boolean slow) {
+            long epoch = Math.floorDiv(now, bucketNanos);
+            int index = (int) Math.floorMod(epoch, (long) WINDOW_BUCKETS);
+            Bucket bucket = buckets.get(index);
+            while (bucket == null || bucket.epoch < epoch) {
+                Bucket fresh = new Bucket(epoch);
+                if (buckets.compareAndSet(index, bucket, fresh)) {
+                    bucket = fresh;
+                } else {
+                    bucket = buckets.get(index);
+                }
+            }
+            bucket.calls.incrementAndGet();
+            if (failed) {
+                bucket.failedCalls.incrementAndGet();
+            }
+            if (slow) {
+                bucket.slowCalls.incrementAndGet();
+            }
+        }
+
+        WindowMetrics metrics(long now) {
+            long oldest = Math.floorDiv(now, bucketNanos) - WINDOW_BUCKETS;
+            int calls = 0;
+            int failed = 0;
+            int slow = 0;
+            for (int i = 0; i < WINDOW_BUCKETS; i++) {
+                Bucket bucket = buckets.get(i);
+                if (bucket != null && bucket.epoch > oldest) {
+                    calls += bucket.calls.get();
+                    failed += bucket.failedCalls.get();
+                    slow += bucket.slowCalls.get();
+                }
+            }
+            return new WindowMetrics(calls, failed, slow);
+        }
+    }
+
+    private static final class Bucket {
+
+        private final long epoch;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger failedCalls = new AtomicInteger();
+        private final AtomicInteger slowCalls = new AtomicInteger();
+
+        Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
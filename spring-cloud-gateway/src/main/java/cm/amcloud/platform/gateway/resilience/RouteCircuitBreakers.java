@@ -0,0 +1,114 @@
+package cm.amcloud.platform.gateway.resilience;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * RouteCircuitBreakers: The circuit breakers and bulkheads of all routes, by route id. A route's
+ * breaker is kept when its routes are reloaded with the same settings, and replaced otherwise.
+ * <p>
+ * Publishes per route `gateway.circuitbreaker.state` (1 for the current state), the
+ * `gateway.circuitbreaker.calls` counters (successful, failed, slow, not_permitted), and
+ * `gateway.bulkhead.concurrent.calls` and `gateway.bulkhead.rejected`.
+ */
+public class RouteCircuitBreakers {
+
+    private final Map<String, RouteCircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private final Map<String, RouteBulkhead> bulkheads = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final Ticker ticker;
+
+    public RouteCircuitBreakers(MeterRegistry meterRegistry) {
+        this(meterRegistry, Ticker.systemTicker());
+    }
+
+    RouteCircuitBreakers(MeterRegistry meterRegistry, Ticker ticker) {
+        this.meterRegistry = meterRegistry;
+        this.ticker = ticker;
+    }
+
+    /**
+     * @param routeId  The route id.
+     * @param settings The breaker settings of the route.
+     * @return The route's circuit breaker.
+     */
+    public RouteCircuitBreaker circuitBreaker(String routeId, RouteCircuitBreaker.Settings settings) {
+        RouteCircuitBreaker existing = circuitBreakers.get(routeId);
+        RouteCircuitBreaker breaker = circuitBreakers.compute(routeId, (id, current) ->
+                current != null && current.getSettings().equals(settings) ? current
+                        : new RouteCircuitBreaker(id, settings, ticker));
+        if (existing == null) {
+            bindCircuitBreaker(routeId);
+        }
+        return breaker;
+    }
+
+    /**
+     * @param routeId            The route id.
+     * @param maxConcurrentCalls The maximum number of concurrent calls to the route.
+     * @return The route's bulkhead.
+     */
+    public RouteBulkhead bulkhead(String routeId, int maxConcurrentCalls) {
+        RouteBulkhead existing = bulkheads.get(routeId);
+        RouteBulkhead bulkhead = bulkheads.compute(routeId, (id, current) ->
+                current != null && current.getMaxConcurrentCalls() == maxConcurrentCalls ? current
+                        : new RouteBulkhead(maxConcurrentCalls));
+        if (existing == null) {
+            bindBulkhead(routeId);
+        }
+        return bulkhead;
+    }
+
+    public Map<String, RouteCircuitBreaker> getCircuitBreakers() {
+        return Collections.unmodifiableMap(circuitBreakers);
+    }
+
+    public Map<String, RouteBulkhead> getBulkheads() {
+        return Collections.unmodifiableMap(bulkheads);
+    }
+
+    // Meters read the route's current breaker, so they survive its replacement on route reload
+
+    private void bindCircuitBreaker(String routeId) {
+        for (RouteCircuitBreaker.Status status : RouteCircuitBreaker.Status.values()) {
+            Gauge.builder("gateway.circuitbreaker.state", circuitBreakers,
+                    breakers -> breakers.get(routeId).getStatus() == status ? 1 : 0)
+                    .description("Current state of the route circuit breaker")
+                    .tags("route", routeId, "state", status.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        callCounter(routeId, "successful", RouteCircuitBreaker::getSuccessfulCalls);
+        callCounter(routeId, "failed", RouteCircuitBreaker::getFailedCalls);
+        callCounter(routeId, "slow", RouteCircuitBreaker::getSlowCalls);
+        callCounter(routeId, "not_permitted", RouteCircuitBreaker::getNotPermittedCalls);
+    }
+
+    private void callCounter(String routeId, String kind, ToDoubleFunction<RouteCircuitBreaker> count) {
+        FunctionCounter.builder("gateway.circuitbreaker.calls", circuitBreakers,
+                breakers -> count.applyAsDouble(breakers.get(routeId)))
+                .description("Calls through the route circuit breaker")
+                .tags("route", routeId, "kind", kind)
+                .register(meterRegistry);
+    }
+
+    private void bindBulkhead(String routeId) {
+        Gauge.builder("gateway.bulkhead.concurrent.calls", bulkheads,
+                bulkheads -> bulkheads.get(routeId).getConcurrentCalls())
+                .description("Calls in progress through the route bulkhead")
+                .tag("route", routeId)
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.bulkhead.rejected", bulkheads,
+                bulkheads -> bulkheads.get(routeId).getRejectedCalls())
+                .description("Calls rejected because the route bulkhead was full")
+                .tag("route", routeId)
+                .register(meterRegistry);
+    }
+}
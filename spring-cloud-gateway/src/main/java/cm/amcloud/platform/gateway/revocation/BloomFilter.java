@@ -0,0 +1,90 @@
+package cm.amcloud.platform.gateway.revocation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * BloomFilter: A fixed-size bloom filter over 64-bit hashes, using double hashing to derive the
+ * probe positions. Lookups are lock-free and allocation-free; additions set bits atomically, so
+ * they may run concurrently with lookups. The filter cannot remove elements: it is replaced by a
+ * new one when its elements change, see {@link RevocationList}.
+ */
+final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+
+    private BloomFilter(long bits, int hashes) {
+        this.words = new AtomicLongArray((int) ((bits + 63) >>> 6));
+        this.bits = (long) words.length() << 6;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Sizes a filter for the given number of elements and false positive probability, using the
+     * optimal bit count (-n ln p / ln² 2) and number of probes (m/n ln 2).
+     *
+     * @param expectedInsertions       The number of elements the filter is sized for.
+     * @param falsePositiveProbability The target false positive probability at that size.
+     * @return An empty filter.
+     */
+    static BloomFilter create(long expectedInsertions, double falsePositiveProbability) {
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("falsePositiveProbability must be in (0, 1)");
+        }
+        long n = Math.max(1, expectedInsertions);
+        long bits = Math.max(64, (long) Math.ceil(-n * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2))));
+        if (bits > (long) Integer.MAX_VALUE << 6) {
+            throw new IllegalArgumentException("Bloom filter too large for " + expectedInsertions + " elements");
+        }
+        int hashes = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+        return new BloomFilter(bits, hashes);
+    }
+
+    void put(long hash) {
+        long h1 = hash;
+        long h2 = mix(hash) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long index = Math.floorMod(h1 + i * h2, bits);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+    }
+
+    boolean mightContain(long hash) {
+        long h1 = hash;
+        long h2 = mix(hash) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long index = Math.floorMod(h1 + i * h2, bits);
+            if ((words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long bitSize() {
+        return bits;
+    }
+
+    int hashCount() {
+        return hashes;
+    }
+
+    /**
+     * Finalization step of MurmurHash3 (fmix64): spreads every input bit over the whole result.
+     */
+    static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,65 @@
+package cm.amcloud.platform.gateway.revocation;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * HttpRevocationSnapshotSource: Fetches the revocation snapshot from an IAM endpoint answering
+ * `GET` with a JSON {@link RevocationBatch}, in the format IAM pushes batches in (see
+ * {@link RevocationPushHandler}).
+ */
+public class HttpRevocationSnapshotSource implements RevocationSnapshotSource {
+
+    private final URI uri;
+    private final Duration timeout;
+    private final ObjectMapper objectMapper;
+    private final HttpClient client;
+
+    /**
+     * @param uri          The snapshot endpoint.
+     * @param timeout      Connect timeout, and timeout of the whole response.
+     * @param objectMapper Reads the snapshot; it must handle {@link java.time.Instant} fields.
+     */
+    public HttpRevocationSnapshotSource(URI uri, Duration timeout, ObjectMapper objectMapper) {
+        this.uri = uri;
+        this.timeout = timeout;
+        this.objectMapper = objectMapper;
+        this.client = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    @Override
+    public RevocationBatch fetch() throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        HttpResponse<byte[]> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching revocation snapshot from " + uri);
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("Revocation snapshot from " + uri + " answered " + response.statusCode());
+        }
+        RevocationBatch snapshot = objectMapper.readValue(response.body(), RevocationBatch.class);
+        if (snapshot == null || snapshot.revocations() == null) {
+            throw new IOException("Revocation snapshot from " + uri + " without revocations");
+        }
+        return snapshot;
+    }
+
+    @Override
+    public String toString() {
+        return uri.toString();
+    }
+}
@@ -0,0 +1,50 @@
+package cm.amcloud.platform.gateway.revocation;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * LocalRevocationPublisher: In-process {@link RevocationFeed}. Batches pushed by IAM to this node
+ * (see {@link RevocationPushHandler}) are published here, and tests or a local setup without IAM
+ * can publish batches directly. Subscribers receive the batches on the publishing thread.
+ */
+public class LocalRevocationPublisher implements RevocationFeed {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalRevocationPublisher.class);
+
+    private static final Duration PUBLISH_TIMEOUT = Duration.ofSeconds(1);
+
+    private final Sinks.Many<RevocationBatch> sink = Sinks.many().multicast().directBestEffort();
+
+    /**
+     * Publishes a batch to the current subscribers, waiting for a concurrent publication to finish
+     * if there is one.
+     *
+     * @param batch The batch to publish.
+     * @return Whether the batch reached a subscriber; false if there is none, e.g. once the
+     *         revocation list is closed, or if the concurrent publication did not finish in time.
+     */
+    public boolean publish(RevocationBatch batch) {
+        long deadline = System.nanoTime() + PUBLISH_TIMEOUT.toNanos();
+        Sinks.EmitResult result = sink.tryEmitNext(batch);
+        while (result == Sinks.EmitResult.FAIL_NON_SERIALIZED && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+            result = sink.tryEmitNext(batch);
+        }
+        if (result.isFailure()) {
+            logger.warn("Revocation batch {} not published: {}", batch.sequence(), result);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Flux<RevocationBatch> batches() {
+        return sink.asFlux();
+    }
+}
@@ -0,0 +1,33 @@
+package cm.amcloud.platform.gateway.revocation;
+
+import java.time.Instant;
+
+/**
+ * Revocation: One entry of a revocation batch pushed by IAM.
+ *
+ * @param type      Whether a single token or all tokens of a subject are revoked.
+ * @param value     The revoked `jti`, or the revoked `sub`.
+ * @param revokedAt For a subject, tokens issued at or before this instant are revoked (all of
+ *                  them if null); tokens issued later, e.g. after the user signed in again, are
+ *                  not. Ignored for a token.
+ * @param expiresAt When the entry can be forgotten because every token it revokes has expired:
+ *                  the `exp` of the token, or the `exp` of the subject's last token issued before
+ *                  the revocation.
+ */
+public record Revocation(Type type, String value, Instant revokedAt, Instant expiresAt) {
+
+    public enum Type {
+        /** Revokes the token whose `jti` claim is the value. */
+        TOKEN_ID,
+        /** Revokes the tokens whose `sub` claim is the value, issued up to the revocation. */
+        SUBJECT
+    }
+
+    public static Revocation tokenId(String jti, Instant expiresAt) {
+        return new Revocation(Type.TOKEN_ID, jti, null, expiresAt);
+    }
+
+    public static Revocation subject(String subject, Instant revokedAt, Instant expiresAt) {
+        return new Revocation(Type.SUBJECT, subject, revokedAt, expiresAt);
+    }
+}
@@ -0,0 +1,14 @@
+package cm.amcloud.platform.gateway.revocation;
+
+import java.util.List;
+
+/**
+ * RevocationBatch: The revocations IAM published since its previous batch. Batches only add
+ * entries, so applying one twice or out of order is harmless; the sequence number is used to
+ * detect batches that never reached this node.
+ *
+ * @param sequence    Increases by one with every batch published by IAM.
+ * @param revocations The new revocations.
+ */
+public record RevocationBatch(long sequence, List<Revocation> revocations) {
+}
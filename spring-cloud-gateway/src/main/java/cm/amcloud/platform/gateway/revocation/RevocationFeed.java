@@ -0,0 +1,15 @@
+package cm.amcloud.platform.gateway.revocation;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * RevocationFeed: The stream of revocation batches a gateway node applies to its
+ * {@link RevocationList}.
+ */
+public interface RevocationFeed {
+
+    /**
+     * @return The batches published from now on; the flux does not complete.
+     */
+    Flux<RevocationBatch> batches();
+}
@@ -0,0 +1,416 @@
+package cm.amcloud.platform.gateway.revocation;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cm.amcloud.platform.gateway.config.JwtProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import reactor.core.Disposable;
+
+/**
+ * RevocationList: The revoked token ids and subjects known to this gateway node, applied from a
+ * {@link RevocationFeed} of incremental batches published by IAM.
+ * <ul>
+ *   <li>Every entry is kept in an exact set, and in a bloom filter that answers the common
+ *       "not revoked" case with a few bit probes, without locking or allocating.</li>
+ *   <li>Only tokens the filter may contain are looked up in the exact set, which rules out the
+ *       filter's false positives.</li>
+ *   <li>Entries are forgotten once every token they revoke has expired: a periodic sweep drops
+ *       them from the exact set and rebuilds the filter from the remaining entries, as a bloom
+ *       filter cannot remove elements. The filter is also rebuilt, twice as large, when it holds
+ *       more entries than it was sized for.</li>
+ * </ul>
+ * Lookups never wait on a network call. With a {@link RevocationSnapshotSource}, the full state is
+ * pulled in the background when the list starts, so that a node started after revocations were
+ * pushed learns them, and again whenever a batch is missed (a gap in the sequence numbers) or fails
+ * to apply; until a first snapshot is applied, the list is not {@link #isSynchronized() synchronized}.
+ * In the meantime it keeps answering from what it has.
+ */
+public class RevocationList implements MeterBinder, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RevocationList.class);
+
+    private final RevocationFeed feed;
+    private final RevocationSnapshotSource snapshots;
+    private final JwtProperties.Revocation settings;
+    private final Clock clock;
+    private final ScheduledExecutorService executor;
+
+    private final Map<Key, Revocation> entries = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private volatile BloomFilter filter;
+    // Guarded by writeLock
+    private long capacity;
+    private long lastSequence = -1;
+    private volatile boolean synchronizedWithSnapshot;
+    private final AtomicBoolean resyncPending = new AtomicBoolean();
+
+    private final LongAdder notRevoked = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder issuedAfterRevocation = new LongAdder();
+    private final LongAdder revoked = new LongAdder();
+    private final LongAdder missedBatches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder snapshotsApplied = new LongAdder();
+
+    private Disposable subscription;
+
+    /**
+     * @param feed     The batches to apply.
+     * @param settings Filter sizing and sweep interval.
+     */
+    public RevocationList(RevocationFeed feed, JwtProperties.Revocation settings) {
+        this(feed, null, settings, Clock.systemUTC());
+    }
+
+    /**
+     * @param feed      The batches to apply.
+     * @param snapshots The full state to start from and to resync with, or null to rely on the
+     *                  feed alone.
+     * @param settings  Filter sizing, sweep and snapshot retry intervals.
+     */
+    public RevocationList(RevocationFeed feed, RevocationSnapshotSource snapshots, JwtProperties.Revocation settings) {
+        this(feed, snapshots, settings, Clock.systemUTC());
+    }
+
+    RevocationList(RevocationFeed feed, RevocationSnapshotSource snapshots, JwtProperties.Revocation settings,
+            Clock clock) {
+        this.feed = feed;
+        this.snapshots = snapshots;
+        this.settings = settings;
+        this.clock = clock;
+        this.capacity = settings.getExpectedEntries();
+        this.filter = BloomFilter.create(capacity, settings.getFalsePositiveProbability());
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "revocation-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Subscribes to the feed, pulls the first snapshot in the background and schedules the sweep of
+     * expired entries. The feed is subscribed to first, so that no batch pushed while the snapshot
+     * is fetched is lost.
+     */
+    public void start() {
+        logger.info("Applying token revocations (expected-entries: {}, false-positive-probability: {}, sweep-interval: {})",
+                settings.getExpectedEntries(), settings.getFalsePositiveProbability(), settings.getSweepInterval());
+        subscription = feed.batches().subscribe(this::applyQuietly,
+                e -> logger.error("Revocation feed failed, no longer applying revocations", e));
+        if (snapshots != null) {
+            logger.info("Synchronizing token revocations with the snapshot from {}", snapshots);
+            requestResync();
+        } else {
+            logger.warn("No revocation snapshot source configured, revocations pushed before this node started are unknown");
+        }
+        long interval = settings.getSweepInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::sweepQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Adds the batch's revocations. A revocation of an entry that is already known extends it, and
+     * revocations that have already expired are skipped. A gap in the sequence numbers triggers a
+     * resync with the snapshot source.
+     *
+     * @param batch The batch to apply.
+     */
+    public void apply(RevocationBatch batch) {
+        boolean missed;
+        synchronized (writeLock) {
+            int added = add(batch.revocations());
+            missed = lastSequence >= 0 && batch.sequence() > lastSequence + 1;
+            if (missed) {
+                logger.warn("Missed revocation batches {} to {}", lastSequence + 1, batch.sequence() - 1);
+                missedBatches.add(batch.sequence() - lastSequence - 1);
+            }
+            lastSequence = Math.max(lastSequence, batch.sequence());
+            logger.debug("Applied revocation batch {}: {} new entries, {} in total", batch.sequence(), added, entries.size());
+        }
+        if (missed) {
+            requestResync();
+        }
+    }
+
+    /**
+     * Adds the snapshot's revocations like a batch, and moves the last sequence up to the
+     * snapshot's without counting a gap: the snapshot holds every batch up to it. Batches applied
+     * meanwhile are kept, as revocations are only ever extended.
+     *
+     * @param snapshot The full state, see {@link RevocationSnapshotSource#fetch()}.
+     */
+    void applySnapshot(RevocationBatch snapshot) {
+        synchronized (writeLock) {
+            int added = add(snapshot.revocations());
+            lastSequence = Math.max(lastSequence, snapshot.sequence());
+            synchronizedWithSnapshot = true;
+            snapshotsApplied.increment();
+            logger.info("Applied revocation snapshot {}: {} new entries, {} in total", snapshot.sequence(), added,
+                    entries.size());
+        }
+    }
+
+    // Called with writeLock held
+    private int add(List<Revocation> revocations) {
+        Instant now = clock.instant();
+        int added = 0;
+        for (Revocation revocation : revocations) {
+            if (revocation.type() == null || revocation.value() == null || revocation.expiresAt() == null
+                    || !revocation.expiresAt().isAfter(now)) {
+                continue;
+            }
+            Key key = new Key(revocation.type(), revocation.value());
+            Revocation previous = entries.put(key, merge(entries.get(key), revocation));
+            if (previous == null) {
+                filter.put(hash(revocation.type(), revocation.value()));
+                added++;
+            }
+        }
+        if (entries.size() > capacity) {
+            capacity = Math.max(capacity * 2, entries.size());
+            rebuild();
+        }
+        return added;
+    }
+
+    /**
+     * @param tokenId  The token's `jti` claim, may be null.
+     * @param subject  The token's `sub` claim, may be null.
+     * @param issuedAt The token's `iat` claim; a token without it is revoked with its subject.
+     * @return Whether the token, or its subject at the time the token was issued, is revoked.
+     */
+    public boolean isRevoked(String tokenId, String subject, Instant issuedAt) {
+        BloomFilter current = filter;
+        boolean probed = false;
+        if (tokenId != null && current.mightContain(hash(Revocation.Type.TOKEN_ID, tokenId))) {
+            probed = true;
+            if (entries.containsKey(new Key(Revocation.Type.TOKEN_ID, tokenId))) {
+                revoked.increment();
+                return true;
+            }
+        }
+        if (subject != null && current.mightContain(hash(Revocation.Type.SUBJECT, subject))) {
+            probed = true;
+            Revocation revocation = entries.get(new Key(Revocation.Type.SUBJECT, subject));
+            if (revocation != null) {
+                if (issuedAt == null || revocation.revokedAt() == null || !issuedAt.isAfter(revocation.revokedAt())) {
+                    revoked.increment();
+                    return true;
+                }
+                // A genuine hit of the subject, not a false positive of the filter
+                issuedAfterRevocation.increment();
+                return false;
+            }
+        }
+        (probed ? falsePositives : notRevoked).increment();
+        return false;
+    }
+
+    /**
+     * Drops the entries whose tokens have all expired, and rebuilds the filter without them.
+     *
+     * @return The number of entries dropped.
+     */
+    int removeExpired() {
+        synchronized (writeLock) {
+            Instant now = clock.instant();
+            int before = entries.size();
+            entries.values().removeIf(revocation -> !revocation.expiresAt().isAfter(now));
+            int removed = before - entries.size();
+            if (removed > 0) {
+                rebuild();
+                logger.debug("Dropped {} expired revocations, {} remaining", removed, entries.size());
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Publishes, under `gateway.security.revocation`, the number of entries, the checks by result
+     * (`not_revoked` from the filter alone; `false_positive`, `issued_after_revocation` of a revoked
+     * subject or `revoked` after the exact lookup),
+     * the last applied batch, the missed and failed batches, the applied snapshots and the filter
+     * rebuilds.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("gateway.security.revocation.entries", entries, Map::size)
+                .description("Revoked token ids and subjects known to this node")
+                .register(registry);
+        checkCounter(registry, "not_revoked", notRevoked);
+        checkCounter(registry, "false_positive", falsePositives);
+        checkCounter(registry, "issued_after_revocation", issuedAfterRevocation);
+        checkCounter(registry, "revoked", revoked);
+        Gauge.builder("gateway.security.revocation.last.sequence", this, RevocationList::getLastSequence)
+                .description("Sequence number of the last revocation batch applied")
+                .register(registry);
+        FunctionCounter.builder("gateway.security.revocation.missed.batches", missedBatches, LongAdder::sum)
+                .description("Revocation batches skipped in the sequence, which never reached this node")
+                .register(registry);
+        FunctionCounter.builder("gateway.security.revocation.failed.batches", failedBatches, LongAdder::sum)
+                .description("Revocation batches received but not applied, after an error")
+                .register(registry);
+        FunctionCounter.builder("gateway.security.revocation.snapshots", snapshotsApplied, LongAdder::sum)
+                .description("Revocation snapshots applied, at startup and after missed or failed batches")
+                .register(registry);
+        FunctionCounter.builder("gateway.security.revocation.rebuilds", rebuilds, LongAdder::sum)
+                .description("Rebuilds of the revocation bloom filter, after expiry or growth")
+                .register(registry);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getLastSequence() {
+        synchronized (writeLock) {
+            return lastSequence;
+        }
+    }
+
+    /**
+     * @return Whether a snapshot has been applied, or no snapshot source is configured; until then,
+     *         revocations pushed before this node started may be unknown.
+     */
+    public boolean isSynchronized() {
+        return snapshots == null || synchronizedWithSnapshot;
+    }
+
+    long getMissedBatches() {
+        return missedBatches.sum();
+    }
+
+    long getSnapshotsApplied() {
+        return snapshotsApplied.sum();
+    }
+
+    long getFailedBatches() {
+        return failedBatches.sum();
+    }
+
+    long getFilterBits() {
+        return filter.bitSize();
+    }
+
+    private void checkCounter(MeterRegistry registry, String result, LongAdder counter) {
+        FunctionCounter.builder("gateway.security.revocation.checks", counter, LongAdder::sum)
+                .description("Tokens checked against the revocation list, by result")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    // A batch that cannot be applied must not end the subscription, or every later batch is lost
+    private void applyQuietly(RevocationBatch batch) {
+        try {
+            apply(batch);
+        } catch (RuntimeException e) {
+            failedBatches.increment();
+            logger.error("Failed to apply revocation batch {}", batch.sequence(), e);
+            requestResync();
+        }
+    }
+
+    // At most one snapshot is pulled at a time; a request made while one is pending is covered by it
+    private void requestResync() {
+        if (snapshots == null || !resyncPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::resync);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Revocation list closed, not pulling a snapshot");
+        }
+    }
+
+    private void resync() {
+        RevocationBatch snapshot;
+        try {
+            snapshot = snapshots.fetch();
+        } catch (Exception e) {
+            Duration retry = settings.getSnapshotRetryInterval();
+            logger.warn("Failed to fetch revocation snapshot from {}, retrying in {}: {}", snapshots, retry, e.getMessage());
+            try {
+                executor.schedule(this::resync, retry.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException closed) {
+                logger.debug("Revocation list closed, no longer pulling snapshots");
+            }
+            return;
+        }
+        // Cleared before applying, so that a gap detected from now on pulls a newer snapshot
+        resyncPending.set(false);
+        try {
+            applySnapshot(snapshot);
+        } catch (RuntimeException e) {
+            logger.error("Failed to apply revocation snapshot {}", snapshot.sequence(), e);
+        }
+    }
+
+    private void sweepQuietly() {
+        try {
+            removeExpired();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to drop expired revocations", e);
+        }
+    }
+
+    // Called with writeLock held. Additions after this point go to the new filter, so none is lost.
+    private void rebuild() {
+        BloomFilter rebuilt = BloomFilter.create(Math.max(capacity, entries.size()), settings.getFalsePositiveProbability());
+        entries.keySet().forEach(key -> rebuilt.put(hash(key.type(), key.value())));
+        filter = rebuilt;
+        rebuilds.increment();
+    }
+
+    private static Revocation merge(Revocation previous, Revocation revocation) {
+        if (previous == null) {
+            return revocation;
+        }
+        Instant revokedAt = latest(previous.revokedAt(), revocation.revokedAt());
+        Instant expiresAt = latest(previous.expiresAt(), revocation.expiresAt());
+        return new Revocation(revocation.type(), revocation.value(), revokedAt, expiresAt);
+    }
+
+    private static Instant latest(Instant a, Instant b) {
+        if (a == null || b == null) {
+            return a == null ? b : a;
+        }
+        return a.isAfter(b) ? a : b;
+    }
+
+    /**
+     * String caches its hash code, so probing the filter does not hash the characters again on
+     * every request. Values with equal hash codes share their probes and are told apart by the
+     * exact set.
+     */
+    static long hash(Revocation.Type type, String value) {
+        return BloomFilter.mix(((long) type.ordinal() << 32) | (value.hashCode() & 0xffffffffL));
+    }
+
+    private record Key(Revocation.Type type, String value) {
+    }
+}
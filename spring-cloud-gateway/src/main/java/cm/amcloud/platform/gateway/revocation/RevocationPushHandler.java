@@ -0,0 +1,70 @@
+package cm.amcloud.platform.gateway.revocation;
+
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * RevocationPushHandler: Receives the revocation batches IAM pushes to every gateway node, as a
+ * JSON {@link RevocationBatch}, and publishes them to the node's {@link LocalRevocationPublisher}.
+ * Answers 202 once the batch is applied, 400 if an entry lacks a field it needs, or 503 if no
+ * revocation list took the batch, so that IAM pushes it again.
+ * <pre>
+ * {"sequence": 42, "revocations": [
+ *   {"type": "TOKEN_ID", "value": "9f1c...", "expiresAt": "2026-10-17T10:15:00Z"},
+ *   {"type": "SUBJECT", "value": "alice", "revokedAt": "2026-10-17T09:00:00Z", "expiresAt": "2026-10-17T10:00:00Z"}]}
+ * </pre>
+ */
+public class RevocationPushHandler implements HandlerFunction<ServerResponse> {
+
+    private static final Logger logger = LoggerFactory.getLogger(RevocationPushHandler.class);
+
+    private final LocalRevocationPublisher publisher;
+
+    public RevocationPushHandler(LocalRevocationPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @Override
+    public Mono<ServerResponse> handle(ServerRequest request) {
+        return request.bodyToMono(RevocationBatch.class)
+                .flatMap(batch -> {
+                    String error = validate(batch);
+                    if (error != null) {
+                        logger.warn("Rejected revocation batch {}: {}", batch.sequence(), error);
+                        return ServerResponse.badRequest().bodyValue(Map.of("error", error));
+                    }
+                    if (!publisher.publish(batch)) {
+                        return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .bodyValue(Map.of("error", "revocation batch not applied"));
+                    }
+                    return ServerResponse.accepted().build();
+                })
+                .switchIfEmpty(Mono.defer(() -> ServerResponse.badRequest().bodyValue(Map.of("error", "missing body"))));
+    }
+
+    private static String validate(RevocationBatch batch) {
+        if (batch.revocations() == null) {
+            return "missing revocations";
+        }
+        for (Revocation revocation : batch.revocations()) {
+            if (revocation == null || revocation.type() == null || revocation.value() == null) {
+                return "revocation without type or value";
+            }
+            if (revocation.expiresAt() == null) {
+                return "revocation of " + revocation.value() + " without expiresAt";
+            }
+            if (revocation.type() == Revocation.Type.SUBJECT && revocation.revokedAt() == null) {
+                return "subject revocation of " + revocation.value() + " without revokedAt";
+            }
+        }
+        return null;
+    }
+}
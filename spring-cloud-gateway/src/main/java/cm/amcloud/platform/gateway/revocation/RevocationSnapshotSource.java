@@ -0,0 +1,21 @@
+package cm.amcloud.platform.gateway.revocation;
+
+import java.io.IOException;
+
+/**
+ * RevocationSnapshotSource: The full revocation state held by IAM. A {@link RevocationList} pulls
+ * it when it starts, to learn the revocations pushed before the node existed, and again whenever
+ * it detects batches of its {@link RevocationFeed} that it missed or failed to apply.
+ */
+@FunctionalInterface
+public interface RevocationSnapshotSource {
+
+    /**
+     * Fetches the snapshot. It is called on the revocation list's own thread, so it may block.
+     *
+     * @return Every revocation whose tokens have not all expired yet, as a batch numbered with the
+     *         sequence of the last pushed batch it includes.
+     * @throws IOException If the snapshot cannot be fetched or read.
+     */
+    RevocationBatch fetch() throws IOException;
+}
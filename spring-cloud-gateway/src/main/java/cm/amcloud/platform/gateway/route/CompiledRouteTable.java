@@ -0,0 +1,203 @@
+package cm.amcloud.platform.gateway.route;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.support.NameUtils;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.server.ServerWebExchange;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * CompiledRouteTable: An immutable index of the gateway routes by the literal prefix of their
+ * `Path=` predicate patterns, stored as a trie of path segments.
+ * <p>
+ * Each route is registered at the node of the last literal segment of its patterns (e.g.
+ * `/api/admin/**` under `api` → `admin`); routes without a Path predicate are registered at the root.
+ * Every node holds the precomputed, order-preserving array of the routes registered at that node
+ * or any of its ancestors, so a lookup is a walk down the request path segments followed by the
+ * evaluation of the full predicates of the few remaining candidates. Lookup cost therefore depends
+ * on the depth of the path, not on the number of routes.
+ * <p>
+ * The index only narrows the candidates: every route that can match a path is among its candidates,
+ * and the full route predicate still decides, so the first matching route is the same as with
+ * a linear scan of the route table.
+ */
+public final class CompiledRouteTable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompiledRouteTable.class);
+
+    private static final String PATH_PREDICATE = "Path";
+
+    private final Node root;
+    private final int routeCount;
+
+    private CompiledRouteTable(Node root, int routeCount) {
+        this.root = root;
+        this.routeCount = routeCount;
+    }
+
+    /**
+     * Compiles the routes, in their evaluation order, into an index.
+     *
+     * @param routes       The routes as returned by the route locator (already sorted by order).
+     * @param pathPatterns The `Path=` patterns of each route id; routes without entry are always candidates.
+     * @return The compiled route table.
+     */
+    public static CompiledRouteTable compile(List<Route> routes, Map<String, List<String>> pathPatterns) {
+        Node root = new Node();
+        for (int position = 0; position < routes.size(); position++) {
+            List<String> patterns = pathPatterns.get(routes.get(position).getId());
+            if (patterns == null || patterns.isEmpty()) {
+                root.registered.add(position);
+                continue;
+            }
+            for (String pattern : patterns) {
+                Node node = root;
+                for (String segment : pattern.split("/")) {
+                    if (segment.isEmpty()) {
+                        continue;
+                    }
+                    if (!isLiteral(segment)) {
+                        break;
+                    }
+                    node = node.children.computeIfAbsent(segment, key -> new Node());
+                }
+                node.registered.add(position);
+            }
+        }
+        root.seal(routes, new TreeSet<>());
+        return new CompiledRouteTable(root, routes.size());
+    }
+
+    /**
+     * Extracts the patterns of the first `Path=` predicate of a route definition. When a route
+     * has several Path predicates they are combined with AND, so any one of them is a necessary
+     * condition and suffices for indexing.
+     *
+     * @param definition The route definition.
+     * @return The path patterns, or an empty list if the route has no Path predicate.
+     */
+    public static List<String> pathPatterns(RouteDefinition definition) {
+        for (PredicateDefinition predicate : definition.getPredicates()) {
+            if (PATH_PREDICATE.equals(predicate.getName())) {
+                List<String> patterns = new ArrayList<>();
+                // Shortcut arguments (Path=/a/**,/b/**) get generated keys, the full form uses "patterns"
+                predicate.getArgs().forEach((key, value) -> {
+                    if (key.startsWith(NameUtils.GENERATED_NAME_PREFIX) || key.startsWith("patterns")) {
+                        for (String pattern : value.split(",")) {
+                            if (!pattern.isBlank()) {
+                                patterns.add(pattern.trim());
+                            }
+                        }
+                    }
+                });
+                return patterns;
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * Returns the candidate routes for a request path, in evaluation order.
+     *
+     * @param path The path within the application, as matched by the Path predicate.
+     * @return The candidate routes; never null, not to be modified.
+     */
+    public Route[] candidates(PathContainer path) {
+        Node node = root;
+        for (PathContainer.Element element : path.elements()) {
+            if (element instanceof PathContainer.PathSegment segment) {
+                String value = segment.valueToMatch();
+                if (value.isEmpty()) {
+                    continue;
+                }
+                Node child = node.children.get(value);
+                if (child == null) {
+                    break;
+                }
+                node = child;
+            }
+        }
+        return node.candidates;
+    }
+
+    /**
+     * Finds the first candidate route whose full predicate matches the exchange, with the same
+     * semantics as RoutePredicateHandlerMapping: the route id being evaluated is exposed as
+     * {@link ServerWebExchangeUtils#GATEWAY_PREDICATE_ROUTE_ATTR}, and a predicate that throws
+     * is logged and treated as not matching.
+     *
+     * @param exchange The current exchange.
+     * @return The first matching route, or empty.
+     */
+    public Mono<Route> firstMatch(ServerWebExchange exchange) {
+        Route[] candidates = candidates(exchange.getRequest().getPath().pathWithinApplication());
+        if (candidates.length == 0) {
+            return Mono.empty();
+        }
+        return Flux.fromArray(candidates)
+                .filterWhen(route -> {
+                    exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_PREDICATE_ROUTE_ATTR, route.getId());
+                    try {
+                        return route.getPredicate().apply(exchange);
+                    } catch (Exception e) {
+                        logger.error("Error applying predicate for route: {}", route.getId(), e);
+                        return Mono.just(false);
+                    }
+                })
+                .next();
+    }
+
+    /**
+     * @return The number of indexed routes.
+     */
+    public int getRouteCount() {
+        return routeCount;
+    }
+
+    private static boolean isLiteral(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c == '*' || c == '?' || c == '{' || c == '}') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Node {
+
+        final Map<String, Node> children = new HashMap<>();
+        final List<Integer> registered = new ArrayList<>();
+        Route[] candidates;
+
+        /**
+         * Computes the candidates of this node and its descendants from the positions
+         * registered along the path from the root.
+         */
+        void seal(List<Route> routes, TreeSet<Integer> inherited) {
+            TreeSet<Integer> positions = new TreeSet<>(inherited);
+            positions.addAll(registered);
+            candidates = new Route[positions.size()];
+            int i = 0;
+            for (int position : positions) {
+                candidates[i++] = routes.get(position);
+            }
+            for (Node child : children.values()) {
+                child.seal(routes, positions);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package cm.amcloud.platform.gateway.route;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+import org.springframework.web.server.ServerWebExchange;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import reactor.core.publisher.Mono;
+
+/**
+ * IndexedRoutePredicateHandlerMapping: A RoutePredicateHandlerMapping that looks routes up
+ * through a {@link CompiledRouteTable} instead of evaluating every route predicate in turn.
+ * The table is recompiled whenever the route cache has been refreshed (at startup and on
+ * every route refresh); until the first compilation, lookups fall back to the linear scan.
+ * The time to match a request to its route is recorded in `gateway.route.match`.
+ */
+public class IndexedRoutePredicateHandlerMapping extends RoutePredicateHandlerMapping
+        implements ApplicationListener<RefreshRoutesResultEvent>, MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexedRoutePredicateHandlerMapping.class);
+
+    private final RouteLocator routeLocator;
+    private final RouteDefinitionLocator routeDefinitionLocator;
+
+    private volatile CompiledRouteTable routeTable;
+    private volatile Timer matchTimer;
+
+    public IndexedRoutePredicateHandlerMapping(FilteringWebHandler webHandler, RouteLocator routeLocator,
+            RouteDefinitionLocator routeDefinitionLocator, GlobalCorsProperties globalCorsProperties,
+            Environment environment) {
+        super(webHandler, routeLocator, globalCorsProperties, environment);
+        this.routeLocator = routeLocator;
+        this.routeDefinitionLocator = routeDefinitionLocator;
+    }
+
+    /**
+     * Recompiles the route table once the route cache holds the refreshed routes.
+     */
+    @Override
+    public void onApplicationEvent(RefreshRoutesResultEvent event) {
+        if (event.isSuccess()) {
+            compile();
+        }
+    }
+
+    /**
+     * Compiles the current routes and their Path patterns into a new route table.
+     */
+    void compile() {
+        Mono.zip(routeLocator.getRoutes().collectList(),
+                routeDefinitionLocator.getRouteDefinitions()
+                        .collectMap(RouteDefinition::getId, CompiledRouteTable::pathPatterns))
+                .subscribe(routesAndPatterns -> {
+                    List<Route> routes = routesAndPatterns.getT1();
+                    Map<String, List<String>> pathPatterns = routesAndPatterns.getT2();
+                    routeTable = CompiledRouteTable.compile(routes, pathPatterns);
+                    logger.info("Compiled route index for {} routes", routes.size());
+                }, error -> logger.warn("Failed to compile route index, keeping the previous one", error));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        matchTimer = Timer.builder("gateway.route.match")
+                .description("Time to find the route of a request, for requests matching a route")
+                .register(registry);
+    }
+
+    @Override
+    protected Mono<Route> lookupRoute(ServerWebExchange exchange) {
+        CompiledRouteTable table = routeTable;
+        if (table == null) {
+            return super.lookupRoute(exchange);
+        }
+        long start = System.nanoTime();
+        return table.firstMatch(exchange)
+                .map(route -> {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Route matched: {}", route.getId());
+                    }
+                    validateRoute(route, exchange);
+                    Timer timer = matchTimer;
+                    if (timer != null) {
+                        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                    return route;
+                });
+    }
+}
@@ -0,0 +1,137 @@
+package cm.amcloud.platform.gateway.security;
+
+import java.util.Locale;
+
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.InsufficientAuthenticationException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+import org.springframework.security.web.server.ServerAuthenticationEntryPoint;
+import org.springframework.security.web.server.authorization.ServerAccessDeniedHandler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * AuthenticationFailureMetrics: Counts rejected requests by reason in
+ * `gateway.security.auth.failures`, by decorating the resource server's authentication entry point
+ * (401) and access denied handler (403). The reason is derived from the exception only on the
+ * failure path; counters are registered up front.
+ */
+public class AuthenticationFailureMetrics implements MeterBinder {
+
+    public enum Reason {
+        /** No bearer token on a secured path. */
+        MISSING_TOKEN,
+        /** The bearer token or Authorization header could not be parsed. */
+        MALFORMED,
+        EXPIRED,
+        INVALID_SIGNATURE,
+        /** Signed with a key the gateway does not know. */
+        UNKNOWN_KEY,
+        /** A valid token whose id or subject has been revoked. */
+        REVOKED,
+        /** Issuer, audience, not-before or other claim validation failed. */
+        INVALID_CLAIMS,
+        /** The token could not be verified, e.g. because the JWK set was unavailable. */
+        VERIFICATION_ERROR,
+        /** Authenticated, but lacking the required role or scope. */
+        ACCESS_DENIED,
+        OTHER
+    }
+
+    private volatile Counter[] counters;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Counter[] registered = new Counter[Reason.values().length];
+        for (Reason reason : Reason.values()) {
+            registered[reason.ordinal()] = Counter.builder("gateway.security.auth.failures")
+                    .description("Requests rejected by authentication or authorization, by reason")
+                    .tag("reason", reason.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        counters = registered;
+    }
+
+    /**
+     * @param delegate The entry point answering the request.
+     * @return An entry point counting the failure before delegating.
+     */
+    public ServerAuthenticationEntryPoint entryPoint(ServerAuthenticationEntryPoint delegate) {
+        return (exchange, e) -> {
+            increment(classify(e));
+            return delegate.commence(exchange, e);
+        };
+    }
+
+    /**
+     * @param delegate The handler answering the request.
+     * @return An access denied handler counting the failure before delegating.
+     */
+    public ServerAccessDeniedHandler accessDeniedHandler(ServerAccessDeniedHandler delegate) {
+        return (exchange, denied) -> {
+            increment(Reason.ACCESS_DENIED);
+            return delegate.handle(exchange, denied);
+        };
+    }
+
+    /**
+     * @param reason The failure reason.
+     * @return The number of failures counted for the reason.
+     */
+    public double count(Reason reason) {
+        Counter[] registered = counters;
+        return registered == null ? 0 : registered[reason.ordinal()].count();
+    }
+
+    static Reason classify(AuthenticationException e) {
+        if (e instanceof AuthenticationCredentialsNotFoundException || e instanceof InsufficientAuthenticationException) {
+            return Reason.MISSING_TOKEN;
+        }
+        if (e instanceof AuthenticationServiceException) {
+            return Reason.VERIFICATION_ERROR;
+        }
+        if (e.getCause() instanceof JwtValidationException validation) {
+            for (OAuth2Error error : validation.getErrors()) {
+                String description = error.getDescription();
+                if (description != null && description.contains("expired")) {
+                    return Reason.EXPIRED;
+                }
+            }
+            return Reason.INVALID_CLAIMS;
+        }
+        if (e.getCause() instanceof RevocationCheckingReactiveJwtDecoder.RevokedJwtException) {
+            return Reason.REVOKED;
+        }
+        if (e.getCause() instanceof BadJwtException bad) {
+            // The decoder wraps Nimbus' processing exception, whose message names the failed check
+            for (Throwable cause = bad; cause != null; cause = cause.getCause()) {
+                String message = String.valueOf(cause.getMessage());
+                if (message.contains("Invalid signature")) {
+                    return Reason.INVALID_SIGNATURE;
+                }
+                if (message.contains("no matching key")) {
+                    return Reason.UNKNOWN_KEY;
+                }
+            }
+            return Reason.MALFORMED;
+        }
+        if (e instanceof OAuth2AuthenticationException) {
+            return Reason.MALFORMED;
+        }
+        return Reason.OTHER;
+    }
+
+    private void increment(Reason reason) {
+        Counter[] registered = counters;
+        if (registered != null) {
+            registered[reason.ordinal()].increment();
+        }
+    }
+}
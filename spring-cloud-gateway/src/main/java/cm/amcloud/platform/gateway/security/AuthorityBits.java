@@ -0,0 +1,37 @@
+package cm.amcloud.platform.gateway.security;
+
+/**
+ * AuthorityBits: The authorities of a token as a bitset over the authorities referenced by the
+ * rules of an {@link AuthorizationTable}, one bit per authority. Authorities no rule refers to
+ * have no bit. It is computed once per verified token and kept in its {@link IdentityProjection},
+ * so checking a rule is a bit test instead of a scan of the authority collection.
+ */
+public final class AuthorityBits {
+
+    private final AuthorizationTable table;
+    private final long[] words;
+
+    AuthorityBits(AuthorizationTable table, long[] words) {
+        this.table = table;
+        this.words = words;
+    }
+
+    /**
+     * @return Whether the bits were computed by this table, and follow its numbering of the authorities.
+     */
+    boolean isFor(AuthorizationTable table) {
+        return this.table == table;
+    }
+
+    /**
+     * @return Whether the token holds at least one of the authorities of the mask.
+     */
+    boolean intersects(long[] mask) {
+        for (int i = 0; i < mask.length; i++) {
+            if ((words[i] & mask[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,286 @@
+package cm.amcloud.platform.gateway.security;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.ReactiveAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.web.server.authorization.AuthorizationContext;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import cm.amcloud.platform.gateway.config.AuthorizationProperties;
+import cm.amcloud.platform.gateway.config.AuthorizationProperties.Access;
+import reactor.core.publisher.Mono;
+
+/**
+ * AuthorizationTable: The access rules of the gateway compiled into a decision table, used as the
+ * authorization manager of every exchange.
+ * <p>
+ * Path patterns are indexed in a trie of path segments by their literal prefix, the way
+ * {@link cm.amcloud.platform.gateway.route.CompiledRouteTable} indexes routes: each node holds the
+ * precomputed, order-preserving array of the patterns that can match below it, so finding the
+ * rule of a request is a walk down its path followed by the evaluation of a few parsed patterns.
+ * The first matching rule decides, as with `pathMatchers(...)`, and requests matching no rule get
+ * the default access.
+ * <p>
+ * Every authority referenced by a rule is numbered, and rules requiring authorities keep them as a
+ * bit mask. The authorities of a token are turned into an {@link AuthorityBits} once per verified
+ * token (see {@link JwtIdentityConverter}), so a decision is a bit test, whatever the number of
+ * rules and authorities.
+ */
+public final class AuthorizationTable implements ReactiveAuthorizationManager<AuthorizationContext> {
+
+    private static final Mono<AuthorizationDecision> GRANTED = Mono.just(new AuthorizationDecision(true));
+    private static final Mono<AuthorizationDecision> DENIED = Mono.just(new AuthorizationDecision(false));
+
+    private final Node root = new Node();
+    private final Map<String, Integer> authorityIndex;
+    private final int words;
+    private final Rule defaultRule;
+    private final int ruleCount;
+
+    private AuthorizationTable(Map<String, Integer> authorityIndex, Access defaultAccess, int ruleCount) {
+        this.authorityIndex = authorityIndex;
+        this.words = Math.max(1, (authorityIndex.size() + 63) / 64);
+        this.defaultRule = new Rule(-1, Set.of(), defaultAccess, null);
+        this.ruleCount = ruleCount;
+    }
+
+    /**
+     * Compiles the rules, in their evaluation order, into a decision table. Scope authorities are
+     * matched regardless of the case of the scope, as tokens are granted them upper-cased (see
+     * {@link IdentityProjection#fromJwt}): `SCOPE_read` in a rule matches the `read` scope.
+     *
+     * @param rules         The access rules; the first matching rule decides.
+     * @param defaultAccess The access of the requests matching no rule.
+     * @return The compiled table.
+     * @throws IllegalArgumentException If a rule has no path, or both an access and authorities.
+     */
+    public static AuthorizationTable compile(List<AuthorizationProperties.Rule> rules, Access defaultAccess) {
+        Map<String, Integer> authorityIndex = new LinkedHashMap<>();
+        for (AuthorizationProperties.Rule rule : rules) {
+            for (String authority : rule.getAuthorities()) {
+                authorityIndex.putIfAbsent(normalize(authority), authorityIndex.size());
+            }
+        }
+        AuthorizationTable table = new AuthorizationTable(authorityIndex, defaultAccess, rules.size());
+
+        PathPatternParser parser = PathPatternParser.defaultInstance;
+        for (int position = 0; position < rules.size(); position++) {
+            AuthorizationProperties.Rule definition = rules.get(position);
+            if (definition.getPaths().isEmpty()) {
+                throw new IllegalArgumentException("Authorization rule " + position + " has no path");
+            }
+            Rule rule = table.compileRule(position, definition);
+            for (String path : definition.getPaths()) {
+                Entry entry = new Entry(rule, parser.parse(path));
+                Node node = table.root;
+                for (String segment : path.split("/")) {
+                    if (segment.isEmpty()) {
+                        continue;
+                    }
+                    if (!isLiteral(segment)) {
+                        break;
+                    }
+                    node = node.children.computeIfAbsent(segment, key -> new Node());
+                }
+                node.registered.add(entry);
+            }
+        }
+        table.root.seal(List.of());
+        return table;
+    }
+
+    private Rule compileRule(int position, AuthorizationProperties.Rule definition) {
+        List<String> authorities = definition.getAuthorities();
+        if (definition.getAccess() != null && !authorities.isEmpty()) {
+            throw new IllegalArgumentException("Authorization rule " + position + " "
+                    + definition.getPaths() + " has both an access and authorities");
+        }
+        Set<HttpMethod> methods = Set.copyOf(definition.getMethods());
+        if (authorities.isEmpty()) {
+            Access access = definition.getAccess() == null ? Access.AUTHENTICATED : definition.getAccess();
+            return new Rule(position, methods, access, null);
+        }
+        long[] mask = new long[words];
+        for (String authority : authorities) {
+            int bit = authorityIndex.get(normalize(authority));
+            mask[bit >>> 6] |= 1L << bit;
+        }
+        return new Rule(position, methods, null, mask);
+    }
+
+    @Override
+    public Mono<AuthorizationDecision> check(Mono<Authentication> authentication, AuthorizationContext context) {
+        ServerHttpRequest request = context.getExchange().getRequest();
+        Rule rule = ruleFor(request.getMethod(), request.getPath().pathWithinApplication());
+        if (rule.mask == null) {
+            switch (rule.access) {
+                case PERMIT_ALL:
+                    return GRANTED;
+                case DENY_ALL:
+                    return DENIED;
+                default:
+                    return authentication
+                            .flatMap(candidate -> isAuthenticated(candidate) ? GRANTED : DENIED)
+                            .switchIfEmpty(DENIED);
+            }
+        }
+        return authentication
+                .flatMap(candidate -> isAuthenticated(candidate) && authorityBits(candidate).intersects(rule.mask)
+                        ? GRANTED : DENIED)
+                .switchIfEmpty(DENIED);
+    }
+
+    /**
+     * Returns the position of the rule deciding a request.
+     *
+     * @param method The request method.
+     * @param path   The path within the application.
+     * @return The position of the first matching rule, or -1 if the default access applies.
+     */
+    public int rulePosition(HttpMethod method, PathContainer path) {
+        return ruleFor(method, path).position;
+    }
+
+    private Rule ruleFor(HttpMethod method, PathContainer path) {
+        Node node = root;
+        for (PathContainer.Element element : path.elements()) {
+            if (element instanceof PathContainer.PathSegment segment) {
+                String value = segment.valueToMatch();
+                if (value.isEmpty()) {
+                    continue;
+                }
+                Node child = node.children.get(value);
+                if (child == null) {
+                    break;
+                }
+                node = child;
+            }
+        }
+        for (Entry entry : node.candidates) {
+            Rule rule = entry.rule;
+            if ((rule.methods.isEmpty() || rule.methods.contains(method)) && entry.pattern.matches(path)) {
+                return rule;
+            }
+        }
+        return defaultRule;
+    }
+
+    /**
+     * Computes the bitset of the authorities referenced by this table's rules.
+     *
+     * @param authorities The granted authorities of a token.
+     * @return The bitset of the authorities, to be kept with the token.
+     */
+    public AuthorityBits authorityBits(Collection<? extends GrantedAuthority> authorities) {
+        long[] bits = new long[words];
+        for (GrantedAuthority authority : authorities) {
+            Integer bit = authorityIndex.get(normalize(authority.getAuthority()));
+            if (bit != null) {
+                bits[bit >>> 6] |= 1L << bit;
+            }
+        }
+        return new AuthorityBits(this, bits);
+    }
+
+    // Tokens converted by JwtIdentityConverter carry their bits, others are converted on each check
+    private AuthorityBits authorityBits(Authentication authentication) {
+        if (authentication instanceof IdentityAuthenticationToken token) {
+            AuthorityBits bits = token.getIdentity().getAuthorityBits();
+            if (bits != null && bits.isFor(this)) {
+                return bits;
+            }
+        }
+        return authorityBits(authentication.getAuthorities());
+    }
+
+    // Upper-cases the scope of a SCOPE_ authority; returns other authorities, and upper-case scopes, as is
+    static String normalize(String authority) {
+        if (authority == null || !authority.startsWith(IdentityProjection.SCOPE_PREFIX)) {
+            return authority;
+        }
+        for (int i = IdentityProjection.SCOPE_PREFIX.length(); i < authority.length(); i++) {
+            if (Character.isLowerCase(authority.charAt(i))) {
+                return IdentityProjection.SCOPE_PREFIX
+                        + authority.substring(IdentityProjection.SCOPE_PREFIX.length()).toUpperCase(Locale.ROOT);
+            }
+        }
+        return authority;
+    }
+
+    private static boolean isAuthenticated(Authentication authentication) {
+        return authentication.isAuthenticated() && !(authentication instanceof AnonymousAuthenticationToken);
+    }
+
+    /**
+     * @return The number of compiled rules.
+     */
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    /**
+     * @return The number of distinct authorities referenced by the rules.
+     */
+    public int getAuthorityCount() {
+        return authorityIndex.size();
+    }
+
+    private static boolean isLiteral(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c == '*' || c == '?' || c == '{' || c == '}') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A compiled rule: either an access, or the mask of the authorities it requires.
+     */
+    private record Rule(int position, Set<HttpMethod> methods, Access access, long[] mask) {
+    }
+
+    /**
+     * One path pattern of a rule.
+     */
+    private record Entry(Rule rule, PathPattern pattern) {
+    }
+
+    private static final class Node {
+
+        final Map<String, Node> children = new HashMap<>();
+        final List<Entry> registered = new ArrayList<>();
+        Entry[] candidates;
+
+        /**
+         * Computes the candidates of this node and its descendants, in rule order, from the
+         * entries registered along the path from the root.
+         */
+        void seal(List<Entry> inherited) {
+            List<Entry> entries = new ArrayList<>(inherited);
+            entries.addAll(registered);
+            // Stable: the patterns of one rule keep their order
+            entries.sort((a, b) -> Integer.compare(a.rule.position, b.rule.position));
+            candidates = entries.toArray(Entry[]::new);
+            for (Node child : children.values()) {
+                child.seal(entries);
+            }
+        }
+    }
+}
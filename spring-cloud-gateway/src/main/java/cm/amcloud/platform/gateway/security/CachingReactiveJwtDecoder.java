@@ -0,0 +1,140 @@
+package cm.amcloud.platform.gateway.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+/**
+ * CachingReactiveJwtDecoder: A ReactiveJwtDecoder decorator that keeps already-validated
+ * {@link Jwt} objects in a bounded, expiry-aware cache keyed by a SHA-256 hash of the raw token.
+ * Clients that send the same bearer token repeatedly only pay for parsing and signature
+ * verification once; later requests are served from memory until the token's `exp` is reached
+ * or the entry is evicted to respect the size bound.
+ */
+public class CachingReactiveJwtDecoder implements ReactiveJwtDecoder, MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingReactiveJwtDecoder.class);
+
+    private final ReactiveJwtDecoder delegate;
+    private final Cache<String, Jwt> cache;
+
+    /**
+     * Creates a caching decoder in front of the given delegate.
+     *
+     * @param delegate    The decoder that performs the actual parsing and validation.
+     * @param maximumSize The maximum number of validated tokens kept in memory.
+     * @param maximumTtl  Upper bound on how long a token is cached, also used for tokens without `exp`.
+     */
+    public CachingReactiveJwtDecoder(ReactiveJwtDecoder delegate, long maximumSize, Duration maximumTtl) {
+        this(delegate, maximumSize, maximumTtl, Clock.systemUTC(), Ticker.systemTicker());
+    }
+
+    CachingReactiveJwtDecoder(ReactiveJwtDecoder delegate, long maximumSize, Duration maximumTtl,
+            Clock clock, Ticker ticker) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new TokenExpiry(maximumTtl, clock))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached Jwt for this token if present, otherwise delegates the decoding
+     * and caches the result. Failed decodes are never cached, so an invalid token is
+     * re-validated (and rejected) on every attempt.
+     *
+     * @param token The raw bearer token.
+     * @return A Mono emitting the validated Jwt.
+     */
+    @Override
+    public Mono<Jwt> decode(String token) {
+        String key = hash(token);
+        Jwt cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return delegate.decode(token)
+                .doOnNext(jwt -> cache.put(key, jwt));
+    }
+
+    /**
+     * Exposes hit, miss, eviction and size metrics for the cache under `gateway.jwt.cache`.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "gateway.jwt.cache");
+    }
+
+    Cache<String, Jwt> getCache() {
+        return cache;
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is mandatory on every Java platform
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Expires each entry at the token's own `exp` claim, capped by the configured maximum TTL.
+     */
+    private static final class TokenExpiry implements Expiry<String, Jwt> {
+
+        private final long maximumTtlNanos;
+        private final Clock clock;
+
+        TokenExpiry(Duration maximumTtl, Clock clock) {
+            this.maximumTtlNanos = maximumTtl.toNanos();
+            this.clock = clock;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            Instant expiresAt = jwt.getExpiresAt();
+            if (expiresAt == null) {
+                return maximumTtlNanos;
+            }
+            long remaining = Duration.between(clock.instant(), expiresAt).toNanos();
+            if (remaining <= 0) {
+                logger.debug("Not caching JWT for subject {}: already expired", jwt.getSubject());
+                return 0;
+            }
+            return Math.min(remaining, maximumTtlNanos);
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
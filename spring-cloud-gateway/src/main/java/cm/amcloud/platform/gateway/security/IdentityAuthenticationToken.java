@@ -0,0 +1,29 @@
+package cm.amcloud.platform.gateway.security;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+/**
+ * IdentityAuthenticationToken: A JwtAuthenticationToken that carries the
+ * {@link IdentityProjection} it was built from, so that filters running after
+ * authentication can reuse the pre-rendered identity instead of re-deriving it
+ * from the authority collection.
+ */
+public class IdentityAuthenticationToken extends JwtAuthenticationToken {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient IdentityProjection identity;
+
+    public IdentityAuthenticationToken(Jwt jwt, IdentityProjection identity) {
+        super(jwt, identity.getAuthorities());
+        this.identity = identity;
+    }
+
+    /**
+     * @return The identity projection of the authenticated token.
+     */
+    public IdentityProjection getIdentity() {
+        return identity;
+    }
+}
@@ -0,0 +1,162 @@
+package cm.amcloud.platform.gateway.security;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+/**
+ * IdentityProjection: An immutable view of a verified token's identity, holding the
+ * granted authorities together with the pre-rendered values of the `X-User-*` headers
+ * forwarded to downstream services. It is computed once per verified token and reused
+ * for every request that presents the same token, so the forward filter only has to
+ * copy ready-made strings onto the outgoing request, and authorization only has to test
+ * the token's {@link AuthorityBits}.
+ */
+public final class IdentityProjection {
+
+    public static final String ROLE_PREFIX = "ROLE_";
+    public static final String SCOPE_PREFIX = "SCOPE_";
+
+    private final String userId;
+    private final List<GrantedAuthority> authorities;
+    private final String rolesHeader;
+    private final String scopesHeader;
+    private final AuthorityBits authorityBits;
+
+    private IdentityProjection(String userId, List<GrantedAuthority> authorities,
+            String rolesHeader, String scopesHeader, AuthorityBits authorityBits) {
+        this.userId = userId;
+        this.authorities = authorities;
+        this.rolesHeader = rolesHeader;
+        this.scopesHeader = scopesHeader;
+        this.authorityBits = authorityBits;
+    }
+
+    /**
+     * Builds the projection from the claims of a verified JWT.
+     * The `roles` claim is mapped as-is to authorities (e.g. "ROLE_ADMIN"), while the
+     * `scope` (space-separated string) or `scopes` (list) claim is mapped to "SCOPE_" authorities.
+     *
+     * @param jwt The verified JWT.
+     * @return The identity projection for this token.
+     */
+    public static IdentityProjection fromJwt(Jwt jwt) {
+        List<GrantedAuthority> authorities = new ArrayList<>();
+
+        // Extract roles from the "roles" claim (e.g., "ROLE_ADMIN", "ROLE_USER")
+        // JwtService already adds "ROLE_" prefix. Spring Security expects it as is.
+        List<String> roles = jwt.getClaimAsStringList("roles");
+        if (roles != null) {
+            for (String role : roles) {
+                authorities.add(new SimpleGrantedAuthority(role));
+            }
+        }
+
+        // Extract scopes from the "scope" claim (space-separated string) or "scopes" (list of strings).
+        // JwtService provides "read", "write" (no SCOPE_ prefix).
+        // Spring Security expects "SCOPE_read", "SCOPE_write".
+        String scopeString = jwt.getClaimAsString("scope"); // Try to get as single string
+        if (scopeString != null) {
+            for (String scope : scopeString.split(" ")) {
+                authorities.add(new SimpleGrantedAuthority(SCOPE_PREFIX + scope.toUpperCase()));
+            }
+        } else {
+            List<String> scopesList = jwt.getClaimAsStringList("scopes"); // Try to get as list
+            if (scopesList != null) {
+                for (String scope : scopesList) {
+                    authorities.add(new SimpleGrantedAuthority(SCOPE_PREFIX + scope.toUpperCase()));
+                }
+            }
+        }
+
+        return fromAuthorities(jwt.getSubject(), authorities);
+    }
+
+    /**
+     * Builds the projection from an already extracted authority collection.
+     * Roles keep their "ROLE_" prefix in `X-User-Roles`, whereas scopes are sent
+     * without the "SCOPE_" prefix in `X-User-Scopes`.
+     *
+     * @param userId      The subject of the token, may be null.
+     * @param authorities The granted authorities.
+     * @return The identity projection for these authorities.
+     */
+    public static IdentityProjection fromAuthorities(String userId, Collection<? extends GrantedAuthority> authorities) {
+        StringBuilder roles = new StringBuilder();
+        StringBuilder scopes = new StringBuilder();
+        for (GrantedAuthority grantedAuthority : authorities) {
+            String authority = grantedAuthority.getAuthority();
+            if (authority.startsWith(ROLE_PREFIX)) {
+                appendValue(roles, authority);
+            } else if (authority.startsWith(SCOPE_PREFIX)) {
+                appendValue(scopes, authority.substring(SCOPE_PREFIX.length()));
+            }
+        }
+        return new IdentityProjection(userId, Collections.unmodifiableList(new ArrayList<>(authorities)),
+                roles.isEmpty() ? null : roles.toString(),
+                scopes.isEmpty() ? null : scopes.toString(), null);
+    }
+
+    /**
+     * Returns this projection with the authorities numbered by an {@link AuthorizationTable}.
+     *
+     * @param table The authorization table deciding the requests of the token.
+     * @return A projection holding the authority bits of the table.
+     */
+    public IdentityProjection withAuthorityBits(AuthorizationTable table) {
+        return new IdentityProjection(userId, authorities, rolesHeader, scopesHeader,
+                table.authorityBits(authorities));
+    }
+
+    private static void appendValue(StringBuilder header, String value) {
+        if (!header.isEmpty()) {
+            header.append(',');
+        }
+        header.append(value);
+    }
+
+    /**
+     * @return The subject of the token, forwarded as `X-User-ID`, or null if absent.
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * @return The unmodifiable list of granted authorities.
+     */
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    /**
+     * @return The comma-separated roles forwarded as `X-User-Roles`, or null if there are none.
+     */
+    public String getRolesHeader() {
+        return rolesHeader;
+    }
+
+    /**
+     * @return The comma-separated scopes forwarded as `X-User-Scopes`, or null if there are none.
+     */
+    public String getScopesHeader() {
+        return scopesHeader;
+    }
+
+    /**
+     * @return The authorities as a bitset of an {@link AuthorizationTable}, or null if not computed.
+     */
+    public AuthorityBits getAuthorityBits() {
+        return authorityBits;
+    }
+
+    @Override
+    public String toString() {
+        return "IdentityProjection[userId=" + userId + ", authorities=" + authorities + "]";
+    }
+}
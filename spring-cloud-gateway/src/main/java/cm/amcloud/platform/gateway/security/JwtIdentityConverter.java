@@ -0,0 +1,95 @@
+package cm.amcloud.platform.gateway.security;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import reactor.core.publisher.Mono;
+
+/**
+ * JwtIdentityConverter: Converts a verified {@link Jwt} into an {@link IdentityAuthenticationToken}.
+ * The {@link IdentityProjection} of each Jwt instance is memoized, so when the decoder hands back
+ * the same cached Jwt for a repeat token (see {@link CachingReactiveJwtDecoder}) the authorities
+ * and forwarded header values are not derived again.
+ * Entries are keyed by Jwt identity and weakly referenced, so they disappear together with the
+ * Jwt once the decoder cache lets go of it.
+ * With an {@link AuthorizationTable}, the projection also holds the token's {@link AuthorityBits},
+ * so they are computed once per token as well.
+ * <p>
+ * Conversion time is recorded in `gateway.security.authority.conversion`.
+ */
+public class JwtIdentityConverter implements Converter<Jwt, Mono<AbstractAuthenticationToken>>, MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtIdentityConverter.class);
+
+    private final Cache<Jwt, IdentityProjection> projections;
+    private final AuthorizationTable authorizationTable;
+    private volatile Timer conversionTimer;
+
+    /**
+     * @param maximumSize The maximum number of memoized projections.
+     */
+    public JwtIdentityConverter(long maximumSize) {
+        this(maximumSize, null);
+    }
+
+    /**
+     * @param maximumSize        The maximum number of memoized projections.
+     * @param authorizationTable The table numbering the authorities of the projections, may be null.
+     */
+    public JwtIdentityConverter(long maximumSize, AuthorizationTable authorizationTable) {
+        this.projections = Caffeine.newBuilder()
+                .weakKeys()
+                .maximumSize(maximumSize)
+                .build();
+        this.authorizationTable = authorizationTable;
+    }
+
+    @Override
+    public Mono<AbstractAuthenticationToken> convert(Jwt jwt) {
+        long start = System.nanoTime();
+        IdentityAuthenticationToken authentication = new IdentityAuthenticationToken(jwt, project(jwt));
+        Timer timer = conversionTimer;
+        if (timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return Mono.just(authentication);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        conversionTimer = Timer.builder("gateway.security.authority.conversion")
+                .description("Time to convert a verified JWT into the gateway authentication")
+                .register(registry);
+    }
+
+    /**
+     * Returns the memoized projection for this Jwt instance, computing it on first use.
+     *
+     * @param jwt The verified JWT.
+     * @return The identity projection of the token.
+     */
+    public IdentityProjection project(Jwt jwt) {
+        IdentityProjection identity = projections.getIfPresent(jwt);
+        if (identity == null) {
+            identity = IdentityProjection.fromJwt(jwt);
+            if (authorizationTable != null) {
+                identity = identity.withAuthorityBits(authorizationTable);
+            }
+            projections.put(jwt, identity);
+            // Log the extracted authorities for debugging purposes
+            logger.debug("Extracted authorities for JWT: {}", identity.getAuthorities());
+        }
+        return identity;
+    }
+}
@@ -0,0 +1,194 @@
+package cm.amcloud.platform.gateway.security;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import cm.amcloud.platform.gateway.config.JwtProperties;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * RefreshingJwkSetSource: Keeps the JWK set used to verify JWT signatures in memory, so that
+ * verification never waits on a network round-trip and startup does not depend on IAM being up.
+ * <ul>
+ *   <li>Keys from an optional local JWK Set document are pinned and always trusted.</li>
+ *   <li>Keys from the JWK Set URI are refreshed on a background schedule with random jitter.</li>
+ *   <li>A token with an unknown `kid` triggers at most one on-demand refresh per minimum refresh interval;
+ *       concurrent requests share the same in-flight fetch (single-flight) instead of each fetching.</li>
+ *   <li>A failed fetch keeps the last known keys.</li>
+ * </ul>
+ */
+public class RefreshingJwkSetSource implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshingJwkSetSource.class);
+
+    private final URL jwkSetUrl;
+    private final List<JWK> pinnedKeys;
+    private final JwtProperties.Jwks settings;
+    private final ScheduledExecutorService executor;
+
+    private final AtomicReference<JWKSet> keys;
+    private final AtomicReference<CompletableFuture<JWKSet>> inFlight = new AtomicReference<>();
+    private final AtomicLong nextOnDemandRefresh = new AtomicLong(System.nanoTime());
+    private final AtomicLong fetchCount = new AtomicLong();
+
+    /**
+     * @param jwkSetUrl  The JWK Set URI to refresh from, or null to rely on pinned keys only.
+     * @param pinnedKeys Keys that are always trusted, or null.
+     * @param settings   Refresh schedule, rate limit and fetch settings.
+     */
+    public RefreshingJwkSetSource(URL jwkSetUrl, JWKSet pinnedKeys, JwtProperties.Jwks settings) {
+        this.jwkSetUrl = jwkSetUrl;
+        this.pinnedKeys = pinnedKeys != null ? List.copyOf(pinnedKeys.getKeys()) : List.of();
+        this.settings = settings;
+        this.keys = new AtomicReference<>(new JWKSet(this.pinnedKeys));
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jwks-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the background refresh. The first fetch runs immediately but asynchronously,
+     * so the caller never blocks on the JWK Set URI.
+     */
+    public void start() {
+        if (jwkSetUrl == null) {
+            logger.info("No JWK Set URI configured, verifying with {} pinned key(s) only", pinnedKeys.size());
+            return;
+        }
+        logger.info("Refreshing JWK set from {} every {} (+/- {})", jwkSetUrl,
+                settings.getRefreshInterval(), settings.getRefreshJitter());
+        // Registers the first fetch as in flight right away, so early requests join it
+        scheduledRefresh();
+    }
+
+    /**
+     * Selects the keys matching the header of the given JWT, for use with
+     * {@code NimbusReactiveJwtDecoder.withJwkSource}. When no key matches, one rate-limited
+     * refresh is attempted (or an in-flight one is joined) before giving up.
+     *
+     * @param jwt The parsed, not yet verified, JWT.
+     * @return The candidate verification keys.
+     */
+    public Flux<JWK> select(SignedJWT jwt) {
+        JWKMatcher matcher = JWKMatcher.forJWSHeader(jwt.getHeader());
+        if (matcher == null) {
+            return Flux.empty();
+        }
+        JWKSelector selector = new JWKSelector(matcher);
+        List<JWK> found = selector.select(keys.get());
+        if (!found.isEmpty() || jwkSetUrl == null) {
+            return Flux.fromIterable(found);
+        }
+
+        CompletableFuture<JWKSet> pending = inFlight.get();
+        if (pending == null) {
+            if (!tryAcquireOnDemandRefresh()) {
+                logger.debug("Unknown key id {}, on-demand refresh is rate limited", jwt.getHeader().getKeyID());
+                // A refresh may have completed since the keys were first read
+                return Flux.fromIterable(selector.select(keys.get()));
+            }
+            logger.info("Unknown key id {}, refreshing JWK set", jwt.getHeader().getKeyID());
+            pending = refresh();
+        }
+        return Mono.fromFuture(pending)
+                .onErrorResume(e -> Mono.fromSupplier(keys::get))
+                .flatMapIterable(selector::select);
+    }
+
+    /**
+     * Fetches the JWK set, or joins the fetch that is already in flight.
+     *
+     * @return A future completed with the new key set, or exceptionally if the fetch failed.
+     */
+    CompletableFuture<JWKSet> refresh() {
+        CompletableFuture<JWKSet> created = new CompletableFuture<>();
+        CompletableFuture<JWKSet> existing = inFlight.compareAndExchange(null, created);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> fetch(created));
+        } catch (RejectedExecutionException e) {
+            // The source has been closed
+            inFlight.set(null);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    private void fetch(CompletableFuture<JWKSet> result) {
+        try {
+            JWKSet fetched = JWKSet.load(jwkSetUrl, (int) settings.getConnectTimeout().toMillis(),
+                    (int) settings.getReadTimeout().toMillis(), settings.getSizeLimit());
+            fetchCount.incrementAndGet();
+            List<JWK> merged = new ArrayList<>(pinnedKeys);
+            merged.addAll(fetched.getKeys());
+            JWKSet refreshed = new JWKSet(merged);
+            keys.set(refreshed);
+            logger.debug("Refreshed JWK set from {}: {} key(s)", jwkSetUrl, fetched.getKeys().size());
+            inFlight.set(null);
+            result.complete(refreshed);
+        } catch (Exception e) {
+            logger.warn("Failed to refresh JWK set from {}, keeping last known keys: {}", jwkSetUrl, e.getMessage());
+            inFlight.set(null);
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @return The number of successful fetches from the JWK Set URI.
+     */
+    public long getFetchCount() {
+        return fetchCount.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void scheduledRefresh() {
+        refresh().whenComplete((refreshed, error) -> {
+            try {
+                executor.schedule(this::scheduledRefresh, nextRefreshDelayMillis(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                logger.debug("JWK set source closed, stopping scheduled refresh");
+            }
+        });
+    }
+
+    private long nextRefreshDelayMillis() {
+        long interval = settings.getRefreshInterval().toMillis();
+        long jitter = settings.getRefreshJitter().toMillis();
+        long delay = jitter > 0 ? interval + ThreadLocalRandom.current().nextLong(-jitter, jitter + 1) : interval;
+        return Math.max(delay, 1000);
+    }
+
+    private boolean tryAcquireOnDemandRefresh() {
+        long now = System.nanoTime();
+        long next = nextOnDemandRefresh.get();
+        return now - next >= 0
+                && nextOnDemandRefresh.compareAndSet(next, now + settings.getMinimumRefreshInterval().toNanos());
+    }
+}
@@ -0,0 +1,70 @@
+package cm.amcloud.platform.gateway.security;
+
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+import cm.amcloud.platform.gateway.revocation.RevocationList;
+import reactor.core.Fuseable;
+import reactor.core.publisher.Mono;
+
+/**
+ * RevocationCheckingReactiveJwtDecoder: A ReactiveJwtDecoder decorator that rejects tokens whose
+ * `jti`, or whose `sub` as of the token's `iat`, is in the {@link RevocationList}. It sits in
+ * front of the {@link CachingReactiveJwtDecoder}, so a token revoked after it was cached is
+ * rejected on its next use.
+ * <p>
+ * A result available at call time, such as a token served from the cache, is checked synchronously
+ * and returned as is, or as a scalar error, so that the {@link TimedReactiveJwtDecoder} in front
+ * keeps timing it without allocating.
+ */
+public class RevocationCheckingReactiveJwtDecoder implements ReactiveJwtDecoder {
+
+    private final ReactiveJwtDecoder delegate;
+    private final RevocationList revocationList;
+
+    public RevocationCheckingReactiveJwtDecoder(ReactiveJwtDecoder delegate, RevocationList revocationList) {
+        this.delegate = delegate;
+        this.revocationList = revocationList;
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) {
+        Mono<Jwt> decoded = delegate.decode(token);
+        if (decoded instanceof Fuseable.ScalarCallable<?> scalar) {
+            Object jwt;
+            try {
+                jwt = scalar.call();
+            } catch (Exception e) {
+                // Already failed: nothing to check
+                return decoded;
+            }
+            return jwt != null && isRevoked((Jwt) jwt) ? Mono.error(revoked()) : decoded;
+        }
+        return decoded.handle((jwt, sink) -> {
+            if (isRevoked(jwt)) {
+                sink.error(revoked());
+            } else {
+                sink.next(jwt);
+            }
+        });
+    }
+
+    private boolean isRevoked(Jwt jwt) {
+        return revocationList.isRevoked(jwt.getId(), jwt.getSubject(), jwt.getIssuedAt());
+    }
+
+    private static RevokedJwtException revoked() {
+        return new RevokedJwtException("The token has been revoked");
+    }
+
+    /**
+     * Rejection of a valid but revoked token; answered like any other invalid bearer token.
+     */
+    public static class RevokedJwtException extends BadJwtException {
+
+        public RevokedJwtException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package cm.amcloud.platform.gateway.security;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.Fuseable;
+import reactor.core.publisher.Mono;
+
+/**
+ * TimedReactiveJwtDecoder: A ReactiveJwtDecoder decorator recording how long decoding takes, in a
+ * timer tagged with the outcome (`success` or `failure`).
+ * <p>
+ * Results available at call time, such as tokens served from the {@link CachingReactiveJwtDecoder},
+ * are timed synchronously without allocating; only decodes that complete later (a signature
+ * verification or a JWK set fetch) attach completion callbacks.
+ */
+public class TimedReactiveJwtDecoder implements ReactiveJwtDecoder {
+
+    private final ReactiveJwtDecoder delegate;
+    private final Timer success;
+    private final Timer failure;
+
+    /**
+     * @param delegate    The decoder to time.
+     * @param registry    The registry of the timer.
+     * @param name        The timer name.
+     * @param description The timer description.
+     */
+    public TimedReactiveJwtDecoder(ReactiveJwtDecoder delegate, MeterRegistry registry, String name,
+            String description) {
+        this.delegate = delegate;
+        this.success = timer(registry, name, description, "success");
+        this.failure = timer(registry, name, description, "failure");
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) {
+        long start = System.nanoTime();
+        Mono<Jwt> decoded;
+        try {
+            decoded = delegate.decode(token);
+        } catch (JwtException e) {
+            failure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        if (decoded instanceof Fuseable.ScalarCallable<?> scalar) {
+            record(scalar, start);
+            return decoded;
+        }
+        return decoded
+                .doOnSuccess(jwt -> success.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                .doOnError(e -> failure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+
+    private void record(Fuseable.ScalarCallable<?> scalar, long start) {
+        boolean decoded;
+        try {
+            decoded = scalar.call() != null;
+        } catch (Exception e) {
+            decoded = false;
+        }
+        (decoded ? success : failure).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer timer(MeterRegistry registry, String name, String description, String outcome) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
@@ -0,0 +1,93 @@
+package cm.amcloud.platform.gateway.upstream;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * FileUpstreamDiscovery: Reads the instances of an upstream group from a local file, one URI per
+ * line, e.g. maintained by a sidecar or a deployment script. Blank lines are ignored and `#`
+ * starts a comment. The file is checked every refresh interval and read again when its
+ * modification time changes; a missing file or a file without a valid URI keeps the previous
+ * instances.
+ */
+public class FileUpstreamDiscovery implements UpstreamDiscovery {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileUpstreamDiscovery.class);
+
+    private final Path file;
+    private final Duration refreshInterval;
+
+    public FileUpstreamDiscovery(Path file, Duration refreshInterval) {
+        this.file = file;
+        this.refreshInterval = refreshInterval;
+    }
+
+    @Override
+    public Flux<List<URI>> instances() {
+        return Flux.defer(() -> {
+            // Per subscription: the modification time of the last read
+            FileTime[] lastModified = new FileTime[1];
+            return Flux.interval(Duration.ZERO, refreshInterval, Schedulers.boundedElastic())
+                    .onBackpressureDrop()
+                    .concatMap(tick -> Mono.fromCallable(() -> {
+                                FileTime modified = Files.getLastModifiedTime(file);
+                                if (modified.equals(lastModified[0])) {
+                                    return List.<URI>of();
+                                }
+                                lastModified[0] = modified;
+                                return read(file);
+                            })
+                            .onErrorResume(e -> {
+                                if (!(e instanceof NoSuchFileException)) {
+                                    logger.warn("Cannot read upstream discovery file {}: {}", file, e.toString());
+                                }
+                                return Mono.just(List.of());
+                            }))
+                    .filter(uris -> !uris.isEmpty())
+                    .distinctUntilChanged();
+        });
+    }
+
+    /**
+     * Reads the instance URIs of a discovery file, skipping the lines that are not an absolute
+     * URI with a host.
+     *
+     * @param file The discovery file.
+     * @return The instance URIs, in file order.
+     * @throws IOException If the file cannot be read.
+     */
+    static List<URI> read(Path file) throws IOException {
+        List<URI> uris = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            int comment = line.indexOf('#');
+            String value = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            try {
+                URI uri = URI.create(value);
+                if (uri.getScheme() == null || uri.getHost() == null) {
+                    throw new IllegalArgumentException("no scheme or host");
+                }
+                uris.add(uri);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Ignoring invalid instance '{}' in {}: {}", value, file, e.getMessage());
+            }
+        }
+        return uris;
+    }
+}
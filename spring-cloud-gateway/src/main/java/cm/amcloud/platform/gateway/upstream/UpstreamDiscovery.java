@@ -0,0 +1,20 @@
+package cm.amcloud.platform.gateway.upstream;
+
+import java.net.URI;
+import java.util.List;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * UpstreamDiscovery: The source of the instances of an upstream group. Each emitted list replaces
+ * the instances of the group; the static instances of the configuration and a
+ * {@link FileUpstreamDiscovery} are provided, and other sources can be plugged in through an
+ * {@link UpstreamDiscoveryFactory} bean.
+ */
+public interface UpstreamDiscovery {
+
+    /**
+     * @return The successive instance lists of the group, starting with the current one.
+     */
+    Flux<List<URI>> instances();
+}
@@ -0,0 +1,19 @@
+package cm.amcloud.platform.gateway.upstream;
+
+import cm.amcloud.platform.gateway.config.UpstreamProperties;
+
+/**
+ * UpstreamDiscoveryFactory: Creates the {@link UpstreamDiscovery} of each upstream group. A bean
+ * of this type replaces the default one, {@link UpstreamGroups#discovery}, to read the instances
+ * from another source.
+ */
+@FunctionalInterface
+public interface UpstreamDiscoveryFactory {
+
+    /**
+     * @param name     The group name.
+     * @param settings The group settings.
+     * @return The instance source of the group.
+     */
+    UpstreamDiscovery create(String name, UpstreamProperties.Group settings);
+}
@@ -0,0 +1,379 @@
+package cm.amcloud.platform.gateway.upstream;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import cm.amcloud.platform.gateway.config.UpstreamProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * UpstreamGroup: The instances of one upstream service, and the choice of the instance serving
+ * each request:
+ * <ul>
+ * <li>power of two choices: two instances are drawn at random and the cheaper one is used. The
+ * cost of an instance is its peak EWMA latency times its in-flight requests plus one, so a slow
+ * or busy replica quickly gets less traffic, without scanning the group. The latency estimate
+ * jumps to any slower sample and decays towards faster ones, and towards zero while the instance
+ * is idle, so a replica that recovered is tried again;</li>
+ * <li>passive outlier ejection: after `consecutive-failures` failures in a row, an instance is
+ * left out for `ejection-time` times its number of consecutive ejections (at most 10), as long
+ * as no more than `max-ejection-percent` of the group is ejected;</li>
+ * <li>slow start: an instance added to the group, or back from ejection, ramps up over
+ * `slow-start`, its cost divided by a weight growing from 0.1 to 1. The instances the group
+ * starts with are not ramped up.</li>
+ * </ul>
+ * The instance set is replaced as a whole by {@link #update}; instances keeping their URI keep
+ * their state. Per-instance gauges (`gateway.upstream.instance.*`) follow the instance set.
+ */
+public final class UpstreamGroup implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamGroup.class);
+
+    private static final double MIN_WEIGHT = 0.1;
+    private static final int MAX_EJECTION_MULTIPLIER = 10;
+
+    private final String name;
+    private final UpstreamProperties.Group settings;
+    private final LongSupplier ticker;
+    private final double latencyDecayNanos;
+    private final long slowStartNanos;
+    private final long ejectionNanos;
+    private volatile Instance[] instances = new Instance[0];
+    private boolean updated;
+    private MeterRegistry registry;
+
+    /**
+     * @param name     The group name, the host of the `lb://` URIs of its routes.
+     * @param settings The selection settings.
+     */
+    public UpstreamGroup(String name, UpstreamProperties.Group settings) {
+        this(name, settings, System::nanoTime);
+    }
+
+    UpstreamGroup(String name, UpstreamProperties.Group settings, LongSupplier ticker) {
+        this.name = name;
+        this.settings = settings;
+        this.ticker = ticker;
+        this.latencyDecayNanos = Math.max(1, settings.getLatencyDecay().toNanos());
+        this.slowStartNanos = settings.getSlowStart().toNanos();
+        this.ejectionNanos = settings.getEjectionTime().toNanos();
+    }
+
+    /**
+     * Replaces the instances of the group. New instances start with the average latency of the
+     * group, and ramp up unless they are the first instances of the group.
+     *
+     * @param uris The instance URIs (scheme, host and port); duplicates are ignored.
+     */
+    public synchronized void update(List<URI> uris) {
+        long now = ticker.getAsLong();
+        Map<URI, Instance> current = new LinkedHashMap<>();
+        for (Instance instance : instances) {
+            current.put(instance.uri, instance);
+        }
+        double initialLatency = averageLatency(now);
+        List<Instance> next = new ArrayList<>();
+        for (URI uri : new LinkedHashSet<>(uris)) {
+            Instance instance = current.remove(uri);
+            if (instance == null) {
+                instance = new Instance(uri, updated ? now : now - slowStartNanos, initialLatency, now);
+                register(instance);
+            }
+            next.add(instance);
+        }
+        current.values().forEach(this::unregister);
+        instances = next.toArray(new Instance[0]);
+        updated = true;
+        logger.info("Upstream group '{}' instances: {}", name, next.stream().map(instance -> instance.uri).toList());
+    }
+
+    /**
+     * Chooses the instance of a request and counts the request in flight on it.
+     *
+     * @return The call to complete once the instance answered, or null if the group has no instance.
+     */
+    public Call start() {
+        long now = ticker.getAsLong();
+        Instance instance = choose(now);
+        if (instance == null) {
+            return null;
+        }
+        instance.inFlight.incrementAndGet();
+        return new Call(instance, now);
+    }
+
+    Instance choose(long now) {
+        Instance[] candidates = instances;
+        int count = candidates.length;
+        if (count <= 1) {
+            // A single instance is used even if ejected: there is nothing else to send to
+            return count == 0 ? null : candidates[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(count);
+        int second = random.nextInt(count - 1);
+        if (second >= first) {
+            second++;
+        }
+        Instance a = candidates[first];
+        Instance b = candidates[second];
+        boolean aAvailable = a.isAvailable(now);
+        boolean bAvailable = b.isAvailable(now);
+        if (aAvailable && bAvailable) {
+            return a.cost(now) <= b.cost(now) ? a : b;
+        }
+        if (aAvailable || bAvailable) {
+            return aAvailable ? a : b;
+        }
+        // Both drawn instances are ejected: the next available one, or the first drawn if all are ejected
+        for (int i = 1; i < count; i++) {
+            Instance candidate = candidates[(first + i) % count];
+            if (candidate.isAvailable(now)) {
+                return candidate;
+            }
+        }
+        return a;
+    }
+
+    private void record(Instance instance, long start, boolean success) {
+        long now = ticker.getAsLong();
+        long latency = now - start;
+        if (success) {
+            instance.observe(latency, now);
+            instance.consecutiveFailures.set(0);
+            // Back for a full ejection time without failing: the next ejection starts over
+            if (instance.ejectionCount > 0 && now - instance.ejectedUntil > ejectionNanos) {
+                resetEjections(instance);
+            }
+        } else {
+            // Failures only ever raise the estimate: a connection refused is fast, not cheap
+            instance.observePeak(latency, now);
+            if (instance.consecutiveFailures.incrementAndGet() >= settings.getConsecutiveFailures()) {
+                eject(instance, now);
+            }
+        }
+    }
+
+    private synchronized void resetEjections(Instance instance) {
+        instance.ejectionCount = 0;
+    }
+
+    private synchronized void eject(Instance instance, long now) {
+        if (!instance.isAvailable(now)) {
+            return;
+        }
+        Instance[] current = instances;
+        int ejected = 0;
+        for (Instance candidate : current) {
+            if (!candidate.isAvailable(now)) {
+                ejected++;
+            }
+        }
+        if (ejected >= Math.max(1, current.length * settings.getMaxEjectionPercent() / 100)) {
+            return;
+        }
+        instance.ejectionCount = Math.min(instance.ejectionCount + 1, MAX_EJECTION_MULTIPLIER);
+        long duration = ejectionNanos * instance.ejectionCount;
+        instance.ejectedUntil = now + duration;
+        // Ramps up again from its return
+        instance.addedAt = instance.ejectedUntil;
+        instance.consecutiveFailures.set(0);
+        instance.ejections.incrementAndGet();
+        logger.warn("Ejected {} from upstream group '{}' for {} ms after {} consecutive failures", instance.uri, name,
+                TimeUnit.NANOSECONDS.toMillis(duration), settings.getConsecutiveFailures());
+    }
+
+    private double averageLatency(long now) {
+        double total = 0;
+        int sampled = 0;
+        for (Instance instance : instances) {
+            double latency = instance.latency(now);
+            if (latency > 0) {
+                total += latency;
+                sampled++;
+            }
+        }
+        return sampled == 0 ? 0 : total / sampled;
+    }
+
+    @Override
+    public synchronized void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        for (Instance instance : instances) {
+            register(instance);
+        }
+    }
+
+    private void register(Instance instance) {
+        if (registry == null) {
+            return;
+        }
+        Tags tags = Tags.of("group", name, "instance", instance.uri.toString());
+        instance.meters = List.of(
+                Gauge.builder("gateway.upstream.instance.in.flight", instance.inFlight, AtomicInteger::get)
+                        .description("Requests sent to the instance and not answered yet")
+                        .tags(tags)
+                        .register(registry),
+                TimeGauge.builder("gateway.upstream.instance.latency", instance, TimeUnit.NANOSECONDS,
+                                i -> i.latency(ticker.getAsLong()))
+                        .description("Peak EWMA latency of the instance, as used to choose between instances")
+                        .tags(tags)
+                        .register(registry),
+                Gauge.builder("gateway.upstream.instance.ejected", instance, i -> i.isAvailable(ticker.getAsLong()) ? 0 : 1)
+                        .description("Whether the instance is currently ejected after consecutive failures")
+                        .tags(tags)
+                        .register(registry),
+                FunctionCounter.builder("gateway.upstream.instance.ejections", instance.ejections, AtomicLong::get)
+                        .description("Times the instance was ejected after consecutive failures")
+                        .tags(tags)
+                        .register(registry));
+    }
+
+    private void unregister(Instance instance) {
+        if (registry != null) {
+            instance.meters.forEach(registry::remove);
+        }
+    }
+
+    /**
+     * @return The group name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    Instance[] instances() {
+        return instances;
+    }
+
+    /**
+     * One request sent to an instance. Completing or cancelling it releases the instance; only the
+     * first of these signals counts.
+     */
+    public final class Call {
+
+        private final Instance instance;
+        private final long start;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Call(Instance instance, long start) {
+            this.instance = instance;
+            this.start = start;
+        }
+
+        /**
+         * @return The URI of the chosen instance.
+         */
+        public URI getUri() {
+            return instance.uri;
+        }
+
+        /**
+         * Records the outcome and latency of the call.
+         *
+         * @param success False for a 5xx answer, a connection error or a timeout.
+         */
+        public void complete(boolean success) {
+            if (done.compareAndSet(false, true)) {
+                instance.inFlight.decrementAndGet();
+                record(instance, start, success);
+            }
+        }
+
+        /**
+         * Releases the instance without an outcome, e.g. when the client went away.
+         */
+        public void cancel() {
+            if (done.compareAndSet(false, true)) {
+                instance.inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    final class Instance {
+
+        final URI uri;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        final AtomicLong ejections = new AtomicLong();
+        private final AtomicReference<Latency> latency;
+        volatile long addedAt;
+        volatile long ejectedUntil;
+        // Guarded by the group
+        int ejectionCount;
+        List<Meter> meters = List.of();
+
+        Instance(URI uri, long addedAt, double initialLatency, long now) {
+            this.uri = uri;
+            this.addedAt = addedAt;
+            this.ejectedUntil = now;
+            this.latency = new AtomicReference<>(new Latency(initialLatency, now));
+        }
+
+        boolean isAvailable(long now) {
+            return now - ejectedUntil >= 0;
+        }
+
+        double cost(long now) {
+            return Math.max(latency(now), 1) * (inFlight.get() + 1) / weight(now);
+        }
+
+        double weight(long now) {
+            if (slowStartNanos <= 0) {
+                return 1;
+            }
+            double ramp = (double) (now - addedAt) / slowStartNanos;
+            return Math.min(1, Math.max(MIN_WEIGHT, ramp));
+        }
+
+        double latency(long now) {
+            return latency.get().at(now, latencyDecayNanos);
+        }
+
+        void observe(long sample, long now) {
+            latency.updateAndGet(current -> {
+                double decay = current.decay(now, latencyDecayNanos);
+                double estimate = current.nanos();
+                return new Latency(sample > estimate ? sample : estimate * decay + sample * (1 - decay), now);
+            });
+        }
+
+        void observePeak(long sample, long now) {
+            latency.updateAndGet(current -> new Latency(Math.max(current.at(now, latencyDecayNanos), sample), now));
+        }
+    }
+
+    /**
+     * A latency estimate, decaying exponentially from the time it was last updated.
+     */
+    private record Latency(double nanos, long updatedAt) {
+
+        double decay(long now, double decayNanos) {
+            return Math.exp(-Math.max(0, now - updatedAt) / decayNanos);
+        }
+
+        double at(long now, double decayNanos) {
+            return nanos * decay(now, decayNanos);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package cm.amcloud.platform.gateway.upstream;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import cm.amcloud.platform.gateway.config.UpstreamProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+
+/**
+ * UpstreamGroups: The upstream groups of `gateway.upstream.groups`, each kept up to date by its
+ * {@link UpstreamDiscovery}: by default the static instances of the group, replaced by the
+ * instances of its discovery file once read, or else those of an {@link UpstreamDiscoveryFactory}.
+ */
+public class UpstreamGroups implements MeterBinder, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamGroups.class);
+
+    private final Map<String, UpstreamGroup> groups = new HashMap<>();
+    private final Disposable.Composite subscriptions = Disposables.composite();
+
+    /**
+     * @param properties The group settings.
+     */
+    public UpstreamGroups(UpstreamProperties properties) {
+        this(properties, UpstreamGroups::discovery);
+    }
+
+    /**
+     * @param properties       The group settings.
+     * @param discoveryFactory Creates the instance source of a group from its name and settings.
+     */
+    public UpstreamGroups(UpstreamProperties properties, UpstreamDiscoveryFactory discoveryFactory) {
+        properties.getGroups().forEach((name, settings) -> {
+            UpstreamGroup group = new UpstreamGroup(name, settings);
+            groups.put(name, group);
+            subscriptions.add(discoveryFactory.create(name, settings).instances()
+                    .subscribe(group::update,
+                            e -> logger.error("Discovery of upstream group '{}' stopped", name, e)));
+        });
+    }
+
+    /**
+     * The default instance source of a group: its static instances, then those of its discovery
+     * file, if any.
+     *
+     * @param name     The group name.
+     * @param settings The group settings.
+     * @return The instance source.
+     * @throws IllegalArgumentException If a static instance URI has no scheme or host, or if the
+     *                                  group has neither static instances nor a discovery file, and
+     *                                  would answer every request with 503.
+     */
+    public static UpstreamDiscovery discovery(String name, UpstreamProperties.Group settings) {
+        if (settings.getInstances().isEmpty() && settings.getDiscoveryFile() == null) {
+            throw new IllegalArgumentException("Upstream group " + name + " has neither instances nor a discovery-file");
+        }
+        for (URI uri : settings.getInstances()) {
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                throw new IllegalArgumentException("Upstream group " + name + " instance must have a scheme and host: " + uri);
+            }
+        }
+        List<URI> instances = List.copyOf(settings.getInstances());
+        Flux<List<URI>> staticInstances = instances.isEmpty() ? Flux.empty() : Flux.just(instances);
+        if (settings.getDiscoveryFile() == null) {
+            return () -> staticInstances;
+        }
+        FileUpstreamDiscovery file = new FileUpstreamDiscovery(settings.getDiscoveryFile(),
+                settings.getDiscoveryRefreshInterval());
+        return () -> Flux.concat(staticInstances, file.instances());
+    }
+
+    /**
+     * @param name The group name, the host of an `lb://` URI.
+     * @return The group, or null if there is no such group.
+     */
+    public UpstreamGroup get(String name) {
+        return groups.get(name);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        groups.values().forEach(group -> group.bindTo(registry));
+    }
+
+    @Override
+    public void destroy() {
+        subscriptions.dispose();
+    }
+}
@@ -0,0 +1,143 @@
+package cm.amcloud.platform.gateway.upstream;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.gateway.route.Route;
+
+import cm.amcloud.platform.gateway.config.UpstreamProperties;
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * UpstreamHttpClients: One HttpClient, with its own connection pool, per configured upstream pool
+ * (see {@link UpstreamProperties}), so that a slow downstream service exhausts its own connections
+ * rather than those of every route.
+ * <p>
+ * Pools publish Reactor Netty's connection provider metrics (`reactor.netty.connection.provider.*`:
+ * total, active, idle and pending connections, and pending acquire time), tagged with the pool name.
+ */
+public class UpstreamHttpClients implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamHttpClients.class);
+
+    private final Map<String, HttpClient> clientsByPool = new HashMap<>();
+    private final List<Origin> origins = new ArrayList<>();
+    private final List<ConnectionProvider> providers = new ArrayList<>();
+
+    /**
+     * @param properties    The pool settings.
+     * @param clientFactory Creates the gateway's base HttpClient (SSL, proxy, customizers) on a given connection provider.
+     */
+    public UpstreamHttpClients(UpstreamProperties properties, Function<ConnectionProvider, HttpClient> clientFactory) {
+        properties.getPools().forEach((name, pool) -> {
+            ConnectionProvider provider = connectionProvider(name, pool);
+            providers.add(provider);
+            HttpClient client = configure(clientFactory.apply(provider), pool);
+            clientsByPool.put(name, client);
+            for (URI uri : pool.getUris()) {
+                if (uri.getScheme() == null || uri.getHost() == null) {
+                    throw new IllegalArgumentException("Upstream pool " + name + " URI must have a scheme and host: " + uri);
+                }
+                origins.add(new Origin(uri.getScheme(), uri.getHost(), portOf(uri), client));
+            }
+            logger.info("Configured upstream pool '{}' (max-connections: {}, protocols: {}, uris: {})",
+                    name, pool.getMaxConnections(), pool.getProtocols(), pool.getUris());
+        });
+    }
+
+    /**
+     * Returns the client of the pool a route uses: the pool named by the route's `connection-pool`
+     * metadata, or else the pool listing the route URI's scheme, host and port.
+     *
+     * @param route The route being forwarded.
+     * @return The pool's client, or null if the route uses the default client.
+     * @throws IllegalStateException If the route names a pool that is not configured.
+     */
+    public HttpClient forRoute(Route route) {
+        Object pool = route.getMetadata().get(UpstreamProperties.POOL_METADATA_KEY);
+        if (pool != null) {
+            HttpClient client = clientsByPool.get(pool.toString());
+            if (client == null) {
+                throw new IllegalStateException("Route " + route.getId() + " uses unknown connection pool " + pool);
+            }
+            return client;
+        }
+        URI uri = route.getUri();
+        for (Origin origin : origins) {
+            if (origin.matches(uri)) {
+                return origin.client();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void destroy() {
+        providers.forEach(ConnectionProvider::dispose);
+    }
+
+    private static ConnectionProvider connectionProvider(String name, UpstreamProperties.Pool pool) {
+        ConnectionProvider.Builder builder = ConnectionProvider.builder(name).metrics(true);
+        if (pool.getMaxConnections() != null) {
+            builder.maxConnections(pool.getMaxConnections());
+        }
+        if (pool.getPendingAcquireMaxCount() != null) {
+            builder.pendingAcquireMaxCount(pool.getPendingAcquireMaxCount());
+        }
+        if (pool.getPendingAcquireTimeout() != null) {
+            builder.pendingAcquireTimeout(pool.getPendingAcquireTimeout());
+        }
+        if (pool.getMaxIdleTime() != null) {
+            builder.maxIdleTime(pool.getMaxIdleTime());
+        }
+        if (pool.getMaxLifeTime() != null) {
+            builder.maxLifeTime(pool.getMaxLifeTime());
+        }
+        if (pool.getEvictionInterval() != null) {
+            builder.evictInBackground(pool.getEvictionInterval());
+        }
+        return builder.build();
+    }
+
+    private static HttpClient configure(HttpClient client, UpstreamProperties.Pool pool) {
+        if (pool.getConnectTimeout() != null) {
+            client = client.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) pool.getConnectTimeout().toMillis());
+        }
+        if (pool.getResponseTimeout() != null) {
+            client = client.responseTimeout(pool.getResponseTimeout());
+        }
+        List<HttpProtocol> protocols = pool.getProtocols();
+        if (!protocols.isEmpty()) {
+            client = client.protocol(protocols.toArray(new HttpProtocol[0]));
+            // HTTP/2 over TLS is negotiated with ALPN, which needs TLS even if the gateway client has no SSL settings
+            if (protocols.contains(HttpProtocol.H2) && client.configuration().sslProvider() == null) {
+                client = client.secure();
+            }
+        }
+        return client;
+    }
+
+    private static int portOf(URI uri) {
+        if (uri.getPort() != -1) {
+            return uri.getPort();
+        }
+        return "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+    }
+
+    private record Origin(String scheme, String host, int port, HttpClient client) {
+
+        boolean matches(URI uri) {
+            return port == portOf(uri) && host.equalsIgnoreCase(uri.getHost()) && scheme.equalsIgnoreCase(uri.getScheme());
+        }
+    }
+}
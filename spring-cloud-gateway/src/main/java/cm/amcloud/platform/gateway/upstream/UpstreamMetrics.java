@@ -0,0 +1,106 @@
+package cm.amcloud.platform.gateway.upstream;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.netty.Connection;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientInfos;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.netty.http.client.HttpClientResponse;
+import reactor.util.context.Context;
+
+/**
+ * UpstreamMetrics: Times the upstream side of each routed request, per route id:
+ * <ul>
+ * <li>`gateway.upstream.connect`: from routing until the request can be sent, i.e. connection pool
+ * acquisition plus, for new connections, the TCP connect and TLS handshake;</li>
+ * <li>`gateway.upstream.ttfb`: from sending the request until the response headers arrive.</li>
+ * </ul>
+ * As an HttpClientCustomizer it adds its request and response callbacks once to every gateway
+ * HttpClient; the routing filter passes each request's {@link Call} to them through the Reactor
+ * context. Timers are registered once per route.
+ */
+public class UpstreamMetrics implements HttpClientCustomizer {
+
+    private final MeterRegistry registry;
+    private final Map<String, RouteTimers> routes = new ConcurrentHashMap<>();
+    private final Function<String, RouteTimers> timersFactory = this::register;
+    private final BiConsumer<HttpClientRequest, Connection> onRequest = (request, connection) -> onRequest(request);
+    private final BiConsumer<HttpClientResponse, Connection> onResponse = (response, connection) -> onResponse(response);
+
+    public UpstreamMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public HttpClient customize(HttpClient httpClient) {
+        return httpClient.doOnRequest(onRequest).doOnResponse(onResponse);
+    }
+
+    /**
+     * Starts timing a routed request.
+     *
+     * @param routeId The route id.
+     * @return The context to write into the routing subscription.
+     */
+    public Context start(String routeId) {
+        RouteTimers timers = routes.get(routeId);
+        if (timers == null) {
+            timers = routes.computeIfAbsent(routeId, timersFactory);
+        }
+        return Context.of(Call.class, new Call(timers, System.nanoTime()));
+    }
+
+    private RouteTimers register(String routeId) {
+        return new RouteTimers(
+                Timer.builder("gateway.upstream.connect")
+                        .description("Time until the upstream connection is ready to send the request")
+                        .tag("route", routeId)
+                        .register(registry),
+                Timer.builder("gateway.upstream.ttfb")
+                        .description("Time from sending the request until the upstream response headers arrive")
+                        .tag("route", routeId)
+                        .register(registry));
+    }
+
+    private static void onRequest(HttpClientInfos request) {
+        Call call = request.currentContextView().getOrDefault(Call.class, null);
+        if (call != null) {
+            call.requestSent = System.nanoTime();
+            call.timers.connect.record(call.requestSent - call.start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static void onResponse(HttpClientInfos response) {
+        Call call = response.currentContextView().getOrDefault(Call.class, null);
+        if (call != null && call.requestSent != 0) {
+            call.timers.ttfb.record(System.nanoTime() - call.requestSent, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private record RouteTimers(Timer connect, Timer ttfb) {
+    }
+
+    /**
+     * The timing of one routed request. Its callbacks run on the connection's event loop.
+     */
+    static final class Call {
+
+        private final RouteTimers timers;
+        private final long start;
+        private long requestSent;
+
+        Call(RouteTimers timers, long start) {
+            this.timers = timers;
+            this.start = start;
+        }
+    }
+}
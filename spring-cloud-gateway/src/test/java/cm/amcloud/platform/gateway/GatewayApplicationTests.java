@@ -1,14 +1,22 @@
 package cm.amcloud.platform.gateway;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.test.context.TestPropertySource; 
 
+import cm.amcloud.platform.gateway.filter.PooledNettyRoutingFilter;
 import reactor.core.publisher.Mono;
 
 /**
@@ -17,7 +25,9 @@ import reactor.core.publisher.Mono;
  * with all its route and security configurations, without requiring
  * the target backend microservices to be running.
  * All configuration properties are provided via @TestPropertySource
- * to simulate a complete deployment environment.
+ * to simulate a complete deployment environment; routes point at local
+ * URIs only, so the test runs offline. Requests through the full gateway
+ * are exercised by the load test (see benchmark.LoadTest).
  */
 @SpringBootTest // Loads the full Spring application context.
                 // Essential for integration tests that require Spring beans to be started.
@@ -29,7 +39,7 @@ import reactor.core.publisher.Mono;
     // --- Test Route Configuration ---
     // Simple test route to verify basic gateway configuration.
     "spring.cloud.gateway.routes[0].id=test_route",
-    "spring.cloud.gateway.routes[0].uri=http://httpbin.org",
+    "spring.cloud.gateway.routes[0].uri=http://localhost:8081",
     "spring.cloud.gateway.routes[0].predicates[0]=Path=/test/**",
     "spring.cloud.gateway.routes[0].filters[0]=RewritePath=/test/(?<segment>.*), /${segment}",
 
@@ -80,10 +90,17 @@ import reactor.core.publisher.Mono;
     // --- Test HTTPS Route Configuration ---
     // Route configuration to test HTTPS redirection or connectivity.
     "spring.cloud.gateway.routes[7].id=test_https_route",
-    "spring.cloud.gateway.routes[7].uri=https://example.com",
+    "spring.cloud.gateway.routes[7].uri=https://localhost:8443",
     "spring.cloud.gateway.routes[7].predicates[0]=Path=/test/https",
     "spring.cloud.gateway.routes[7].filters[0]=RewritePath=/test/https, /",
 
+    // --- Upstream Group Configuration ---
+    // Instances of the lb://<group> routes of application.yml; a group without any fails startup.
+    "gateway.upstream.groups.billing.instances=http://localhost:8082",
+    "gateway.upstream.groups.reservation.instances=http://localhost:8083",
+    "gateway.upstream.groups.invitation.instances=http://localhost:8084",
+    "gateway.upstream.groups.notification.instances=http://localhost:8085",
+
     // --- JWT Configuration ---
     // JWT configuration properties for token validation.
     "jwt.issuer-uri=http://localhost:8081",
@@ -139,4 +156,16 @@ class GatewayApplicationTests {
         // This confirms that all required properties are resolved and beans can be created.
     }
 
+    /**
+     * The built-in NettyRoutingFilter is disabled in favour of PooledNettyRoutingFilter, which also
+     * disables Spring Cloud Gateway's own response writing filter. This test verifies that the
+     * upstream response bodies are still written to the client.
+     */
+    @Test
+    void registersRoutingAndResponseWritingFilters(@Autowired List<GlobalFilter> globalFilters) {
+        assertThat(globalFilters)
+                .hasAtLeastOneElementOfType(PooledNettyRoutingFilter.class)
+                .hasAtLeastOneElementOfType(NettyWriteResponseFilter.class);
+    }
+
 }
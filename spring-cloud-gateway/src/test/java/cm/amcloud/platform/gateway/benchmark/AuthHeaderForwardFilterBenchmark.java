@@ -0,0 +1,90 @@
+package cm.amcloud.platform.gateway.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.server.ServerWebExchange;
+
+import cm.amcloud.platform.gateway.filter.AuthHeaderForwardFilter;
+import cm.amcloud.platform.gateway.security.JwtIdentityConverter;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * AuthHeaderForwardFilterBenchmark: Runs {@link AuthHeaderForwardFilter#filter} against a
+ * mock exchange and a no-op chain, with the authentication produced by the gateway's
+ * converter and, for comparison, a plain JwtAuthenticationToken without identity projection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthHeaderForwardFilterBenchmark {
+
+    private final AuthHeaderForwardFilter filter = new AuthHeaderForwardFilter();
+
+    private Context projectedContext;
+    private Context plainContext;
+    private Context anonymousContext;
+
+    @Setup
+    public void setUp() {
+        Jwt jwt = BenchmarkFixtures.jwt();
+        JwtAuthenticationToken projected = (JwtAuthenticationToken) new JwtIdentityConverter(100).convert(jwt).block();
+        JwtAuthenticationToken plain = new JwtAuthenticationToken(jwt, projected.getAuthorities());
+        projectedContext = ReactiveSecurityContextHolder.withAuthentication(projected);
+        plainContext = ReactiveSecurityContextHolder.withAuthentication(plain);
+        anonymousContext = Context.empty();
+    }
+
+    /**
+     * Authentication created by the gateway's converter: headers are copied from the projection.
+     */
+    @Benchmark
+    public void projectedAuthentication(Blackhole blackhole) {
+        run(projectedContext, blackhole);
+    }
+
+    /**
+     * Authentication without projection: headers are derived from the authorities per request.
+     */
+    @Benchmark
+    public void plainJwtAuthentication(Blackhole blackhole) {
+        run(plainContext, blackhole);
+    }
+
+    /**
+     * Unauthenticated request: the filter only passes the exchange through.
+     */
+    @Benchmark
+    public void anonymous(Blackhole blackhole) {
+        run(anonymousContext, blackhole);
+    }
+
+    private void run(Context context, Blackhole blackhole) {
+        ServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/billing/invoices"));
+        GatewayFilterChain chain = forwarded -> {
+            blackhole.consume(forwarded.getRequest().getHeaders());
+            return Mono.empty();
+        };
+        filter.filter(exchange, chain).contextWrite(context).block();
+    }
+}
@@ -0,0 +1,91 @@
+package cm.amcloud.platform.gateway.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import cm.amcloud.platform.gateway.config.AuthorizationProperties;
+import cm.amcloud.platform.gateway.config.AuthorizationProperties.Access;
+import cm.amcloud.platform.gateway.security.AuthorizationTable;
+import cm.amcloud.platform.gateway.security.IdentityProjection;
+import cm.amcloud.platform.gateway.security.JwtIdentityConverter;
+
+/**
+ * AuthorityConverterBenchmark: Measures the JWT-to-authentication converter used by
+ * SecurityConfig, built like SecurityConfig.grantedAuthoritiesExtractor with the authorization
+ * table of the gateway's access rules: the projection computed for a token seen for the first
+ * time, and the conversion of a repeat token whose identity projection is already memoized.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthorityConverterBenchmark {
+
+    private Jwt repeatJwt;
+
+    @Setup
+    public void setUp() {
+        repeatJwt = BenchmarkFixtures.jwt();
+    }
+
+    /**
+     * First sight of a token: the projection and authority bits the converter computes before
+     * memoizing them.
+     */
+    @Benchmark
+    public IdentityProjection firstConversion(ConverterState state) {
+        return IdentityProjection.fromJwt(repeatJwt).withAuthorityBits(state.table);
+    }
+
+    /**
+     * Repeat token: the identity projection is served from the converter's memo.
+     */
+    @Benchmark
+    public AbstractAuthenticationToken repeatConversion(ConverterState state) {
+        return state.converter.convert(repeatJwt).block();
+    }
+
+    @State(Scope.Benchmark)
+    public static class ConverterState {
+
+        AuthorizationTable table;
+        JwtIdentityConverter converter;
+
+        @Setup
+        public void setUp() {
+            // The access rules of application.yml, behind the revocation push rule of SecurityConfig
+            table = AuthorizationTable.compile(List.of(
+                    requiring("SCOPE_REVOCATIONS", "/internal/revocations").setMethods(List.of(HttpMethod.POST)),
+                    permitAll("/auth/**", "/public/**"),
+                    requiring("ROLE_ADMIN", "/api/admin/**"),
+                    requiring("SCOPE_READ", "/api/data/**"),
+                    permitAll("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html", "/webjars/**")),
+                    Access.AUTHENTICATED);
+            converter = new JwtIdentityConverter(10_000, table);
+        }
+
+        private static AuthorizationProperties.Rule requiring(String authority, String... paths) {
+            return new AuthorizationProperties.Rule().setPaths(List.of(paths)).setAuthorities(List.of(authority));
+        }
+
+        private static AuthorizationProperties.Rule permitAll(String... paths) {
+            return new AuthorizationProperties.Rule().setPaths(List.of(paths)).setAccess(Access.PERMIT_ALL);
+        }
+    }
+}
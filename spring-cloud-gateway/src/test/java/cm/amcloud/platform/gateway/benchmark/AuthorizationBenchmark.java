@@ -0,0 +1,88 @@
+package cm.amcloud.platform.gateway.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authorization.AuthorityReactiveAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.ReactiveAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.server.authorization.AuthorizationContext;
+import org.springframework.security.web.server.authorization.DelegatingReactiveAuthorizationManager;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatcherEntry;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatchers;
+import org.springframework.web.server.ServerWebExchange;
+
+import cm.amcloud.platform.gateway.config.AuthorizationProperties;
+import cm.amcloud.platform.gateway.security.AuthorizationTable;
+import cm.amcloud.platform.gateway.security.JwtIdentityConverter;
+import reactor.core.publisher.Mono;
+
+/**
+ * AuthorizationBenchmark: Compares the `pathMatchers(...)` rules of Spring Security with the
+ * {@link AuthorizationTable} on synthetic rule sets of `/serviceN/**` paths, each requiring its own
+ * role, for a request decided by the last rule (the worst case of the matcher chain).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthorizationBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int ruleCount;
+
+    private ReactiveAuthorizationManager<ServerWebExchange> pathMatchers;
+    private AuthorizationTable table;
+    private Mono<Authentication> authentication;
+    private String path;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DelegatingReactiveAuthorizationManager.Builder builder = DelegatingReactiveAuthorizationManager.builder();
+        List<AuthorizationProperties.Rule> rules = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            String pattern = "/service" + i + "/**";
+            builder.add(new ServerWebExchangeMatcherEntry<>(ServerWebExchangeMatchers.pathMatchers(pattern),
+                    AuthorityReactiveAuthorizationManager.<AuthorizationContext>hasRole("SERVICE_" + i)));
+            rules.add(new AuthorizationProperties.Rule()
+                    .setPaths(List.of(pattern))
+                    .setAuthorities(List.of("ROLE_SERVICE_" + i)));
+        }
+        pathMatchers = builder.build();
+        table = AuthorizationTable.compile(rules, AuthorizationProperties.Access.AUTHENTICATED);
+        // The token's authority bits are computed once, when the verified JWT is converted
+        authentication = Mono.just(new JwtIdentityConverter(100, table).convert(BenchmarkFixtures.jwt()).block())
+                .map(Authentication.class::cast);
+        path = "/service" + (ruleCount - 1) + "/resources/42";
+    }
+
+    @Benchmark
+    public AuthorizationDecision pathMatchers() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(path));
+        return pathMatchers.check(authentication, exchange).block();
+    }
+
+    @Benchmark
+    public AuthorizationDecision decisionTable() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(path));
+        return table.check(authentication, new AuthorizationContext(exchange)).block();
+    }
+}
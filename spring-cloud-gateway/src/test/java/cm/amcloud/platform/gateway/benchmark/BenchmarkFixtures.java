@@ -0,0 +1,200 @@
+package cm.amcloud.platform.gateway.benchmark;
+
+import java.net.URISyntaxException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import cm.amcloud.platform.gateway.GatewayApplication;
+import reactor.core.publisher.Mono;
+
+/**
+ * BenchmarkFixtures: Shared inputs for the JMH benchmarks, so that every benchmark
+ * measures the same tokens and the same route table and results stay comparable
+ * between runs.
+ */
+final class BenchmarkFixtures {
+
+    static final String ISSUER = "http://localhost:8081";
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * @return A verified-looking Jwt with the role and scope claims issued by IAM.
+     */
+    static Jwt jwt() {
+        Instant now = Instant.now();
+        return Jwt.withTokenValue("benchmark-token")
+                .header("alg", "RS256")
+                .subject("user-42")
+                .issuer(ISSUER)
+                .claim("roles", List.of("ROLE_USER", "ROLE_ADMIN"))
+                .claim("scope", "read write profile")
+                .issuedAt(now)
+                .expiresAt(now.plusSeconds(3600))
+                .build();
+    }
+
+    /**
+     * @return A freshly generated 2048-bit RSA key pair.
+     */
+    static KeyPair rsaKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            return generator.generateKeyPair();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Signs a token with the same claims as {@link #jwt()} using RS256.
+     *
+     * @param privateKey The signing key.
+     * @param keyId      The `kid` header value.
+     * @return The serialized compact JWS.
+     */
+    static String signedToken(RSAPrivateKey privateKey, String keyId) {
+        return signedToken(privateKey, keyId, ISSUER, "user-42");
+    }
+
+    /**
+     * Signs a token with the role and scope claims of {@link #jwt()} using RS256.
+     *
+     * @param privateKey The signing key.
+     * @param keyId      The `kid` header value.
+     * @param issuer     The `iss` claim.
+     * @param subject    The `sub` claim.
+     * @return The serialized compact JWS.
+     */
+    static String signedToken(RSAPrivateKey privateKey, String keyId, String issuer, String subject) {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject(subject)
+                .issuer(issuer)
+                .claim("roles", List.of("ROLE_USER", "ROLE_ADMIN"))
+                .claim("scope", "read write profile")
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plusSeconds(3600)))
+                .build();
+        SignedJWT signedJwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(keyId).build(), claims);
+        try {
+            signedJwt.sign(new RSASSASigner(privateKey));
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+        return signedJwt.serialize();
+    }
+
+    /**
+     * Values for the environment placeholders used in application.yml, pointing every
+     * route at a local address so that the route table can be built offline.
+     */
+    static Map<String, Object> routeEnvironment() {
+        Map<String, Object> env = new HashMap<>();
+        env.put("GATEWAY_SERVER_PORT", "0");
+        env.put("GATEWAY_APPLICATION_NAME", "gateway");
+        env.put("GATEWAY_LOGGING_LEVEL", "WARN");
+        env.put("IAM_ROUTE_URI", "http://localhost:8081");
+        env.put("IAM_ROUTE_PATH", "/auth/**");
+        env.put("BILLING_ROUTE_URI", "http://localhost:8082");
+        env.put("BILLING_ROUTE_PATH", "/billing/**");
+        env.put("BILLING_ROUTE_REWRITE", "/billing(?<segment>/?.*), /api/subscriptions$\\{segment}");
+        env.put("RESERVATION_ROUTE_URI", "http://localhost:8083");
+        env.put("RESERVATION_ROUTE_PATH", "/reservations/**");
+        env.put("RESERVATION_ROUTE_REWRITE", "/reservations(?<segment>/?.*), /api/reservations$\\{segment}");
+        env.put("INVITATION_ROUTE_URI", "http://localhost:8084");
+        env.put("INVITATION_ROUTE_PATH", "/invitations/**");
+        env.put("INVITATION_ROUTE_REWRITE", "/invitations(?<segment>/?.*), /api/invitations$\\{segment}");
+        env.put("NOTIFICATION_ROUTE_URI", "http://localhost:8085");
+        env.put("NOTIFICATION_ROUTE_PATH", "/notifications/**");
+        env.put("NOTIFICATION_ROUTE_REWRITE", "/notifications(?<segment>/?.*), /api/notifications$\\{segment}");
+        env.put("SECURE_DATA_ROUTE_URI", "http://localhost:8081");
+        env.put("SECURE_DATA_ROUTE_PATH", "/secure-data/**");
+        env.put("TEST_HTTPS_ROUTE_URI", "https://localhost:8443");
+        env.put("TEST_HTTPS_ROUTE_PATH", "/test/https");
+        env.put("TEST_HTTPS_ROUTE_REWRITE", "/test/https, /");
+        env.put("JWT_ISSUER_URI", ISSUER);
+        env.put("JWT_JWK_SET_URI", ISSUER + "/jwks.json");
+        return env;
+    }
+
+    /**
+     * Starts the full gateway application context with the routes of application.yml,
+     * replacing the issuer-based JWT decoder so that startup does not contact IAM.
+     *
+     * @return The running application context; the caller is responsible for closing it.
+     */
+    static ConfigurableApplicationContext startGateway() {
+        return startGateway(routeEnvironment(), OfflineDecoderConfig.class);
+    }
+
+    /**
+     * Starts the full gateway application context with the routes of application.yml.
+     *
+     * @param environment Values for the environment placeholders, see {@link #routeEnvironment()}.
+     * @param sources     Additional configuration classes, e.g. {@link OfflineDecoderConfig}.
+     * @return The running application context; the caller is responsible for closing it.
+     */
+    static ConfigurableApplicationContext startGateway(Map<String, Object> environment, Class<?>... sources) {
+        Class<?>[] allSources = new Class<?>[sources.length + 1];
+        allSources[0] = GatewayApplication.class;
+        System.arraycopy(sources, 0, allSources, 1, sources.length);
+        return new SpringApplicationBuilder(allSources)
+                .web(WebApplicationType.REACTIVE)
+                .properties(environment)
+                .properties("spring.config.location=" + mainConfigLocation(),
+                        "spring.main.allow-bean-definition-overriding=true",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run();
+    }
+
+    /**
+     * The test resources contain their own application.yml, which shadows the main one on the
+     * test classpath. Point Spring Boot at the directory holding the main configuration instead.
+     */
+    private static String mainConfigLocation() {
+        try {
+            return GatewayApplication.class.getProtectionDomain().getCodeSource().getLocation().toURI()
+                    .resolve("./").toString();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Replaces the issuer-based decoder; route matching does not need real token validation.
+     * Deliberately not annotated with @Configuration so that component scanning of the test
+     * classpath does not pick it up in other application contexts.
+     */
+    static class OfflineDecoderConfig {
+
+        @Bean
+        ReactiveJwtDecoder jwtDecoder() {
+            return token -> Mono.just(jwt());
+        }
+    }
+}
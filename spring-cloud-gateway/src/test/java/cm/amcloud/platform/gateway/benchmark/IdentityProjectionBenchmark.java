@@ -0,0 +1,101 @@
+package cm.amcloud.platform.gateway.benchmark;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import cm.amcloud.platform.gateway.security.IdentityAuthenticationToken;
+import cm.amcloud.platform.gateway.security.IdentityProjection;
+import cm.amcloud.platform.gateway.security.JwtIdentityConverter;
+
+/**
+ * IdentityProjectionBenchmark: Compares the per-request cost of rendering the `X-User-*`
+ * header values the way AuthHeaderForwardFilter used to (two streams over the authorities)
+ * with reading them from the {@link IdentityProjection} memoized per verified token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdentityProjectionBenchmark {
+
+    private Jwt jwt;
+    private JwtIdentityConverter converter;
+    private IdentityAuthenticationToken authentication;
+
+    @Setup
+    public void setUp() {
+        jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("user-42")
+                .claim("roles", List.of("ROLE_USER", "ROLE_ADMIN"))
+                .claim("scope", "read write profile")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(3600))
+                .build();
+        converter = new JwtIdentityConverter(1000);
+        authentication = new IdentityAuthenticationToken(jwt, converter.project(jwt));
+    }
+
+    /**
+     * Baseline: the stream pipeline previously executed by the forward filter on every request.
+     */
+    @Benchmark
+    public void streamAuthorities(Blackhole blackhole) {
+        List<String> roles = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .filter(authority -> authority.startsWith("ROLE_"))
+                .collect(Collectors.toList());
+        blackhole.consume(String.join(",", roles));
+
+        List<String> scopes = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .filter(authority -> authority.startsWith("SCOPE_"))
+                .map(scope -> scope.substring(6))
+                .collect(Collectors.toList());
+        blackhole.consume(String.join(",", scopes));
+    }
+
+    /**
+     * Hot path: the filter reads the pre-rendered values from the projection.
+     */
+    @Benchmark
+    public void readProjection(Blackhole blackhole) {
+        IdentityProjection identity = authentication.getIdentity();
+        blackhole.consume(identity.getRolesHeader());
+        blackhole.consume(identity.getScopesHeader());
+    }
+
+    /**
+     * Repeat token: the converter returns the memoized projection for an already seen Jwt.
+     */
+    @Benchmark
+    public IdentityProjection memoizedConversion() {
+        return converter.project(jwt);
+    }
+
+    /**
+     * First sight of a token: claims are converted and headers rendered once.
+     */
+    @Benchmark
+    public IdentityProjection fullConversion() {
+        return IdentityProjection.fromJwt(jwt);
+    }
+}
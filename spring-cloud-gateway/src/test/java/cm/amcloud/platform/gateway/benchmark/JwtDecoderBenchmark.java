@@ -0,0 +1,70 @@
+package cm.amcloud.platform.gateway.benchmark;
+
+import java.security.KeyPair;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+import cm.amcloud.platform.gateway.security.CachingReactiveJwtDecoder;
+
+/**
+ * JwtDecoderBenchmark: Measures JWT decoding with RS256 signature verification against a
+ * local RSA key (no JWKS fetch), with and without the validated-token cache in front.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtDecoderBenchmark {
+
+    private String token;
+    private ReactiveJwtDecoder verifyingDecoder;
+    private ReactiveJwtDecoder cachingDecoder;
+
+    @Setup
+    public void setUp() {
+        KeyPair keyPair = BenchmarkFixtures.rsaKeyPair();
+        token = BenchmarkFixtures.signedToken((RSAPrivateKey) keyPair.getPrivate(), "benchmark-key");
+
+        NimbusReactiveJwtDecoder decoder = NimbusReactiveJwtDecoder
+                .withPublicKey((RSAPublicKey) keyPair.getPublic())
+                .build();
+        decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(BenchmarkFixtures.ISSUER));
+        verifyingDecoder = decoder;
+        cachingDecoder = new CachingReactiveJwtDecoder(decoder, 10_000, Duration.ofHours(1));
+    }
+
+    /**
+     * Parse, verify the signature and validate the claims on every call.
+     */
+    @Benchmark
+    public Jwt decodeAndVerify() {
+        return verifyingDecoder.decode(token).block();
+    }
+
+    /**
+     * Repeat token served from the validated-token cache.
+     */
+    @Benchmark
+    public Jwt decodeCached() {
+        return cachingDecoder.decode(token).block();
+    }
+}
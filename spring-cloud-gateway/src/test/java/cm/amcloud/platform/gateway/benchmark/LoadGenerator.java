@@ -0,0 +1,206 @@
+package cm.amcloud.platform.gateway.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.http.HttpHeaders;
+
+import io.netty.handler.codec.http.HttpMethod;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufMono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * LoadGenerator: Sends the requests of a {@link Scenario} to the gateway at a fixed rate,
+ * whatever the response times (open loop): request `i` is due at `start + i / rate`, and its
+ * latency is measured from that time, so that a stall of the gateway shows in the latencies of
+ * all the requests it delayed rather than in fewer requests.
+ * <p>
+ * Allocation is read from the JVM's per-thread allocation counters, summed over the gateway's
+ * threads: the Reactor Netty event loops serving clients and calling upstreams, and the Reactor
+ * and common fork-join pools. The generator and the stubs run on their own threads (`load-*`,
+ * `stub-*`) and are not counted.
+ */
+final class LoadGenerator implements AutoCloseable {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final List<String> GATEWAY_THREADS = List.of("reactor-http-", "parallel-", "boundedElastic-",
+            "ForkJoinPool.commonPool-");
+
+    private final LoopResources loops = LoopResources.create("load", 2, true);
+    private final ConnectionProvider connections = ConnectionProvider.builder("load-test")
+            .maxConnections(2000)
+            .pendingAcquireMaxCount(-1)
+            .build();
+    private final HttpClient client;
+    private final List<String> tokens;
+
+    LoadGenerator(LoadTestEnvironment environment) {
+        this.client = HttpClient.create(connections)
+                .runOn(loops)
+                .baseUrl("http://localhost:" + environment.port());
+        this.tokens = environment.tokens();
+    }
+
+    /**
+     * Runs a scenario for the given duration and waits for its last response.
+     *
+     * @param scenario The requests to send.
+     * @param rate     The requests per second.
+     * @param duration The time over which requests are sent.
+     * @return The measurements.
+     */
+    Result drive(Scenario scenario, int rate, Duration duration) throws InterruptedException {
+        int total = (int) Math.max(1, rate * duration.toNanos() / TimeUnit.SECONDS.toNanos(1));
+        long[] latencies = new long[total];
+        AtomicInteger succeeded = new AtomicInteger();
+        ConcurrentMap<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+        AtomicLong lastCompletion = new AtomicLong();
+        CountDownLatch completed = new CountDownLatch(total);
+
+        Map<Long, Long> allocatedBefore = gatewayAllocatedBytes();
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        for (int i = 0; i < total; i++) {
+            long due = start + (long) (i * 1e9 / rate);
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            send(scenario, tokens.get(i % tokens.size()))
+                    .subscribe(answer -> {
+                        long now = System.nanoTime();
+                        statuses.computeIfAbsent(answer.status(), status -> new AtomicLong()).incrementAndGet();
+                        if (answer.succeeded(scenario)) {
+                            latencies[succeeded.getAndIncrement()] = now - due;
+                        }
+                        lastCompletion.accumulateAndGet(now, Math::max);
+                        completed.countDown();
+                    }, error -> {
+                        lastCompletion.accumulateAndGet(System.nanoTime(), Math::max);
+                        completed.countDown();
+                    });
+        }
+        completed.await(TIMEOUT.toMillis() * 2, TimeUnit.MILLISECONDS);
+        long allocated = allocatedSince(allocatedBefore);
+
+        int count = succeeded.get();
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        double elapsedSeconds = Math.max(1, lastCompletion.get() - start) / 1e9;
+        Map<Integer, Long> statusCounts = new TreeMap<>();
+        statuses.forEach((status, responses) -> statusCounts.put(status, responses.get()));
+        return new Result(scenario.name(), rate, total, total - count, statusCounts, count / elapsedSeconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                allocated / elapsedSeconds / (1024 * 1024), count == 0 ? 0 : (double) allocated / total);
+    }
+
+    /**
+     * @return The status of the answer, and whether the stub saw the identity of the token.
+     */
+    private Mono<Answer> send(Scenario scenario, String token) {
+        HttpClient.RequestSender request = client
+                .headers(headers -> {
+                    if (scenario.authenticated()) {
+                        headers.set(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+                    }
+                    if (scenario.body() != null) {
+                        headers.set(HttpHeaders.CONTENT_TYPE, "application/json");
+                    }
+                })
+                .request(scenario.method())
+                .uri(scenario.path());
+        HttpClient.ResponseReceiver<?> receiver = scenario.body() == null ? request
+                : request.send(ByteBufMono.fromString(Mono.just(scenario.body())));
+        return receiver
+                .response((response, body) -> body.then(Mono.fromSupplier(() -> new Answer(response.status().code(),
+                        response.responseHeaders().contains(LoadTestEnvironment.SEEN_USER_HEADER)))))
+                .single()
+                .timeout(TIMEOUT);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    private static Map<Long, Long> gatewayAllocatedBytes() {
+        long[] ids = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> GATEWAY_THREADS.stream().anyMatch(thread.getName()::startsWith))
+                .mapToLong(Thread::getId)
+                .toArray();
+        long[] allocated = threads().getThreadAllocatedBytes(ids);
+        Map<Long, Long> byThread = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (allocated[i] >= 0) {
+                byThread.put(ids[i], allocated[i]);
+            }
+        }
+        return byThread;
+    }
+
+    private static long allocatedSince(Map<Long, Long> before) {
+        long total = 0;
+        for (Map.Entry<Long, Long> thread : gatewayAllocatedBytes().entrySet()) {
+            total += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+        }
+        return total;
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        return (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    @Override
+    public void close() {
+        connections.disposeLater().block(TIMEOUT);
+        loops.disposeLater().block(TIMEOUT);
+    }
+
+    /**
+     * One kind of request: a route of application.yml, with a token or not.
+     */
+    record Scenario(String name, HttpMethod method, String path, boolean authenticated, String body) {
+    }
+
+    /**
+     * The answer to one request.
+     */
+    private record Answer(int status, boolean identityForwarded) {
+
+        /**
+         * @return Whether the gateway answered 2xx and, for an authenticated request, forwarded the
+         *         identity of the token.
+         */
+        boolean succeeded(Scenario scenario) {
+            return status / 100 == 2 && (!scenario.authenticated() || identityForwarded);
+        }
+    }
+
+    /**
+     * The measurements of one scenario run: errors are the requests without a successful answer
+     * (see {@link Answer#succeeded}), and statuses count the answers by status code. Latencies are
+     * in milliseconds.
+     */
+    record Result(String scenario, int rate, long requests, long errors, Map<Integer, Long> statuses,
+            double throughput, double p50Millis,
+            double p99Millis, double p999Millis, double allocationMegabytesPerSecond,
+            double allocatedBytesPerRequest) {
+    }
+}
@@ -0,0 +1,236 @@
+package cm.amcloud.platform.gateway.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import cm.amcloud.platform.gateway.benchmark.LoadGenerator.Result;
+import cm.amcloud.platform.gateway.benchmark.LoadGenerator.Scenario;
+import io.netty.handler.codec.http.HttpMethod;
+
+/**
+ * LoadTest: Drives the full gateway (security chain, identity header forwarding, route filters
+ * and upstream routing) at a fixed request rate per route, offline, against the stubs and local
+ * JWT issuer of {@link LoadTestEnvironment}. All scenarios are warmed up, then each is measured:
+ * throughput, p50/p99/p999 latency and the allocation rate of the gateway threads.
+ * <p>
+ * Results are compared with a stored baseline, and the run fails if a scenario has errors, falls
+ * behind the request rate, or exceeds the baseline p50, p99 or allocation per request by more
+ * than its tolerance. Latency tolerances are a ratio plus an absolute slack, as sub-millisecond
+ * percentiles vary more in ratio than slow ones. The p99 tolerance is loose, since a single GC
+ * pause or a busy build machine moves it; allocation per request hardly varies between runs and
+ * is the tight gate. A baseline only applies to runs at its request rate, and is specific to the
+ * machine it was recorded on.
+ * <p>
+ * Run with: `./mvnw -Pload-test verify`. Settings: `-Dload-test.rate` (requests per second, default
+ * 200), `-Dload-test.warmup` (default 5s), `-Dload-test.duration` (default 10s); record a new
+ * baseline with `-Dload-test.update-baseline=true`. Results are printed and written to
+ * target/load-test-result.json.
+ */
+public final class LoadTest {
+
+    static final List<Scenario> SCENARIOS = List.of(
+            new Scenario("auth", HttpMethod.GET, "/auth/health", false, null),
+            new Scenario("secured", HttpMethod.GET, "/api/secured", true, null),
+            new Scenario("admin", HttpMethod.GET, "/api/admin/dashboard", true, null),
+            // The ResponseCache routes: a shared cache without token, and a cache per subject
+            new Scenario("public", HttpMethod.GET, "/public/catalog", false, null),
+            new Scenario("data", HttpMethod.GET, "/api/data/read", true, null),
+            new Scenario("billing", HttpMethod.GET, "/billing/invoices?page=1", true, null),
+            new Scenario("reservations", HttpMethod.GET, "/reservations/42", true, null),
+            new Scenario("invitations", HttpMethod.POST, "/invitations", true, json(1024)),
+            new Scenario("notifications", HttpMethod.POST, "/notifications/send", true, json(1024)));
+
+    private static final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = new Settings(Integer.getInteger("load-test.rate", 200),
+                duration("load-test.warmup", "5s"), duration("load-test.duration", "10s"),
+                Integer.getInteger("load-test.subjects", 100));
+        Path baseline = Path.of(System.getProperty("load-test.baseline", "src/test/load-test/baseline.json"));
+        Path resultFile = Path.of(System.getProperty("load-test.result", "target/load-test-result.json"));
+
+        List<Result> results = run(settings);
+        report(results, resultFile);
+        List<String> regressions = new ArrayList<>();
+        if (Boolean.getBoolean("load-test.update-baseline")) {
+            writeBaseline(results, settings, baseline);
+        } else {
+            regressions = regressions(results, settings, baseline);
+        }
+        if (!regressions.isEmpty()) {
+            System.out.println();
+            System.out.println("Performance regressions against " + baseline + ":");
+            regressions.forEach(regression -> System.out.println("  " + regression));
+        }
+        // The gateway context leaves non-daemon threads behind
+        System.exit(regressions.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Starts the environment, warms up then measures every scenario, and stops the environment.
+     *
+     * @param settings The request rate and durations.
+     * @return The measurements of each scenario.
+     */
+    static List<Result> run(Settings settings) throws InterruptedException {
+        try (LoadTestEnvironment environment = LoadTestEnvironment.start(settings.subjects());
+                LoadGenerator generator = new LoadGenerator(environment)) {
+            // All the scenarios share most of their code path: warm them all up before measuring any
+            if (!settings.warmup().isZero()) {
+                for (Scenario scenario : SCENARIOS) {
+                    generator.drive(scenario, settings.rate(), settings.warmup());
+                }
+            }
+            List<Result> results = new ArrayList<>();
+            for (Scenario scenario : SCENARIOS) {
+                // Start each measurement with an empty young generation, so that a collection falls at
+                // the same point of every run rather than wherever the previous scenario left off
+                System.gc();
+                Result result = generator.drive(scenario, settings.rate(), settings.duration());
+                System.out.printf(Locale.ROOT, "%-14s done: %d requests, %d errors%n", scenario.name(),
+                        result.requests(), result.errors());
+                results.add(result);
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Compares the results with the baseline.
+     *
+     * @return A description of each regression, empty if there is none.
+     */
+    static List<String> regressions(List<Result> results, Settings settings, Path baselineFile) throws IOException {
+        List<String> regressions = new ArrayList<>();
+        JsonNode baseline = Files.exists(baselineFile) ? mapper.readTree(baselineFile.toFile()) : null;
+        JsonNode tolerance = baseline != null ? baseline.path("tolerance") : mapper.createObjectNode();
+        double throughputTolerance = tolerance.path("throughput").asDouble(0.05);
+        boolean comparable = baseline != null && baseline.path("rate").asInt() == settings.rate();
+        if (baseline == null) {
+            System.out.println("No baseline at " + baselineFile + ", record one with -Dload-test.update-baseline=true");
+        } else if (!comparable) {
+            System.out.println("Baseline recorded at " + baseline.path("rate").asInt() + " requests/s, not compared");
+        }
+        for (Result result : results) {
+            String name = result.scenario();
+            if (result.errors() > 0) {
+                regressions.add(String.format(Locale.ROOT, "%s: %d of %d requests failed, statuses %s", name,
+                        result.errors(), result.requests(), result.statuses()));
+            }
+            if (result.throughput() < result.rate() * (1 - throughputTolerance)) {
+                regressions.add(String.format(Locale.ROOT, "%s: %.0f requests/s, below the rate of %d", name,
+                        result.throughput(), result.rate()));
+            }
+            JsonNode expected = comparable ? baseline.path("scenarios").path(name) : null;
+            if (expected == null || expected.isMissingNode()) {
+                continue;
+            }
+            double slack = tolerance.path("latency-slack-ms").asDouble(2);
+            checkLatency(regressions, name, "p50", result.p50Millis(), expected.path("p50-ms").asDouble(),
+                    tolerance.path("p50").asDouble(0.5), slack);
+            checkLatency(regressions, name, "p99", result.p99Millis(), expected.path("p99-ms").asDouble(),
+                    tolerance.path("p99").asDouble(2), slack);
+            double allocation = expected.path("allocated-bytes-per-request").asDouble();
+            double limit = allocation * (1 + tolerance.path("allocation").asDouble(0.2));
+            if (result.allocatedBytesPerRequest() > limit) {
+                regressions.add(String.format(Locale.ROOT, "%s: %.0f bytes allocated per request, baseline %.0f",
+                        name, result.allocatedBytesPerRequest(), allocation));
+            }
+        }
+        return regressions;
+    }
+
+    private static void checkLatency(List<String> regressions, String scenario, String percentile, double actual,
+            double baseline, double tolerance, double slackMillis) {
+        if (actual > baseline * (1 + tolerance) + slackMillis) {
+            regressions.add(String.format(Locale.ROOT, "%s: %s latency %.2f ms, baseline %.2f ms", scenario,
+                    percentile, actual, baseline));
+        }
+    }
+
+    private static void writeBaseline(List<Result> results, Settings settings, Path file) throws IOException {
+        Map<String, Object> tolerance = new LinkedHashMap<>();
+        tolerance.put("throughput", 0.05);
+        tolerance.put("p50", 0.5);
+        tolerance.put("p99", 2.0);
+        tolerance.put("latency-slack-ms", 2.0);
+        tolerance.put("allocation", 0.2);
+        if (Files.exists(file)) {
+            // Keep tolerances tuned by hand
+            mapper.readTree(file.toFile()).path("tolerance").fields()
+                    .forEachRemaining(entry -> tolerance.put(entry.getKey(), entry.getValue().asDouble()));
+        }
+        Map<String, Object> scenarios = new LinkedHashMap<>();
+        for (Result result : results) {
+            Map<String, Object> scenario = new LinkedHashMap<>();
+            scenario.put("p50-ms", round(result.p50Millis()));
+            scenario.put("p99-ms", round(result.p99Millis()));
+            scenario.put("p999-ms", round(result.p999Millis()));
+            scenario.put("allocated-bytes-per-request", Math.round(result.allocatedBytesPerRequest()));
+            scenarios.put(result.scenario(), scenario);
+        }
+        Map<String, Object> baseline = new LinkedHashMap<>();
+        baseline.put("rate", settings.rate());
+        baseline.put("tolerance", tolerance);
+        baseline.put("scenarios", scenarios);
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        mapper.writeValue(file.toFile(), baseline);
+        System.out.println("Baseline written to " + file.toAbsolutePath());
+    }
+
+    private static void report(List<Result> results, Path file) throws IOException {
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-14s %6s %8s %7s %10s %9s %9s %9s %10s %12s%n", "Scenario", "Rate", "Requests",
+                "Errors", "Req/s", "p50 (ms)", "p99 (ms)", "p999 (ms)", "Alloc MB/s", "Alloc B/req");
+        for (Result result : results) {
+            System.out.printf(Locale.ROOT, "%-14s %6d %8d %7d %10.0f %9.2f %9.2f %9.2f %10.1f %12.0f%n",
+                    result.scenario(), result.rate(), result.requests(), result.errors(), result.throughput(),
+                    result.p50Millis(), result.p99Millis(), result.p999Millis(), result.allocationMegabytesPerSecond(),
+                    result.allocatedBytesPerRequest());
+        }
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        mapper.writeValue(file.toFile(), results);
+        System.out.println("Results written to " + file.toAbsolutePath());
+    }
+
+    private static double round(double millis) {
+        return Math.round(millis * 100) / 100.0;
+    }
+
+    private static Duration duration(String property, String defaultValue) {
+        return DurationStyle.detectAndParse(System.getProperty(property, defaultValue));
+    }
+
+    private static String json(int size) {
+        StringBuilder json = new StringBuilder("{\"message\":\"");
+        while (json.length() < size - 2) {
+            json.append('x');
+        }
+        return json.append("\"}").toString();
+    }
+
+    /**
+     * @param rate     Requests per second of each scenario.
+     * @param warmup   Unmeasured run of each scenario before its measurement.
+     * @param duration Measured run of each scenario.
+     * @param subjects Number of distinct token subjects.
+     */
+    record Settings(int rate, Duration warmup, Duration duration, int subjects) {
+    }
+}
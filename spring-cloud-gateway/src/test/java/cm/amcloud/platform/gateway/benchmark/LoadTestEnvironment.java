@@ -0,0 +1,157 @@
+package cm.amcloud.platform.gateway.benchmark;
+
+import java.security.KeyPair;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * LoadTestEnvironment: The full gateway, with the routes and security chain of application.yml,
+ * in front of local stand-ins for everything it talks to, so that load tests run offline and
+ * give comparable results from one run to the next:
+ * <ul>
+ * <li>a JWT issuer serving the OIDC discovery document and the JWK set of a key generated for the
+ * run, and a set of tokens signed with it, one per subject;</li>
+ * <li>a stub service per route, two replicas for the billing upstream group. A stub answers
+ * every request with a small JSON body once it has read the request body, and echoes the
+ * `X-User-ID` header forwarded by the gateway in `X-Seen-User`.</li>
+ * </ul>
+ * The stubs run on their own event loops (`stub-*` threads), apart from the gateway's.
+ */
+final class LoadTestEnvironment implements AutoCloseable {
+
+    static final String SEEN_USER_HEADER = "X-Seen-User";
+
+    private static final String KEY_ID = "load-test";
+
+    private final LoopResources loops = LoopResources.create("stub", 2, true);
+    private final List<DisposableServer> servers = new ArrayList<>();
+    private List<String> tokens = List.of();
+    private ConfigurableApplicationContext gateway;
+    private int port;
+
+    private LoadTestEnvironment() {
+    }
+
+    /**
+     * Starts the issuer, the stubs, then the gateway.
+     *
+     * @param subjects The number of distinct token subjects.
+     * @return The running environment; the caller is responsible for closing it.
+     */
+    static LoadTestEnvironment start(int subjects) {
+        LoadTestEnvironment environment = new LoadTestEnvironment();
+        try {
+            environment.startAll(subjects);
+            return environment;
+        } catch (RuntimeException e) {
+            environment.close();
+            throw e;
+        }
+    }
+
+    private void startAll(int subjects) {
+        KeyPair keyPair = BenchmarkFixtures.rsaKeyPair();
+        String issuer = uri(startIssuer((RSAPublicKey) keyPair.getPublic()));
+        tokens = IntStream.range(0, subjects)
+                .mapToObj(i -> BenchmarkFixtures.signedToken((RSAPrivateKey) keyPair.getPrivate(), KEY_ID, issuer,
+                        "user-" + i))
+                .toList();
+
+        Map<String, Object> environment = BenchmarkFixtures.routeEnvironment();
+        String iam = uri(startStub("iam"));
+        environment.put("IAM_ROUTE_URI", iam);
+        environment.put("SECURE_DATA_ROUTE_URI", iam);
+        environment.put("BILLING_ROUTE_INSTANCES", uri(startStub("billing-1")) + "," + uri(startStub("billing-2")));
+        environment.put("RESERVATION_ROUTE_URI", uri(startStub("reservation")));
+        environment.put("INVITATION_ROUTE_URI", uri(startStub("invitation")));
+        environment.put("NOTIFICATION_ROUTE_URI", uri(startStub("notification")));
+        environment.put("JWT_ISSUER_URI", issuer);
+        environment.put("JWT_JWK_SET_URI", issuer + "/jwks.json");
+        // The rate is set by the load test: measure the limiters, not their rejections
+        environment.put("BILLING_RATE_LIMIT_REPLENISH_RATE", "1000000");
+        environment.put("BILLING_RATE_LIMIT_BURST_CAPACITY", "1000000");
+        environment.put("RESERVATION_RATE_LIMIT_REPLENISH_RATE", "1000000");
+        environment.put("RESERVATION_RATE_LIMIT_BURST_CAPACITY", "1000000");
+        gateway = BenchmarkFixtures.startGateway(environment);
+        port = gateway.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    /**
+     * Serves the OIDC discovery document and the JWK set, like IAM.
+     */
+    private DisposableServer startIssuer(RSAPublicKey publicKey) {
+        String jwks = new JWKSet(new RSAKey.Builder(publicKey).keyID(KEY_ID).build()).toString();
+        return bind(HttpServer.create()
+                .route(routes -> routes
+                        .get("/.well-known/openid-configuration", (request, response) -> {
+                            String issuer = "http://" + request.requestHeaders().get("Host");
+                            return response.header("Content-Type", "application/json")
+                                    .sendString(Mono.just("{\"issuer\":\"" + issuer + "\",\"jwks_uri\":\"" + issuer
+                                            + "/jwks.json\",\"subject_types_supported\":[\"public\"]}"));
+                        })
+                        .get("/jwks.json", (request, response) -> response.header("Content-Type", "application/json")
+                                .sendString(Mono.just(jwks)))));
+    }
+
+    private DisposableServer startStub(String name) {
+        String body = "{\"service\":\"" + name + "\",\"status\":\"ok\"}";
+        return bind(HttpServer.create()
+                .handle((request, response) -> {
+                    String user = request.requestHeaders().get("X-User-ID");
+                    if (user != null) {
+                        response.header(SEEN_USER_HEADER, user);
+                    }
+                    // Answers once the body is read. Each received buffer is copied out rather than
+                    // dropped: Reactor Netty releases it after delivery, and again if it is discarded
+                    return response.header("Content-Type", "application/json")
+                            .sendString(request.receive().asString().then(Mono.just(body)));
+                }));
+    }
+
+    private DisposableServer bind(HttpServer server) {
+        DisposableServer bound = server.host("localhost").port(0).runOn(loops).bindNow();
+        servers.add(bound);
+        return bound;
+    }
+
+    private static String uri(DisposableServer server) {
+        return "http://localhost:" + server.port();
+    }
+
+    /**
+     * @return The port of the gateway.
+     */
+    int port() {
+        return port;
+    }
+
+    /**
+     * @return Tokens of the issuer, for distinct subjects.
+     */
+    List<String> tokens() {
+        return tokens;
+    }
+
+    @Override
+    public void close() {
+        if (gateway != null) {
+            gateway.close();
+        }
+        servers.forEach(DisposableServer::disposeNow);
+        loops.dispose();
+    }
+}
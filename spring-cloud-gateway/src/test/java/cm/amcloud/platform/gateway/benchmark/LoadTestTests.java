@@ -0,0 +1,73 @@
+package cm.amcloud.platform.gateway.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import cm.amcloud.platform.gateway.benchmark.LoadGenerator.Result;
+
+/**
+ * Tests for the {@link LoadTest} harness: a short offline run through the full gateway, and the
+ * comparison of results with a baseline.
+ */
+class LoadTestTests {
+
+    /**
+     * Every scenario is answered 2xx by its stub, or the response cache, through the security chain
+     * and with the identity of the token forwarded, without any network access.
+     */
+    @Test
+    void runsEveryScenarioOffline() throws InterruptedException {
+        List<Result> results = LoadTest.run(new LoadTest.Settings(50, Duration.ZERO, Duration.ofSeconds(1), 5));
+
+        assertThat(results).extracting(Result::scenario)
+                .containsExactlyElementsOf(LoadTest.SCENARIOS.stream().map(LoadGenerator.Scenario::name).toList());
+        assertThat(results).allSatisfy(result -> {
+            assertThat(result.requests()).isEqualTo(50);
+            assertThat(result.errors()).isZero();
+            assertThat(result.statuses()).as(result.scenario()).allSatisfy((status, responses) ->
+                    assertThat(status).isBetween(200, 299));
+            assertThat(result.statuses().values().stream().mapToLong(Long::longValue).sum()).isEqualTo(50);
+            assertThat(result.p999Millis()).isGreaterThanOrEqualTo(result.p50Millis());
+            assertThat(result.allocatedBytesPerRequest()).isPositive();
+        });
+    }
+
+    @Test
+    void reportsRegressionsAgainstBaseline(@TempDir Path directory) throws IOException {
+        Path baseline = directory.resolve("baseline.json");
+        Files.writeString(baseline, """
+                {
+                  "rate": 100,
+                  "tolerance": {"throughput": 0.05, "p50": 0.5, "p99": 0.5, "latency-slack-ms": 1.0, "allocation": 0.2},
+                  "scenarios": {
+                    "billing": {"p50-ms": 1.0, "p99-ms": 4.0, "p999-ms": 8.0, "allocated-bytes-per-request": 50000}
+                  }
+                }
+                """);
+        LoadTest.Settings settings = new LoadTest.Settings(100, Duration.ZERO, Duration.ofSeconds(10), 10);
+
+        // Within tolerance: p99 up to 4 * 1.5 + 1 ms, allocation up to 60000 bytes
+        assertThat(LoadTest.regressions(List.of(result(0, 100, 6.9, 59_000)), settings, baseline)).isEmpty();
+        assertThat(LoadTest.regressions(List.of(result(0, 100, 7.5, 61_000)), settings, baseline))
+                .hasSize(2)
+                .anyMatch(regression -> regression.startsWith("billing: p99"))
+                .anyMatch(regression -> regression.contains("bytes allocated"));
+        // Errors and a missed rate are regressions even without a comparable baseline
+        assertThat(LoadTest.regressions(List.of(result(3, 80, 1, 1)), settings, directory.resolve("missing.json")))
+                .hasSize(2);
+    }
+
+    private static Result result(long errors, double throughput, double p99Millis, double bytesPerRequest) {
+        return new Result("billing", 100, 1000, errors, Map.of(200, 1000 - errors), throughput, 1.0, p99Millis, p99Millis * 2, 10,
+                bytesPerRequest);
+    }
+}
@@ -0,0 +1,74 @@
+package cm.amcloud.platform.gateway.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.RewritePathGatewayFilterFactory;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import cm.amcloud.platform.gateway.filter.CompiledRewritePathGatewayFilterFactory;
+import reactor.core.publisher.Mono;
+
+/**
+ * RewritePathBenchmark: Applies the billing route's RewritePath filter with the built-in factory
+ * and with {@link CompiledRewritePathGatewayFilterFactory}, which parses the replacement template
+ * once instead of on every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RewritePathBenchmark {
+
+    private static final String PATH = "/billing/customers/42/invoices";
+
+    private GatewayFilter builtin;
+    private GatewayFilter compiled;
+    private GatewayFilterChain chain;
+
+    private ServerWebExchange rewritten;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RewritePathGatewayFilterFactory.Config config = new RewritePathGatewayFilterFactory.Config()
+                .setRegexp("/billing(?<segment>/?.*)")
+                .setReplacement("/api/subscriptions$\\{segment}");
+        builtin = new RewritePathGatewayFilterFactory().apply(config);
+        compiled = new CompiledRewritePathGatewayFilterFactory().apply(config);
+        chain = exchange -> {
+            rewritten = exchange;
+            return Mono.empty();
+        };
+    }
+
+    @Benchmark
+    public Object builtinRewrite() {
+        return rewrite(builtin);
+    }
+
+    @Benchmark
+    public Object compiledRewrite() {
+        return rewrite(compiled);
+    }
+
+    private Object rewrite(GatewayFilter filter) {
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get(PATH)), chain).block();
+        return rewritten.getRequest().getPath();
+    }
+}
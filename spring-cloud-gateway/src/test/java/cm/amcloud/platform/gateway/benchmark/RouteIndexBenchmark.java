@@ -0,0 +1,88 @@
+package cm.amcloud.platform.gateway.benchmark;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import cm.amcloud.platform.gateway.route.CompiledRouteTable;
+import reactor.core.publisher.Flux;
+
+/**
+ * RouteIndexBenchmark: Compares the linear route scan of RoutePredicateHandlerMapping with the
+ * {@link CompiledRouteTable} lookup on synthetic tables of `/serviceN/**` routes, for a path that
+ * matches the last route (the worst case of the linear scan).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteIndexBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int routeCount;
+
+    private List<Route> routes;
+    private CompiledRouteTable table;
+    private String path;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PathRoutePredicateFactory pathPredicates = new PathRoutePredicateFactory();
+        routes = new ArrayList<>(routeCount);
+        Map<String, List<String>> patterns = new HashMap<>();
+        for (int i = 0; i < routeCount; i++) {
+            String id = "service" + i;
+            PathRoutePredicateFactory.Config config = new PathRoutePredicateFactory.Config();
+            config.setPatterns(List.of("/" + id + "/**"));
+            routes.add(Route.async().id(id).uri(URI.create("http://localhost"))
+                    .asyncPredicate(pathPredicates.applyAsync(config)).build());
+            patterns.put(id, config.getPatterns());
+        }
+        table = CompiledRouteTable.compile(routes, patterns);
+        path = "/service" + (routeCount - 1) + "/resources/42";
+        if (linearScan() == null || indexedLookup() == null) {
+            throw new IllegalStateException("No route matched " + path);
+        }
+    }
+
+    @Benchmark
+    public Route linearScan() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(path));
+        return Flux.fromIterable(routes)
+                .filterWhen(route -> {
+                    exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_PREDICATE_ROUTE_ATTR, route.getId());
+                    return route.getPredicate().apply(exchange);
+                })
+                .next()
+                .block();
+    }
+
+    @Benchmark
+    public Route indexedLookup() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(path));
+        return table.firstMatch(exchange).block();
+    }
+}
@@ -0,0 +1,71 @@
+package cm.amcloud.platform.gateway.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+/**
+ * RouteMatchingBenchmark: Resolves the handler for a request path through the gateway's
+ * RoutePredicateHandlerMapping, using the full route table of application.yml loaded in a
+ * running application context. Paths are chosen to hit the first route, a route in the
+ * middle of the table and no route at all. Route lookup only reaches steady state after
+ * the predicate chains are JIT-compiled, hence the longer warmup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteMatchingBenchmark {
+
+    @Param({ "/public/hello", "/reservations/42", "/unknown/path" })
+    public String path;
+
+    private ConfigurableApplicationContext context;
+    private RoutePredicateHandlerMapping handlerMapping;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkFixtures.startGateway();
+        handlerMapping = context.getBean(RoutePredicateHandlerMapping.class);
+        if (matchRoute() == null && !path.startsWith("/unknown")) {
+            throw new IllegalStateException("No route matched " + path + ", is the route table loaded?");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Baseline: creating the mock exchange alone, to be subtracted from {@link #matchRoute()}.
+     */
+    @Benchmark
+    public Object createExchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+    }
+
+    @Benchmark
+    public Object matchRoute() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(path));
+        return handlerMapping.getHandler(exchange).block();
+    }
+}
@@ -0,0 +1,270 @@
+package cm.amcloud.platform.gateway.benchmark;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * StartupBenchmark: Measures the cold start of the packaged gateway, i.e. what an autoscaled
+ * instance goes through. Each run launches a new JVM and reports:
+ * <ul>
+ * <li>the time from launching the JVM until a request is routed to an upstream (time to first
+ * routed request);</li>
+ * <li>the resident memory (RSS) of the process at that point.</li>
+ * </ul>
+ * The default build (`java -jar`) is compared with the fast-start build of the `fast-start` Maven
+ * profile (AOT, CDS archive, lazy initialization). IAM and the routed services are replaced by a
+ * local stub, so that results do not depend on the network.
+ * <p>
+ * Run with: `./mvnw -Pfast-start,startup-benchmark verify`. The number of measured runs per build
+ * is set with `-Dstartup.runs` (default 5); results are printed and written to
+ * target/startup-result.json.
+ */
+public final class StartupBenchmark {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+    private static final String ARCHIVE = "application.jsa";
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(200))
+            .build();
+    private final String upstreamUri;
+    private final Path logDirectory;
+
+    private StartupBenchmark(String upstreamUri, Path logDirectory) {
+        this.upstreamUri = upstreamUri;
+        this.logDirectory = logDirectory;
+    }
+
+    /**
+     * @param args The packaged jar and, optionally, the extracted fast-start directory.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Usage: StartupBenchmark <jar> [<fast-start directory>]");
+        }
+        Path jar = Path.of(args[0]);
+        Path fastStart = args.length > 1 ? Path.of(args[1]) : null;
+        int runs = Integer.getInteger("startup.runs", 5);
+        Path result = Path.of(System.getProperty("startup.result", "target/startup-result.json"));
+        Path logDirectory = Files.createDirectories(result.resolveSibling("startup-logs"));
+
+        DisposableServer upstream = startUpstream();
+        try {
+            StartupBenchmark benchmark = new StartupBenchmark("http://localhost:" + upstream.port(), logDirectory);
+            List<Result> results = new ArrayList<>();
+            results.add(benchmark.measure("default", List.of("-jar", jar.toString()), runs));
+            if (fastStart != null && Files.isDirectory(fastStart)) {
+                Path fastStartJar = fastStart.resolve(jar.getFileName());
+                Path archive = fastStart.resolve(ARCHIVE);
+                List<String> fastStartOptions = List.of("-Dspring.aot.enabled=true",
+                        "-Dspring.profiles.active=fast-start");
+                benchmark.train(fastStartJar, archive, fastStartOptions);
+                List<String> arguments = new ArrayList<>();
+                arguments.add("-XX:SharedArchiveFile=" + archive);
+                arguments.addAll(fastStartOptions);
+                arguments.addAll(List.of("-jar", fastStartJar.toString()));
+                results.add(benchmark.measure("fast-start", arguments, runs));
+            } else {
+                System.out.println("No fast-start build found, run with -Pfast-start to compare");
+            }
+            report(results, result);
+        } finally {
+            upstream.disposeNow();
+        }
+    }
+
+    /**
+     * Serves the OIDC discovery document and an empty JWK set like IAM, and answers every other
+     * request like a routed service.
+     */
+    private static DisposableServer startUpstream() {
+        return HttpServer.create()
+                .port(0)
+                .route(routes -> routes
+                        .get("/.well-known/openid-configuration", (request, response) -> {
+                            String issuer = "http://" + request.requestHeaders().get("Host");
+                            return response.header("Content-Type", "application/json")
+                                    .sendString(Mono.just("{\"issuer\":\"" + issuer + "\",\"jwks_uri\":\"" + issuer
+                                            + "/jwks.json\",\"subject_types_supported\":[\"public\"]}"));
+                        })
+                        .get("/jwks.json", (request, response) -> response.header("Content-Type", "application/json")
+                                .sendString(Mono.just("{\"keys\":[]}")))
+                        .route(request -> true, (request, response) -> response.sendString(Mono.just("ok"))))
+                .bindNow();
+    }
+
+    /**
+     * Creates the CDS archive of the fast-start build if it does not exist yet, from a run that
+     * starts the application context and exits, as done in the Dockerfile.
+     */
+    private void train(Path jar, Path archive, List<String> options) throws IOException, InterruptedException {
+        if (Files.exists(archive)) {
+            return;
+        }
+        System.out.println("Creating " + archive);
+        List<String> arguments = new ArrayList<>();
+        arguments.add("-XX:ArchiveClassesAtExit=" + archive);
+        arguments.add("-Dspring.context.exit=onRefresh");
+        arguments.addAll(options);
+        arguments.addAll(List.of("-jar", jar.toString()));
+        Process process = launch(arguments, freePort(), logDirectory.resolve("fast-start-training.log"));
+        if (!process.waitFor(STARTUP_TIMEOUT.toSeconds(), TimeUnit.SECONDS) || process.exitValue() != 0) {
+            process.destroyForcibly();
+            throw new IllegalStateException("Training run failed, see " + logDirectory);
+        }
+    }
+
+    private Result measure(String build, List<String> arguments, int runs) throws IOException, InterruptedException {
+        // One discarded run, so that all measured runs start with the jars in the page cache
+        run(build, 0, arguments);
+        double[] times = new double[runs];
+        double[] rss = new double[runs];
+        for (int i = 0; i < runs; i++) {
+            Sample sample = run(build, i + 1, arguments);
+            times[i] = sample.millis();
+            rss[i] = sample.rssMegabytes();
+            System.out.printf(Locale.ROOT, "%-10s run %d: first routed request after %.0f ms, RSS %.0f MB%n",
+                    build, i + 1, sample.millis(), sample.rssMegabytes());
+        }
+        return new Result(build, times, rss);
+    }
+
+    private Sample run(String build, int run, List<String> arguments) throws IOException, InterruptedException {
+        int port = freePort();
+        long start = System.nanoTime();
+        Process process = launch(arguments, port, logDirectory.resolve(build + "-" + run + ".log"));
+        try {
+            awaitRoutedRequest(process, port, start);
+            double millis = (System.nanoTime() - start) / 1_000_000.0;
+            return new Sample(millis, residentMegabytes(process.pid()));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private Process launch(List<String> arguments, int port, Path log) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Xshare:auto");
+        command.add("-Xlog:cds=off");
+        command.addAll(arguments);
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile());
+        Map<String, String> environment = builder.environment();
+        BenchmarkFixtures.routeEnvironment().forEach((name, value) -> environment.put(name, value.toString()));
+        environment.put("GATEWAY_SERVER_PORT", String.valueOf(port));
+        environment.put("IAM_ROUTE_URI", upstreamUri);
+        environment.put("JWT_ISSUER_URI", upstreamUri);
+        environment.put("JWT_JWK_SET_URI", upstreamUri + "/jwks.json");
+        return builder.start();
+    }
+
+    /**
+     * Polls a public route (`/auth/**`, routed to IAM) until the stub upstream answers through the
+     * gateway.
+     */
+    private void awaitRoutedRequest(Process process, int port, long start) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/auth/startup"))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        while (System.nanoTime() - start < STARTUP_TIMEOUT.toNanos()) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Gateway exited with " + process.exitValue() + ", see " + logDirectory);
+            }
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200 && "ok".equals(response.body())) {
+                    return;
+                }
+            } catch (ConnectException e) {
+                // Not listening yet
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException("No routed response within " + STARTUP_TIMEOUT);
+    }
+
+    /**
+     * @return The resident set size of the process, from /proc on Linux or `ps` elsewhere.
+     */
+    private static double residentMegabytes(long pid) throws IOException, InterruptedException {
+        Path status = Path.of("/proc", String.valueOf(pid), "status");
+        if (Files.exists(status)) {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", "")) / 1024.0;
+                }
+            }
+        }
+        Process ps = new ProcessBuilder("ps", "-o", "rss=", "-p", String.valueOf(pid)).start();
+        String output = new String(ps.getInputStream().readAllBytes(), StandardCharsets.US_ASCII).trim();
+        ps.waitFor();
+        return output.isEmpty() ? Double.NaN : Long.parseLong(output) / 1024.0;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void report(List<Result> results, Path file) throws IOException {
+        StringBuilder json = new StringBuilder("[\n");
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-10s %5s %14s %14s %14s %14s%n",
+                "Build", "Runs", "TTFR min (ms)", "TTFR p50 (ms)", "TTFR max (ms)", "RSS p50 (MB)");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            double[] times = result.times().clone();
+            Arrays.sort(times);
+            double rss = median(result.rss());
+            System.out.printf(Locale.ROOT, "%-10s %5d %14.0f %14.0f %14.0f %14.0f%n", result.build(), times.length,
+                    times[0], median(times), times[times.length - 1], rss);
+            json.append(String.format(Locale.ROOT,
+                    "  {\"build\": \"%s\", \"runs\": %d, \"timeToFirstRoutedRequestMs\": {\"min\": %.1f, \"p50\": %.1f, "
+                            + "\"max\": %.1f}, \"rssMb\": {\"p50\": %.1f}}%s%n",
+                    result.build(), times.length, times[0], median(times), times[times.length - 1], rss,
+                    i < results.size() - 1 ? "," : ""));
+        }
+        json.append("]\n");
+        Files.writeString(file, json);
+        System.out.println("Results written to " + file.toAbsolutePath());
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    private record Sample(double millis, double rssMegabytes) {
+    }
+
+    private record Result(String build, double[] times, double[] rss) {
+    }
+}
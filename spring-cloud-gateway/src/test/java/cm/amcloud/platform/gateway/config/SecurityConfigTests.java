@@ -0,0 +1,50 @@
+package cm.amcloud.platform.gateway.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Unit tests for the conditions of {@link SecurityConfig}: the JWK set source exists whenever
+ * the decoder is configured in `local-jwks` mode, however the mode is spelled.
+ */
+class SecurityConfigTests {
+
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withUserConfiguration(LocalJwksModeBean.class);
+
+    @ParameterizedTest
+    @ValueSource(strings = { "local-jwks", "LOCAL_JWKS", "localJwks", "Local-Jwks" })
+    void matchesEverySpellingOfLocalJwksMode(String mode) {
+        runner.withPropertyValues("gateway.security.jwt.mode=" + mode)
+                .run(context -> assertThat(context).hasBean("localJwksMode"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "issuer", "ISSUER" })
+    void doesNotMatchIssuerMode(String mode) {
+        runner.withPropertyValues("gateway.security.jwt.mode=" + mode)
+                .run(context -> assertThat(context).doesNotHaveBean("localJwksMode"));
+    }
+
+    @Test
+    void doesNotMatchByDefault() {
+        runner.run(context -> assertThat(context).doesNotHaveBean("localJwksMode"));
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    static class LocalJwksModeBean {
+
+        @Bean
+        @Conditional(SecurityConfig.LocalJwksModeCondition.class)
+        String localJwksMode() {
+            return "local-jwks";
+        }
+    }
+}
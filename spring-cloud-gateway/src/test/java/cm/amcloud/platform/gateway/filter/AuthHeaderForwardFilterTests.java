@@ -0,0 +1,93 @@
+package cm.amcloud.platform.gateway.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import cm.amcloud.platform.gateway.security.JwtIdentityConverter;
+import reactor.core.publisher.Mono;
+
+/**
+ * Unit tests for {@link AuthHeaderForwardFilter}: the rest of the chain runs exactly once, with
+ * the identity headers of the authenticated token, or untouched without one.
+ */
+class AuthHeaderForwardFilterTests {
+
+    private final AuthHeaderForwardFilter filter = new AuthHeaderForwardFilter();
+    private final List<HttpHeaders> forwarded = new ArrayList<>();
+    private final GatewayFilterChain chain = exchange -> {
+        forwarded.add(exchange.getRequest().getHeaders());
+        return Mono.empty();
+    };
+
+    @Test
+    void forwardsIdentityHeadersOnce() {
+        Jwt jwt = jwt().claim("roles", List.of("ROLE_USER", "ROLE_ADMIN")).claim("scope", "read write").build();
+        Authentication authentication = new JwtIdentityConverter(100).convert(jwt).block();
+
+        run(authentication);
+
+        assertThat(forwarded).hasSize(1);
+        assertThat(forwarded.get(0).getFirst("X-User-ID")).isEqualTo("user-1");
+        assertThat(forwarded.get(0).getFirst("X-User-Roles")).isEqualTo("ROLE_USER,ROLE_ADMIN");
+        assertThat(forwarded.get(0).getFirst("X-User-Scopes")).isEqualTo("READ,WRITE");
+    }
+
+    /**
+     * A token built by another converter gets its headers from its authorities.
+     */
+    @Test
+    void forwardsHeadersOfPlainJwtAuthentication() {
+        Jwt jwt = jwt().build();
+
+        run(new JwtAuthenticationToken(jwt, AuthorityUtils.createAuthorityList("ROLE_USER", "SCOPE_READ")));
+
+        assertThat(forwarded).hasSize(1);
+        assertThat(forwarded.get(0).getFirst("X-User-ID")).isEqualTo("user-1");
+        assertThat(forwarded.get(0).getFirst("X-User-Roles")).isEqualTo("ROLE_USER");
+        assertThat(forwarded.get(0).getFirst("X-User-Scopes")).isEqualTo("READ");
+    }
+
+    @Test
+    void runsChainOnceWithoutAuthentication() {
+        filter.filter(exchange(), chain).block();
+
+        assertThat(forwarded).hasSize(1);
+        assertThat(forwarded.get(0).containsKey("X-User-ID")).isFalse();
+    }
+
+    @Test
+    void runsChainOnceForOtherAuthentication() {
+        run(new TestingAuthenticationToken("user-1", null, "ROLE_USER"));
+
+        assertThat(forwarded).hasSize(1);
+        assertThat(forwarded.get(0).containsKey("X-User-ID")).isFalse();
+    }
+
+    private void run(Authentication authentication) {
+        filter.filter(exchange(), chain)
+                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication))
+                .block();
+    }
+
+    private static MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/secured").build());
+    }
+
+    private static Jwt.Builder jwt() {
+        return Jwt.withTokenValue("token").header("alg", "RS256").subject("user-1");
+    }
+}
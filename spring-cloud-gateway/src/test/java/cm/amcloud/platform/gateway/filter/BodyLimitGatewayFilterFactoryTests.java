@@ -0,0 +1,262 @@
+package cm.amcloud.platform.gateway.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * Unit tests for {@link BodyLimitGatewayFilterFactory}. Bodies are made of Netty buffers whose
+ * reference counts are checked after each test, so a buffer the filter drops without releasing
+ * fails the test.
+ */
+class BodyLimitGatewayFilterFactoryTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BodyLimitGatewayFilterFactory factory = new BodyLimitGatewayFilterFactory(meterRegistry);
+    private final LeakTrackingBufferFactory bufferFactory = new LeakTrackingBufferFactory();
+
+    @AfterEach
+    void allBuffersReleased() {
+        bufferFactory.assertAllReleased();
+    }
+
+    /**
+     * A request announcing a body over the limit is rejected before its body is read or anything
+     * is sent upstream.
+     */
+    @Test
+    void rejectsOversizedContentLengthBeforeReading() {
+        GatewayFilter filter = filter("1KB", null);
+        AtomicBoolean bodyRead = new AtomicBoolean();
+        MockServerWebExchange exchange = exchange(MockServerHttpRequest.post("/notifications/upload")
+                .contentLength(2048)
+                .body(Flux.defer(() -> {
+                    bodyRead.set(true);
+                    return body(2048);
+                })));
+        AtomicBoolean upstreamCalled = new AtomicBoolean();
+
+        filter.filter(exchange, e -> {
+            upstreamCalled.set(true);
+            return Mono.empty();
+        }).block();
+
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+        assertThat(upstreamCalled).isFalse();
+        assertThat(bodyRead).isFalse();
+        assertThat(meterRegistry.get("gateway.route.body.rejected").tag("direction", "request").counter().count())
+                .isEqualTo(1);
+    }
+
+    /**
+     * A chunked request is stopped with a 413 as soon as it exceeds the limit; upstream only
+     * received the buffers within the limit.
+     */
+    @Test
+    void rejectsChunkedRequestExceedingLimitWhileStreaming() {
+        GatewayFilter filter = filter("1KB", null);
+        MockServerWebExchange exchange = exchange(MockServerHttpRequest.post("/notifications/upload")
+                .header(HttpHeaders.TRANSFER_ENCODING, "chunked")
+                .body(Flux.concat(body(512), body(512), body(512), body(512))));
+        List<Integer> forwarded = new CopyOnWriteArrayList<>();
+
+        filter.filter(exchange, e -> e.getRequest().getBody()
+                .doOnNext(buffer -> {
+                    forwarded.add(buffer.readableByteCount());
+                    DataBufferUtils.release(buffer);
+                })
+                .then()).block();
+
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+        assertThat(forwarded).containsExactly(512, 512);
+        assertThat(streaming("request")).isZero();
+    }
+
+    /**
+     * Behind the filter and the identity header forwarding, upstream receives the very Netty
+     * buffers read from the client, with the X-User-* headers added.
+     */
+    @Test
+    void forwardsClientBuffersWithoutCopying() {
+        GatewayFilter filter = filter("1MB", null);
+        List<DataBuffer> received = List.of(buffer(1024), buffer(1024), buffer(100));
+        MockServerWebExchange exchange = exchange(MockServerHttpRequest.post("/notifications/upload")
+                .header(HttpHeaders.TRANSFER_ENCODING, "chunked")
+                .body(Flux.fromIterable(received)));
+        List<DataBuffer> forwarded = new CopyOnWriteArrayList<>();
+        AuthHeaderForwardFilter authHeaderForwardFilter = new AuthHeaderForwardFilter();
+        // Deferred like the gateway's filter chain
+        GatewayFilterChain upstream = e -> Mono.defer(() -> {
+            assertThat(e.getRequest().getHeaders().getFirst("X-User-ID")).isEqualTo("alice");
+            return e.getRequest().getBody()
+                    .doOnNext(buffer -> {
+                        forwarded.add(buffer);
+                        DataBufferUtils.release(buffer);
+                    })
+                    .then();
+        });
+
+        filter.filter(exchange, e -> authHeaderForwardFilter.filter(e, upstream))
+                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication("alice")))
+                .block();
+
+        assertThat(forwarded).hasSize(3);
+        for (int i = 0; i < received.size(); i++) {
+            assertThat(forwarded.get(i)).isSameAs(received.get(i)).isInstanceOf(NettyDataBuffer.class);
+        }
+        assertThat(meterRegistry.get("gateway.route.body.size").tag("direction", "request").summary().totalAmount())
+                .isEqualTo(2148);
+        assertThat(streaming("request")).isZero();
+    }
+
+    /**
+     * An upstream response announcing a body over the limit is answered 502 without streaming it.
+     */
+    @Test
+    void rejectsOversizedUpstreamResponse() {
+        GatewayFilter filter = filter(null, "1KB");
+        MockServerWebExchange exchange = exchange(MockServerHttpRequest.get("/notifications/export").build());
+
+        filter.filter(exchange, e -> {
+            e.getResponse().setStatusCode(HttpStatus.OK);
+            e.getResponse().getHeaders().setContentLength(4096);
+            return e.getResponse().writeWith(Flux.concat(body(2048), body(2048)));
+        }).block();
+
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.BAD_GATEWAY);
+        assertThat(exchange.getResponse().getHeaders().getContentLength()).isNotEqualTo(4096);
+        assertThat(meterRegistry.get("gateway.route.body.rejected").tag("direction", "response").counter().count())
+                .isEqualTo(1);
+    }
+
+    /**
+     * A chunked response exceeding the limit mid-stream fails the write, which aborts the
+     * connection to the client.
+     */
+    @Test
+    void failsChunkedResponseExceedingLimit() {
+        GatewayFilter filter = filter(null, "1KB");
+        MockServerWebExchange exchange = exchange(MockServerHttpRequest.get("/notifications/export").build());
+
+        StepVerifier.create(filter.filter(exchange, e -> e.getResponse().writeWith(Flux.concat(body(800), body(800)))))
+                .expectError(DataBufferLimitException.class)
+                .verify();
+
+        assertThat(streaming("response")).isZero();
+    }
+
+    /**
+     * Bodies within the limits are streamed and their sizes recorded.
+     */
+    @Test
+    void recordsBodySizes() {
+        GatewayFilter filter = filter("1KB", "1KB");
+        MockServerWebExchange exchange = exchange(MockServerHttpRequest.post("/notifications/send")
+                .contentLength(300)
+                .body(body(300)));
+
+        filter.filter(exchange, e -> e.getRequest().getBody()
+                .doOnNext(DataBufferUtils::release)
+                .then(Mono.defer(() -> {
+                    e.getResponse().setStatusCode(HttpStatus.OK);
+                    return e.getResponse().writeWith(body(700));
+                }))).block();
+
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(meterRegistry.get("gateway.route.body.size").tag("direction", "request").summary().max())
+                .isEqualTo(300);
+        assertThat(meterRegistry.get("gateway.route.body.size").tag("direction", "response").summary().max())
+                .isEqualTo(700);
+    }
+
+    private GatewayFilter filter(String maxRequestSize, String maxResponseSize) {
+        BodyLimitGatewayFilterFactory.Config config = new BodyLimitGatewayFilterFactory.Config()
+                .setMaxRequestSize(maxRequestSize == null ? null : DataSize.parse(maxRequestSize))
+                .setMaxResponseSize(maxResponseSize == null ? null : DataSize.parse(maxResponseSize));
+        config.setRouteId("notification_route");
+        return factory.apply(config);
+    }
+
+    private double streaming(String direction) {
+        return meterRegistry.get("gateway.route.body.streaming").tag("direction", direction).gauge().value();
+    }
+
+    private MockServerWebExchange exchange(MockServerHttpRequest request) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        // Writes to the client release the buffers, as the server does once they are flushed
+        exchange.getResponse().setWriteHandler(body -> body.doOnNext(DataBufferUtils::release).then());
+        return exchange;
+    }
+
+    private Flux<DataBuffer> body(int size) {
+        return Mono.fromSupplier(() -> buffer(size)).flux();
+    }
+
+    private DataBuffer buffer(int size) {
+        return bufferFactory.wrap("x".repeat(size).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static JwtAuthenticationToken authentication(String subject) {
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject(subject)
+                .claims(claims -> claims.putAll(Map.of("roles", List.of("ROLE_USER"))))
+                .build();
+        return new JwtAuthenticationToken(jwt);
+    }
+
+    /**
+     * Netty buffer factory remembering every buffer it creates. Unpooled buffers are not
+     * recycled, so a reference count above zero after a test is a leak.
+     */
+    private static final class LeakTrackingBufferFactory extends NettyDataBufferFactory {
+
+        private final List<NettyDataBuffer> buffers = new CopyOnWriteArrayList<>();
+
+        LeakTrackingBufferFactory() {
+            super(new UnpooledByteBufAllocator(true));
+        }
+
+        @Override
+        public NettyDataBuffer wrap(byte[] bytes) {
+            NettyDataBuffer buffer = allocateBuffer(bytes.length);
+            buffer.write(bytes);
+            buffers.add(buffer);
+            return buffer;
+        }
+
+        void assertAllReleased() {
+            assertThat(buffers).allSatisfy(buffer -> assertThat(buffer.getNativeBuffer().refCnt())
+                    .as("reference count of %s", buffer)
+                    .isZero());
+        }
+    }
+}
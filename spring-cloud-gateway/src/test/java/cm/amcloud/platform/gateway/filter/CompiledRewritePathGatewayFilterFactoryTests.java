@@ -0,0 +1,101 @@
+package cm.amcloud.platform.gateway.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ORIGINAL_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+
+import java.net.URI;
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.RewritePathGatewayFilterFactory;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Unit tests for {@link CompiledRewritePathGatewayFilterFactory}: rewrites must be identical to
+ * those of {@code Matcher.replaceAll}, which the built-in RewritePath filter uses.
+ */
+class CompiledRewritePathGatewayFilterFactoryTests {
+
+    private final CompiledRewritePathGatewayFilterFactory factory = new CompiledRewritePathGatewayFilterFactory();
+
+    /**
+     * The precompiled template gives the same result as Matcher.replaceAll for the route table's templates.
+     */
+    @Test
+    void replacesLikeMatcherReplaceAll() {
+        assertSameAsReplaceAll("/public/(?<segment>.*)", "/test/public/${segment}", "/public/hello/world");
+        assertSameAsReplaceAll("/billing(?<segment>/?.*)", "/api/subscriptions${segment}", "/billing");
+        assertSameAsReplaceAll("/billing(?<segment>/?.*)", "/api/subscriptions${segment}", "/billing/42");
+        assertSameAsReplaceAll("/api/secured", "/test/api/secured", "/api/secured");
+        assertSameAsReplaceAll("/(a)(b)?", "/$2-$1\\$-$10", "/a/ab/x");
+        assertSameAsReplaceAll("/nomatch", "/x", "/other/path");
+    }
+
+    /**
+     * Invalid templates are rejected when the route is built, not on the first request.
+     */
+    @Test
+    void rejectsInvalidTemplateAtStartup() {
+        assertThatIllegalArgumentException().isThrownBy(() -> factory.apply(config("/(a)", "/$2")));
+        assertThatIllegalArgumentException().isThrownBy(() -> factory.apply(config("/(a)", "/${a")));
+        assertThatIllegalArgumentException().isThrownBy(() -> factory.apply(config("/public/(?<segment>.*)", "/${segmnet}")))
+                .withMessageContaining("segmnet");
+    }
+
+    /**
+     * Only capturing groups count as names: not lookbehinds, nor a `(?<` that is escaped, quoted or
+     * in a character class.
+     */
+    @Test
+    void collectsNamedGroupsOfPattern() {
+        String regexp = "/(?<first>a)(?<=a)(?<!b)\\(?<escaped>\\)\\Q(?<quoted>)\\E[(?<inClass>)][]](?<second2>b)";
+        Pattern.compile(regexp);
+
+        assertThat(CompiledRewritePathGatewayFilterFactory.Replacement.namedGroups(regexp))
+                .containsExactlyInAnyOrder("first", "second2");
+    }
+
+    /**
+     * The filter rewrites the request path and records the original and new request URLs.
+     */
+    @Test
+    void rewritesRequestPath() {
+        GatewayFilter filter = factory.apply(config("/public/(?<segment>.*)", "/test/public/$\\{segment}"));
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://gw/public/hello?x=1"));
+        AtomicReference<ServerWebExchange> forwarded = new AtomicReference<>();
+
+        filter.filter(exchange, next -> {
+            forwarded.set(next);
+            return Mono.empty();
+        }).block();
+
+        assertThat(forwarded.get().getRequest().getURI().getRawPath()).isEqualTo("/test/public/hello");
+        assertThat(forwarded.get().getRequest().getURI().getRawQuery()).isEqualTo("x=1");
+        assertThat(exchange.<URI>getAttribute(GATEWAY_REQUEST_URL_ATTR).getRawPath()).isEqualTo("/test/public/hello");
+        assertThat(exchange.<LinkedHashSet<URI>>getAttribute(GATEWAY_ORIGINAL_REQUEST_URL_ATTR))
+                .containsExactly(URI.create("http://gw/public/hello?x=1"));
+    }
+
+    private static void assertSameAsReplaceAll(String regexp, String template, String path) {
+        Pattern pattern = Pattern.compile(regexp);
+        String expected = pattern.matcher(path).replaceAll(template);
+
+        String actual = CompiledRewritePathGatewayFilterFactory.Replacement.compile(template, pattern)
+                .replaceAll(pattern.matcher(path), path);
+
+        assertThat(actual).as("%s -> %s on %s", regexp, template, path).isEqualTo(expected);
+    }
+
+    private static RewritePathGatewayFilterFactory.Config config(String regexp, String replacement) {
+        return new RewritePathGatewayFilterFactory.Config().setRegexp(regexp).setReplacement(replacement);
+    }
+}
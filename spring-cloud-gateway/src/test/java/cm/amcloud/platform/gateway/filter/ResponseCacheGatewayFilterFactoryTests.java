@@ -0,0 +1,274 @@
+package cm.amcloud.platform.gateway.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.web.server.ServerWebExchange;
+
+import cm.amcloud.platform.gateway.cache.ResponseCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Unit tests for {@link ResponseCacheGatewayFilterFactory} against a stub upstream that writes
+ * its response the way NettyWriteResponseFilter does.
+ */
+class ResponseCacheGatewayFilterFactoryTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger upstreamRequests = new AtomicInteger();
+
+    private ResponseCacheGatewayFilterFactory factory;
+    private String cacheControl;
+    private Duration upstreamDelay = Duration.ZERO;
+
+    @BeforeEach
+    void setUp() {
+        factory = new ResponseCacheGatewayFilterFactory(new ResponseCache(1024 * 1024, 1024, Duration.ofSeconds(10)),
+                meterRegistry);
+    }
+
+    /**
+     * The second request is served from the cache, with the upstream status, headers and body.
+     */
+    @Test
+    void servesRepeatedGetFromCache() {
+        GatewayFilter filter = filter(ResponseCacheGatewayFilterFactory.VaryOn.NONE);
+
+        MockServerWebExchange first = get("/public/hello");
+        MockServerWebExchange second = get("/public/hello");
+        run(filter, first);
+        run(filter, second);
+
+        assertThat(upstreamRequests).hasValue(1);
+        assertThat(second.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(second.getResponse().getHeaders().getETag()).isEqualTo("\"v1\"");
+        assertThat(second.getResponse().getHeaders().getFirst(HttpHeaders.AGE)).isEqualTo("0");
+        assertThat(second.getResponse().getBodyAsString().block()).isEqualTo("payload for /public/hello");
+        assertThat(requests("hit")).isEqualTo(1);
+        assertThat(requests("miss")).isEqualTo(1);
+        assertThat(meterRegistry.get("gateway.response.cache.served").counter().count())
+                .isEqualTo("payload for /public/hello".length());
+    }
+
+    /**
+     * `no-store` responses and `no-cache` requests are not served from the cache.
+     */
+    @Test
+    void honoursCacheControl() {
+        GatewayFilter filter = filter(ResponseCacheGatewayFilterFactory.VaryOn.NONE);
+        cacheControl = "no-store";
+        run(filter, get("/public/a"));
+        run(filter, get("/public/a"));
+        assertThat(upstreamRequests).hasValue(2);
+
+        cacheControl = "max-age=60";
+        run(filter, get("/public/b"));
+        run(filter, MockServerWebExchange.from(MockServerHttpRequest.get("/public/b").header(HttpHeaders.CACHE_CONTROL, "no-cache")));
+        assertThat(upstreamRequests).hasValue(4);
+        assertThat(requests("bypass")).isEqualTo(1);
+    }
+
+    /**
+     * A conditional request matching the cached ETag gets a 304 without body.
+     */
+    @Test
+    void answersConditionalRequestWithNotModified() {
+        GatewayFilter filter = filter(ResponseCacheGatewayFilterFactory.VaryOn.NONE);
+        run(filter, get("/public/hello"));
+
+        MockServerWebExchange conditional = MockServerWebExchange.from(
+                MockServerHttpRequest.get("/public/hello").header(HttpHeaders.IF_NONE_MATCH, "\"v1\""));
+        run(filter, conditional);
+
+        assertThat(conditional.getResponse().getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(upstreamRequests).hasValue(1);
+    }
+
+    /**
+     * When varying on the subject, each user gets its own entry.
+     */
+    @Test
+    void variesOnSubject() {
+        GatewayFilter filter = filter(ResponseCacheGatewayFilterFactory.VaryOn.SUBJECT);
+
+        run(filter, authenticated("/api/data/read", "alice"));
+        run(filter, authenticated("/api/data/read", "bob"));
+        run(filter, authenticated("/api/data/read", "alice"));
+
+        assertThat(upstreamRequests).hasValue(2);
+    }
+
+    /**
+     * Responses to credentialed requests are not shared between users unless marked public.
+     */
+    @Test
+    void doesNotShareCredentialedResponses() {
+        GatewayFilter filter = filter(ResponseCacheGatewayFilterFactory.VaryOn.NONE);
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/api/data/read")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer token");
+
+        run(filter, MockServerWebExchange.from(request));
+        run(filter, MockServerWebExchange.from(request));
+
+        assertThat(upstreamRequests).hasValue(2);
+    }
+
+    /**
+     * Concurrent misses for the same key result in a single upstream request.
+     */
+    @Test
+    void coalescesConcurrentMisses() {
+        GatewayFilter filter = filter(ResponseCacheGatewayFilterFactory.VaryOn.NONE);
+        upstreamDelay = Duration.ofMillis(200);
+
+        List<MockServerWebExchange> exchanges = Flux.range(0, 20)
+                .flatMap(i -> {
+                    MockServerWebExchange exchange = get("/public/slow");
+                    return filter.filter(exchange, upstream()).subscribeOn(Schedulers.parallel()).thenReturn(exchange);
+                })
+                .collectList()
+                .block();
+
+        assertThat(upstreamRequests).hasValue(1);
+        assertThat(exchanges).allSatisfy(exchange ->
+                assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo("payload for /public/slow"));
+        assertThat(requests("coalesced")).isEqualTo(19);
+    }
+
+    /**
+     * A request waiting for another's fetch goes upstream as soon as the fetched response's headers
+     * show it is not stored, not once its body is complete. The next misses for the key do not wait.
+     */
+    @Test
+    void releasesWaitersOfUncacheableResponse() {
+        GatewayFilter filter = filter(ResponseCacheGatewayFilterFactory.VaryOn.NONE);
+        cacheControl = "no-store";
+        Sinks.Empty<Void> leaderHeaders = Sinks.empty();
+        Sinks.Empty<Void> leaderBody = Sinks.empty();
+        AtomicBoolean waiterDone = new AtomicBoolean();
+
+        filter.filter(get("/public/a"), gatedUpstream(leaderHeaders.asMono(), leaderBody.asMono())).subscribe();
+        filter.filter(get("/public/a"), gatedUpstream(Mono.empty(), Mono.empty()))
+                .subscribe(null, null, () -> waiterDone.set(true));
+        assertThat(upstreamRequests).hasValue(0);
+        assertThat(waiterDone).isFalse();
+
+        leaderHeaders.tryEmitEmpty();
+        assertThat(waiterDone).isTrue();
+        assertThat(upstreamRequests).hasValue(2);
+
+        // Another fetch in flight does not hold back a miss for the key known as uncacheable
+        Sinks.Empty<Void> nextHeaders = Sinks.empty();
+        filter.filter(get("/public/a"), gatedUpstream(nextHeaders.asMono(), Mono.empty())).subscribe();
+        filter.filter(get("/public/a"), upstream()).block(Duration.ofSeconds(5));
+        assertThat(upstreamRequests).hasValue(3);
+
+        leaderBody.tryEmitEmpty();
+        nextHeaders.tryEmitEmpty();
+        assertThat(upstreamRequests).hasValue(4);
+        assertThat(requests("coalesced")).isZero();
+    }
+
+    /**
+     * A chunked body is captured across its buffers; one above the maximum entry size is not stored.
+     */
+    @Test
+    void capturesChunkedBodyUpToMaximumEntrySize() {
+        GatewayFilter filter = filter(ResponseCacheGatewayFilterFactory.VaryOn.NONE);
+        GatewayFilterChain chunked = exchange -> {
+            upstreamRequests.incrementAndGet();
+            int chunks = exchange.getRequest().getPath().value().endsWith("large") ? 3 : 2;
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            return exchange.getResponse().writeWith(Flux.range(0, chunks)
+                    .map(i -> exchange.getResponse().bufferFactory().wrap(String.valueOf((char) ('a' + i)).repeat(400)
+                            .getBytes(StandardCharsets.UTF_8))));
+        };
+
+        filter.filter(get("/public/small"), chunked).block();
+        MockServerWebExchange cached = get("/public/small");
+        filter.filter(cached, chunked).block();
+        assertThat(upstreamRequests).hasValue(1);
+        assertThat(cached.getResponse().getBodyAsString().block()).isEqualTo("a".repeat(400) + "b".repeat(400));
+        assertThat(cached.getResponse().getHeaders().getContentLength()).isEqualTo(800);
+
+        filter.filter(get("/public/large"), chunked).block();
+        filter.filter(get("/public/large"), chunked).block();
+        assertThat(upstreamRequests).hasValue(3);
+    }
+
+    private GatewayFilter filter(ResponseCacheGatewayFilterFactory.VaryOn varyOn) {
+        ResponseCacheGatewayFilterFactory.Config config = new ResponseCacheGatewayFilterFactory.Config()
+                .setTtl(Duration.ofMinutes(5))
+                .setVaryOn(varyOn);
+        config.setRouteId("test_route");
+        return factory.apply(config);
+    }
+
+    /**
+     * Stub upstream: counts requests and writes a small JSON-like body with an ETag.
+     */
+    private GatewayFilterChain upstream() {
+        return exchange -> Mono.delay(upstreamDelay).then(Mono.defer(() -> {
+            upstreamRequests.incrementAndGet();
+            byte[] body = ("payload for " + exchange.getRequest().getPath()).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            exchange.getResponse().getHeaders().setETag("\"v1\"");
+            exchange.getResponse().getHeaders().setContentLength(body.length);
+            if (cacheControl != null) {
+                exchange.getResponse().getHeaders().setCacheControl(cacheControl);
+            }
+            return exchange.getResponse().writeWith(Mono.just(exchange.getResponse().bufferFactory().wrap(body)));
+        }));
+    }
+
+    /**
+     * Stub upstream writing its headers once `headers` completes, then its body once `body` completes.
+     */
+    private GatewayFilterChain gatedUpstream(Mono<Void> headers, Mono<Void> body) {
+        return exchange -> headers.then(Mono.defer(() -> {
+            upstreamRequests.incrementAndGet();
+            exchange.getResponse().setStatusCode(HttpStatus.OK);
+            if (cacheControl != null) {
+                exchange.getResponse().getHeaders().setCacheControl(cacheControl);
+            }
+            return exchange.getResponse().writeWith(body.then(Mono.fromSupplier(() ->
+                    exchange.getResponse().bufferFactory().wrap("payload".getBytes(StandardCharsets.UTF_8)))));
+        }));
+    }
+
+    private void run(GatewayFilter filter, ServerWebExchange exchange) {
+        filter.filter(exchange, upstream()).block();
+    }
+
+    private static MockServerWebExchange get(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+    }
+
+    private static ServerWebExchange authenticated(String path, String subject) {
+        return get(path).mutate()
+                .principal(Mono.just(new TestingAuthenticationToken(subject, null, "SCOPE_read")))
+                .build();
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("gateway.response.cache.requests").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,171 @@
+package cm.amcloud.platform.gateway.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import cm.amcloud.platform.gateway.resilience.RouteCircuitBreakers;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Unit tests for {@link RouteCircuitBreakerGatewayFilterFactory} against stub upstreams that answer
+ * after an injected delay.
+ */
+class RouteCircuitBreakerGatewayFilterFactoryTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RouteCircuitBreakerGatewayFilterFactory factory =
+            new RouteCircuitBreakerGatewayFilterFactory(new RouteCircuitBreakers(meterRegistry));
+
+    /**
+     * Once the upstream failure rate opens the breaker, requests get the fallback response without
+     * reaching the upstream.
+     */
+    @Test
+    void failsFastWhenOpen() {
+        GatewayFilter filter = filter("reservation_service", config -> config.setMinimumCalls(2));
+        StubUpstream failing = new StubUpstream(HttpStatus.INTERNAL_SERVER_ERROR, Duration.ZERO);
+        run(filter, failing);
+        run(filter, failing);
+
+        MockServerWebExchange rejected = run(filter, failing);
+
+        assertThat(failing.requests).hasValue(2);
+        assertThat(rejected.getResponse().getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(rejected.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("10");
+        assertThat(rejected.getResponse().getBodyAsString().block()).contains("service_unavailable");
+        assertThat(meterRegistry.get("gateway.circuitbreaker.state").tag("route", "reservation_service")
+                .tag("state", "open").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("gateway.circuitbreaker.calls").tag("kind", "not_permitted")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    /**
+     * A slow upstream opens its route's breaker, which then answers at once, while another route
+     * keeps serving at its own latency.
+     */
+    @Test
+    void isolatesSlowUpstream() {
+        GatewayFilter slowRoute = filter("reservation_service", config -> config
+                .setMinimumCalls(3)
+                .setSlowCallDuration(Duration.ofMillis(100))
+                .setSlowCallRateThreshold(50));
+        GatewayFilter fastRoute = filter("billing_route", config -> config.setMinimumCalls(3));
+        StubUpstream slow = new StubUpstream(HttpStatus.OK, Duration.ofMillis(200));
+        StubUpstream fast = new StubUpstream(HttpStatus.OK, Duration.ofMillis(5));
+        for (int i = 0; i < 3; i++) {
+            run(slowRoute, slow);
+        }
+
+        long start = System.nanoTime();
+        MockServerWebExchange rejected = run(slowRoute, slow);
+        Duration rejectionTime = Duration.ofNanos(System.nanoTime() - start);
+        MockServerWebExchange served = run(fastRoute, fast);
+
+        assertThat(rejected.getResponse().getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(rejectionTime).isLessThan(Duration.ofMillis(100));
+        assertThat(slow.requests).hasValue(3);
+        assertThat(served.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(served.getResponse().getBodyAsString().block()).isEqualTo("ok");
+    }
+
+    /**
+     * Requests beyond maxConcurrentCalls are rejected instead of waiting for the upstream.
+     */
+    @Test
+    void rejectsRequestsBeyondBulkhead() {
+        GatewayFilter filter = filter("reservation_service", config -> config.setMaxConcurrentCalls(2));
+        StubUpstream upstream = new StubUpstream(HttpStatus.OK, Duration.ofMillis(200));
+
+        List<MockServerWebExchange> exchanges = Flux.range(0, 3)
+                .flatMap(i -> {
+                    MockServerWebExchange exchange = get();
+                    return filter.filter(exchange, upstream).thenReturn(exchange);
+                })
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(exchanges).extracting(exchange -> exchange.getResponse().getStatusCode())
+                .containsExactlyInAnyOrder(HttpStatus.OK, HttpStatus.OK, HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(exchanges).filteredOn(exchange -> exchange.getResponse().getStatusCode() != HttpStatus.OK)
+                .allSatisfy(exchange -> assertThat(exchange.getResponse().getHeaders())
+                        .doesNotContainKey(HttpHeaders.RETRY_AFTER));
+        assertThat(upstream.requests).hasValue(2);
+        assertThat(meterRegistry.get("gateway.bulkhead.concurrent.calls").gauge().value()).isZero();
+        assertThat(meterRegistry.get("gateway.bulkhead.rejected").functionCounter().count()).isEqualTo(1);
+    }
+
+    /**
+     * Upstream errors (e.g. connection failures) count as failures and are propagated.
+     */
+    @Test
+    void countsUpstreamErrorsAsFailures() {
+        GatewayFilter filter = filter("reservation_service", config -> config.setMinimumCalls(1));
+        GatewayFilterChain broken = exchange -> Mono.error(new IllegalStateException("Connection refused"));
+
+        MockServerWebExchange exchange = get();
+        Throwable error = filter.filter(exchange, broken).then(Mono.<Throwable>empty())
+                .onErrorResume(Mono::just).block();
+
+        assertThat(error).hasMessage("Connection refused");
+        assertThat(run(filter, new StubUpstream(HttpStatus.OK, Duration.ZERO)).getResponse().getStatusCode())
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    private GatewayFilter filter(String routeId, Consumer<RouteCircuitBreakerGatewayFilterFactory.Config> settings) {
+        RouteCircuitBreakerGatewayFilterFactory.Config config = new RouteCircuitBreakerGatewayFilterFactory.Config();
+        config.setRouteId(routeId);
+        settings.accept(config);
+        return factory.apply(config);
+    }
+
+    private static MockServerWebExchange run(GatewayFilter filter, GatewayFilterChain upstream) {
+        MockServerWebExchange exchange = get();
+        filter.filter(exchange, upstream).block(Duration.ofSeconds(5));
+        return exchange;
+    }
+
+    private static MockServerWebExchange get() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/api/reservations/1"));
+    }
+
+    /**
+     * Answers with a fixed status after a delay, writing its response like NettyWriteResponseFilter.
+     */
+    private static final class StubUpstream implements GatewayFilterChain {
+
+        private final HttpStatus status;
+        private final Duration delay;
+        private final AtomicInteger requests = new AtomicInteger();
+
+        StubUpstream(HttpStatus status, Duration delay) {
+            this.status = status;
+            this.delay = delay;
+        }
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange) {
+            requests.incrementAndGet();
+            return Mono.delay(delay).then(Mono.defer(() -> {
+                exchange.getResponse().setStatusCode(status);
+                byte[] body = (status.is2xxSuccessful() ? "ok" : "error").getBytes(StandardCharsets.UTF_8);
+                return exchange.getResponse().writeWith(Mono.just(exchange.getResponse().bufferFactory().wrap(body)));
+            }));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package cm.amcloud.platform.gateway.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ORIGINAL_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.support.NotFoundException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import cm.amcloud.platform.gateway.config.UpstreamProperties;
+import cm.amcloud.platform.gateway.upstream.UpstreamGroups;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.test.StepVerifier;
+
+/**
+ * Unit tests for {@link UpstreamGroupLoadBalancerFilter} in front of several local stub servers,
+ * each answering with its name and the request URI: distribution of the requests, outlier
+ * ejection, and the URL rewrite.
+ */
+class UpstreamGroupLoadBalancerFilterTests {
+
+    private final List<DisposableServer> servers = new ArrayList<>();
+    private final HttpClient client = HttpClient.create();
+    private UpstreamGroups groups;
+
+    @AfterEach
+    void tearDown() {
+        if (groups != null) {
+            groups.destroy();
+        }
+        servers.forEach(DisposableServer::disposeNow);
+    }
+
+    /**
+     * Requests are spread over the fast replicas; the slow one only gets the few requests
+     * measuring it. The path and query of the request URL are kept.
+     */
+    @Test
+    void spreadsRequestsAwayFromSlowReplica() {
+        UpstreamProperties.Group group = group(stub("fast-1", Duration.ZERO, HttpStatus.OK),
+                stub("fast-2", Duration.ZERO, HttpStatus.OK), stub("slow", Duration.ofMillis(200), HttpStatus.OK));
+        UpstreamGroupLoadBalancerFilter filter = filter(group);
+        // A first call to each replica pays for the connection and the warm-up of the client, and
+        // would make it look slow for a while
+        group.getInstances().forEach(instance -> client.get().uri(instance).response().block());
+        Map<String, Integer> counts = new HashMap<>();
+
+        for (int i = 0; i < 100; i++) {
+            String body = forward(filter, "lb://billing/invoices?page=" + i);
+            String[] response = body.split(" ");
+            assertThat(response[1]).isEqualTo("/invoices?page=" + i);
+            counts.merge(response[0], 1, Integer::sum);
+        }
+
+        assertThat(counts.getOrDefault("slow", 0)).isLessThan(10);
+        assertThat(counts.get("fast-1")).isGreaterThan(20);
+        assertThat(counts.get("fast-2")).isGreaterThan(20);
+    }
+
+    /**
+     * A replica answering 5xx is ejected after its consecutive failures, and the rest of the
+     * requests all go to the healthy one.
+     */
+    @Test
+    void ejectsFailingReplica() {
+        UpstreamProperties.Group group = group(stub("healthy", Duration.ZERO, HttpStatus.OK),
+                stub("failing", Duration.ZERO, HttpStatus.SERVICE_UNAVAILABLE));
+        group.setConsecutiveFailures(3);
+        UpstreamGroupLoadBalancerFilter filter = filter(group);
+
+        List<String> answers = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            answers.add(forward(filter, "lb://billing/invoices").split(" ")[0]);
+        }
+
+        assertThat(answers.stream().filter("failing"::equals).count()).isLessThanOrEqualTo(3);
+        assertThat(answers.subList(answers.lastIndexOf("failing") + 1, answers.size())).containsOnly("healthy");
+    }
+
+    @Test
+    void rewritesRequestUrlToInstance() {
+        DisposableServer server = stub("billing-1", Duration.ZERO, HttpStatus.OK);
+        UpstreamGroupLoadBalancerFilter filter = filter(group(server));
+        MockServerWebExchange exchange = exchange("lb://billing/invoices/42?expand=lines%2Ctaxes");
+
+        filter.filter(exchange, e -> Mono.empty()).block();
+
+        assertThat((URI) exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR))
+                .hasToString("http://localhost:" + server.port() + "/invoices/42?expand=lines%2Ctaxes");
+        assertThat((LinkedHashSet<URI>) exchange.getAttribute(GATEWAY_ORIGINAL_REQUEST_URL_ATTR))
+                .containsExactly(URI.create("lb://billing/invoices/42?expand=lines%2Ctaxes"));
+    }
+
+    @Test
+    void answersServiceUnavailableWithoutInstance() {
+        UpstreamProperties properties = new UpstreamProperties();
+        properties.getGroups().put("billing", new UpstreamProperties.Group());
+        // Discovery that has not found any instance yet
+        groups = new UpstreamGroups(properties, (name, settings) -> Flux::empty);
+        UpstreamGroupLoadBalancerFilter filter = new UpstreamGroupLoadBalancerFilter(groups);
+
+        StepVerifier.create(filter.filter(exchange("lb://billing/invoices"), e -> Mono.empty()))
+                .expectErrorSatisfies(e -> assertThat(e).isInstanceOf(NotFoundException.class)
+                        .extracting(error -> ((NotFoundException) error).getStatusCode())
+                        .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE))
+                .verify();
+        StepVerifier.create(filter.filter(exchange("lb://unknown/invoices"), e -> Mono.empty()))
+                .expectError(NotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void ignoresOtherSchemes() {
+        UpstreamProperties.Group group = new UpstreamProperties.Group();
+        group.getInstances().add(URI.create("http://localhost:1"));
+        UpstreamGroupLoadBalancerFilter filter = filter(group);
+        MockServerWebExchange exchange = exchange("http://billing.internal/invoices");
+
+        filter.filter(exchange, e -> Mono.empty()).block();
+
+        assertThat((URI) exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR)).hasToString("http://billing.internal/invoices");
+    }
+
+    /**
+     * Runs the filter, then calls the request URL it resolved like the routing filter would.
+     *
+     * @return The response body: the stub name and the request URI.
+     */
+    private String forward(UpstreamGroupLoadBalancerFilter filter, String url) {
+        MockServerWebExchange exchange = exchange(url);
+        StringBuilder body = new StringBuilder();
+        GatewayFilterChain upstream = e -> client.get()
+                .uri(e.<URI>getRequiredAttribute(GATEWAY_REQUEST_URL_ATTR))
+                .responseSingle((response, content) -> {
+                    e.getResponse().setStatusCode(HttpStatusCode.valueOf(response.status().code()));
+                    return content.asString().defaultIfEmpty("");
+                })
+                .doOnNext(body::append)
+                .then();
+        filter.filter(exchange, upstream).block(Duration.ofSeconds(5));
+        return body.toString();
+    }
+
+    private UpstreamGroupLoadBalancerFilter filter(UpstreamProperties.Group group) {
+        UpstreamProperties properties = new UpstreamProperties();
+        properties.getGroups().put("billing", group);
+        groups = new UpstreamGroups(properties);
+        return new UpstreamGroupLoadBalancerFilter(groups);
+    }
+
+    private static UpstreamProperties.Group group(DisposableServer... servers) {
+        UpstreamProperties.Group group = new UpstreamProperties.Group();
+        for (DisposableServer server : servers) {
+            group.getInstances().add(URI.create("http://localhost:" + server.port()));
+        }
+        return group;
+    }
+
+    private static MockServerWebExchange exchange(String url) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/").build());
+        exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, URI.create(url));
+        return exchange;
+    }
+
+    private DisposableServer stub(String name, Duration delay, HttpStatus status) {
+        DisposableServer server = HttpServer.create()
+                .port(0)
+                .handle((request, response) -> response.status(status.value())
+                        .sendString(Mono.delay(delay).map(tick -> name + " " + request.uri())))
+                .bindNow();
+        servers.add(server);
+        return server;
+    }
+}
@@ -0,0 +1,125 @@
+package cm.amcloud.platform.gateway.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cloud.gateway.event.FilterArgsEvent;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter.Response;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.format.support.DefaultFormattingConversionService;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Unit tests for {@link LocalRateLimiter}, driven by a manual ticker: burst and refill behaviour,
+ * rate limit headers, per-key isolation, lock-free concurrency and idle bucket eviction.
+ */
+class LocalRateLimiterTests {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private LocalRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        LocalValidatorFactoryBean validator = new LocalValidatorFactoryBean();
+        validator.afterPropertiesSet();
+        ConfigurationService configurationService = new ConfigurationService(new DefaultListableBeanFactory(),
+                DefaultFormattingConversionService::new, () -> validator);
+        rateLimiter = new LocalRateLimiter(configurationService, 1000, nanos::get);
+        // Same arguments as billing_route in application.yml
+        rateLimiter.onApplicationEvent(new FilterArgsEvent(this, "billing_route", Map.of(
+                "local-rate-limiter.replenish-rate", "10",
+                "local-rate-limiter.burst-capacity", "20")));
+    }
+
+    /**
+     * A full bucket allows a burst of burst-capacity requests, then refills at replenish-rate.
+     */
+    @Test
+    void allowsBurstThenReplenishes() {
+        for (int i = 19; i >= 0; i--) {
+            Response response = isAllowed("user-1");
+            assertThat(response.isAllowed()).isTrue();
+            assertThat(response.getHeaders()).containsEntry(LocalRateLimiter.REMAINING_HEADER, String.valueOf(i));
+        }
+
+        Response denied = isAllowed("user-1");
+        assertThat(denied.isAllowed()).isFalse();
+        assertThat(denied.getHeaders())
+                .containsEntry(LocalRateLimiter.LIMIT_HEADER, "20")
+                .containsEntry(LocalRateLimiter.REMAINING_HEADER, "0")
+                .containsEntry(LocalRateLimiter.RESET_HEADER, "2")
+                .containsEntry(LocalRateLimiter.RETRY_AFTER_HEADER, "1");
+
+        advance(Duration.ofMillis(100));
+        assertThat(isAllowed("user-1").isAllowed()).isTrue();
+        assertThat(isAllowed("user-1").isAllowed()).isFalse();
+    }
+
+    /**
+     * Each subject has its own bucket.
+     */
+    @Test
+    void isolatesKeys() {
+        for (int i = 0; i < 20; i++) {
+            isAllowed("user-1");
+        }
+
+        assertThat(isAllowed("user-1").isAllowed()).isFalse();
+        assertThat(isAllowed("user-2").isAllowed()).isTrue();
+    }
+
+    /**
+     * Concurrent requests for the same key never get more than the burst capacity.
+     */
+    @Test
+    void neverExceedsCapacityUnderContention() {
+        List<Response> responses = Flux.range(0, 500)
+                .flatMap(i -> rateLimiter.isAllowed("billing_route", "user-1").subscribeOn(Schedulers.parallel()))
+                .collectList()
+                .block();
+
+        assertThat(responses).filteredOn(Response::isAllowed).hasSize(20);
+    }
+
+    /**
+     * Buckets are evicted once idle long enough to be full again, without changing the outcome.
+     */
+    @Test
+    void evictsRefilledBuckets() {
+        isAllowed("user-1");
+        isAllowed("user-2");
+        assertThat(rateLimiter.getBucketCount()).isEqualTo(2);
+
+        advance(Duration.ofSeconds(3));
+
+        assertThat(rateLimiter.getBucketCount()).isZero();
+        assertThat(isAllowed("user-1").getHeaders()).containsEntry(LocalRateLimiter.REMAINING_HEADER, "19");
+    }
+
+    /**
+     * A route without limiter arguments is a configuration error.
+     */
+    @Test
+    void rejectsUnconfiguredRoute() {
+        assertThatIllegalArgumentException().isThrownBy(() -> rateLimiter.isAllowed("other_route", "user-1"));
+    }
+
+    private Response isAllowed(String id) {
+        return rateLimiter.isAllowed("billing_route", id).block();
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+}
@@ -0,0 +1,153 @@
+package cm.amcloud.platform.gateway.resilience;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import cm.amcloud.platform.gateway.resilience.RouteCircuitBreaker.Status;
+
+/**
+ * Unit tests for {@link RouteCircuitBreaker}, driven by a manual ticker: opening on failure and
+ * slow call rates, the sliding window, and the half-open probes.
+ */
+class RouteCircuitBreakerTests {
+
+    private static final long FAST = Duration.ofMillis(10).toNanos();
+    private static final long SLOW = Duration.ofSeconds(3).toNanos();
+
+    private final AtomicLong nanos = new AtomicLong();
+    private RouteCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        breaker = new RouteCircuitBreaker("reservation_service", new RouteCircuitBreaker.Settings(50, 80,
+                Duration.ofSeconds(2), Duration.ofSeconds(10), 4, Duration.ofSeconds(5), 2), nanos::get);
+    }
+
+    /**
+     * The breaker opens once the window holds minimumCalls calls and the failure rate reaches the
+     * threshold, then rejects calls.
+     */
+    @Test
+    void opensOnFailureRate() {
+        call(false, FAST);
+        call(true, FAST);
+        call(true, FAST);
+        assertThat(breaker.getStatus()).isEqualTo(Status.CLOSED);
+
+        call(false, FAST);
+
+        assertThat(breaker.getStatus()).isEqualTo(Status.OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+        assertThat(breaker.getNotPermittedCalls()).isEqualTo(1);
+        assertThat(breaker.getRemainingOpenDuration()).isEqualTo(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void opensOnSlowCallRate() {
+        call(false, SLOW);
+        call(false, SLOW);
+        call(false, SLOW);
+        call(false, FAST);
+        assertThat(breaker.getStatus()).isEqualTo(Status.CLOSED);
+
+        call(false, SLOW);
+
+        assertThat(breaker.getStatus()).isEqualTo(Status.OPEN);
+        assertThat(breaker.getSlowCalls()).isEqualTo(4);
+    }
+
+    /**
+     * Calls older than the sliding window no longer count.
+     */
+    @Test
+    void forgetsCallsOutsideSlidingWindow() {
+        call(true, FAST);
+        call(true, FAST);
+        call(true, FAST);
+        advance(Duration.ofSeconds(11));
+
+        call(true, FAST);
+
+        assertThat(breaker.getStatus()).isEqualTo(Status.CLOSED);
+        assertThat(breaker.getWindowMetrics().calls()).isEqualTo(1);
+    }
+
+    /**
+     * After waitInOpenState, permittedCallsInHalfOpenState probes go through; their success closes
+     * the breaker.
+     */
+    @Test
+    void closesAfterSuccessfulProbes() {
+        open();
+        advance(Duration.ofSeconds(5));
+
+        RouteCircuitBreaker.State first = breaker.tryAcquire();
+        RouteCircuitBreaker.State second = breaker.tryAcquire();
+        assertThat(breaker.getStatus()).isEqualTo(Status.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+
+        breaker.onResult(first, FAST, false);
+        breaker.onResult(second, FAST, false);
+
+        assertThat(breaker.getStatus()).isEqualTo(Status.CLOSED);
+        assertThat(breaker.getWindowMetrics().calls()).isZero();
+    }
+
+    /**
+     * A failed probe opens the breaker again; a cancelled probe gives its permit back.
+     */
+    @Test
+    void reopensOnFailedProbe() {
+        open();
+        advance(Duration.ofSeconds(5));
+
+        RouteCircuitBreaker.State cancelled = breaker.tryAcquire();
+        breaker.tryAcquire();
+        breaker.release(cancelled);
+        RouteCircuitBreaker.State probe = breaker.tryAcquire();
+        assertThat(probe).isNotNull();
+
+        breaker.onResult(probe, FAST, true);
+
+        assertThat(breaker.getStatus()).isEqualTo(Status.OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+    }
+
+    /**
+     * Outcomes of calls permitted before a state change are not counted in the new state.
+     */
+    @Test
+    void ignoresOutcomesOfEarlierStates() {
+        RouteCircuitBreaker.State early = breaker.tryAcquire();
+        open();
+        advance(Duration.ofSeconds(5));
+        RouteCircuitBreaker.State probe = breaker.tryAcquire();
+
+        breaker.onResult(early, FAST, true);
+
+        assertThat(breaker.getStatus()).isEqualTo(Status.HALF_OPEN);
+        breaker.onResult(probe, FAST, false);
+        breaker.onResult(breaker.tryAcquire(), FAST, false);
+        assertThat(breaker.getStatus()).isEqualTo(Status.CLOSED);
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            call(true, FAST);
+        }
+        assertThat(breaker.getStatus()).isEqualTo(Status.OPEN);
+    }
+
+    private void call(boolean failed, long durationNanos) {
+        breaker.onResult(breaker.tryAcquire(), durationNanos, failed);
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+}
@@ -0,0 +1,82 @@
+package cm.amcloud.platform.gateway.revocation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests for {@link HttpRevocationSnapshotSource} against a local stub IAM snapshot endpoint.
+ */
+class HttpRevocationSnapshotSourceTests {
+
+    private HttpServer iamServer;
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final AtomicReference<String> served = new AtomicReference<>();
+    private HttpRevocationSnapshotSource source;
+
+    @BeforeEach
+    void startIamServer() throws IOException {
+        iamServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        iamServer.createContext("/revocations/snapshot", exchange -> {
+            byte[] body = served.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status.get(), body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        iamServer.start();
+        source = new HttpRevocationSnapshotSource(
+                URI.create("http://localhost:" + iamServer.getAddress().getPort() + "/revocations/snapshot"),
+                Duration.ofSeconds(5), new ObjectMapper().findAndRegisterModules());
+    }
+
+    @AfterEach
+    void stop() {
+        iamServer.stop(0);
+    }
+
+    @Test
+    void readsSnapshot() throws IOException {
+        served.set("""
+                {"sequence": 42, "revocations": [
+                  {"type": "TOKEN_ID", "value": "jti-1", "expiresAt": "2025-01-01T01:00:00Z"},
+                  {"type": "SUBJECT", "value": "alice", "revokedAt": "2025-01-01T00:00:00Z",
+                   "expiresAt": "2025-01-01T01:00:00Z"}]}
+                """);
+
+        assertThat(source.fetch()).isEqualTo(new RevocationBatch(42, List.of(
+                Revocation.tokenId("jti-1", Instant.parse("2025-01-01T01:00:00Z")),
+                Revocation.subject("alice", Instant.parse("2025-01-01T00:00:00Z"), Instant.parse("2025-01-01T01:00:00Z")))));
+    }
+
+    @Test
+    void failsOnErrorOrIncompleteSnapshot() {
+        status.set(503);
+        served.set("{}");
+        assertThatThrownBy(source::fetch).isInstanceOf(IOException.class).hasMessageEndingWith("answered 503");
+
+        status.set(200);
+        served.set("""
+                {"sequence": 42}
+                """);
+        assertThatThrownBy(source::fetch).isInstanceOf(IOException.class).hasMessageEndingWith("without revocations");
+    }
+}
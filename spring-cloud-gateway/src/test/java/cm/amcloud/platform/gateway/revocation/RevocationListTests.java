@@ -0,0 +1,362 @@
+package cm.amcloud.platform.gateway.revocation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import cm.amcloud.platform.gateway.config.JwtProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for {@link RevocationList}, fed through a {@link LocalRevocationPublisher} and driven
+ * by a manual clock, so that expiry can be verified without waiting. Snapshots come from queued
+ * answers, or failures, of a stub {@link RevocationSnapshotSource}.
+ */
+class RevocationListTests {
+
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+    private final ManualClock clock = new ManualClock(NOW);
+    private final LocalRevocationPublisher publisher = new LocalRevocationPublisher();
+    private final JwtProperties.Revocation settings = new JwtProperties.Revocation();
+    private RevocationList revocationList;
+
+    @AfterEach
+    void close() {
+        if (revocationList != null) {
+            revocationList.close();
+        }
+    }
+
+    /**
+     * Published token ids are revoked; other tokens are answered by the filter alone.
+     */
+    @Test
+    void revokesPublishedTokenIds() {
+        RevocationList list = start();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        list.bindTo(registry);
+
+        publisher.publish(new RevocationBatch(1, List.of(Revocation.tokenId("jti-1", NOW.plusSeconds(600)))));
+
+        assertThat(list.isRevoked("jti-1", "alice", NOW)).isTrue();
+        assertThat(list.isRevoked("jti-2", "alice", NOW)).isFalse();
+        assertThat(list.isRevoked(null, null, null)).isFalse();
+        assertThat(list.size()).isEqualTo(1);
+        assertThat(list.getLastSequence()).isEqualTo(1);
+        assertThat(registry.get("gateway.security.revocation.checks").tag("result", "revoked").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("gateway.security.revocation.checks").tag("result", "not_revoked").functionCounter().count())
+                .isEqualTo(2);
+    }
+
+    /**
+     * A subject revocation applies to the tokens issued up to it, not to those issued afterwards,
+     * which are counted apart from the filter's false positives.
+     */
+    @Test
+    void revokesSubjectTokensIssuedUpToRevocation() {
+        RevocationList list = start();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        list.bindTo(registry);
+
+        publisher.publish(new RevocationBatch(1, List.of(
+                Revocation.subject("alice", NOW, NOW.plusSeconds(3600)))));
+
+        assertThat(list.isRevoked("jti-1", "alice", NOW.minusSeconds(60))).isTrue();
+        assertThat(list.isRevoked("jti-2", "alice", NOW)).isTrue();
+        assertThat(list.isRevoked("jti-3", "alice", null)).isTrue();
+        assertThat(list.isRevoked("jti-4", "alice", NOW.plusSeconds(1))).isFalse();
+        assertThat(list.isRevoked("jti-5", "bob", NOW.minusSeconds(60))).isFalse();
+        assertThat(registry.get("gateway.security.revocation.checks").tag("result", "issued_after_revocation")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("gateway.security.revocation.checks").tag("result", "false_positive")
+                .functionCounter().count()).isZero();
+    }
+
+    /**
+     * Revoking a subject again moves the revocation forward instead of keeping the first one.
+     */
+    @Test
+    void laterSubjectRevocationExtendsEntry() {
+        RevocationList list = start();
+
+        publisher.publish(new RevocationBatch(1, List.of(Revocation.subject("alice", NOW, NOW.plusSeconds(3600)))));
+        publisher.publish(new RevocationBatch(2, List.of(
+                Revocation.subject("alice", NOW.plusSeconds(600), NOW.plusSeconds(4200)))));
+
+        assertThat(list.size()).isEqualTo(1);
+        assertThat(list.isRevoked("jti-1", "alice", NOW.plusSeconds(300))).isTrue();
+        clock.advance(Duration.ofSeconds(3601));
+        assertThat(list.removeExpired()).isZero();
+    }
+
+    /**
+     * Entries are dropped, and the filter rebuilt without them, once their tokens have expired.
+     */
+    @Test
+    void dropsExpiredEntries() {
+        RevocationList list = start();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        list.bindTo(registry);
+
+        publisher.publish(new RevocationBatch(1, List.of(
+                Revocation.tokenId("jti-1", NOW.plusSeconds(60)),
+                Revocation.tokenId("jti-2", NOW.plusSeconds(600)),
+                // Already expired: nothing left to revoke
+                Revocation.tokenId("jti-3", NOW.minusSeconds(1)))));
+        assertThat(list.size()).isEqualTo(2);
+
+        clock.advance(Duration.ofSeconds(61));
+        assertThat(list.removeExpired()).isEqualTo(1);
+
+        assertThat(list.isRevoked("jti-1", null, null)).isFalse();
+        assertThat(list.isRevoked("jti-2", null, null)).isTrue();
+        assertThat(registry.get("gateway.security.revocation.rebuilds").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("gateway.security.revocation.checks").tag("result", "not_revoked").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(list.removeExpired()).isZero();
+    }
+
+    /**
+     * The filter is rebuilt larger once it holds more entries than it was sized for.
+     */
+    @Test
+    void growsBeyondExpectedEntries() {
+        settings.setExpectedEntries(10);
+        RevocationList list = start();
+        long initialBits = list.getFilterBits();
+
+        List<Revocation> revocations = IntStream.range(0, 100)
+                .mapToObj(i -> Revocation.tokenId("jti-" + i, NOW.plusSeconds(600)))
+                .toList();
+        publisher.publish(new RevocationBatch(1, revocations));
+
+        assertThat(list.getFilterBits()).isGreaterThan(initialBits);
+        assertThat(IntStream.range(0, 100)).allMatch(i -> list.isRevoked("jti-" + i, null, null));
+    }
+
+    /**
+     * At the expected number of entries, about the configured share of other tokens needs an exact lookup.
+     */
+    @Test
+    void falsePositiveRateStaysNearTarget() {
+        RevocationList list = start();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        list.bindTo(registry);
+        List<Revocation> revocations = IntStream.range(0, (int) settings.getExpectedEntries())
+                .mapToObj(i -> Revocation.tokenId(UUID.randomUUID().toString(), NOW.plusSeconds(600)))
+                .toList();
+        publisher.publish(new RevocationBatch(1, revocations));
+
+        int checks = 100_000;
+        for (int i = 0; i < checks; i++) {
+            assertThat(list.isRevoked(UUID.randomUUID().toString(), null, null)).isFalse();
+        }
+
+        double falsePositives = registry.get("gateway.security.revocation.checks").tag("result", "false_positive")
+                .functionCounter().count();
+        assertThat(falsePositives / checks).isLessThan(settings.getFalsePositiveProbability() * 2);
+    }
+
+    /**
+     * Skipped sequence numbers are counted; a repeated or late batch is still applied.
+     */
+    @Test
+    void countsMissedBatches() {
+        RevocationList list = start();
+
+        publisher.publish(new RevocationBatch(1, List.of()));
+        publisher.publish(new RevocationBatch(4, List.of()));
+        publisher.publish(new RevocationBatch(2, List.of(Revocation.tokenId("jti-1", NOW.plusSeconds(60)))));
+
+        assertThat(list.getMissedBatches()).isEqualTo(2);
+        assertThat(list.getLastSequence()).isEqualTo(4);
+        assertThat(list.isRevoked("jti-1", null, null)).isTrue();
+    }
+
+    /**
+     * A batch that fails to apply is counted, and the batches after it are still applied.
+     */
+    @Test
+    void keepsApplyingAfterFailedBatch() {
+        RevocationList list = start();
+
+        assertThat(publisher.publish(new RevocationBatch(1, null))).isTrue();
+        assertThat(publisher.publish(new RevocationBatch(2, List.of(Revocation.tokenId("jti-1", NOW.plusSeconds(60))))))
+                .isTrue();
+
+        assertThat(list.getFailedBatches()).isEqualTo(1);
+        assertThat(list.isRevoked("jti-1", null, null)).isTrue();
+    }
+
+    /**
+     * Batches published after the list is closed are no longer applied, and the publisher says so.
+     */
+    @Test
+    void stopsApplyingWhenClosed() {
+        RevocationList list = start();
+        list.close();
+
+        assertThat(publisher.publish(new RevocationBatch(1, List.of(Revocation.tokenId("jti-1", NOW.plusSeconds(60))))))
+                .isFalse();
+
+        assertThat(list.isRevoked("jti-1", null, null)).isFalse();
+    }
+
+    /**
+     * Without a snapshot source the list is synchronized from the start; with one, not before its
+     * snapshot is applied. Batches pushed meanwhile are kept, and the snapshot fills in what was
+     * revoked before the node started.
+     */
+    @Test
+    void startsFromSnapshot() throws Exception {
+        assertThat(start().isSynchronized()).isTrue();
+        close();
+        CompletableFuture<RevocationBatch> snapshot = new CompletableFuture<>();
+        RevocationList list = start(() -> await(snapshot));
+
+        publisher.publish(new RevocationBatch(6, List.of(Revocation.tokenId("jti-6", NOW.plusSeconds(60)))));
+        assertThat(list.isSynchronized()).isFalse();
+        assertThat(list.isRevoked("jti-6", null, null)).isTrue();
+
+        snapshot.complete(new RevocationBatch(5, List.of(
+                Revocation.tokenId("jti-1", NOW.plusSeconds(60)),
+                Revocation.subject("alice", NOW, NOW.plusSeconds(60)))));
+        awaitUntil(list::isSynchronized);
+
+        assertThat(list.isRevoked("jti-1", null, null)).isTrue();
+        assertThat(list.isRevoked("jti-2", "alice", NOW)).isTrue();
+        assertThat(list.isRevoked("jti-6", null, null)).isTrue();
+        assertThat(list.getLastSequence()).isEqualTo(6);
+        assertThat(list.getMissedBatches()).isZero();
+    }
+
+    /**
+     * A failed snapshot pull is retried after the retry interval.
+     */
+    @Test
+    void retriesFailedSnapshot() throws Exception {
+        settings.setSnapshotRetryInterval(Duration.ofMillis(10));
+        BlockingQueue<Object> answers = new LinkedBlockingQueue<>(List.of(
+                new IOException("IAM unavailable"),
+                new RevocationBatch(3, List.of(Revocation.tokenId("jti-1", NOW.plusSeconds(60))))));
+        RevocationList list = start(() -> next(answers));
+
+        awaitUntil(list::isSynchronized);
+
+        assertThat(answers).isEmpty();
+        assertThat(list.isRevoked("jti-1", null, null)).isTrue();
+        assertThat(list.getSnapshotsApplied()).isEqualTo(1);
+    }
+
+    /**
+     * Missed batches, and batches that fail to apply, are recovered from a new snapshot.
+     */
+    @Test
+    void resyncsAfterMissedOrFailedBatches() throws Exception {
+        BlockingQueue<Object> answers = new LinkedBlockingQueue<>(List.of(
+                new RevocationBatch(1, List.of()),
+                new RevocationBatch(4, List.of(Revocation.tokenId("jti-3", NOW.plusSeconds(60)))),
+                new RevocationBatch(6, List.of(Revocation.tokenId("jti-6", NOW.plusSeconds(60))))));
+        RevocationList list = start(() -> next(answers));
+        awaitUntil(list::isSynchronized);
+
+        publisher.publish(new RevocationBatch(2, List.of()));
+        publisher.publish(new RevocationBatch(5, List.of()));
+        awaitUntil(() -> list.getSnapshotsApplied() == 2);
+
+        assertThat(list.getMissedBatches()).isEqualTo(2);
+        assertThat(list.isRevoked("jti-3", null, null)).isTrue();
+        assertThat(list.getLastSequence()).isEqualTo(5);
+
+        publisher.publish(new RevocationBatch(6, null));
+        awaitUntil(() -> list.getSnapshotsApplied() == 3);
+
+        assertThat(list.isRevoked("jti-6", null, null)).isTrue();
+        assertThat(list.getLastSequence()).isEqualTo(6);
+    }
+
+    private RevocationList start() {
+        return start(null);
+    }
+
+    private RevocationList start(RevocationSnapshotSource snapshots) {
+        revocationList = new RevocationList(publisher, snapshots, settings, clock);
+        revocationList.start();
+        return revocationList;
+    }
+
+    private static RevocationBatch await(CompletableFuture<RevocationBatch> snapshot) throws IOException {
+        try {
+            return snapshot.get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static RevocationBatch next(BlockingQueue<Object> answers) throws IOException {
+        Object answer = answers.poll();
+        if (answer instanceof IOException e) {
+            throw e;
+        }
+        if (answer == null) {
+            throw new IOException("no snapshot left");
+        }
+        return (RevocationBatch) answer;
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met in time").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static final class ManualClock extends Clock {
+
+        private Instant instant;
+
+        ManualClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
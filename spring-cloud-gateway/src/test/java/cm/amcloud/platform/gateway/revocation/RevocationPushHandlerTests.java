@@ -0,0 +1,92 @@
+package cm.amcloud.platform.gateway.revocation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+
+/**
+ * Unit tests for {@link RevocationPushHandler}: batches in IAM's JSON format are published,
+ * incomplete ones are rejected without publishing anything, and unapplied ones are not accepted.
+ */
+class RevocationPushHandlerTests {
+
+    private final LocalRevocationPublisher publisher = new LocalRevocationPublisher();
+    private final List<RevocationBatch> published = new CopyOnWriteArrayList<>();
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        publisher.batches().subscribe(published::add);
+        client = WebTestClient
+                .bindToRouterFunction(RouterFunctions.route(RequestPredicates.POST("/internal/revocations"),
+                        new RevocationPushHandler(publisher)))
+                .build();
+    }
+
+    @Test
+    void publishesPushedBatch() {
+        client.post().uri("/internal/revocations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        {"sequence": 7, "revocations": [
+                          {"type": "TOKEN_ID", "value": "jti-1", "expiresAt": "2025-01-01T01:00:00Z"},
+                          {"type": "SUBJECT", "value": "alice", "revokedAt": "2025-01-01T00:00:00Z",
+                           "expiresAt": "2025-01-01T01:00:00Z"}]}
+                        """)
+                .exchange()
+                .expectStatus().isAccepted();
+
+        assertThat(published).containsExactly(new RevocationBatch(7, List.of(
+                Revocation.tokenId("jti-1", Instant.parse("2025-01-01T01:00:00Z")),
+                Revocation.subject("alice", Instant.parse("2025-01-01T00:00:00Z"), Instant.parse("2025-01-01T01:00:00Z")))));
+    }
+
+    @Test
+    void rejectsIncompleteRevocations() {
+        client.post().uri("/internal/revocations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        {"sequence": 8, "revocations": [{"type": "TOKEN_ID", "value": "jti-1"}]}
+                        """)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.error").isEqualTo("revocation of jti-1 without expiresAt");
+        client.post().uri("/internal/revocations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        {"sequence": 9, "revocations": [
+                          {"type": "SUBJECT", "value": "alice", "expiresAt": "2025-01-01T01:00:00Z"}]}
+                        """)
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        assertThat(published).isEmpty();
+    }
+
+    @Test
+    void refusesBatchWithoutSubscriber() {
+        WebTestClient unsubscribed = WebTestClient
+                .bindToRouterFunction(RouterFunctions.route(RequestPredicates.POST("/internal/revocations"),
+                        new RevocationPushHandler(new LocalRevocationPublisher())))
+                .build();
+
+        unsubscribed.post().uri("/internal/revocations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("""
+                        {"sequence": 10, "revocations": [
+                          {"type": "TOKEN_ID", "value": "jti-1", "expiresAt": "2025-01-01T01:00:00Z"}]}
+                        """)
+                .exchange()
+                .expectStatus().isEqualTo(503)
+                .expectBody().jsonPath("$.error").isEqualTo("revocation batch not applied");
+    }
+}
@@ -0,0 +1,111 @@
+package cm.amcloud.platform.gateway.route;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+/**
+ * Unit tests for {@link CompiledRouteTable}: the index must never drop a route that could match,
+ * and must keep the route order so the first match is the same as with a linear scan.
+ */
+class CompiledRouteTableTests {
+
+    private final PathRoutePredicateFactory pathPredicates = new PathRoutePredicateFactory();
+
+    private final List<Route> routes = new ArrayList<>();
+    private final Map<String, List<String>> patterns = new HashMap<>();
+
+    /**
+     * Candidates are the routes under the literal prefix of the path plus catch-all routes, in route order.
+     */
+    @Test
+    void narrowsCandidatesByLiteralPrefix() {
+        route("public", "Path=/public/**");
+        route("admin", "Path=/api/admin/dashboard");
+        route("data", "Path=/api/data/read");
+        route("any-api", "Path=/api/{segment}/**");
+        route("fallback", "Host=example.org");
+
+        CompiledRouteTable table = CompiledRouteTable.compile(routes, patterns);
+
+        assertThat(ids(table.candidates(PathContainer.parsePath("/api/data/read"))))
+                .containsExactly("data", "any-api", "fallback");
+        assertThat(ids(table.candidates(PathContainer.parsePath("/public/a/b"))))
+                .containsExactly("public", "fallback");
+        assertThat(ids(table.candidates(PathContainer.parsePath("/unknown"))))
+                .containsExactly("fallback");
+    }
+
+    /**
+     * The first match is the first route, in order, whose full predicate matches.
+     */
+    @Test
+    void firstMatchKeepsRouteOrder() {
+        route("wildcard", "Path=/api/**");
+        route("exact", "Path=/api/secured");
+
+        CompiledRouteTable table = CompiledRouteTable.compile(routes, patterns);
+
+        assertThat(firstMatch(table, "/api/secured")).isEqualTo("wildcard");
+        assertThat(firstMatch(table, "/other")).isNull();
+    }
+
+    /**
+     * Comma separated Path patterns register the route under each prefix, and segments are
+     * matched decoded, as the Path predicate does.
+     */
+    @Test
+    void indexesEveryPatternOfShortcutDefinition() {
+        route("billing", "Path=/billing/**,/invoices/{id}");
+
+        CompiledRouteTable table = CompiledRouteTable.compile(routes, patterns);
+
+        assertThat(patterns.get("billing")).containsExactly("/billing/**", "/invoices/{id}");
+        assertThat(firstMatch(table, "/invoices/42")).isEqualTo("billing");
+        assertThat(firstMatch(table, "/bill%69ng/x")).isEqualTo("billing");
+    }
+
+    /**
+     * Registers a route with a single predicate in shortcut form; routes without a Path predicate always match.
+     */
+    private void route(String id, String predicate) {
+        RouteDefinition definition = new RouteDefinition();
+        definition.setId(id);
+        definition.setPredicates(List.of(new PredicateDefinition(predicate)));
+        List<String> pathPatterns = CompiledRouteTable.pathPatterns(definition);
+        Route.AsyncBuilder builder = Route.async().id(definition.getId()).uri(URI.create("http://localhost"));
+        if (pathPatterns.isEmpty()) {
+            builder.predicate(exchange -> true);
+        } else {
+            PathRoutePredicateFactory.Config config = new PathRoutePredicateFactory.Config();
+            config.setPatterns(pathPatterns);
+            builder.asyncPredicate(pathPredicates.applyAsync(config));
+            patterns.put(definition.getId(), pathPatterns);
+        }
+        routes.add(builder.build());
+    }
+
+    private static String firstMatch(CompiledRouteTable table, String path) {
+        Route route = table.firstMatch(MockServerWebExchange.from(MockServerHttpRequest.method(HttpMethod.GET, URI.create(path)).build())).block();
+        return route == null ? null : route.getId();
+    }
+
+    private static List<String> ids(Route[] candidates) {
+        return Arrays.stream(candidates).map(Route::getId).toList();
+    }
+}
@@ -0,0 +1,127 @@
+package cm.amcloud.platform.gateway.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.Date;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtReactiveAuthenticationManager;
+import org.springframework.security.oauth2.server.resource.web.access.server.BearerTokenServerAccessDeniedHandler;
+import org.springframework.security.oauth2.server.resource.web.server.BearerTokenServerAuthenticationEntryPoint;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import cm.amcloud.platform.gateway.security.AuthenticationFailureMetrics.Reason;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Unit tests for {@link AuthenticationFailureMetrics}: classification of the failures raised by
+ * Spring Security's JWT authentication for real tokens, and counting through the decorated entry
+ * point and access denied handler.
+ */
+class AuthenticationFailureMetricsTests {
+
+    private static final String ISSUER = "http://localhost:8081";
+
+    private RSAKey trustedKey;
+    private RSAKey unknownKey;
+    private JwtReactiveAuthenticationManager authenticationManager;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        trustedKey = new RSAKeyGenerator(2048).keyID("key-1").generate();
+        unknownKey = new RSAKeyGenerator(2048).keyID("key-2").generate();
+        JWKSet jwkSet = new JWKSet(trustedKey.toPublicJWK());
+        NimbusReactiveJwtDecoder decoder = NimbusReactiveJwtDecoder
+                .withJwkSource(jwt -> Flux.fromIterable(jwkSet.getKeys()))
+                .build();
+        decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(ISSUER));
+        authenticationManager = new JwtReactiveAuthenticationManager(decoder);
+    }
+
+    @Test
+    void classifiesJwtFailures() throws Exception {
+        Instant now = Instant.now();
+
+        assertThat(reason(sign(trustedKey, trustedKey.getKeyID(), ISSUER, now.minusSeconds(3600)))).isEqualTo(Reason.EXPIRED);
+        assertThat(reason(sign(trustedKey, trustedKey.getKeyID(), "https://other-issuer", now.plusSeconds(300))))
+                .isEqualTo(Reason.INVALID_CLAIMS);
+        assertThat(reason(sign(unknownKey, unknownKey.getKeyID(), ISSUER, now.plusSeconds(300)))).isEqualTo(Reason.UNKNOWN_KEY);
+        // Signed with another key under the trusted key id
+        assertThat(reason(sign(unknownKey, trustedKey.getKeyID(), ISSUER, now.plusSeconds(300))))
+                .isEqualTo(Reason.INVALID_SIGNATURE);
+        assertThat(reason("not-a-jwt")).isEqualTo(Reason.MALFORMED);
+        assertThat(AuthenticationFailureMetrics.classify(new AuthenticationCredentialsNotFoundException("Not Authenticated")))
+                .isEqualTo(Reason.MISSING_TOKEN);
+    }
+
+    /**
+     * The decorated handlers count the failure and still answer like the resource server defaults.
+     */
+    @Test
+    void countsFailuresThroughHandlers() {
+        AuthenticationFailureMetrics metrics = new AuthenticationFailureMetrics();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        metrics.bindTo(registry);
+
+        MockServerWebExchange unauthenticated = exchange();
+        metrics.entryPoint(new BearerTokenServerAuthenticationEntryPoint())
+                .commence(unauthenticated, new AuthenticationCredentialsNotFoundException("Not Authenticated"))
+                .block();
+        MockServerWebExchange forbidden = exchange();
+        metrics.accessDeniedHandler(new BearerTokenServerAccessDeniedHandler())
+                .handle(forbidden, new AccessDeniedException("Access Denied"))
+                .block();
+
+        assertThat(unauthenticated.getResponse().getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(forbidden.getResponse().getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(metrics.count(Reason.MISSING_TOKEN)).isEqualTo(1);
+        assertThat(metrics.count(Reason.ACCESS_DENIED)).isEqualTo(1);
+        assertThat(registry.get("gateway.security.auth.failures").tag("reason", "missing_token").counter().count())
+                .isEqualTo(1);
+    }
+
+    private Reason reason(String token) {
+        AuthenticationException failure = (AuthenticationException) authenticationManager
+                .authenticate(new BearerTokenAuthenticationToken(token))
+                .map(authentication -> (Throwable) new AssertionError("Token was accepted"))
+                .onErrorResume(e -> Mono.just(e))
+                .block();
+        return AuthenticationFailureMetrics.classify(failure);
+    }
+
+    private static MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/billing/invoices"));
+    }
+
+    private static String sign(RSAKey signingKey, String keyId, String issuer, Instant expiresAt) throws Exception {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("user-1")
+                .issuer(issuer)
+                .expirationTime(Date.from(expiresAt))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(keyId).build(), claims);
+        jwt.sign(new RSASSASigner(signingKey));
+        return jwt.serialize();
+    }
+}
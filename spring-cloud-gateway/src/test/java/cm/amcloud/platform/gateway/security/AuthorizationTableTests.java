@@ -0,0 +1,231 @@
+package cm.amcloud.platform.gateway.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authorization.AuthenticatedReactiveAuthorizationManager;
+import org.springframework.security.authorization.AuthorityReactiveAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.ReactiveAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.web.server.authorization.AuthorizationContext;
+import org.springframework.security.web.server.authorization.DelegatingReactiveAuthorizationManager;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatcher;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatcherEntry;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatchers;
+import org.springframework.web.server.ServerWebExchange;
+
+import cm.amcloud.platform.gateway.config.AuthorizationProperties;
+import cm.amcloud.platform.gateway.config.AuthorizationProperties.Access;
+import cm.amcloud.platform.gateway.config.AuthorizationProperties.Rule;
+import reactor.core.publisher.Mono;
+
+/**
+ * Unit tests for {@link AuthorizationTable}: decisions must be those of the `pathMatchers(...)`
+ * rules the table replaces, whether the token carries its authority bits or not.
+ */
+class AuthorizationTableTests {
+
+    /**
+     * The gateway's former `authorizeExchange` rules, as a table and as Spring Security matchers,
+     * decide every path and token alike.
+     */
+    @Test
+    void decidesLikePathMatchers() {
+        AuthorizationTable table = AuthorizationTable.compile(List.of(
+                rule("/internal/revocations").setMethods(List.of(HttpMethod.POST)).setAuthorities(List.of("SCOPE_REVOCATIONS")),
+                rule("/auth/**", "/public/**").setAccess(Access.PERMIT_ALL),
+                rule("/api/admin/**").setAuthorities(List.of("ROLE_ADMIN")),
+                rule("/api/data/**").setAuthorities(List.of("SCOPE_READ")),
+                rule("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html", "/webjars/**").setAccess(Access.PERMIT_ALL)),
+                Access.AUTHENTICATED);
+        ReactiveAuthorizationManager<ServerWebExchange> pathMatchers = DelegatingReactiveAuthorizationManager.builder()
+                .add(entry(ServerWebExchangeMatchers.pathMatchers(HttpMethod.POST, "/internal/revocations"),
+                        AuthorityReactiveAuthorizationManager.hasAuthority("SCOPE_REVOCATIONS")))
+                .add(entry(ServerWebExchangeMatchers.pathMatchers("/auth/**", "/public/**"), permitAll()))
+                .add(entry(ServerWebExchangeMatchers.pathMatchers("/api/admin/**"),
+                        AuthorityReactiveAuthorizationManager.hasRole("ADMIN")))
+                .add(entry(ServerWebExchangeMatchers.pathMatchers("/api/data/**"),
+                        AuthorityReactiveAuthorizationManager.hasAuthority("SCOPE_READ")))
+                .add(entry(ServerWebExchangeMatchers.pathMatchers("/v3/api-docs/**", "/swagger-ui/**",
+                        "/swagger-ui.html", "/webjars/**"), permitAll()))
+                .add(entry(ServerWebExchangeMatchers.anyExchange(), AuthenticatedReactiveAuthorizationManager.authenticated()))
+                .build();
+        JwtIdentityConverter converter = new JwtIdentityConverter(100, table);
+
+        List<Authentication> authentications = new ArrayList<>();
+        authentications.add(null);
+        authentications.add(converter.convert(jwt(List.of("ROLE_USER"), "read")).block());
+        authentications.add(converter.convert(jwt(List.of("ROLE_ADMIN"), "write")).block());
+        authentications.add(converter.convert(jwt(List.of(), "revocations")).block());
+        authentications.add(new TestingAuthenticationToken("bob", null, "ROLE_ADMIN", "SCOPE_READ"));
+        for (String path : List.of("/", "/auth/login", "/public/a/b", "/api/admin", "/api/admin/dashboard",
+                "/api/administration", "/api/data/read", "/api/secured", "/internal/revocations",
+                "/swagger-ui.html", "/swagger-ui/index.html", "/webjars/x.js", "/unknown/path")) {
+            for (HttpMethod method : List.of(HttpMethod.GET, HttpMethod.POST)) {
+                for (Authentication authentication : authentications) {
+                    MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.method(method, path).build());
+                    assertThat(decide(table, authentication, exchange))
+                            .as("%s %s as %s", method, path, authentication)
+                            .isEqualTo(isGranted(pathMatchers.check(authentication(authentication), exchange)));
+                }
+            }
+        }
+    }
+
+    /**
+     * The first matching rule decides, including a catch-all placed before more specific rules.
+     */
+    @Test
+    void firstMatchingRuleDecides() {
+        AuthorizationTable table = AuthorizationTable.compile(List.of(
+                rule("/api/{service}/health").setAccess(Access.PERMIT_ALL),
+                rule("/api/**").setAuthorities(List.of("ROLE_USER")),
+                rule("/api/admin/**").setAccess(Access.DENY_ALL)),
+                Access.DENY_ALL);
+
+        assertThat(table.rulePosition(HttpMethod.GET, PathContainer.parsePath("/api/admin/health"))).isZero();
+        assertThat(table.rulePosition(HttpMethod.GET, PathContainer.parsePath("/api/admin/users"))).isEqualTo(1);
+        assertThat(table.rulePosition(HttpMethod.GET, PathContainer.parsePath("/other"))).isEqualTo(-1);
+    }
+
+    /**
+     * Tokens are checked against their precomputed bits, beyond the first 64 authorities too.
+     */
+    @Test
+    void checksAuthorityBitsBeyondOneWord() {
+        List<Rule> rules = IntStream.range(0, 100)
+                .mapToObj(i -> rule("/service" + i + "/**").setAuthorities(List.of("ROLE_SERVICE_" + i)))
+                .toList();
+        AuthorizationTable table = AuthorizationTable.compile(rules, Access.DENY_ALL);
+        Authentication authentication = new JwtIdentityConverter(100, table)
+                .convert(jwt(List.of("ROLE_SERVICE_3", "ROLE_SERVICE_97"), null)).block();
+
+        assertThat(table.getAuthorityCount()).isEqualTo(100);
+        assertThat(((IdentityAuthenticationToken) authentication).getIdentity().getAuthorityBits()).isNotNull();
+        assertThat(decide(table, authentication, exchange("/service97/orders"))).isTrue();
+        assertThat(decide(table, authentication, exchange("/service3"))).isTrue();
+        assertThat(decide(table, authentication, exchange("/service64/orders"))).isFalse();
+        assertThat(decide(table, authentication, exchange("/service33/orders"))).isFalse();
+    }
+
+    /**
+     * Rules bind from YAML-style properties, methods and comma-separated lists included.
+     */
+    @Test
+    void bindsRulesFromProperties() {
+        Binder binder = new Binder(new MapConfigurationPropertySource(Map.of(
+                "gateway.security.authorization.default-access", "deny-all",
+                "gateway.security.authorization.rules[0].paths", "/public/**, /auth/**",
+                "gateway.security.authorization.rules[0].access", "permit-all",
+                "gateway.security.authorization.rules[1].paths", "/api/orders/**",
+                "gateway.security.authorization.rules[1].methods", "POST,PUT",
+                "gateway.security.authorization.rules[1].authorities", "SCOPE_WRITE")));
+        AuthorizationProperties properties = binder.bind("gateway.security.authorization",
+                Bindable.of(AuthorizationProperties.class)).get();
+
+        AuthorizationTable table = AuthorizationTable.compile(properties.getRules(), properties.getDefaultAccess());
+
+        assertThat(table.rulePosition(HttpMethod.GET, PathContainer.parsePath("/auth/login"))).isZero();
+        assertThat(table.rulePosition(HttpMethod.PUT, PathContainer.parsePath("/api/orders/1"))).isEqualTo(1);
+        assertThat(table.rulePosition(HttpMethod.GET, PathContainer.parsePath("/api/orders/1"))).isEqualTo(-1);
+        assertThat(decide(table, new TestingAuthenticationToken("bob", null, "SCOPE_WRITE"),
+                exchange("/api/orders/1"))).isFalse();
+    }
+
+    /**
+     * Scopes are granted upper-cased by the converter, and the rules of the shipped configuration
+     * (the test resources shadow its classpath name), like rules naming a scope in lower case, grant
+     * access to a token with the lower-case scope.
+     */
+    @Test
+    void matchesScopesRegardlessOfCase() throws IOException {
+        Binder binder = new Binder(ConfigurationPropertySources.from(
+                new YamlPropertySourceLoader().load("application", new FileSystemResource("src/main/resources/application.yml"))));
+        AuthorizationProperties properties = binder.bind("gateway.security.authorization",
+                Bindable.of(AuthorizationProperties.class)).get();
+        AuthorizationTable shipped = AuthorizationTable.compile(properties.getRules(), properties.getDefaultAccess());
+        AuthorizationTable lowerCase = AuthorizationTable.compile(List.of(
+                rule("/api/data/**").setAuthorities(List.of("SCOPE_read"))), Access.DENY_ALL);
+
+        for (AuthorizationTable table : List.of(shipped, lowerCase)) {
+            JwtIdentityConverter converter = new JwtIdentityConverter(100, table);
+            assertThat(decide(table, converter.convert(jwt(List.of("ROLE_USER"), "read")).block(),
+                    exchange("/api/data/read"))).isTrue();
+            assertThat(decide(table, converter.convert(jwt(List.of("ROLE_USER"), "write")).block(),
+                    exchange("/api/data/read"))).isFalse();
+            assertThat(decide(table, new TestingAuthenticationToken("bob", null, "SCOPE_read"),
+                    exchange("/api/data/read"))).isTrue();
+        }
+    }
+
+    @Test
+    void rejectsRuleWithAccessAndAuthorities() {
+        assertThatIllegalArgumentException().isThrownBy(() -> AuthorizationTable.compile(List.of(
+                rule("/api/**").setAccess(Access.PERMIT_ALL).setAuthorities(List.of("ROLE_ADMIN"))),
+                Access.AUTHENTICATED));
+    }
+
+    private static boolean decide(AuthorizationTable table, Authentication authentication, ServerWebExchange exchange) {
+        return isGranted(table.check(authentication(authentication), new AuthorizationContext(exchange)));
+    }
+
+    private static boolean isGranted(Mono<AuthorizationDecision> decision) {
+        return decision.map(AuthorizationDecision::isGranted).defaultIfEmpty(false).block();
+    }
+
+    private static Mono<Authentication> authentication(Authentication authentication) {
+        if (authentication instanceof TestingAuthenticationToken testing) {
+            testing.setAuthenticated(true);
+        }
+        return Mono.justOrEmpty(authentication);
+    }
+
+    private static MockServerWebExchange exchange(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path).build());
+    }
+
+    private static Rule rule(String... paths) {
+        return new Rule().setPaths(List.of(paths));
+    }
+
+    private static ServerWebExchangeMatcherEntry<ReactiveAuthorizationManager<AuthorizationContext>> entry(
+            ServerWebExchangeMatcher matcher,
+            ReactiveAuthorizationManager<AuthorizationContext> manager) {
+        return new ServerWebExchangeMatcherEntry<>(matcher, manager);
+    }
+
+    private static ReactiveAuthorizationManager<AuthorizationContext> permitAll() {
+        return (authentication, context) -> Mono.just(new AuthorizationDecision(true));
+    }
+
+    private static Jwt jwt(List<String> roles, String scope) {
+        Jwt.Builder builder = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("alice")
+                .claim("roles", roles);
+        if (scope != null) {
+            builder.claim("scope", scope);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,115 @@
+package cm.amcloud.platform.gateway.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * Unit tests for {@link CachingReactiveJwtDecoder}, using a counting delegate
+ * and a manual ticker so that expiry can be verified without waiting.
+ */
+class CachingReactiveJwtDecoderTests {
+
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+    private final AtomicInteger delegateCalls = new AtomicInteger();
+    private final AtomicLong ticker = new AtomicLong();
+    private final Clock clock = Clock.fixed(NOW, ZoneOffset.UTC);
+
+    /**
+     * The delegate is only consulted once for a token that is presented repeatedly.
+     */
+    @Test
+    void repeatedTokenIsDecodedOnce() {
+        CachingReactiveJwtDecoder decoder = decoder(validUntil(NOW.plusSeconds(300)));
+
+        Jwt first = decoder.decode("token-a").block();
+        Jwt second = decoder.decode("token-a").block();
+
+        assertThat(second).isSameAs(first);
+        assertThat(delegateCalls).hasValue(1);
+    }
+
+    /**
+     * An entry is evicted once the token's `exp` has passed, forcing re-validation.
+     */
+    @Test
+    void entryExpiresAtTokenExpiry() {
+        CachingReactiveJwtDecoder decoder = decoder(validUntil(NOW.plusSeconds(60)));
+
+        decoder.decode("token-a").block();
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        decoder.decode("token-a").block();
+
+        assertThat(delegateCalls).hasValue(2);
+    }
+
+    /**
+     * Tokens that fail validation are never cached.
+     */
+    @Test
+    void failedDecodeIsNotCached() {
+        ReactiveJwtDecoder failing = token -> {
+            delegateCalls.incrementAndGet();
+            return Mono.error(new BadJwtException("bad signature"));
+        };
+        CachingReactiveJwtDecoder decoder = new CachingReactiveJwtDecoder(failing, 100, Duration.ofHours(1),
+                clock, ticker::get);
+
+        StepVerifier.create(decoder.decode("token-a")).expectError(BadJwtException.class).verify();
+        StepVerifier.create(decoder.decode("token-a")).expectError(BadJwtException.class).verify();
+
+        assertThat(delegateCalls).hasValue(2);
+        assertThat(decoder.getCache().estimatedSize()).isZero();
+    }
+
+    /**
+     * Hits and misses are published through the bound meter registry.
+     */
+    @Test
+    void exposesHitAndMissMetrics() {
+        CachingReactiveJwtDecoder decoder = decoder(validUntil(NOW.plusSeconds(300)));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        decoder.bindTo(registry);
+
+        decoder.decode("token-a").block();
+        decoder.decode("token-a").block();
+        decoder.decode("token-a").block();
+
+        assertThat(registry.get("cache.gets").tag("cache", "gateway.jwt.cache").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(2);
+        assertThat(registry.get("cache.gets").tag("cache", "gateway.jwt.cache").tag("result", "miss")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    private CachingReactiveJwtDecoder decoder(ReactiveJwtDecoder delegate) {
+        return new CachingReactiveJwtDecoder(delegate, 100, Duration.ofHours(1), clock, ticker::get);
+    }
+
+    private ReactiveJwtDecoder validUntil(Instant expiresAt) {
+        return token -> {
+            delegateCalls.incrementAndGet();
+            return Mono.just(Jwt.withTokenValue(token)
+                    .header("alg", "RS256")
+                    .subject("user-1")
+                    .issuedAt(NOW)
+                    .expiresAt(expiresAt)
+                    .build());
+        };
+    }
+}
@@ -0,0 +1,65 @@
+package cm.amcloud.platform.gateway.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+/**
+ * Unit tests for {@link IdentityProjection} and its memoization in {@link JwtIdentityConverter}.
+ */
+class IdentityProjectionTests {
+
+    /**
+     * Roles keep their prefix, scopes are upper-cased for the authority and sent without prefix.
+     */
+    @Test
+    void rendersHeadersFromSpaceSeparatedScope() {
+        Jwt jwt = jwt().claim("roles", List.of("ROLE_USER", "ROLE_ADMIN")).claim("scope", "read write").build();
+
+        IdentityProjection identity = IdentityProjection.fromJwt(jwt);
+
+        assertThat(identity.getUserId()).isEqualTo("user-1");
+        assertThat(identity.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_USER", "ROLE_ADMIN", "SCOPE_READ", "SCOPE_WRITE");
+        assertThat(identity.getRolesHeader()).isEqualTo("ROLE_USER,ROLE_ADMIN");
+        assertThat(identity.getScopesHeader()).isEqualTo("READ,WRITE");
+    }
+
+    /**
+     * The `scopes` list claim is used when no `scope` string is present,
+     * and missing roles produce no roles header.
+     */
+    @Test
+    void rendersHeadersFromScopesList() {
+        Jwt jwt = jwt().claim("scopes", List.of("read")).build();
+
+        IdentityProjection identity = IdentityProjection.fromJwt(jwt);
+
+        assertThat(identity.getRolesHeader()).isNull();
+        assertThat(identity.getScopesHeader()).isEqualTo("READ");
+    }
+
+    /**
+     * The converter hands back the same projection for the same Jwt instance.
+     */
+    @Test
+    void converterMemoizesProjectionPerJwt() {
+        JwtIdentityConverter converter = new JwtIdentityConverter(100);
+        Jwt jwt = jwt().claim("roles", List.of("ROLE_USER")).build();
+
+        IdentityAuthenticationToken first = (IdentityAuthenticationToken) converter.convert(jwt).block();
+        IdentityAuthenticationToken second = (IdentityAuthenticationToken) converter.convert(jwt).block();
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getIdentity()).isSameAs(first.getIdentity());
+        assertThat(second.getName()).isEqualTo("user-1");
+    }
+
+    private static Jwt.Builder jwt() {
+        return Jwt.withTokenValue("token").header("alg", "RS256").subject("user-1");
+    }
+}
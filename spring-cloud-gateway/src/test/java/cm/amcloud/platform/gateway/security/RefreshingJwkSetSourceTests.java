@@ -0,0 +1,175 @@
+package cm.amcloud.platform.gateway.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+
+import cm.amcloud.platform.gateway.config.JwtProperties;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+/**
+ * Tests for {@link RefreshingJwkSetSource} against a local stub JWKS server,
+ * verifying background loading, single-flight and rate-limited on-demand refreshes,
+ * and pinned keys.
+ */
+class RefreshingJwkSetSourceTests {
+
+    private HttpServer jwksServer;
+    private final AtomicReference<JWKSet> served = new AtomicReference<>();
+    private final AtomicInteger jwksRequests = new AtomicInteger();
+
+    private RSAKey firstKey;
+    private RSAKey rotatedKey;
+    private RefreshingJwkSetSource source;
+
+    @BeforeEach
+    void startJwksServer() throws Exception {
+        firstKey = new RSAKeyGenerator(2048).keyID("key-1").generate();
+        rotatedKey = new RSAKeyGenerator(2048).keyID("key-2").generate();
+        served.set(new JWKSet(firstKey.toPublicJWK()));
+
+        jwksServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        jwksServer.createContext("/jwks.json", exchange -> {
+            jwksRequests.incrementAndGet();
+            byte[] body = served.get().toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        jwksServer.start();
+    }
+
+    @AfterEach
+    void stop() {
+        if (source != null) {
+            source.close();
+        }
+        jwksServer.stop(0);
+    }
+
+    /**
+     * Keys are loaded in the background and reused for every verification.
+     */
+    @Test
+    void verifiesWithBackgroundLoadedKeys() throws Exception {
+        source = startSource(null);
+        NimbusReactiveJwtDecoder decoder = decoder();
+
+        Jwt jwt = decoder.decode(sign(firstKey)).block();
+        decoder.decode(sign(firstKey)).block();
+
+        assertThat(jwt.getSubject()).isEqualTo("user-1");
+        assertThat(jwksRequests).hasValue(1);
+    }
+
+    /**
+     * After a key rotation, concurrent tokens signed with the unknown key share a single refresh.
+     */
+    @Test
+    void unknownKeyIdTriggersSingleRefresh() throws Exception {
+        source = startSource(null);
+        NimbusReactiveJwtDecoder decoder = decoder();
+        decoder.decode(sign(firstKey)).block();
+
+        served.set(new JWKSet(List.of(firstKey.toPublicJWK(), rotatedKey.toPublicJWK())));
+        String rotatedToken = sign(rotatedKey);
+        List<Jwt> decoded = Flux.range(0, 50)
+                .flatMap(i -> decoder.decode(rotatedToken).subscribeOn(Schedulers.parallel()))
+                .collectList()
+                .block();
+
+        assertThat(decoded).hasSize(50);
+        assertThat(jwksRequests).hasValue(2);
+    }
+
+    /**
+     * A token with a key id that IAM does not know cannot cause a fetch storm.
+     */
+    @Test
+    void onDemandRefreshIsRateLimited() throws Exception {
+        source = startSource(null);
+        NimbusReactiveJwtDecoder decoder = decoder();
+        decoder.decode(sign(firstKey)).block();
+
+        String forged = sign(rotatedKey);
+        for (int i = 0; i < 20; i++) {
+            StepVerifier.create(decoder.decode(forged)).expectError(JwtException.class).verify();
+        }
+
+        assertThat(jwksRequests).hasValue(2);
+    }
+
+    /**
+     * Pinned keys verify tokens without any JWK Set URI.
+     */
+    @Test
+    void verifiesWithPinnedKeysOnly() throws Exception {
+        source = new RefreshingJwkSetSource(null, new JWKSet(firstKey.toPublicJWK()), settings());
+        source.start();
+
+        Jwt jwt = decoder().decode(sign(firstKey)).block();
+
+        assertThat(jwt.getSubject()).isEqualTo("user-1");
+        assertThat(jwksRequests).hasValue(0);
+    }
+
+    private RefreshingJwkSetSource startSource(JWKSet pinnedKeys) throws IOException {
+        URI uri = URI.create("http://localhost:" + jwksServer.getAddress().getPort() + "/jwks.json");
+        RefreshingJwkSetSource started = new RefreshingJwkSetSource(uri.toURL(), pinnedKeys, settings());
+        started.start();
+        return started;
+    }
+
+    private NimbusReactiveJwtDecoder decoder() {
+        return NimbusReactiveJwtDecoder.withJwkSource(source::select).build();
+    }
+
+    private static JwtProperties.Jwks settings() {
+        JwtProperties.Jwks settings = new JwtProperties.Jwks();
+        settings.setRefreshInterval(Duration.ofHours(1));
+        settings.setRefreshJitter(Duration.ZERO);
+        settings.setMinimumRefreshInterval(Duration.ofMinutes(1));
+        return settings;
+    }
+
+    private static String sign(RSAKey key) throws Exception {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("user-1")
+                .expirationTime(Date.from(Instant.now().plusSeconds(300)))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+}
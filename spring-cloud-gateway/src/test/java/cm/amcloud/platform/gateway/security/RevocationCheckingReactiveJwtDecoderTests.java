@@ -0,0 +1,115 @@
+package cm.amcloud.platform.gateway.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtReactiveAuthenticationManager;
+
+import cm.amcloud.platform.gateway.config.JwtProperties;
+import cm.amcloud.platform.gateway.revocation.LocalRevocationPublisher;
+import cm.amcloud.platform.gateway.revocation.Revocation;
+import cm.amcloud.platform.gateway.revocation.RevocationBatch;
+import cm.amcloud.platform.gateway.revocation.RevocationList;
+import cm.amcloud.platform.gateway.security.AuthenticationFailureMetrics.Reason;
+import reactor.core.Fuseable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * Unit tests for {@link RevocationCheckingReactiveJwtDecoder} in front of a
+ * {@link CachingReactiveJwtDecoder}, with revocations published locally.
+ */
+class RevocationCheckingReactiveJwtDecoderTests {
+
+    private static final Instant NOW = Instant.now();
+
+    private final AtomicInteger delegateCalls = new AtomicInteger();
+    private final LocalRevocationPublisher publisher = new LocalRevocationPublisher();
+    private final RevocationList revocationList = new RevocationList(publisher, new JwtProperties.Revocation());
+
+    @AfterEach
+    void close() {
+        revocationList.close();
+    }
+
+    /**
+     * A token revoked after it was cached is rejected on its next use.
+     */
+    @Test
+    void rejectsCachedTokenOnceRevoked() {
+        revocationList.start();
+        ReactiveJwtDecoder decoder = new RevocationCheckingReactiveJwtDecoder(
+                new CachingReactiveJwtDecoder(this::decode, 100, Duration.ofHours(1)), revocationList);
+
+        StepVerifier.create(decoder.decode("jti-1")).expectNextCount(1).verifyComplete();
+        publisher.publish(new RevocationBatch(1, List.of(Revocation.tokenId("jti-1", NOW.plusSeconds(300)))));
+
+        StepVerifier.create(decoder.decode("jti-1"))
+                .expectError(RevocationCheckingReactiveJwtDecoder.RevokedJwtException.class)
+                .verify();
+        StepVerifier.create(decoder.decode("jti-2")).expectNextCount(1).verifyComplete();
+        assertThat(delegateCalls).hasValue(2);
+    }
+
+    /**
+     * Cached tokens stay scalar through the check: returned as is when not revoked, and as a scalar
+     * error when revoked.
+     */
+    @Test
+    void keepsScalarResults() throws Exception {
+        revocationList.start();
+        ReactiveJwtDecoder delegate = new CachingReactiveJwtDecoder(this::decode, 100, Duration.ofHours(1));
+        ReactiveJwtDecoder decoder = new RevocationCheckingReactiveJwtDecoder(delegate, revocationList);
+        delegate.decode("jti-1").block();
+
+        Mono<Jwt> decoded = decoder.decode("jti-1");
+        assertThat(decoded).isInstanceOf(Fuseable.ScalarCallable.class);
+        assertThat(((Fuseable.ScalarCallable<?>) decoded).call()).isInstanceOf(Jwt.class);
+
+        publisher.publish(new RevocationBatch(1, List.of(Revocation.tokenId("jti-1", NOW.plusSeconds(300)))));
+        Mono<Jwt> revoked = decoder.decode("jti-1");
+        assertThat(revoked).isInstanceOf(Fuseable.ScalarCallable.class);
+        StepVerifier.create(revoked).expectError(RevocationCheckingReactiveJwtDecoder.RevokedJwtException.class).verify();
+    }
+
+    /**
+     * A revoked token is answered as an invalid bearer token, counted as revoked.
+     */
+    @Test
+    void revokedTokenFailsAuthentication() {
+        revocationList.start();
+        publisher.publish(new RevocationBatch(1, List.of(Revocation.subject("user-1", NOW, NOW.plusSeconds(300)))));
+        JwtReactiveAuthenticationManager authenticationManager = new JwtReactiveAuthenticationManager(
+                new RevocationCheckingReactiveJwtDecoder(this::decode, revocationList));
+
+        AuthenticationException failure = (AuthenticationException) authenticationManager
+                .authenticate(new BearerTokenAuthenticationToken("jti-1"))
+                .map(authentication -> (Throwable) new AssertionError("Token was accepted"))
+                .onErrorResume(e -> Mono.just(e))
+                .block();
+
+        assertThat(AuthenticationFailureMetrics.classify(failure)).isEqualTo(Reason.REVOKED);
+    }
+
+    // The token is its own jti; every token is issued before the revocations of the tests
+    private Mono<Jwt> decode(String token) {
+        delegateCalls.incrementAndGet();
+        return Mono.just(Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .jti(token)
+                .subject("user-1")
+                .issuedAt(NOW.minusSeconds(60))
+                .expiresAt(NOW.plusSeconds(300))
+                .build());
+    }
+}
@@ -0,0 +1,62 @@
+package cm.amcloud.platform.gateway.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Unit tests for {@link TimedReactiveJwtDecoder}.
+ */
+class TimedReactiveJwtDecoderTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void timesImmediateResults() {
+        Jwt jwt = Jwt.withTokenValue("token").header("alg", "RS256").subject("user-1")
+                .expiresAt(Instant.now().plusSeconds(300)).build();
+        TimedReactiveJwtDecoder decoder = new TimedReactiveJwtDecoder(
+                token -> "token".equals(token) ? Mono.just(jwt) : Mono.error(new BadJwtException("Malformed token")),
+                registry, "gateway.security.jwt.decode", "Time to decode a bearer token");
+
+        assertThat(decoder.decode("token").block()).isSameAs(jwt);
+        assertThatThrownBy(() -> decoder.decode("other").block()).isInstanceOf(BadJwtException.class);
+
+        assertThat(timer("success").count()).isEqualTo(1);
+        assertThat(timer("failure").count()).isEqualTo(1);
+    }
+
+    /**
+     * Decodes completing later are timed until completion, not until the Mono is returned.
+     */
+    @Test
+    void timesDeferredResultsOnCompletion() {
+        Jwt jwt = Jwt.withTokenValue("token").header("alg", "RS256").subject("user-1").build();
+        TimedReactiveJwtDecoder decoder = new TimedReactiveJwtDecoder(
+                token -> Mono.delay(Duration.ofMillis(50)).thenReturn(jwt),
+                registry, "gateway.security.jwt.decode", "Time to decode a bearer token");
+
+        Mono<Jwt> decoded = decoder.decode("token");
+        assertThat(timer("success").count()).isZero();
+        decoded.block(Duration.ofSeconds(5));
+
+        assertThat(timer("success").count()).isEqualTo(1);
+        assertThat(timer("success").totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(50);
+        assertThat(timer("failure").count()).isZero();
+    }
+
+    private Timer timer(String outcome) {
+        return registry.get("gateway.security.jwt.decode").tag("outcome", outcome).timer();
+    }
+}
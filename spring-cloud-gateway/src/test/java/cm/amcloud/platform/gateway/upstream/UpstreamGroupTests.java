@@ -0,0 +1,272 @@
+package cm.amcloud.platform.gateway.upstream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.offset;
+import static org.assertj.core.api.Assertions.withinPercentage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import cm.amcloud.platform.gateway.config.UpstreamProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+/**
+ * Unit tests for {@link UpstreamGroup} on a manual clock: latency and load aware choice, outlier
+ * ejection, slow start and instance updates; and for the instance sources of
+ * {@link UpstreamGroups}, including the discovery file.
+ */
+class UpstreamGroupTests {
+
+    private static final URI A = URI.create("http://10.0.0.1:8080");
+    private static final URI B = URI.create("http://10.0.0.2:8080");
+    private static final URI C = URI.create("http://10.0.0.3:8080");
+    private static final URI D = URI.create("http://10.0.0.4:8080");
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * Once its latency is known, a slow replica only gets the occasional request that measures it
+     * again, so it does not weigh on the tail latency of the route.
+     */
+    @Test
+    void sendsLittleTrafficToSlowInstance() {
+        UpstreamGroup group = group(new UpstreamProperties.Group(), A, B, C);
+        Map<URI, Long> latencies = Map.of(A, millis(10), B, millis(12), C, millis(500));
+        Map<URI, Integer> counts = new HashMap<>();
+
+        for (int i = 0; i < 1000; i++) {
+            UpstreamGroup.Call call = group.start();
+            counts.merge(call.getUri(), 1, Integer::sum);
+            now.addAndGet(latencies.get(call.getUri()));
+            call.complete(true);
+        }
+
+        assertThat(counts.getOrDefault(C, 0)).isLessThan(20);
+        assertThat(counts.get(A)).isGreaterThan(300);
+        assertThat(counts.get(B)).isGreaterThan(200);
+    }
+
+    /**
+     * Between instances of equal latency, the one with fewer requests in flight is chosen.
+     */
+    @Test
+    void prefersLessLoadedInstance() {
+        UpstreamGroup group = group(new UpstreamProperties.Group(), A, B);
+
+        UpstreamGroup.Call first = group.start();
+        UpstreamGroup.Call second = group.start();
+        UpstreamGroup.Call third = group.start();
+        UpstreamGroup.Call fourth = group.start();
+
+        assertThat(second.getUri()).isNotEqualTo(first.getUri());
+        assertThat(fourth.getUri()).isNotEqualTo(third.getUri());
+        assertThat(Arrays.stream(group.instances()).map(instance -> instance.inFlight.get())).containsOnly(2);
+
+        // Completing or cancelling twice only releases the instance once
+        first.cancel();
+        first.complete(true);
+        assertThat(instance(group, first.getUri()).inFlight.get()).isEqualTo(1);
+    }
+
+    /**
+     * An instance failing `consecutive-failures` times in a row is left out for the ejection time,
+     * then ramps up again; no more than `max-ejection-percent` of the group is ejected at once.
+     */
+    @Test
+    void ejectsFailingInstancesWithinLimit() {
+        UpstreamProperties.Group settings = new UpstreamProperties.Group();
+        settings.setConsecutiveFailures(3);
+        settings.setEjectionTime(Duration.ofSeconds(30));
+        settings.setMaxEjectionPercent(50);
+        UpstreamGroup group = group(settings, A, B, C, D);
+
+        failUntilEjected(group, A);
+        for (int i = 0; i < 200; i++) {
+            UpstreamGroup.Call call = group.start();
+            assertThat(call.getUri()).isNotEqualTo(A);
+            call.complete(true);
+        }
+        failUntilEjected(group, B);
+        // Two out of four ejected: C stays in however often it fails
+        for (int failures = 0, i = 0; failures < 5 && i < 10_000; i++) {
+            failures += fail(group, C) ? 1 : 0;
+        }
+        assertThat(instance(group, C).isAvailable(now.get())).isTrue();
+        assertThat(meterRegistry.get("gateway.upstream.instance.ejected").gauges().stream().map(Gauge::value))
+                .containsExactlyInAnyOrder(1.0, 1.0, 0.0, 0.0);
+        assertThat(meterRegistry.get("gateway.upstream.instance.ejections").tag("instance", A.toString())
+                .functionCounter().count()).isEqualTo(1);
+
+        now.addAndGet(Duration.ofSeconds(30).toNanos());
+        UpstreamGroup.Instance a = instance(group, A);
+        assertThat(a.isAvailable(now.get())).isTrue();
+        assertThat(a.weight(now.get())).isEqualTo(0.1);
+    }
+
+    /**
+     * An instance added to the group ramps up over the slow start time; the instances kept by an
+     * update keep their latency estimate, and the meters of the removed ones are dropped.
+     */
+    @Test
+    void rampsUpAddedInstances() {
+        UpstreamProperties.Group settings = new UpstreamProperties.Group();
+        settings.setSlowStart(Duration.ofSeconds(30));
+        UpstreamGroup group = group(settings, A, B);
+        assertThat(instance(group, A).weight(now.get())).isEqualTo(1);
+        UpstreamGroup.Call call = group.start();
+        URI measured = call.getUri();
+        now.addAndGet(millis(20));
+        call.complete(true);
+        double latency = instance(group, measured).latency(now.get());
+
+        group.update(List.of(measured, C));
+
+        assertThat(Arrays.stream(group.instances()).map(instance -> instance.uri)).containsExactly(measured, C);
+        assertThat(instance(group, measured).latency(now.get())).isEqualTo(latency);
+        UpstreamGroup.Instance added = instance(group, C);
+        assertThat(added.weight(now.get())).isEqualTo(0.1);
+        // Starts with the average latency of the group, at a tenth of the share
+        assertThat(added.cost(now.get())).isCloseTo(10 * latency, withinPercentage(1));
+        now.addAndGet(Duration.ofSeconds(15).toNanos());
+        assertThat(added.weight(now.get())).isCloseTo(0.5, offset(0.01));
+        now.addAndGet(Duration.ofSeconds(15).toNanos());
+        assertThat(added.weight(now.get())).isEqualTo(1);
+        assertThat(meterRegistry.get("gateway.upstream.instance.in.flight").gauges()).hasSize(2);
+    }
+
+    @Test
+    void emptyGroupHasNoCall() {
+        UpstreamGroup group = group(new UpstreamProperties.Group());
+
+        assertThat(group.start()).isNull();
+    }
+
+    /**
+     * Discovery file lines are instance URIs; comments, blank lines and invalid URIs are skipped.
+     */
+    @Test
+    void readsDiscoveryFile(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("billing.instances");
+        Files.writeString(file, """
+                # billing replicas
+                http://10.0.0.1:8080
+
+                http://10.0.0.2:8080   # second zone
+                not a uri
+                /relative/path
+                """);
+
+        assertThat(FileUpstreamDiscovery.read(file)).containsExactly(A, B);
+    }
+
+    /**
+     * The static instances are used until the discovery file is read, which then replaces them
+     * every time it changes.
+     */
+    @Test
+    void replacesStaticInstancesWithDiscoveryFile(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("billing.instances");
+        Files.writeString(file, A + "\n" + B + "\n");
+        UpstreamProperties.Group settings = new UpstreamProperties.Group();
+        settings.setInstances(List.of(D));
+        settings.setDiscoveryFile(file);
+        settings.setDiscoveryRefreshInterval(Duration.ofMillis(20));
+
+        StepVerifier.create(UpstreamGroups.discovery("billing", settings).instances().take(3))
+                .expectNext(List.of(D))
+                .expectNext(List.of(A, B))
+                .then(() -> {
+                    try {
+                        Files.writeString(file, C + "\n");
+                        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(1)));
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .expectNext(List.of(C))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void rejectsStaticInstanceWithoutHost() {
+        UpstreamProperties.Group settings = new UpstreamProperties.Group();
+        settings.setInstances(List.of(URI.create("billing:8080")));
+
+        assertThatIllegalArgumentException().isThrownBy(() -> UpstreamGroups.discovery("billing", settings));
+    }
+
+    /**
+     * A group without static instances or discovery file fails at startup rather than answering 503,
+     * unless its instances come from another discovery.
+     */
+    @Test
+    void rejectsGroupWithoutInstanceSource() {
+        UpstreamProperties properties = new UpstreamProperties();
+        properties.getGroups().put("billing", new UpstreamProperties.Group());
+
+        assertThatIllegalArgumentException().isThrownBy(() -> new UpstreamGroups(properties))
+                .withMessage("Upstream group billing has neither instances nor a discovery-file");
+        UpstreamGroups groups = new UpstreamGroups(properties, (name, settings) -> () -> Flux.just(List.of(A)));
+        assertThat(groups.get("billing").start().getUri()).isEqualTo(A);
+        groups.destroy();
+    }
+
+    private UpstreamGroup group(UpstreamProperties.Group settings, URI... instances) {
+        UpstreamGroup group = new UpstreamGroup("billing", settings, now::get);
+        group.bindTo(meterRegistry);
+        group.update(List.of(instances));
+        return group;
+    }
+
+    private void failUntilEjected(UpstreamGroup group, URI uri) {
+        UpstreamGroup.Instance instance = instance(group, uri);
+        for (int i = 0; i < 10_000 && instance.isAvailable(now.get()); i++) {
+            fail(group, uri);
+        }
+        assertThat(instance.isAvailable(now.get())).isFalse();
+    }
+
+    /**
+     * Starts a call, failing it if it went to the given instance.
+     *
+     * @return Whether the call failed.
+     */
+    private boolean fail(UpstreamGroup group, URI uri) {
+        UpstreamGroup.Call call = group.start();
+        now.addAndGet(millis(1));
+        boolean failed = call.getUri().equals(uri);
+        call.complete(!failed);
+        return failed;
+    }
+
+    private static UpstreamGroup.Instance instance(UpstreamGroup group, URI uri) {
+        return Arrays.stream(group.instances())
+                .filter(instance -> instance.uri.equals(uri))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
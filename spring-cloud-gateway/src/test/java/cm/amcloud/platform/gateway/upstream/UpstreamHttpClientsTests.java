@@ -0,0 +1,176 @@
+package cm.amcloud.platform.gateway.upstream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.route.Route;
+
+import cm.amcloud.platform.gateway.config.UpstreamProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.timeout.ReadTimeoutException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.internal.shaded.reactor.pool.PoolAcquirePendingLimitException;
+
+/**
+ * Unit tests for {@link UpstreamHttpClients} against a local stub server: pool selection by route
+ * metadata and URI, HTTP/2 (h2c) upstream, the pool's pending acquire and response timeout limits,
+ * and the {@link UpstreamMetrics} timers.
+ */
+class UpstreamHttpClientsTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UpstreamMetrics metrics = new UpstreamMetrics(meterRegistry);
+    private DisposableServer server;
+    private UpstreamHttpClients clients;
+
+    @BeforeEach
+    void setUp() {
+        server = HttpServer.create()
+                .port(0)
+                .protocol(HttpProtocol.HTTP11, HttpProtocol.H2C)
+                .route(routes -> routes
+                        .get("/version", (request, response) -> response.sendString(Mono.just(request.version().text())))
+                        .get("/slow", (request, response) -> response.sendString(
+                                Mono.delay(Duration.ofMillis(500)).map(tick -> "slow"))))
+                .bindNow();
+
+        UpstreamProperties properties = new UpstreamProperties();
+        properties.getPools().put("billing", pool(URI.create("http://localhost:" + server.port()), p -> {
+            p.setMaxConnections(1);
+            p.setPendingAcquireMaxCount(1);
+            p.setResponseTimeout(Duration.ofMillis(200));
+        }));
+        properties.getPools().put("reservation", pool(URI.create("http://reservation.internal:8080"),
+                p -> p.setProtocols(List.of(HttpProtocol.H2C))));
+        clients = new UpstreamHttpClients(properties, provider -> metrics.customize(HttpClient.create(provider)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        clients.destroy();
+        server.disposeNow();
+    }
+
+    /**
+     * A route uses the pool named by its metadata, or else the pool listing its URI.
+     */
+    @Test
+    void selectsPoolByMetadataThenUri() {
+        HttpClient billing = clients.forRoute(route("http://localhost:" + server.port(), Map.of()));
+        HttpClient reservation = clients.forRoute(route("http://localhost:" + server.port(),
+                Map.of(UpstreamProperties.POOL_METADATA_KEY, "reservation")));
+
+        assertThat(billing).isNotNull();
+        assertThat(reservation).isNotNull().isNotSameAs(billing);
+        assertThat(clients.forRoute(route("http://reservation.internal:8080", Map.of()))).isSameAs(reservation);
+        assertThat(clients.forRoute(route("http://localhost:1", Map.of()))).isNull();
+    }
+
+    @Test
+    void rejectsUnknownPool() {
+        assertThatIllegalStateException().isThrownBy(() -> clients.forRoute(route("http://localhost:1",
+                Map.of(UpstreamProperties.POOL_METADATA_KEY, "unknown"))));
+    }
+
+    /**
+     * An H2C pool talks HTTP/2 (prior knowledge) to the upstream.
+     */
+    @Test
+    void forwardsOverHttp2Cleartext() {
+        HttpClient client = clients.forRoute(route("http://reservation.internal:8080", Map.of()));
+
+        String version = client.get()
+                .uri("http://localhost:" + server.port() + "/version")
+                .responseContent().aggregate().asString()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(version).isEqualTo("HTTP/2.0");
+    }
+
+    /**
+     * Requests beyond max-connections plus pending-acquire-max-count fail immediately.
+     */
+    @Test
+    void rejectsRequestsBeyondPendingAcquireLimit() {
+        HttpClient client = clients.forRoute(route("http://localhost:" + server.port(), Map.of()))
+                .responseTimeout(Duration.ofSeconds(5));
+
+        List<Object> outcomes = Flux.range(0, 3)
+                .flatMap(i -> client.get().uri("http://localhost:" + server.port() + "/slow")
+                        .responseContent().aggregate().asString()
+                        .<Object>map(body -> body)
+                        .onErrorResume(e -> Mono.just(e)))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(outcomes).filteredOn("slow"::equals).hasSize(2);
+        assertThat(outcomes).filteredOn(PoolAcquirePendingLimitException.class::isInstance).hasSize(1);
+    }
+
+    /**
+     * The pool's response timeout fails slow upstream responses.
+     */
+    @Test
+    void appliesResponseTimeout() {
+        HttpClient client = clients.forRoute(route("http://localhost:" + server.port(), Map.of()));
+
+        Mono<String> response = client.get()
+                .uri("http://localhost:" + server.port() + "/slow")
+                .responseContent().aggregate().asString();
+
+        assertThat(response.map(body -> (Object) body).onErrorResume(e -> Mono.just(e)).block(Duration.ofSeconds(5)))
+                .isInstanceOf(ReadTimeoutException.class);
+    }
+
+    /**
+     * Requests started for a route record its connect and time to first byte timers; requests
+     * without a started call (e.g. health checks) are not timed.
+     */
+    @Test
+    void timesConnectAndFirstBytePerRoute() {
+        HttpClient client = clients.forRoute(route("http://localhost:" + server.port(), Map.of()));
+
+        client.get().uri("http://localhost:" + server.port() + "/version")
+                .responseContent().aggregate().asString()
+                .contextWrite(metrics.start("billing_route"))
+                .block(Duration.ofSeconds(5));
+        client.get().uri("http://localhost:" + server.port() + "/version")
+                .responseContent().aggregate().asString()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(meterRegistry.get("gateway.upstream.connect").tag("route", "billing_route").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("gateway.upstream.ttfb").tag("route", "billing_route").timer().count())
+                .isEqualTo(1);
+    }
+
+    private static UpstreamProperties.Pool pool(URI uri, Consumer<UpstreamProperties.Pool> settings) {
+        UpstreamProperties.Pool pool = new UpstreamProperties.Pool();
+        pool.setUris(List.of(uri));
+        settings.accept(pool);
+        return pool;
+    }
+
+    private static Route route(String uri, Map<String, Object> metadata) {
+        return Route.async()
+                .id("test_route")
+                .uri(uri)
+                .predicate(exchange -> true)
+                .metadata(metadata)
+                .build();
+    }
+}